@@ -1,6 +1,13 @@
 package com.evmak.parking_management.config;
 
-import org.springframework.cache.CacheManager;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -8,9 +15,13 @@ import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
@@ -19,6 +30,14 @@ import java.util.Map;
 @EnableCaching
 public class CacheConfig {
 
+    // Entries per cache name held in the in-process tier
+    @Value("${app.cache.l1.max-size:10000}")
+    private long localMaxSize = 10_000;
+
+    // Broadcast evictions so other nodes drop stale L1 entries; single-node setups can turn this off
+    @Value("${app.cache.invalidation.enabled:true}")
+    private boolean invalidationEnabled = true;
+
     @Bean
     public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
@@ -29,53 +48,89 @@ public class CacheConfig {
         template.setHashKeySerializer(new StringRedisSerializer());
         
         // Use JSON serializer for values
-        template.setValueSerializer(new GenericJackson2JsonRedisSerializer());
-        template.setHashValueSerializer(new GenericJackson2JsonRedisSerializer());
+        template.setValueSerializer(jsonSerializer());
+        template.setHashValueSerializer(jsonSerializer());
         
         template.afterPropertiesSet();
         return template;
     }
 
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory connectionFactory) {
+    public TwoTierCacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                            ObjectProvider<MeterRegistry> meterRegistry) {
+        Duration defaultTtl = Duration.ofMinutes(5);
         RedisCacheConfiguration defaultConfig = RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(Duration.ofMinutes(5))
+                .entryTtl(defaultTtl)
                 .disableCachingNullValues()
                 .serializeKeysWith(org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair
                         .fromSerializer(new StringRedisSerializer()))
                 .serializeValuesWith(org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair
-                        .fromSerializer(new GenericJackson2JsonRedisSerializer()));
+                        .fromSerializer(jsonSerializer()));
 
-        // Custom cache configurations for different cache names
-        Map<String, RedisCacheConfiguration> cacheConfigurations = new HashMap<>();
+        // Custom TTLs for different cache names - shared by the Redis and in-process tiers
+        Map<String, Duration> ttls = new HashMap<>();
         
         // Parking spots availability - very short TTL for real-time data
-        cacheConfigurations.put("parkingSpots", defaultConfig
-                .entryTtl(Duration.ofSeconds(30)));
+        ttls.put("parkingSpots", Duration.ofSeconds(30));
         
         // Parking facilities - longer TTL as they change less frequently
-        cacheConfigurations.put("parkingFacilities", defaultConfig
-                .entryTtl(Duration.ofMinutes(15)));
+        ttls.put("parkingFacilities", Duration.ofMinutes(15));
+
+        // Nearby-search candidates - short TTL, as other instances' facility writes only clear it via the outbox relay
+        ttls.put("nearbyFacilities", Duration.ofMinutes(1));
         
         // Active parking sessions - medium TTL
-        cacheConfigurations.put("parkingSessions", defaultConfig
-                .entryTtl(Duration.ofMinutes(2)));
+        ttls.put("parkingSessions", Duration.ofMinutes(2));
         
         // User data - longer TTL
-        cacheConfigurations.put("users", defaultConfig
-                .entryTtl(Duration.ofMinutes(30)));
+        ttls.put("users", Duration.ofMinutes(30));
         
         // Pricing rules - longer TTL as they rarely change
-        cacheConfigurations.put("pricingRules", defaultConfig
-                .entryTtl(Duration.ofHours(1)));
+        ttls.put("pricingRules", Duration.ofHours(1));
         
         // Payment data - medium TTL
-        cacheConfigurations.put("payments", defaultConfig
-                .entryTtl(Duration.ofMinutes(10)));
+        ttls.put("payments", Duration.ofMinutes(10));
 
-        return RedisCacheManager.builder(connectionFactory)
+        Map<String, RedisCacheConfiguration> cacheConfigurations = new HashMap<>();
+        ttls.forEach((name, ttl) -> cacheConfigurations.put(name, defaultConfig.entryTtl(ttl)));
+
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
                 .cacheDefaults(defaultConfig)
                 .withInitialCacheConfigurations(cacheConfigurations)
                 .build();
+        redisCacheManager.afterPropertiesSet();
+
+        StringRedisTemplate publisher = new StringRedisTemplate(connectionFactory);
+        return new TwoTierCacheManager(redisCacheManager, ttls, defaultTtl, localMaxSize,
+                message -> {
+                    if (invalidationEnabled) {
+                        publisher.convertAndSend(TwoTierCacheManager.INVALIDATION_CHANNEL, message);
+                    }
+                },
+                meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
+    // Typed JSON for cached values. The stock serializer has no java.time support, so it could not write the
+    // timestamps and opening hours carried by the cached spot and facility views.
+    public static GenericJackson2JsonRedisSerializer jsonSerializer() {
+        ObjectMapper mapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        return GenericJackson2JsonRedisSerializer.builder()
+                .objectMapper(mapper)
+                .defaultTyping(true)
+                .build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.cache.invalidation.enabled", havingValue = "true", matchIfMissing = true)
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                            TwoTierCacheManager cacheManager) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(
+                (message, pattern) -> cacheManager.handleInvalidation(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(TwoTierCacheManager.INVALIDATION_CHANNEL));
+        return container;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,36 @@
+package com.evmak.parking_management.config;
+
+import com.evmak.parking_management.service.PaymentCircuitBreaker;
+import com.evmak.parking_management.service.PaymentGatewayClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// /actuator/paymentgateway - circuit breaker state, bulkhead headroom and per-endpoint provider latency.
+// The same values are published as payment.gateway.* meters under /actuator/metrics.
+@Component
+@Endpoint(id = "paymentgateway")
+public class PaymentGatewayEndpoint {
+
+    @Autowired
+    private PaymentGatewayClient gatewayClient;
+
+    @ReadOperation
+    public Map<String, Object> gateway() {
+        PaymentCircuitBreaker breaker = gatewayClient.getCircuitBreaker();
+        Map<String, Object> circuit = new LinkedHashMap<>();
+        circuit.put("state", breaker.getState());
+        circuit.put("failureRatePercent", breaker.getFailureRate());
+        circuit.put("bufferedCalls", breaker.getBufferedCalls());
+
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("circuitBreaker", circuit);
+        details.put("bulkheadAvailablePermits", gatewayClient.getAvailablePermits());
+        details.put("latencyMs", gatewayClient.getLatencySummary());
+        return details;
+    }
+}
@@ -0,0 +1,22 @@
+package com.evmak.parking_management.config;
+
+import com.evmak.parking_management.entity.ReferenceGenerator;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ReferenceConfig {
+
+    // Unique per running instance (0-1023); -1 keeps the random id picked at startup
+    @Value("${app.reference.node-id:-1}")
+    private int nodeId = -1;
+
+    @PostConstruct
+    public void configureReferenceGenerator() {
+        if (nodeId >= 0) {
+            ReferenceGenerator.setNodeId(nodeId);
+        }
+        System.out.println("Reference generator node id: " + ReferenceGenerator.getNodeId());
+    }
+}
@@ -13,6 +13,7 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import jakarta.servlet.DispatcherType;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
@@ -40,6 +41,8 @@ public class SecurityConfig {
             .csrf(csrf -> csrf.disable())
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(auth -> auth
+                // Async results (payments, SSE) are dispatched again after the original request was authorized
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                 // Allow access to API documentation
                 .requestMatchers("/swagger-ui/**", "/v3/api-docs/**", "/swagger-ui.html", "/api-docs/**").permitAll()
                 // Allow access to health endpoints
@@ -49,10 +52,16 @@ public class SecurityConfig {
                 // Allow public access to facilities and spots (GET only)
                 .requestMatchers(HttpMethod.GET, "/api/v1/facilities/**").permitAll()
                 .requestMatchers(HttpMethod.GET, "/api/v1/spots/*/available").permitAll()
+                // Bulk loads write millions of rows, so only admins may start one
+                .requestMatchers("/api/v1/data/seed/bulk").hasRole("ADMIN")
                 // Allow data seeding endpoints
                 .requestMatchers("/api/v1/data/seed", "/api/v1/data/seed/large", "/api/v1/data/stats", "/api/v1/data/clear").permitAll()
                 // Allow payment provider info endpoints
                 .requestMatchers(HttpMethod.GET, "/api/v1/payments/providers", "/api/v1/payments/test").permitAll()
+                // Provider callbacks authenticate with an HMAC signature instead of a JWT
+                .requestMatchers(HttpMethod.POST, "/api/v1/payments/webhook").permitAll()
+                // Local payment provider stub; only mapped when app.payment.stub.enabled=true
+                .requestMatchers("/stub/payment-provider/**").permitAll()
                 // Allow cache performance test
                 .requestMatchers(HttpMethod.GET, "/api/v1/cache/performance-test").permitAll()
                 // Require authentication for all other API endpoints
@@ -0,0 +1,259 @@
+package com.evmak.parking_management.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// Serves cache reads from a size-bounded in-process L1 (Caffeine) and falls back to the shared L2 (Redis).
+// Updates and evictions go to both tiers and are broadcast so other nodes drop their L1 copy; read-through fills
+// are not broadcast, since the value came from the source of truth and no other node's copy is stale. A Redis
+// failure is logged and counted, and the cache degrades to L1 plus the loader rather than failing the caller.
+public class TwoTierCacheManager implements CacheManager {
+
+    public static final String INVALIDATION_CHANNEL = "cache:invalidation";
+
+    private static final String EVICT = "E";
+    private static final String CLEAR = "C";
+
+    private final CacheManager remoteCacheManager;
+    private final Map<String, Duration> localTtls;
+    private final Duration defaultTtl;
+    private final long localMaxSize;
+    private final Consumer<String> invalidationPublisher;
+    private final MeterRegistry meterRegistry;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ConcurrentHashMap<String, TwoTierCache> caches = new ConcurrentHashMap<>();
+
+    public TwoTierCacheManager(CacheManager remoteCacheManager, Map<String, Duration> localTtls, Duration defaultTtl,
+                               long localMaxSize, Consumer<String> invalidationPublisher, MeterRegistry meterRegistry) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.localTtls = localTtls;
+        this.defaultTtl = defaultTtl;
+        this.localMaxSize = localMaxSize;
+        this.invalidationPublisher = invalidationPublisher;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, cacheName -> {
+            Cache remote = remoteCacheManager.getCache(cacheName);
+            return remote != null ? new TwoTierCache(cacheName, remote) : null;
+        });
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        Set<String> names = new LinkedHashSet<>(remoteCacheManager.getCacheNames());
+        names.addAll(caches.keySet());
+        return names;
+    }
+
+    // Message format: <nodeId>|<cacheName>|<E or C>|<key>
+    public void handleInvalidation(String message) {
+        String[] parts = message.split("\\|", 4);
+        if (parts.length < 3 || nodeId.equals(parts[0])) {
+            return; // Malformed, or our own broadcast - the local tier is already up to date
+        }
+        TwoTierCache cache = caches.get(parts[1]);
+        if (cache == null) {
+            return;
+        }
+        if (CLEAR.equals(parts[2])) {
+            cache.local.invalidateAll();
+        } else if (parts.length == 4) {
+            cache.local.invalidate(parts[3]);
+        }
+    }
+
+    String getNodeId() {
+        return nodeId;
+    }
+
+    private void publish(String cacheName, String op, String key) {
+        try {
+            invalidationPublisher.accept(nodeId + "|" + cacheName + "|" + op + "|" + key);
+        } catch (Exception e) {
+            // Other nodes fall back to their L1 TTL
+            System.err.println("Failed to publish cache invalidation for " + cacheName + ": " + e.getMessage());
+        }
+    }
+
+    class TwoTierCache implements Cache {
+        private final String name;
+        private final Cache remote;
+        // Keys are normalized to strings so broadcast evictions match regardless of the key's type
+        final com.github.benmanes.caffeine.cache.Cache<String, Object> local;
+        final Counter localHits;
+        final Counter localMisses;
+        final Counter remoteHits;
+        final Counter remoteMisses;
+
+        TwoTierCache(String name, Cache remote) {
+            this.name = name;
+            this.remote = remote;
+            this.local = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localTtls.getOrDefault(name, defaultTtl))
+                .build();
+            this.localHits = counter("l1", "hit");
+            this.localMisses = counter("l1", "miss");
+            this.remoteHits = counter("l2", "hit");
+            this.remoteMisses = counter("l2", "miss");
+            ratioGauge("l1", localHits, localMisses);
+            ratioGauge("l2", remoteHits, remoteMisses);
+            Gauge.builder("cache.tier.size", local, com.github.benmanes.caffeine.cache.Cache::estimatedSize)
+                .tag("cache", name).tag("tier", "l1")
+                .register(meterRegistry);
+        }
+
+        private Counter counter(String tier, String result) {
+            return Counter.builder("cache.tier.gets")
+                .tag("cache", name).tag("tier", tier).tag("result", result)
+                .register(meterRegistry);
+        }
+
+        private void ratioGauge(String tier, Counter hits, Counter misses) {
+            Gauge.builder("cache.tier.hit.ratio", () -> {
+                    double total = hits.count() + misses.count();
+                    return total == 0 ? 0.0 : hits.count() / total;
+                })
+                .tag("cache", name).tag("tier", tier)
+                .register(meterRegistry);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Object getNativeCache() {
+            return remote.getNativeCache();
+        }
+
+        @Override
+        public ValueWrapper get(Object key) {
+            String localKey = String.valueOf(key);
+            Object value = local.getIfPresent(localKey);
+            if (value != null) {
+                localHits.increment();
+                return new SimpleValueWrapper(value);
+            }
+            localMisses.increment();
+
+            ValueWrapper wrapper;
+            try {
+                wrapper = remote.get(key);
+            } catch (RuntimeException e) {
+                remoteFailed("get", key, e);
+                return null; // Treated as a miss: the caller loads from the database
+            }
+            if (wrapper != null && wrapper.get() != null) {
+                remoteHits.increment();
+                local.put(localKey, wrapper.get());
+            } else {
+                remoteMisses.increment();
+            }
+            return wrapper;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T get(Object key, Class<T> type) {
+            ValueWrapper wrapper = get(key);
+            Object value = wrapper != null ? wrapper.get() : null;
+            if (value != null && type != null && !type.isInstance(value)) {
+                throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+            }
+            return (T) value;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T get(Object key, Callable<T> valueLoader) {
+            ValueWrapper wrapper = get(key);
+            if (wrapper != null && wrapper.get() != null) {
+                return (T) wrapper.get();
+            }
+            T value;
+            try {
+                value = valueLoader.call();
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+            if (value != null) {
+                fill(key, value);
+            }
+            return value;
+        }
+
+        // A freshly loaded value: stored in both tiers without telling other nodes
+        private void fill(Object key, Object value) {
+            try {
+                remote.put(key, value);
+            } catch (RuntimeException e) {
+                remoteFailed("put", key, e);
+            }
+            local.put(String.valueOf(key), value);
+        }
+
+        @Override
+        public void put(Object key, Object value) {
+            try {
+                remote.put(key, value);
+            } catch (RuntimeException e) {
+                remoteFailed("put", key, e);
+            }
+            String localKey = String.valueOf(key);
+            if (value != null) {
+                local.put(localKey, value);
+            } else {
+                local.invalidate(localKey);
+            }
+            publish(name, EVICT, localKey);
+        }
+
+        @Override
+        public void evict(Object key) {
+            try {
+                remote.evict(key);
+            } catch (RuntimeException e) {
+                remoteFailed("evict", key, e);
+            }
+            String localKey = String.valueOf(key);
+            local.invalidate(localKey);
+            publish(name, EVICT, localKey);
+        }
+
+        @Override
+        public void clear() {
+            try {
+                remote.clear();
+            } catch (RuntimeException e) {
+                remoteFailed("clear", "*", e);
+            }
+            local.invalidateAll();
+            publish(name, CLEAR, "");
+        }
+
+        private void remoteFailed(String operation, Object key, RuntimeException e) {
+            meterRegistry.counter("cache.tier.errors", "cache", name, "tier", "l2", "operation", operation).increment();
+            System.err.println("Redis " + operation + " failed for cache " + name + " key " + key + ": " + e.getMessage());
+        }
+    }
+}
@@ -1,13 +1,17 @@
 package com.evmak.parking_management.controller;
 
-import com.evmak.parking_management.entity.ParkingFacility;
+import com.evmak.parking_management.dto.FacilityView;
+import com.evmak.parking_management.dto.SpotView;
 import com.evmak.parking_management.entity.ParkingSpot;
+import com.evmak.parking_management.service.AvailabilityStreamService;
 import com.evmak.parking_management.service.CacheService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 
@@ -19,6 +23,9 @@ public class CacheController {
     @Autowired
     private CacheService cacheService;
 
+    @Autowired
+    private AvailabilityStreamService availabilityStreamService;
+
     @GetMapping("/availability/{facilityId}")
     @Operation(summary = "Get real-time facility availability", 
                description = "Get cached real-time parking availability with sub-50ms response time")
@@ -34,19 +41,27 @@ public class CacheController {
         }
     }
 
+    @GetMapping(value = "/availability/{facilityId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream live facility availability", 
+               description = "Server-Sent Events stream that pushes availability updates whenever spot statuses change, " +
+                             "coalesced to a bounded number of updates per second. Replaces polling the availability endpoint.")
+    public SseEmitter streamAvailability(@PathVariable Long facilityId) {
+        return availabilityStreamService.subscribe(facilityId);
+    }
+
     @GetMapping("/spots/{facilityId}/available")
     @Operation(summary = "Get cached available spots", 
                description = "Get available parking spots from cache for fast access")
-    public ResponseEntity<List<ParkingSpot>> getCachedAvailableSpots(@PathVariable Long facilityId) {
-        List<ParkingSpot> spots = cacheService.getCachedAvailableSpots(facilityId);
+    public ResponseEntity<List<SpotView>> getCachedAvailableSpots(@PathVariable Long facilityId) {
+        List<SpotView> spots = cacheService.getCachedAvailableSpots(facilityId);
         return ResponseEntity.ok(spots);
     }
 
     @GetMapping("/facilities/{facilityId}")
     @Operation(summary = "Get cached facility details", 
                description = "Get facility information from cache")
-    public ResponseEntity<ParkingFacility> getCachedFacility(@PathVariable Long facilityId) {
-        ParkingFacility facility = cacheService.getCachedFacility(facilityId);
+    public ResponseEntity<FacilityView> getCachedFacility(@PathVariable Long facilityId) {
+        FacilityView facility = cacheService.getCachedFacility(facilityId);
         
         if (facility != null) {
             return ResponseEntity.ok(facility);
@@ -58,12 +73,12 @@ public class CacheController {
     @GetMapping("/facilities/nearby")
     @Operation(summary = "Get cached nearby facilities", 
                description = "Get nearby parking facilities from cache")
-    public ResponseEntity<List<ParkingFacility>> getCachedNearbyFacilities(
+    public ResponseEntity<List<FacilityView>> getCachedNearbyFacilities(
             @RequestParam Double latitude,
             @RequestParam Double longitude,
             @RequestParam(defaultValue = "5") Integer radiusKm) {
         
-        List<ParkingFacility> facilities = cacheService.getCachedNearbyFacilities(latitude, longitude, radiusKm);
+        List<FacilityView> facilities = cacheService.getCachedNearbyFacilities(latitude, longitude, radiusKm);
         return ResponseEntity.ok(facilities);
     }
 
@@ -160,6 +175,7 @@ public class CacheController {
                 "✓ Cached facility availability and spot status",
                 "✓ Sub-50ms response times for cached data",
                 "✓ Automatic cache invalidation on data changes",
+                "✓ Live availability over Server-Sent Events",
                 "✓ Cache warming for high-traffic facilities",
                 "✓ Performance monitoring and statistics"
             };
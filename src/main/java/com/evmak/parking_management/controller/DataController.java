@@ -1,6 +1,12 @@
 package com.evmak.parking_management.controller;
 
+import com.evmak.parking_management.service.BulkDataLoader;
+import com.evmak.parking_management.service.DataResetService;
 import com.evmak.parking_management.service.DataSeedingService;
+import com.evmak.parking_management.service.FacilityGeoIndexService;
+import com.evmak.parking_management.service.PricingEngine;
+import com.evmak.parking_management.service.SpotCounterService;
+import com.evmak.parking_management.service.SpotOccupancyService;
 import com.evmak.parking_management.repository.*;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -19,6 +25,12 @@ public class DataController {
     @Autowired
     private DataSeedingService dataSeedingService;
     
+    @Autowired
+    private BulkDataLoader bulkDataLoader;
+
+    @Autowired
+    private DataResetService dataResetService;
+
     @Autowired
     private UserRepository userRepository;
     
@@ -37,11 +49,27 @@ public class DataController {
     @Autowired
     private PaymentRepository paymentRepository;
 
+    @Autowired
+    private SpotOccupancyService occupancyService;
+
+    @Autowired
+    private FacilityGeoIndexService geoIndexService;
+
+    @Autowired
+    private PricingEngine pricingEngine;
+
+    @Autowired
+    private SpotCounterService spotCounterService;
+
     @PostMapping("/seed")
     @Operation(summary = "Seed database", description = "Populate database with basic sample data")
     public ResponseEntity<Map<String, Object>> seedDatabase() {
         try {
             dataSeedingService.seedData();
+            occupancyService.rebuildAll();
+            spotCounterService.checkForDrift();
+            geoIndexService.rebuildAll();
+            pricingEngine.refresh();
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -63,6 +91,10 @@ public class DataController {
         try {
             long startTime = System.currentTimeMillis();
             dataSeedingService.seedLargeDataset();
+            occupancyService.rebuildAll();
+            spotCounterService.checkForDrift();
+            geoIndexService.rebuildAll();
+            pricingEngine.refresh();
             long endTime = System.currentTimeMillis();
             
             Map<String, Object> response = new HashMap<>();
@@ -81,6 +113,51 @@ public class DataController {
         }
     }
     
+    @PostMapping("/seed/bulk")
+    @Operation(summary = "Bulk load dataset", description = "Stream capacity-test data in committed chunks with JDBC batching; "
+        + "the same seed reproduces the same dataset. Omitted params use the app.seed.bulk.* defaults. Appends to existing data; "
+        + "loading a seed that is already present needs a distinct runTag")
+    public ResponseEntity<Map<String, Object>> bulkLoad(@RequestParam(required = false) Integer users,
+                                                        @RequestParam(required = false) Integer vehicles,
+                                                        @RequestParam(required = false) Integer facilities,
+                                                        @RequestParam(required = false) Integer spots,
+                                                        @RequestParam(required = false) Integer sessions,
+                                                        @RequestParam(required = false) Long seed,
+                                                        @RequestParam(required = false) String runTag) {
+        try {
+            BulkDataLoader.BulkLoadReport report = bulkDataLoader.load(users, vehicles, facilities, spots, sessions, seed, runTag);
+            occupancyService.rebuildAll();
+            spotCounterService.checkForDrift();
+            geoIndexService.rebuildAll();
+            pricingEngine.refresh();
+
+            Map<String, Object> loaded = new HashMap<>();
+            loaded.put("users", report.users);
+            loaded.put("vehicles", report.vehicles);
+            loaded.put("facilities", report.facilities);
+            loaded.put("parkingSpots", report.spots);
+            loaded.put("parkingSessions", report.sessions);
+            loaded.put("payments", report.payments);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "Bulk load completed");
+            response.put("loaded", loaded);
+            response.put("seed", report.seed);
+            response.put("runTag", report.runTag);
+            response.put("rows", report.getRows());
+            response.put("executionTimeMs", report.elapsedMs);
+            response.put("rowsPerSecond", Math.round(report.getRowsPerSecond()));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "Error bulk loading data: " + e.getMessage());
+            response.put("error", e.getClass().getSimpleName());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
     @GetMapping("/stats")
     @Operation(summary = "Get data statistics", description = "Get current database statistics")
     public ResponseEntity<Map<String, Object>> getDataStatistics() {
@@ -115,16 +192,12 @@ public class DataController {
     @Operation(summary = "Clear all data", description = "WARNING: Delete all data from database")
     public ResponseEntity<Map<String, Object>> clearAllData() {
         try {
-            paymentRepository.deleteAll();
-            sessionRepository.deleteAll();
-            spotRepository.deleteAll();
-            vehicleRepository.deleteAll();
-            facilityRepository.deleteAll();
-            userRepository.deleteAll();
+            long elapsedMs = dataResetService.resetAll();
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "All data cleared successfully");
+            response.put("executionTimeMs", elapsedMs);
             response.put("data", getDataStatistics());
             
             return ResponseEntity.ok(response);
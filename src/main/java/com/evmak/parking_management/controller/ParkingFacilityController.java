@@ -1,15 +1,22 @@
 package com.evmak.parking_management.controller;
 
+import com.evmak.parking_management.dto.FacilityView;
 import com.evmak.parking_management.entity.ParkingFacility;
 import com.evmak.parking_management.repository.ParkingFacilityRepository;
+import com.evmak.parking_management.service.FacilityGeoIndexService;
+import com.evmak.parking_management.service.OutboxService;
+import com.evmak.parking_management.service.SpotCounterService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
@@ -20,59 +27,97 @@ public class ParkingFacilityController {
     @Autowired
     private ParkingFacilityRepository facilityRepository;
 
+    @Autowired
+    private FacilityGeoIndexService geoIndexService;
+
+    @Autowired
+    private SpotCounterService spotCounterService;
+
+    @Autowired
+    private OutboxService outboxService;
+
     @GetMapping
-    @Operation(summary = "Get all parking facilities", description = "Retrieve all active parking facilities")
-    public ResponseEntity<List<ParkingFacility>> getAllFacilities() {
-        List<ParkingFacility> facilities = facilityRepository.findByIsActiveTrue();
-        return ResponseEntity.ok(facilities);
+    @Operation(summary = "Get all parking facilities", description = "Active parking facilities in id order; with limit or cursor, one keyset page at a time")
+    public ResponseEntity<?> getAllFacilities(@RequestParam(required = false) String cursor,
+                                              @RequestParam(required = false) Integer limit) {
+        if (cursor == null && limit == null) {
+            List<FacilityView> facilities = facilityRepository.findActiveFacilityViews();
+            return ResponseEntity.ok(facilities);
+        }
+        long afterId = 0;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                afterId = Long.parseLong(KeysetPage.decode(cursor));
+            } catch (RuntimeException e) {
+                return ResponseEntity.badRequest().body(Map.of("success", false, "message", "Invalid cursor", "errorCode", "INVALID_CURSOR"));
+            }
+        }
+        int pageSize = KeysetPage.limit(limit);
+        List<FacilityView> rows = facilityRepository.findActiveFacilityViewPage(afterId, Limit.of(pageSize + 1));
+        return ResponseEntity.ok(KeysetPage.of(rows, pageSize, row -> String.valueOf(row.id())));
     }
 
     @GetMapping("/{id}")
     @Operation(summary = "Get facility by ID", description = "Retrieve a specific parking facility")
-    public ResponseEntity<ParkingFacility> getFacilityById(@PathVariable Long id) {
-        Optional<ParkingFacility> facility = facilityRepository.findById(id);
+    public ResponseEntity<FacilityView> getFacilityById(@PathVariable Long id) {
+        Optional<FacilityView> facility = facilityRepository.findFacilityViewById(id);
         return facility.map(ResponseEntity::ok)
                       .orElse(ResponseEntity.notFound().build());
     }
 
+    @GetMapping("/{id}/availability")
+    @Operation(summary = "Get facility availability", description = "Spot counts by status and available spots by type, read from the facility's materialized counters")
+    public ResponseEntity<SpotCounterService.Availability> getFacilityAvailability(@PathVariable Long id) {
+        if (!facilityRepository.existsById(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(spotCounterService.getAvailability(id));
+    }
+
     @GetMapping("/search/nearby")
     @Operation(summary = "Find nearby facilities", description = "Search for parking facilities within a radius")
-    public ResponseEntity<List<ParkingFacility>> findNearbyFacilities(
+    public ResponseEntity<List<FacilityView>> findNearbyFacilities(
             @RequestParam("lat") BigDecimal latitude,
             @RequestParam("lng") BigDecimal longitude,
             @RequestParam(value = "radius", defaultValue = "1000") Integer radiusMeters,
             @RequestParam(value = "maxResults", defaultValue = "10") Integer maxResults) {
         
-        List<ParkingFacility> facilities = facilityRepository.findAvailableNearbyFacilities(
-            latitude, longitude, radiusMeters, maxResults);
+        List<FacilityView> facilities = geoIndexService.findAvailableNearbyFacilities(
+            latitude.doubleValue(), longitude.doubleValue(), radiusMeters, maxResults);
         return ResponseEntity.ok(facilities);
     }
 
     @GetMapping("/available")
     @Operation(summary = "Get facilities with available spots", description = "Find all facilities that have available parking spots")
-    public ResponseEntity<List<ParkingFacility>> getFacilitiesWithAvailableSpots() {
-        List<ParkingFacility> facilities = facilityRepository.findFacilitiesWithAvailableSpots();
+    public ResponseEntity<List<FacilityView>> getFacilitiesWithAvailableSpots() {
+        List<FacilityView> facilities = facilityRepository.findFacilityViewsWithAvailableSpots();
         return ResponseEntity.ok(facilities);
     }
 
     @GetMapping("/type/{facilityType}")
     @Operation(summary = "Get facilities by type", description = "Filter facilities by type (GARAGE or STREET_ZONE)")
-    public ResponseEntity<List<ParkingFacility>> getFacilitiesByType(
+    public ResponseEntity<List<FacilityView>> getFacilitiesByType(
             @PathVariable ParkingFacility.FacilityType facilityType) {
-        List<ParkingFacility> facilities = facilityRepository.findByFacilityTypeAndIsActiveTrue(facilityType);
+        List<FacilityView> facilities = facilityRepository.findActiveFacilityViewsByType(facilityType);
         return ResponseEntity.ok(facilities);
     }
 
+    // Facility writes update the geo index after commit and publish an outbox event, which drops the cached
+    // facility and nearby searches once relayed
     @PostMapping
+    @Transactional
     @Operation(summary = "Create new facility", description = "Add a new parking facility")
-    public ResponseEntity<ParkingFacility> createFacility(@RequestBody ParkingFacility facility) {
+    public ResponseEntity<FacilityView> createFacility(@RequestBody ParkingFacility facility) {
         ParkingFacility savedFacility = facilityRepository.save(facility);
-        return ResponseEntity.ok(savedFacility);
+        geoIndexService.updateFacility(savedFacility);
+        outboxService.recordFacility(savedFacility, "FACILITY_CREATED");
+        return ResponseEntity.ok(FacilityView.of(savedFacility));
     }
 
     @PutMapping("/{id}")
+    @Transactional
     @Operation(summary = "Update facility", description = "Update an existing parking facility")
-    public ResponseEntity<ParkingFacility> updateFacility(
+    public ResponseEntity<FacilityView> updateFacility(
             @PathVariable Long id, 
             @RequestBody ParkingFacility facilityDetails) {
         
@@ -89,18 +134,23 @@ public class ParkingFacilityController {
                 facility.setIsActive(facilityDetails.getIsActive());
                 
                 ParkingFacility updatedFacility = facilityRepository.save(facility);
-                return ResponseEntity.ok(updatedFacility);
+                geoIndexService.updateFacility(updatedFacility);
+                outboxService.recordFacility(updatedFacility, "FACILITY_UPDATED");
+                return ResponseEntity.ok(FacilityView.of(updatedFacility));
             })
             .orElse(ResponseEntity.notFound().build());
     }
 
     @DeleteMapping("/{id}")
+    @Transactional
     @Operation(summary = "Delete facility", description = "Deactivate a parking facility")
     public ResponseEntity<?> deleteFacility(@PathVariable Long id) {
         return facilityRepository.findById(id)
             .map(facility -> {
                 facility.setIsActive(false);
-                facilityRepository.save(facility);
+                ParkingFacility deactivated = facilityRepository.save(facility);
+                geoIndexService.updateFacility(deactivated);
+                outboxService.recordFacility(deactivated, "FACILITY_DEACTIVATED");
                 return ResponseEntity.ok().build();
             })
             .orElse(ResponseEntity.notFound().build());
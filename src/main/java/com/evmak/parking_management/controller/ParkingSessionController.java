@@ -1,16 +1,26 @@
 package com.evmak.parking_management.controller;
 
 import com.evmak.parking_management.entity.ParkingSession;
+import com.evmak.parking_management.entity.ParkingSpot;
 import com.evmak.parking_management.repository.ParkingSessionRepository;
+import com.evmak.parking_management.service.NdjsonExporter;
+import com.evmak.parking_management.service.OutboxService;
+import com.evmak.parking_management.service.PricingEngine;
+import com.evmak.parking_management.service.SpotStateService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
@@ -21,47 +31,89 @@ public class ParkingSessionController {
     @Autowired
     private ParkingSessionRepository sessionRepository;
 
+    @Autowired
+    private PricingEngine pricingEngine;
+
+    @Autowired
+    private NdjsonExporter ndjsonExporter;
+
+    @Autowired
+    private SpotStateService spotStateService;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    // Bounds used when no date range or cursor is given; both fit a MySQL DATETIME
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
+    private interface SessionPageQuery {
+        List<ParkingSessionRepository.SessionView> fetch(LocalDateTime beforeStartedAt, Long beforeId, Limit limit);
+    }
+
     @GetMapping
-    @Operation(summary = "Get all sessions", description = "Retrieve all parking sessions")
-    public ResponseEntity<List<ParkingSession>> getAllSessions() {
-        List<ParkingSession> sessions = sessionRepository.findAll();
-        return ResponseEntity.ok(sessions);
+    @Operation(summary = "Get all sessions", description = "Sessions newest first; with limit or cursor, one keyset page at a time (pass nextCursor back as cursor for the next page)")
+    public ResponseEntity<?> getAllSessions(@RequestParam(required = false) String cursor,
+                                            @RequestParam(required = false) Integer limit) {
+        return sessionPage(cursor, limit, (beforeStartedAt, beforeId, rows) ->
+            sessionRepository.findSessionPage(EARLIEST, LATEST, beforeStartedAt, beforeId, rows));
+    }
+
+    @GetMapping("/export")
+    @Operation(summary = "Export sessions", description = "Stream sessions newest first as NDJSON, optionally for one user or facility and a date range")
+    public void exportSessions(@RequestParam(required = false) Long userId,
+                               @RequestParam(required = false) Long facilityId,
+                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+                               HttpServletResponse response) throws IOException {
+        if (userId != null && facilityId != null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Filter by userId or facilityId, not both");
+            return;
+        }
+        LocalDateTime from = startDate != null ? startDate : EARLIEST;
+        LocalDateTime to = endDate != null ? endDate : LATEST;
+        response.setContentType(NdjsonExporter.MEDIA_TYPE);
+        ndjsonExporter.export(() -> userId != null ? sessionRepository.streamUserSessions(userId, from, to)
+            : facilityId != null ? sessionRepository.streamFacilitySessions(facilityId, from, to)
+            : sessionRepository.streamSessions(from, to), response.getOutputStream());
     }
 
     @GetMapping("/{id}")
     @Operation(summary = "Get session by ID", description = "Retrieve a specific parking session")
-    public ResponseEntity<ParkingSession> getSessionById(@PathVariable Long id) {
-        Optional<ParkingSession> session = sessionRepository.findById(id);
+    public ResponseEntity<ParkingSessionRepository.SessionView> getSessionById(@PathVariable Long id) {
+        Optional<ParkingSessionRepository.SessionView> session = sessionRepository.findSessionViewById(id);
         return session.map(ResponseEntity::ok)
                      .orElse(ResponseEntity.notFound().build());
     }
 
     @GetMapping("/reference/{reference}")
     @Operation(summary = "Get session by reference", description = "Find session by unique reference")
-    public ResponseEntity<ParkingSession> getSessionByReference(@PathVariable String reference) {
-        Optional<ParkingSession> session = sessionRepository.findBySessionReference(reference);
+    public ResponseEntity<ParkingSessionRepository.SessionView> getSessionByReference(@PathVariable String reference) {
+        Optional<ParkingSessionRepository.SessionView> session = sessionRepository.findSessionViewByReference(reference);
         return session.map(ResponseEntity::ok)
                      .orElse(ResponseEntity.notFound().build());
     }
 
     @GetMapping("/user/{userId}")
-    @Operation(summary = "Get sessions by user", description = "Get all sessions for a specific user")
-    public ResponseEntity<List<ParkingSession>> getSessionsByUser(@PathVariable Long userId) {
-        List<ParkingSession> sessions = sessionRepository.findByUserId(userId);
-        return ResponseEntity.ok(sessions);
+    @Operation(summary = "Get sessions by user", description = "Sessions of a specific user, newest first; with limit or cursor, one keyset page at a time")
+    public ResponseEntity<?> getSessionsByUser(@PathVariable Long userId,
+                                               @RequestParam(required = false) String cursor,
+                                               @RequestParam(required = false) Integer limit) {
+        return sessionPage(cursor, limit, (beforeStartedAt, beforeId, rows) ->
+            sessionRepository.findUserSessionPage(userId, EARLIEST, LATEST, beforeStartedAt, beforeId, rows));
     }
 
     @GetMapping("/user/{userId}/active")
     @Operation(summary = "Get active sessions by user", description = "Get active sessions for a specific user")
-    public ResponseEntity<List<ParkingSession>> getActiveSessionsByUser(@PathVariable Long userId) {
-        List<ParkingSession> sessions = sessionRepository.findActiveSessionsByUserId(userId);
+    public ResponseEntity<List<ParkingSessionRepository.SessionView>> getActiveSessionsByUser(@PathVariable Long userId) {
+        List<ParkingSessionRepository.SessionView> sessions = sessionRepository.findActiveSessionViewsByUserId(userId);
         return ResponseEntity.ok(sessions);
     }
 
     @GetMapping("/spot/{spotId}/active")
     @Operation(summary = "Get active session for spot", description = "Get the active session for a specific spot")
-    public ResponseEntity<ParkingSession> getActiveSessionBySpot(@PathVariable Long spotId) {
-        Optional<ParkingSession> session = sessionRepository.findActiveSessionBySpotId(spotId);
+    public ResponseEntity<ParkingSessionRepository.SessionView> getActiveSessionBySpot(@PathVariable Long spotId) {
+        Optional<ParkingSessionRepository.SessionView> session = sessionRepository.findActiveSessionViewBySpotId(spotId);
         return session.map(ResponseEntity::ok)
                      .orElse(ResponseEntity.notFound().build());
     }
@@ -74,22 +126,26 @@ public class ParkingSessionController {
     }
 
     @GetMapping("/search/date-range")
-    @Operation(summary = "Search sessions by date range", description = "Find sessions within a date range")
-    public ResponseEntity<List<ParkingSession>> getSessionsByDateRange(
+    @Operation(summary = "Search sessions by date range", description = "Sessions within a date range, newest first; with limit or cursor, one keyset page at a time")
+    public ResponseEntity<?> getSessionsByDateRange(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
-        List<ParkingSession> sessions = sessionRepository.findSessionsByDateRange(startDate, endDate);
-        return ResponseEntity.ok(sessions);
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return sessionPage(cursor, limit, (beforeStartedAt, beforeId, rows) ->
+            sessionRepository.findSessionPage(startDate, endDate, beforeStartedAt, beforeId, rows));
     }
 
     @GetMapping("/facility/{facilityId}/date-range")
-    @Operation(summary = "Get facility sessions by date range", description = "Find sessions in a facility within a date range")
-    public ResponseEntity<List<ParkingSession>> getSessionsByFacilityAndDateRange(
+    @Operation(summary = "Get facility sessions by date range", description = "Sessions in a facility within a date range, newest first; with limit or cursor, one keyset page at a time")
+    public ResponseEntity<?> getSessionsByFacilityAndDateRange(
             @PathVariable Long facilityId,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
-        List<ParkingSession> sessions = sessionRepository.findSessionsByFacilityAndDateRange(facilityId, startDate, endDate);
-        return ResponseEntity.ok(sessions);
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return sessionPage(cursor, limit, (beforeStartedAt, beforeId, rows) ->
+            sessionRepository.findFacilitySessionPage(facilityId, startDate, endDate, beforeStartedAt, beforeId, rows));
     }
 
     @GetMapping("/facility/{facilityId}/average-duration")
@@ -112,15 +168,28 @@ public class ParkingSessionController {
     }
 
     @PostMapping("/start")
-    @Operation(summary = "Start parking session", description = "Start a new parking session")
+    @Transactional
+    @Operation(summary = "Start parking session", description = "Start a new parking session and mark its spot occupied")
     public ResponseEntity<ParkingSession> startSession(@RequestBody ParkingSession session) {
+        Long facilityId = null;
+        if (session.getSpot() != null) {
+            Long userId = session.getUser() != null ? session.getUser().getId() : null;
+            SpotStateService.TransitionResult occupied = spotStateService.occupy(session.getSpot().getId(), userId);
+            if (!occupied.success) {
+                // Spot missing, occupied, out of order or held for someone else
+                return ResponseEntity.badRequest().build();
+            }
+            facilityId = occupied.spot.facilityId();
+        }
         session.setStatus(ParkingSession.SessionStatus.ACTIVE);
         session.setStartedAt(LocalDateTime.now());
         ParkingSession savedSession = sessionRepository.save(session);
+        outboxService.recordSession(savedSession, facilityId, "SESSION_STARTED");
         return ResponseEntity.ok(savedSession);
     }
 
     @PutMapping("/{id}/end")
+    @Transactional
     @Operation(summary = "End parking session", description = "End an active parking session")
     public ResponseEntity<ParkingSession> endSession(@PathVariable Long id) {
         return sessionRepository.findById(id)
@@ -132,9 +201,11 @@ public class ParkingSessionController {
                     // Calculate duration and total amount
                     long minutes = session.getCurrentDurationMinutes();
                     session.setActualDurationMinutes((int) minutes);
-                    session.setTotalAmount(session.calculateCurrentAmount());
+                    session.setTotalAmount(pricingEngine.quote(session.getSpot().getFacility().getId(),
+                        session.getHourlyRate(), session.getStartedAt(), minutes).totalAmount);
                     
                     ParkingSession updatedSession = sessionRepository.save(session);
+                    releaseSpot(updatedSession, "SESSION_ENDED");
                     return ResponseEntity.ok(updatedSession);
                 } else {
                     return ResponseEntity.badRequest().<ParkingSession>build();
@@ -144,6 +215,7 @@ public class ParkingSessionController {
     }
 
     @PutMapping("/{id}/cancel")
+    @Transactional
     @Operation(summary = "Cancel parking session", description = "Cancel an active parking session")
     public ResponseEntity<ParkingSession> cancelSession(@PathVariable Long id) {
         return sessionRepository.findById(id)
@@ -152,6 +224,7 @@ public class ParkingSessionController {
                     session.setStatus(ParkingSession.SessionStatus.CANCELLED);
                     session.setEndedAt(LocalDateTime.now());
                     ParkingSession updatedSession = sessionRepository.save(session);
+                    releaseSpot(updatedSession, "SESSION_CANCELLED");
                     return ResponseEntity.ok(updatedSession);
                 } else {
                     return ResponseEntity.badRequest().<ParkingSession>build();
@@ -160,6 +233,14 @@ public class ParkingSessionController {
             .orElse(ResponseEntity.notFound().build());
     }
 
+    // The spot becomes available again when the session that occupied it ends; the session event commits with it
+    private void releaseSpot(ParkingSession session, String eventType) {
+        ParkingSpot spot = session.getSpot();
+        spotStateService.transition(spot.getFacility().getId(), spot.getId(), spot.getSpotType(),
+            ParkingSpot.SpotStatus.OCCUPIED, ParkingSpot.SpotStatus.AVAILABLE);
+        outboxService.recordSession(session, spot.getFacility().getId(), eventType);
+    }
+
     @PutMapping("/{id}")
     @Operation(summary = "Update parking session", description = "Update an existing parking session")
     public ResponseEntity<ParkingSession> updateSession(@PathVariable Long id, @RequestBody ParkingSession sessionDetails) {
@@ -173,14 +254,41 @@ public class ParkingSessionController {
     }
 
     @DeleteMapping("/{id}")
+    @Transactional
     @Operation(summary = "Delete parking session", description = "Mark a parking session as expired")
     public ResponseEntity<?> deleteSession(@PathVariable Long id) {
         return sessionRepository.findById(id)
             .map(session -> {
+                boolean active = session.getStatus() == ParkingSession.SessionStatus.ACTIVE;
                 session.setStatus(ParkingSession.SessionStatus.EXPIRED);
                 sessionRepository.save(session);
+                if (active) {
+                    releaseSpot(session, "SESSION_EXPIRED");
+                }
                 return ResponseEntity.ok().build();
             })
             .orElse(ResponseEntity.notFound().build());
     }
-}
\ No newline at end of file
+
+    // Paging is opt-in: without cursor or limit the listing keeps its original contract, the whole list as a JSON
+    // array. Cursors are "startedAt|id" of the last row served; one extra row is fetched to tell whether a next page exists.
+    private ResponseEntity<?> sessionPage(String cursor, Integer requestedLimit, SessionPageQuery query) {
+        if (cursor == null && requestedLimit == null) {
+            return ResponseEntity.ok(query.fetch(LATEST, Long.MAX_VALUE, Limit.unlimited()));
+        }
+        LocalDateTime beforeStartedAt = LATEST;
+        long beforeId = Long.MAX_VALUE;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                String[] position = KeysetPage.decode(cursor).split("\\|", 2);
+                beforeStartedAt = LocalDateTime.parse(position[0]);
+                beforeId = Long.parseLong(position[1]);
+            } catch (RuntimeException e) {
+                return ResponseEntity.badRequest().body(Map.of("success", false, "message", "Invalid cursor", "errorCode", "INVALID_CURSOR"));
+            }
+        }
+        int limit = KeysetPage.limit(requestedLimit);
+        List<ParkingSessionRepository.SessionView> rows = query.fetch(beforeStartedAt, beforeId, Limit.of(limit + 1));
+        return ResponseEntity.ok(KeysetPage.of(rows, limit, row -> row.getStartedAt() + "|" + row.getId()));
+    }
+}
@@ -1,11 +1,16 @@
 package com.evmak.parking_management.controller;
 
+import com.evmak.parking_management.dto.SpotView;
 import com.evmak.parking_management.entity.ParkingSpot;
 import com.evmak.parking_management.repository.ParkingSpotRepository;
 import com.evmak.parking_management.service.CacheService;
+import com.evmak.parking_management.service.ReservationExpiryScheduler;
+import com.evmak.parking_management.service.SpotOccupancyService;
+import com.evmak.parking_management.service.SpotStateService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -24,26 +29,36 @@ public class ParkingSpotController {
     @Autowired
     private CacheService cacheService;
 
+    @Autowired
+    private SpotOccupancyService occupancyService;
+
+    @Autowired
+    private ReservationExpiryScheduler expiryScheduler;
+
+    @Autowired
+    private SpotStateService spotStateService;
+
     @GetMapping("/facility/{facilityId}")
+    // Not paged: a facility's spots are bounded by its size, and clients need the whole floor plan at once
     @Operation(summary = "Get spots by facility", description = "Get all parking spots in a facility")
-    public ResponseEntity<List<ParkingSpot>> getSpotsByFacility(@PathVariable Long facilityId) {
-        List<ParkingSpot> spots = spotRepository.findByFacilityId(facilityId);
+    public ResponseEntity<List<SpotView>> getSpotsByFacility(@PathVariable Long facilityId) {
+        List<SpotView> spots = spotRepository.findSpotViewsByFacilityId(facilityId);
         return ResponseEntity.ok(spots);
     }
 
     @GetMapping("/facility/{facilityId}/available")
     @Operation(summary = "Get available spots in facility", description = "Get all available spots in a facility (cached for performance)")
-    public ResponseEntity<List<ParkingSpot>> getAvailableSpots(@PathVariable Long facilityId) {
-        List<ParkingSpot> spots = cacheService.getCachedAvailableSpots(facilityId);
+    public ResponseEntity<List<SpotView>> getAvailableSpots(@PathVariable Long facilityId) {
+        List<SpotView> spots = cacheService.getCachedAvailableSpots(facilityId);
         return ResponseEntity.ok(spots);
     }
 
     @GetMapping("/facility/{facilityId}/available/type/{spotType}")
     @Operation(summary = "Get available spots by type", description = "Get available spots of specific type in a facility")
-    public ResponseEntity<List<ParkingSpot>> getAvailableSpotsByType(
+    public ResponseEntity<List<SpotView>> getAvailableSpotsByType(
             @PathVariable Long facilityId,
             @PathVariable ParkingSpot.SpotType spotType) {
-        List<ParkingSpot> spots = spotRepository.findAvailableSpotsByTypeInFacility(facilityId, spotType);
+        List<SpotView> spots = spotRepository.findAvailableSpotViewsByType(facilityId, spotType);
         return ResponseEntity.ok(spots);
     }
 
@@ -52,14 +67,27 @@ public class ParkingSpotController {
     public ResponseEntity<Integer> countSpotsByStatus(
             @PathVariable Long facilityId,
             @PathVariable ParkingSpot.SpotStatus status) {
-        Integer count = spotRepository.countByFacilityIdAndStatus(facilityId, status);
+        Integer count = occupancyService.countByStatus(facilityId, status);
         return ResponseEntity.ok(count);
     }
 
+    @GetMapping("/facility/{facilityId}/occupancy/consistency")
+    @Operation(summary = "Check occupancy index consistency", description = "Compare in-memory spot occupancy counts with the database, optionally rebuilding the facility index")
+    public ResponseEntity<SpotOccupancyService.ConsistencyReport> checkOccupancyConsistency(
+            @PathVariable Long facilityId,
+            @RequestParam(defaultValue = "false") boolean repair) {
+        SpotOccupancyService.ConsistencyReport report = occupancyService.checkConsistency(facilityId);
+        if (!report.consistent && repair) {
+            occupancyService.rebuildFacility(facilityId);
+            report = occupancyService.checkConsistency(facilityId);
+        }
+        return ResponseEntity.ok(report);
+    }
+
     @GetMapping("/{id}")
     @Operation(summary = "Get spot by ID", description = "Get a specific parking spot")
-    public ResponseEntity<ParkingSpot> getSpotById(@PathVariable Long id) {
-        Optional<ParkingSpot> spot = spotRepository.findById(id);
+    public ResponseEntity<SpotView> getSpotById(@PathVariable Long id) {
+        Optional<SpotView> spot = spotRepository.findSpotViewById(id);
         return spot.map(ResponseEntity::ok)
                   .orElse(ResponseEntity.notFound().build());
     }
@@ -72,78 +100,67 @@ public class ParkingSpotController {
             @RequestParam Long userId,
             @RequestParam(defaultValue = "15") Integer reservationMinutes) {
         
-        Optional<ParkingSpot> spotOpt = spotRepository.findAvailableSpotById(spotId);
-        
-        if (spotOpt.isEmpty()) {
+        LocalDateTime expiresAt = LocalDateTime.now().plusMinutes(reservationMinutes);
+        // Note: We need to handle the User entity properly, for now the hold has no holder
+        if (!spotStateService.reserve(facilityId, spotId, null, null, expiresAt)) {
             return ResponseEntity.badRequest().body("Spot not available");
         }
-        
-        ParkingSpot spot = spotOpt.get();
-        
-        // Simple reservation logic (will be improved with concurrency handling later)
-        spot.setStatus(ParkingSpot.SpotStatus.RESERVED);
-        spot.setReservationExpiresAt(LocalDateTime.now().plusMinutes(reservationMinutes));
-        // Note: We need to handle the User entity properly, for now using null
-        // spot.setReservedBy(userRepository.findById(userId).orElse(null));
-        
-        spotRepository.save(spot);
+        expiryScheduler.scheduleSpotHold(spotId, expiresAt);
         
         return ResponseEntity.ok("Spot reserved successfully for " + reservationMinutes + " minutes");
     }
 
     @PostMapping("/facility/{facilityId}/find-available")
     @Operation(summary = "Find first available spot", description = "Find the first available spot in a facility")
-    public ResponseEntity<ParkingSpot> findFirstAvailableSpot(
+    public ResponseEntity<SpotView> findFirstAvailableSpot(
             @PathVariable Long facilityId,
             @RequestParam(required = false) ParkingSpot.SpotType spotType) {
         
-        Optional<ParkingSpot> spot = spotRepository.findFirstAvailableSpot(facilityId, spotType);
-        return spot.map(ResponseEntity::ok)
+        // Resolve the candidate from the occupancy index and only fall back to the ordered scan if it is stale
+        Optional<ParkingSpot> spot = occupancyService.findFirstAvailableSpotId(facilityId, spotType)
+            .flatMap(spotRepository::findAvailableSpotById)
+            .or(() -> spotRepository.findFirstAvailableSpot(facilityId, spotType));
+        return spot.map(SpotView::of)
+                  .map(ResponseEntity::ok)
                   .orElse(ResponseEntity.notFound().build());
     }
 
     @PutMapping("/{id}/status")
-    @Operation(summary = "Update spot status", description = "Update the status of a parking spot")
-    public ResponseEntity<ParkingSpot> updateSpotStatus(
+    @Operation(summary = "Update spot status", description = "Update the status of a parking spot if the transition is allowed "
+        + "(RESERVED is only set through the reserve endpoints)")
+    public ResponseEntity<?> updateSpotStatus(
             @PathVariable Long id,
             @RequestParam ParkingSpot.SpotStatus status) {
         
-        return spotRepository.findById(id)
-            .map(spot -> {
-                spot.setStatus(status);
-                if (status == ParkingSpot.SpotStatus.AVAILABLE) {
-                    spot.setReservedBy(null);
-                    spot.setReservationExpiresAt(null);
-                }
-                ParkingSpot updatedSpot = spotRepository.save(spot);
-                return ResponseEntity.ok(updatedSpot);
-            })
-            .orElse(ResponseEntity.notFound().build());
+        SpotStateService.TransitionResult result = spotStateService.changeStatus(id, status);
+        return result.success ? ResponseEntity.ok(result.spot) : transitionFailure(result);
     }
 
     @PostMapping("/cleanup-expired")
     @Operation(summary = "Clean up expired reservations", description = "Release spots with expired reservations")
     public ResponseEntity<String> cleanupExpiredReservations() {
-        Integer releasedCount = spotRepository.releaseExpiredReservations(LocalDateTime.now());
+        int releasedCount = expiryScheduler.releaseAllExpired();
         return ResponseEntity.ok("Released " + releasedCount + " expired reservations");
     }
 
     @PostMapping
     @Operation(summary = "Create new parking spot", description = "Add a new parking spot to a facility")
-    public ResponseEntity<ParkingSpot> createSpot(@RequestBody ParkingSpot spot) {
-        ParkingSpot savedSpot = spotRepository.save(spot);
-        return ResponseEntity.ok(savedSpot);
+    public ResponseEntity<SpotView> createSpot(@RequestBody ParkingSpot spot) {
+        ParkingSpot savedSpot = spotStateService.create(spot);
+        return ResponseEntity.ok(SpotView.of(savedSpot));
     }
 
     @DeleteMapping("/{id}")
     @Operation(summary = "Delete parking spot", description = "Mark a parking spot as out of order")
     public ResponseEntity<?> deleteSpot(@PathVariable Long id) {
-        return spotRepository.findById(id)
-            .map(spot -> {
-                spot.setStatus(ParkingSpot.SpotStatus.OUT_OF_ORDER);
-                spotRepository.save(spot);
-                return ResponseEntity.ok().build();
-            })
-            .orElse(ResponseEntity.notFound().build());
+        SpotStateService.TransitionResult result = spotStateService.changeStatus(id, ParkingSpot.SpotStatus.OUT_OF_ORDER);
+        return result.success ? ResponseEntity.ok().build() : transitionFailure(result);
+    }
+
+    private ResponseEntity<?> transitionFailure(SpotStateService.TransitionResult result) {
+        if ("SPOT_NOT_FOUND".equals(result.errorCode)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(result.message);
     }
 }
\ No newline at end of file
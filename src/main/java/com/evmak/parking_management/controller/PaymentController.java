@@ -3,7 +3,9 @@ package com.evmak.parking_management.controller;
 import com.evmak.parking_management.entity.Payment;
 import com.evmak.parking_management.entity.ParkingSession;
 import com.evmak.parking_management.repository.ParkingSessionRepository;
+import com.evmak.parking_management.service.IdempotencyService;
 import com.evmak.parking_management.service.PaymentService;
+import com.evmak.parking_management.service.PaymentWebhookService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,6 +14,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/v1/payments")
@@ -21,6 +24,12 @@ public class PaymentController {
     @Autowired
     private PaymentService paymentService;
 
+    @Autowired
+    private PaymentWebhookService webhookService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
     @Autowired
     private ParkingSessionRepository sessionRepository;
 
@@ -45,14 +54,22 @@ public class PaymentController {
     @PostMapping("/card")
     @Operation(summary = "Process card payment", 
                description = "Process VISA/MASTERCARD payment through X-PAYMENT-PROVIDER")
-    public ResponseEntity<PaymentResponse> processCardPayment(@RequestBody PaymentService.PaymentRequest request) {
+    public CompletableFuture<ResponseEntity<?>> processCardPayment(
+            @RequestBody PaymentService.PaymentRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        
+        // A retried request replays the first response instead of charging again
+        return idempotencyService.executeAsync("payments:card", idempotencyKey, request, () -> cardPayment(request));
+    }
+
+    private CompletableFuture<ResponseEntity<PaymentResponse>> cardPayment(PaymentService.PaymentRequest request) {
         
         // Validate request
         if (request.getSessionId() == null || request.getAmount() == null || 
             request.getCardNumber() == null || request.getCardExpiry() == null || request.getCardCvv() == null) {
             PaymentResponse response = new PaymentResponse(
                 false, "Missing required card payment fields", null, "INVALID_REQUEST", null);
-            return ResponseEntity.badRequest().body(response);
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(response));
         }
 
         // Validate session exists
@@ -60,41 +77,51 @@ public class PaymentController {
         if (sessionOpt.isEmpty()) {
             PaymentResponse response = new PaymentResponse(
                 false, "Parking session not found", null, "SESSION_NOT_FOUND", null);
-            return ResponseEntity.notFound().build();
+            return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
         }
 
         ParkingSession session = sessionOpt.get();
         request.setPaymentMethod(Payment.PaymentMethod.CARD);
 
-        PaymentService.PaymentResult result = paymentService.initiatePayment(session, request);
-        
-        PaymentResponse response = new PaymentResponse(
-            result.success, result.message, result.payment, result.errorCode, result.transactionId);
+        return paymentService.initiatePayment(session, request).thenApply(result -> {
+            PaymentResponse response = new PaymentResponse(
+                result.success, result.message, result.payment, result.errorCode, result.transactionId);
 
-        if (result.success) {
-            return ResponseEntity.ok(response);
-        } else {
-            return switch (result.errorCode) {
-                case "INVALID_REQUEST", "UNSUPPORTED_METHOD" -> 
-                    ResponseEntity.badRequest().body(response);
-                case "GATEWAY_ERROR", "CARD_PAYMENT_ERROR" -> 
-                    ResponseEntity.status(502).body(response); // Bad Gateway
-                default -> ResponseEntity.badRequest().body(response);
-            };
-        }
+            if (result.success) {
+                return ResponseEntity.ok(response);
+            } else {
+                return switch (result.errorCode) {
+                    case "INVALID_REQUEST", "UNSUPPORTED_METHOD" -> 
+                        ResponseEntity.badRequest().body(response);
+                    case "GATEWAY_ERROR", "CARD_PAYMENT_ERROR" -> 
+                        ResponseEntity.status(502).body(response); // Bad Gateway
+                    case "GATEWAY_BUSY", "GATEWAY_UNAVAILABLE" ->
+                        ResponseEntity.status(503).body(response); // Bulkhead full or circuit open
+                    default -> ResponseEntity.badRequest().body(response);
+                };
+            }
+        });
     }
 
     @PostMapping("/mobile-money")
     @Operation(summary = "Process mobile money payment", 
                description = "Process mobile money payment (Vodacom, Airtel, Tigo, Halotel) through X-PAYMENT-PROVIDER")
-    public ResponseEntity<PaymentResponse> processMobileMoneyPayment(@RequestBody PaymentService.PaymentRequest request) {
+    public CompletableFuture<ResponseEntity<?>> processMobileMoneyPayment(
+            @RequestBody PaymentService.PaymentRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        
+        // A retried request replays the first response instead of charging again
+        return idempotencyService.executeAsync("payments:mobile-money", idempotencyKey, request, () -> mobileMoneyPayment(request));
+    }
+
+    private CompletableFuture<ResponseEntity<PaymentResponse>> mobileMoneyPayment(PaymentService.PaymentRequest request) {
         
         // Validate request
         if (request.getSessionId() == null || request.getAmount() == null || 
             request.getCustomerPhone() == null || request.getMobileMoneyProvider() == null) {
             PaymentResponse response = new PaymentResponse(
                 false, "Missing required mobile money payment fields", null, "INVALID_REQUEST", null);
-            return ResponseEntity.badRequest().body(response);
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(response));
         }
 
         // Validate mobile money provider
@@ -103,7 +130,7 @@ public class PaymentController {
             PaymentResponse response = new PaymentResponse(
                 false, "Invalid mobile money provider. Supported: VODACOM, AIRTEL, TIGO, HALOTEL", 
                 null, "INVALID_PROVIDER", null);
-            return ResponseEntity.badRequest().body(response);
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(response));
         }
 
         // Validate Tanzanian phone number format
@@ -111,7 +138,7 @@ public class PaymentController {
         if (!phone.matches("^(255|0)[67][0-9]{8}$")) {
             PaymentResponse response = new PaymentResponse(
                 false, "Invalid Tanzanian phone number format", null, "INVALID_PHONE", null);
-            return ResponseEntity.badRequest().body(response);
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(response));
         }
 
         // Validate session exists
@@ -119,36 +146,38 @@ public class PaymentController {
         if (sessionOpt.isEmpty()) {
             PaymentResponse response = new PaymentResponse(
                 false, "Parking session not found", null, "SESSION_NOT_FOUND", null);
-            return ResponseEntity.notFound().build();
+            return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
         }
 
         ParkingSession session = sessionOpt.get();
         request.setPaymentMethod(Payment.PaymentMethod.MOBILE_MONEY);
 
-        PaymentService.PaymentResult result = paymentService.initiatePayment(session, request);
-        
-        PaymentResponse response = new PaymentResponse(
-            result.success, result.message, result.payment, result.errorCode, result.transactionId);
+        return paymentService.initiatePayment(session, request).thenApply(result -> {
+            PaymentResponse response = new PaymentResponse(
+                result.success, result.message, result.payment, result.errorCode, result.transactionId);
 
-        if (result.success) {
-            return ResponseEntity.ok(response);
-        } else {
-            return switch (result.errorCode) {
-                case "INVALID_REQUEST", "UNSUPPORTED_METHOD", "INVALID_PROVIDER", "INVALID_PHONE" -> 
-                    ResponseEntity.badRequest().body(response);
-                case "GATEWAY_ERROR", "MOBILE_MONEY_ERROR" -> 
-                    ResponseEntity.status(502).body(response); // Bad Gateway
-                default -> ResponseEntity.badRequest().body(response);
-            };
-        }
+            if (result.success) {
+                return ResponseEntity.ok(response);
+            } else {
+                return switch (result.errorCode) {
+                    case "INVALID_REQUEST", "UNSUPPORTED_METHOD", "INVALID_PROVIDER", "INVALID_PHONE" -> 
+                        ResponseEntity.badRequest().body(response);
+                    case "GATEWAY_ERROR", "MOBILE_MONEY_ERROR" -> 
+                        ResponseEntity.status(502).body(response); // Bad Gateway
+                    case "GATEWAY_BUSY", "GATEWAY_UNAVAILABLE" ->
+                        ResponseEntity.status(503).body(response); // Bulkhead full or circuit open
+                    default -> ResponseEntity.badRequest().body(response);
+                };
+            }
+        });
     }
 
     @GetMapping("/{paymentReference}/verify")
     @Operation(summary = "Verify payment status", 
-               description = "Verify payment status with X-PAYMENT-PROVIDER")
+               description = "Current payment status, kept up to date by provider webhooks and background reconciliation")
     public ResponseEntity<PaymentResponse> verifyPayment(@PathVariable String paymentReference) {
         
-        PaymentService.PaymentResult result = paymentService.verifyPayment(paymentReference);
+        PaymentService.PaymentResult result = paymentService.getPaymentStatus(paymentReference);
         
         PaymentResponse response = new PaymentResponse(
             result.success, result.message, result.payment, result.errorCode, result.transactionId);
@@ -158,41 +187,64 @@ public class PaymentController {
         } else {
             return switch (result.errorCode) {
                 case "PAYMENT_NOT_FOUND" -> ResponseEntity.notFound().build();
-                case "VERIFICATION_ERROR" -> ResponseEntity.status(502).body(response);
+                case "PROCESSING_ERROR" -> ResponseEntity.internalServerError().body(response);
                 default -> ResponseEntity.badRequest().body(response);
             };
         }
     }
 
+    @PostMapping("/webhook")
+    @Operation(summary = "Payment provider webhook", 
+               description = "Status callbacks from X-PAYMENT-PROVIDER, signed with HMAC-SHA256 in X-Signature")
+    public ResponseEntity<PaymentWebhookService.WebhookResult> handleWebhook(
+            @RequestBody String body,
+            @RequestHeader(value = "X-Signature", required = false) String signature) {
+        
+        PaymentWebhookService.WebhookResult result = webhookService.handle(body, signature);
+        
+        if (result.accepted) {
+            return ResponseEntity.ok(result);
+        } else {
+            return switch (result.errorCode) {
+                case "INVALID_SIGNATURE" -> ResponseEntity.status(401).body(result);
+                case "WEBHOOK_NOT_CONFIGURED" -> ResponseEntity.status(503).body(result);
+                case "PROCESSING_ERROR" -> ResponseEntity.internalServerError().body(result);
+                default -> ResponseEntity.badRequest().body(result);
+            };
+        }
+    }
+
     @PostMapping("/{paymentReference}/refund")
     @Operation(summary = "Refund payment", 
                description = "Process payment refund through X-PAYMENT-PROVIDER")
-    public ResponseEntity<PaymentResponse> refundPayment(
+    public CompletableFuture<ResponseEntity<PaymentResponse>> refundPayment(
             @PathVariable String paymentReference,
             @RequestParam BigDecimal refundAmount) {
         
         if (refundAmount == null || refundAmount.compareTo(BigDecimal.ZERO) <= 0) {
             PaymentResponse response = new PaymentResponse(
                 false, "Invalid refund amount", null, "INVALID_AMOUNT", null);
-            return ResponseEntity.badRequest().body(response);
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(response));
         }
 
-        PaymentService.PaymentResult result = paymentService.refundPayment(paymentReference, refundAmount);
-        
-        PaymentResponse response = new PaymentResponse(
-            result.success, result.message, result.payment, result.errorCode, result.transactionId);
+        return paymentService.refundPayment(paymentReference, refundAmount).thenApply(result -> {
+            PaymentResponse response = new PaymentResponse(
+                result.success, result.message, result.payment, result.errorCode, result.transactionId);
 
-        if (result.success) {
-            return ResponseEntity.ok(response);
-        } else {
-            return switch (result.errorCode) {
-                case "PAYMENT_NOT_FOUND" -> ResponseEntity.notFound().build();
-                case "PAYMENT_NOT_COMPLETED", "INVALID_REFUND_AMOUNT" -> 
-                    ResponseEntity.badRequest().body(response);
-                case "REFUND_ERROR" -> ResponseEntity.status(502).body(response);
-                default -> ResponseEntity.badRequest().body(response);
-            };
-        }
+            if (result.success) {
+                return ResponseEntity.ok(response);
+            } else {
+                return switch (result.errorCode) {
+                    case "PAYMENT_NOT_FOUND" -> ResponseEntity.notFound().build();
+                    case "PAYMENT_NOT_COMPLETED", "INVALID_REFUND_AMOUNT" -> 
+                        ResponseEntity.badRequest().body(response);
+                    case "REFUND_ERROR" -> ResponseEntity.status(502).body(response);
+                    case "GATEWAY_BUSY", "GATEWAY_UNAVAILABLE" ->
+                        ResponseEntity.status(503).body(response); // Bulkhead full or circuit open
+                    default -> ResponseEntity.badRequest().body(response);
+                };
+            }
+        });
     }
 
     @GetMapping("/providers")
@@ -1,6 +1,8 @@
 package com.evmak.parking_management.controller;
 
+import com.evmak.parking_management.entity.ParkingSpot;
 import com.evmak.parking_management.entity.Reservation;
+import com.evmak.parking_management.service.IdempotencyService;
 import com.evmak.parking_management.service.ReservationService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -8,7 +10,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/v1/reservations")
@@ -18,12 +22,17 @@ public class ReservationController {
     @Autowired
     private ReservationService reservationService;
 
+    @Autowired
+    private IdempotencyService idempotencyService;
+
     public static class ReservationRequest {
         public Long userId;
         public Long vehicleId;
         public Long facilityId;
         public Long spotId;
         public Integer durationMinutes;
+        // Opt in to reserving another free spot of the same type when the requested one is taken
+        public Boolean allowReroute;
 
         // Getters and setters
         public Long getUserId() { return userId; }
@@ -40,6 +49,37 @@ public class ReservationController {
         
         public Integer getDurationMinutes() { return durationMinutes; }
         public void setDurationMinutes(Integer durationMinutes) { this.durationMinutes = durationMinutes; }
+
+        public Boolean getAllowReroute() { return allowReroute; }
+        public void setAllowReroute(Boolean allowReroute) { this.allowReroute = allowReroute; }
+    }
+
+    public static class AutoReservationRequest {
+        public Long userId;
+        public Long vehicleId;
+        public Long facilityId;
+        public ParkingSpot.SpotType spotType;
+        public Integer preferredFloor;
+        public Integer durationMinutes;
+
+        // Getters and setters
+        public Long getUserId() { return userId; }
+        public void setUserId(Long userId) { this.userId = userId; }
+        
+        public Long getVehicleId() { return vehicleId; }
+        public void setVehicleId(Long vehicleId) { this.vehicleId = vehicleId; }
+        
+        public Long getFacilityId() { return facilityId; }
+        public void setFacilityId(Long facilityId) { this.facilityId = facilityId; }
+        
+        public ParkingSpot.SpotType getSpotType() { return spotType; }
+        public void setSpotType(ParkingSpot.SpotType spotType) { this.spotType = spotType; }
+        
+        public Integer getPreferredFloor() { return preferredFloor; }
+        public void setPreferredFloor(Integer preferredFloor) { this.preferredFloor = preferredFloor; }
+        
+        public Integer getDurationMinutes() { return durationMinutes; }
+        public void setDurationMinutes(Integer durationMinutes) { this.durationMinutes = durationMinutes; }
     }
 
     public static class ReservationResponse {
@@ -47,13 +87,20 @@ public class ReservationController {
         public final String message;
         public final Reservation reservation;
         public final String errorCode;
+        public final Long reroutedToSpotId;
         public final long timestamp;
 
         public ReservationResponse(boolean success, String message, Reservation reservation, String errorCode) {
+            this(success, message, reservation, errorCode, null);
+        }
+
+        public ReservationResponse(boolean success, String message, Reservation reservation, String errorCode,
+                                   Long reroutedToSpotId) {
             this.success = success;
             this.message = message;
             this.reservation = reservation;
             this.errorCode = errorCode;
+            this.reroutedToSpotId = reroutedToSpotId;
             this.timestamp = System.currentTimeMillis();
         }
     }
@@ -61,7 +108,15 @@ public class ReservationController {
     @PostMapping("/reserve")
     @Operation(summary = "Reserve parking spot", 
                description = "High-performance spot reservation with concurrency control and race condition prevention")
-    public ResponseEntity<ReservationResponse> reserveSpot(@RequestBody ReservationRequest request) {
+    public ResponseEntity<?> reserveSpot(
+            @RequestBody ReservationRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        
+        // A retried request replays the first response instead of competing for the spot again
+        return idempotencyService.execute("reservations:reserve", idempotencyKey, request, () -> reserve(request));
+    }
+
+    private ResponseEntity<ReservationResponse> reserve(ReservationRequest request) {
         
         // Validate request
         if (request.userId == null || request.vehicleId == null || 
@@ -85,10 +140,10 @@ public class ReservationController {
 
         ReservationService.ReservationResult result = reservationService.reserveSpot(
             request.userId, request.vehicleId, request.facilityId, 
-            request.spotId, request.durationMinutes);
+            request.spotId, request.durationMinutes, Boolean.TRUE.equals(request.allowReroute));
 
         ReservationResponse response = new ReservationResponse(
-            result.success, result.message, result.reservation, result.errorCode);
+            result.success, result.message, result.reservation, result.errorCode, result.reroutedToSpotId);
 
         if (result.success) {
             return ResponseEntity.ok(response);
@@ -99,7 +154,7 @@ public class ReservationController {
                     ResponseEntity.badRequest().body(response);
                 case "SPOT_NOT_FOUND", "RESERVATION_NOT_FOUND" -> 
                     ResponseEntity.notFound().build();
-                case "SPOT_LOCKED", "SPOT_NOT_AVAILABLE", "TIME_CONFLICT" -> 
+                case "SPOT_NOT_AVAILABLE", "TIME_CONFLICT" -> 
                     ResponseEntity.status(409).body(response); // Conflict
                 case "ACTIVE_RESERVATION_EXISTS" -> 
                     ResponseEntity.status(409).body(response); // Conflict
@@ -108,6 +163,58 @@ public class ReservationController {
         }
     }
 
+    @PostMapping("/reserve/auto")
+    @Operation(summary = "Reserve best available spot", 
+               description = "Server-side spot selection: atomically claims a free spot of the requested type, preferring the given floor")
+    public ResponseEntity<?> reserveAnySpot(
+            @RequestBody AutoReservationRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        
+        // A retried request replays the first response instead of claiming a second spot
+        return idempotencyService.execute("reservations:auto", idempotencyKey, request, () -> reserveAny(request));
+    }
+
+    private ResponseEntity<ReservationResponse> reserveAny(AutoReservationRequest request) {
+        
+        // Validate request
+        if (request.userId == null || request.vehicleId == null || request.facilityId == null) {
+            ReservationResponse response = new ReservationResponse(
+                false, "Missing required fields", null, "INVALID_REQUEST");
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        // Default duration if not specified
+        if (request.durationMinutes == null || request.durationMinutes <= 0) {
+            request.durationMinutes = 120; // Default 2 hours
+        }
+
+        // Maximum duration check
+        if (request.durationMinutes > 1440) { // 24 hours
+            ReservationResponse response = new ReservationResponse(
+                false, "Maximum reservation duration is 24 hours", null, "DURATION_EXCEEDED");
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        ReservationService.ReservationResult result = reservationService.reserveAnySpot(
+            request.userId, request.vehicleId, request.facilityId, 
+            request.spotType, request.preferredFloor, request.durationMinutes);
+
+        ReservationResponse response = new ReservationResponse(
+            result.success, result.message, result.reservation, result.errorCode);
+
+        if (result.success) {
+            return ResponseEntity.ok(response);
+        } else {
+            return switch (result.errorCode) {
+                case "USER_INVALID", "VEHICLE_INVALID", "FACILITY_INVALID" -> 
+                    ResponseEntity.badRequest().body(response);
+                case "NO_SPOTS_AVAILABLE", "ACTIVE_RESERVATION_EXISTS" -> 
+                    ResponseEntity.status(409).body(response); // Conflict
+                default -> ResponseEntity.badRequest().body(response);
+            };
+        }
+    }
+
     @PostMapping("/{reservationReference}/confirm")
     @Operation(summary = "Confirm reservation", 
                description = "Confirm arrival and activate the reservation")
@@ -156,18 +263,37 @@ public class ReservationController {
 
     @GetMapping("/user/{userId}")
     @Operation(summary = "Get user reservations", 
-               description = "Get all reservations for a specific user")
-    public ResponseEntity<List<Reservation>> getUserReservations(@PathVariable Long userId) {
-        List<Reservation> reservations = reservationService.getUserReservations(userId);
-        return ResponseEntity.ok(reservations);
+               description = "Reservations of a specific user, newest first; with limit or cursor, one keyset page at a time")
+    public ResponseEntity<?> getUserReservations(@PathVariable Long userId,
+                                                 @RequestParam(required = false) String cursor,
+                                                 @RequestParam(required = false) Integer limit) {
+        if (cursor == null && limit == null) {
+            List<Reservation> reservations = reservationService.getUserReservations(userId);
+            return ResponseEntity.ok(reservations);
+        }
+        // Cursors are "createdAt|id" of the last reservation served
+        LocalDateTime beforeCreatedAt = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+        long beforeId = Long.MAX_VALUE;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                String[] position = KeysetPage.decode(cursor).split("\\|", 2);
+                beforeCreatedAt = LocalDateTime.parse(position[0]);
+                beforeId = Long.parseLong(position[1]);
+            } catch (RuntimeException e) {
+                return ResponseEntity.badRequest().body(Map.of("success", false, "message", "Invalid cursor", "errorCode", "INVALID_CURSOR"));
+            }
+        }
+        int pageSize = KeysetPage.limit(limit);
+        List<Reservation> rows = reservationService.getUserReservationPage(userId, beforeCreatedAt, beforeId, pageSize + 1);
+        return ResponseEntity.ok(KeysetPage.of(rows, pageSize, row -> row.getCreatedAt() + "|" + row.getId()));
     }
 
     @PostMapping("/cleanup-expired")
     @Operation(summary = "Cleanup expired reservations", 
                description = "Background cleanup of expired reservations (admin operation)")
     public ResponseEntity<String> cleanupExpiredReservations() {
-        reservationService.cleanupExpiredReservations();
-        return ResponseEntity.ok("Expired reservations cleaned up successfully");
+        int released = reservationService.cleanupExpiredReservations();
+        return ResponseEntity.ok("Expired reservations cleaned up successfully (" + released + " released)");
     }
 
     @GetMapping("/performance-test")
@@ -176,10 +302,12 @@ public class ReservationController {
     public ResponseEntity<String> performanceTest() {
         return ResponseEntity.ok(
             "High-performance reservation system ready. Features:\n" +
-            "✓ Distributed locking for race condition prevention\n" +
+            "✓ Atomic conditional-update spot claims, safe across instances\n" +
+            "✓ Automatic retry onto the next free spot on conflict\n" +
+            "✓ Server-side spot selection via /reserve/auto\n" +
             "✓ Atomic transactions with rollback support\n" +
             "✓ Comprehensive validation and error handling\n" +
-            "✓ Automatic cleanup of expired reservations\n" +
+            "✓ Timing-wheel expiry: holds released within a second of expiring\n" +
             "✓ Support for 1000+ concurrent reservations\n" +
             "✓ Sub-50ms response time under load"
         );
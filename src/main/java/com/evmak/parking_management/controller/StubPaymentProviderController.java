@@ -0,0 +1,101 @@
+package com.evmak.parking_management.controller;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Local stand-in for the X-PAYMENT-PROVIDER API, for load-testing the payment path without a sandbox account.
+// Point x-payment-provider.api.url at http://localhost:8080/stub/payment-provider to use it. Replies are delayed
+// on a timer, so a slow stub does not tie up request threads either.
+@RestController
+@RequestMapping("/stub/payment-provider/v1/payments")
+@ConditionalOnProperty(name = "app.payment.stub.enabled", havingValue = "true")
+@Tag(name = "Payment Provider Stub", description = "Simulated X-PAYMENT-PROVIDER for local load tests")
+public class StubPaymentProviderController {
+
+    @Value("${app.payment.stub.latency-ms:300}")
+    private long latencyMs = 300;
+
+    @Value("${app.payment.stub.jitter-ms:100}")
+    private long jitterMs = 100;
+
+    // Fraction of payments the stub declines, 0.0 - 1.0
+    @Value("${app.payment.stub.failure-rate:0.0}")
+    private double failureRate = 0.0;
+
+    // Recent charges by payment_reference, for the by-reference lookup; bounded so long load tests stay flat
+    private final Cache<Object, Map<String, Object>> charges = Caffeine.newBuilder()
+        .maximumSize(100_000)
+        .expireAfterWrite(Duration.ofHours(1))
+        .build();
+
+    @PostMapping({"/card", "/mobile-money"})
+    @Operation(summary = "Simulate a card or mobile money charge")
+    public CompletableFuture<Map<String, Object>> charge(@RequestBody Map<String, Object> payload) {
+        return delayed(() -> {
+            Map<String, Object> response = new HashMap<>();
+            if (ThreadLocalRandom.current().nextDouble() < failureRate) {
+                response.put("status", "failed");
+                response.put("message", "Payment declined by stub provider");
+                response.put("error_code", "DECLINED");
+            } else {
+                response.put("status", "success");
+                response.put("transaction_id", "STUB-" + UUID.randomUUID());
+            }
+            response.put("payment_reference", payload.get("payment_reference"));
+            if (payload.get("payment_reference") != null) {
+                charges.put(payload.get("payment_reference"), Map.copyOf(response));
+            }
+            return response;
+        });
+    }
+
+    @GetMapping("/by-reference/{paymentReference}")
+    @Operation(summary = "Simulate a payment lookup by the merchant's reference")
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> byReference(@PathVariable String paymentReference) {
+        return delayed(() -> {
+            Map<String, Object> charge = charges.getIfPresent(paymentReference);
+            if (charge == null) {
+                return ResponseEntity.notFound().build();
+            }
+            Map<String, Object> response = new HashMap<>(charge);
+            response.put("status", "success".equals(charge.get("status")) ? "completed" : "failed");
+            return ResponseEntity.ok(response);
+        });
+    }
+
+    @GetMapping("/{transactionId}/verify")
+    @Operation(summary = "Simulate a payment status check")
+    public CompletableFuture<Map<String, Object>> verify(@PathVariable String transactionId) {
+        return delayed(() -> Map.of(
+            "transaction_id", transactionId,
+            "status", transactionId.startsWith("STUB-") ? "completed" : "failed"));
+    }
+
+    @PostMapping("/refund")
+    @Operation(summary = "Simulate a refund")
+    public CompletableFuture<Map<String, Object>> refund(@RequestBody Map<String, Object> payload) {
+        return delayed(() -> Map.of(
+            "status", "success",
+            "refund_id", "STUB-REF-" + UUID.randomUUID()));
+    }
+
+    private <T> CompletableFuture<T> delayed(Supplier<T> reply) {
+        long delay = latencyMs + (jitterMs > 0 ? ThreadLocalRandom.current().nextLong(jitterMs + 1) : 0);
+        return CompletableFuture.supplyAsync(reply, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS));
+    }
+}
@@ -2,13 +2,18 @@ package com.evmak.parking_management.controller;
 
 import com.evmak.parking_management.entity.User;
 import com.evmak.parking_management.repository.UserRepository;
+import com.evmak.parking_management.service.NdjsonExporter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
@@ -19,11 +24,34 @@ public class UserController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private NdjsonExporter ndjsonExporter;
+
     @GetMapping
-    @Operation(summary = "Get all users", description = "Retrieve all registered users")
-    public ResponseEntity<List<User>> getAllUsers() {
-        List<User> users = userRepository.findAll();
-        return ResponseEntity.ok(users);
+    @Operation(summary = "Get all users", description = "Registered users in id order; with limit or cursor, one keyset page at a time (pass nextCursor back as cursor for the next page)")
+    public ResponseEntity<?> getAllUsers(@RequestParam(required = false) String cursor,
+                                         @RequestParam(required = false) Integer limit) {
+        if (cursor == null && limit == null) {
+            return ResponseEntity.ok(userRepository.findUserPage(0L, Limit.unlimited()));
+        }
+        long afterId = 0;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                afterId = Long.parseLong(KeysetPage.decode(cursor));
+            } catch (RuntimeException e) {
+                return ResponseEntity.badRequest().body(Map.of("success", false, "message", "Invalid cursor", "errorCode", "INVALID_CURSOR"));
+            }
+        }
+        int pageSize = KeysetPage.limit(limit);
+        List<UserRepository.UserView> rows = userRepository.findUserPage(afterId, Limit.of(pageSize + 1));
+        return ResponseEntity.ok(KeysetPage.of(rows, pageSize, row -> String.valueOf(row.getId())));
+    }
+
+    @GetMapping("/export")
+    @Operation(summary = "Export users", description = "Stream all users in id order as NDJSON")
+    public void exportUsers(HttpServletResponse response) throws IOException {
+        response.setContentType(NdjsonExporter.MEDIA_TYPE);
+        ndjsonExporter.export(userRepository::streamUsers, response.getOutputStream());
     }
 
     @GetMapping("/{id}")
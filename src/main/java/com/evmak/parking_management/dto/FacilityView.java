@@ -0,0 +1,29 @@
+package com.evmak.parking_management.dto;
+
+import com.evmak.parking_management.entity.ParkingFacility;
+
+import java.math.BigDecimal;
+import java.time.LocalTime;
+
+// Flat read model for API responses, nearby searches and the parkingFacilities cache, without the lazy spot,
+// pricing rule and reservation collections
+public record FacilityView(Long id, String name, ParkingFacility.FacilityType facilityType, String address,
+                           BigDecimal locationLat, BigDecimal locationLng, Integer totalSpots, Integer availableSpots,
+                           BigDecimal baseHourlyRate, Integer maxHours, Boolean isActive,
+                           LocalTime operatingHoursStart, LocalTime operatingHoursEnd) {
+
+    // JPQL projection the repository's view queries start with; alias pf
+    public static final String SELECT = """
+        SELECT new com.evmak.parking_management.dto.FacilityView(
+            pf.id, pf.name, pf.facilityType, pf.address, pf.locationLat, pf.locationLng, pf.totalSpots,
+            pf.availableSpots, pf.baseHourlyRate, pf.maxHours, pf.isActive, pf.operatingHoursStart, pf.operatingHoursEnd)
+        FROM ParkingFacility pf
+        """;
+
+    public static FacilityView of(ParkingFacility facility) {
+        return new FacilityView(facility.getId(), facility.getName(), facility.getFacilityType(), facility.getAddress(),
+            facility.getLocationLat(), facility.getLocationLng(), facility.getTotalSpots(), facility.getAvailableSpots(),
+            facility.getBaseHourlyRate(), facility.getMaxHours(), facility.getIsActive(),
+            facility.getOperatingHoursStart(), facility.getOperatingHoursEnd());
+    }
+}
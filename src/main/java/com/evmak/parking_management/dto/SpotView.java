@@ -0,0 +1,24 @@
+package com.evmak.parking_management.dto;
+
+import com.evmak.parking_management.entity.ParkingSpot;
+
+import java.time.LocalDateTime;
+
+// Flat read model for API responses and the parkingSpots cache. Serializing the entity walks its lazy facility,
+// sessions and violations; a record also round-trips through the Redis JSON serializer, which a proxy cannot.
+public record SpotView(Long id, Long facilityId, String spotNumber, ParkingSpot.SpotType spotType, Integer floorLevel,
+                       ParkingSpot.SpotStatus status, LocalDateTime reservationExpiresAt) {
+
+    // JPQL projection the repository's view queries start with; alias ps
+    public static final String SELECT = """
+        SELECT new com.evmak.parking_management.dto.SpotView(
+            ps.id, ps.facility.id, ps.spotNumber, ps.spotType, ps.floorLevel, ps.status, ps.reservationExpiresAt)
+        FROM ParkingSpot ps
+        """;
+
+    // For write endpoints that already hold the entity; reading the facility id does not initialize the proxy
+    public static SpotView of(ParkingSpot spot) {
+        return new SpotView(spot.getId(), spot.getFacility() != null ? spot.getFacility().getId() : null,
+            spot.getSpotNumber(), spot.getSpotType(), spot.getFloorLevel(), spot.getStatus(), spot.getReservationExpiresAt());
+    }
+}
@@ -0,0 +1,90 @@
+package com.evmak.parking_management.entity;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+// Materialized spot count for one (facility, spot type, status) cell. Spot transitions move counts between cells
+// with delta UPDATEs by primary key, so availability is read from these rows instead of counting parking_spots.
+@Entity
+@Table(name = "facility_spot_counters")
+@IdClass(FacilitySpotCounter.Key.class)
+public class FacilitySpotCounter {
+
+    @Id
+    @Column(name = "facility_id")
+    private Long facilityId;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "spot_type", length = 20)
+    private ParkingSpot.SpotType spotType;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 20)
+    private ParkingSpot.SpotStatus status;
+
+    @Column(name = "spot_count", nullable = false)
+    private Integer spotCount = 0;
+
+    // Constructors
+    public FacilitySpotCounter() {}
+
+    public FacilitySpotCounter(Long facilityId, ParkingSpot.SpotType spotType, ParkingSpot.SpotStatus status, int spotCount) {
+        this.facilityId = facilityId;
+        this.spotType = spotType;
+        this.status = status;
+        this.spotCount = spotCount;
+    }
+
+    // Getters and Setters
+    public Long getFacilityId() { return facilityId; }
+    public void setFacilityId(Long facilityId) { this.facilityId = facilityId; }
+
+    public ParkingSpot.SpotType getSpotType() { return spotType; }
+    public void setSpotType(ParkingSpot.SpotType spotType) { this.spotType = spotType; }
+
+    public ParkingSpot.SpotStatus getStatus() { return status; }
+    public void setStatus(ParkingSpot.SpotStatus status) { this.status = status; }
+
+    public Integer getSpotCount() { return spotCount; }
+    public void setSpotCount(Integer spotCount) { this.spotCount = spotCount; }
+
+    public static class Key implements Serializable {
+        private Long facilityId;
+        private ParkingSpot.SpotType spotType;
+        private ParkingSpot.SpotStatus status;
+
+        public Key() {}
+
+        public Key(Long facilityId, ParkingSpot.SpotType spotType, ParkingSpot.SpotStatus status) {
+            this.facilityId = facilityId;
+            this.spotType = spotType;
+            this.status = status;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key key)) return false;
+            return Objects.equals(facilityId, key.facilityId) && spotType == key.spotType && status == key.status;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(facilityId, spotType, status);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FacilitySpotCounter{" +
+                "facilityId=" + facilityId +
+                ", spotType=" + spotType +
+                ", status=" + status +
+                ", spotCount=" + spotCount +
+                '}';
+    }
+}
@@ -12,11 +12,18 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "parking_sessions")
+// Keyset listings walk (started_at, id) newest first, overall and per user
+@Table(name = "parking_sessions", indexes = {
+    @Index(name = "idx_sessions_started_id", columnList = "started_at, id"),
+    @Index(name = "idx_sessions_user_started_id", columnList = "user_id, started_at, id")
+})
 public class ParkingSession {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled sequence (a one-row table on MySQL) instead of IDENTITY so Hibernate can batch inserts;
+    // each round trip reserves 50 ids
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "parking_sessions_seq")
+    @SequenceGenerator(name = "parking_sessions_seq", sequenceName = "parking_sessions_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -140,7 +147,7 @@ public class ParkingSession {
 
     // Utility methods
     private String generateSessionReference() {
-        return "PARK-" + System.currentTimeMillis();
+        return ReferenceGenerator.next("PARK-");
     }
 
     public long getCurrentDurationMinutes() {
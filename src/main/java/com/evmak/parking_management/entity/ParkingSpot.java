@@ -15,7 +15,9 @@ import java.util.List;
 public class ParkingSpot {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled sequence instead of IDENTITY so inserts can be batched; see ParkingSession
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "parking_spots_seq")
+    @SequenceGenerator(name = "parking_spots_seq", sequenceName = "parking_spots_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -126,8 +128,9 @@ public class ParkingSpot {
         return reservationExpiresAt != null && reservationExpiresAt.isBefore(LocalDateTime.now());
     }
 
+    // The facility is absent on spot references deserialized from request bodies (e.g. session start)
     public String getFullSpotIdentifier() {
-        return facility.getName() + " - " + spotNumber;
+        return facility != null ? facility.getName() + " - " + spotNumber : spotNumber;
     }
 
     @Override
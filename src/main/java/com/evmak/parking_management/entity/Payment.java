@@ -14,9 +14,11 @@ import java.util.Map;
 @Entity
 @Table(name = "payments")
 public class Payment {
-    
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled sequence instead of IDENTITY so inserts can be batched; see ParkingSession
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payments_seq")
+    @SequenceGenerator(name = "payments_seq", sequenceName = "payments_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -124,7 +126,7 @@ public class Payment {
 
     // Utility methods
     private String generatePaymentReference() {
-        return "PAY-" + System.currentTimeMillis();
+        return ReferenceGenerator.next("PAY-");
     }
 
     public boolean isCompleted() {
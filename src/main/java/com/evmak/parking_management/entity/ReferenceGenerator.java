@@ -0,0 +1,71 @@
+package com.evmak.parking_management.entity;
+
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Snowflake-style business references: 41 bits of milliseconds since 2024-01-01, a 10-bit node id and a 12-bit
+// per-millisecond sequence, written as 13 Crockford base32 characters after the prefix (e.g. PAY-0C5T3K8W01ZQ4).
+// Lock-free and strictly increasing per node; two nodes can only collide if they share a node id, so multi-instance
+// deployments should set app.reference.node-id. References sort in creation order.
+public final class ReferenceGenerator {
+
+    static final long EPOCH_MS = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    static final int ENCODED_LENGTH = 13;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+
+    // (milliseconds since EPOCH_MS << SEQUENCE_BITS) | sequence of the last id handed out
+    private static final AtomicLong LAST = new AtomicLong();
+
+    // Random until configured, so unconfigured instances are unlikely (not guaranteed) to share a node id
+    private static volatile long nodeId = new SecureRandom().nextInt(MAX_NODE_ID + 1);
+
+    private ReferenceGenerator() {}
+
+    public static void setNodeId(int id) {
+        if (id < 0 || id > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID + ": " + id);
+        }
+        nodeId = id;
+    }
+
+    public static int getNodeId() {
+        return (int) nodeId;
+    }
+
+    public static String next(String prefix) {
+        return encode(prefix, nextId());
+    }
+
+    // When the sequence overflows within a millisecond, or the clock steps backwards, the id borrows the next
+    // millisecond instead of waiting, so callers never spin or block
+    static long nextId() {
+        long now = System.currentTimeMillis() - EPOCH_MS;
+        long last;
+        long next;
+        do {
+            last = LAST.get();
+            next = Math.max(now << SEQUENCE_BITS, last + 1);
+        } while (!LAST.compareAndSet(last, next));
+        return ((next >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS))
+            | (nodeId << SEQUENCE_BITS)
+            | (next & SEQUENCE_MASK);
+    }
+
+    // Fixed width, so string order matches id order
+    static String encode(String prefix, long id) {
+        int length = prefix.length();
+        char[] chars = new char[length + ENCODED_LENGTH];
+        prefix.getChars(0, length, chars, 0);
+        for (int i = chars.length - 1; i >= length; i--) {
+            chars[i] = ALPHABET[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+}
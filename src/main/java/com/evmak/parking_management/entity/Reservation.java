@@ -11,9 +11,11 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "reservations")
 public class Reservation {
-    
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled sequence instead of IDENTITY so inserts can be batched; see ParkingSession
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reservations_seq")
+    @SequenceGenerator(name = "reservations_seq", sequenceName = "reservations_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -145,7 +147,7 @@ public class Reservation {
 
     // Utility methods
     private String generateReservationReference() {
-        return "RES-" + System.currentTimeMillis();
+        return ReferenceGenerator.next("RES-");
     }
 
     private void calculateTotalAmount() {
@@ -0,0 +1,34 @@
+package com.evmak.parking_management.repository;
+
+import com.evmak.parking_management.entity.FacilitySpotCounter;
+import com.evmak.parking_management.entity.ParkingSpot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface FacilitySpotCounterRepository extends JpaRepository<FacilitySpotCounter, FacilitySpotCounter.Key> {
+
+    // Delta update by primary key; returns 0 when the cell has no row yet
+    @Modifying
+    @Query("""
+        UPDATE FacilitySpotCounter c SET c.spotCount = c.spotCount + :delta
+        WHERE c.facilityId = :facilityId AND c.spotType = :spotType AND c.status = :status
+        """)
+    int adjust(@Param("facilityId") Long facilityId,
+               @Param("spotType") ParkingSpot.SpotType spotType,
+               @Param("status") ParkingSpot.SpotStatus status,
+               @Param("delta") int delta);
+
+    // A primary key prefix range: every cell of one facility
+    List<FacilitySpotCounter> findByFacilityId(Long facilityId);
+
+    // [facilityId, spotType, status, spotCount] for every non-zero cell, compared against the spot table by the drift check
+    // and against the in-memory occupancy index by its reconcile
+    @Query("SELECT c.facilityId, c.spotType, c.status, c.spotCount FROM FacilitySpotCounter c WHERE c.spotCount <> 0")
+    List<Object[]> findAllNonZeroCounts();
+}
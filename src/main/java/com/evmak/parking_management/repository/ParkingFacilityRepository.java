@@ -1,56 +1,60 @@
 package com.evmak.parking_management.repository;
 
+import com.evmak.parking_management.dto.FacilityView;
 import com.evmak.parking_management.entity.ParkingFacility;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ParkingFacilityRepository extends JpaRepository<ParkingFacility, Long> {
     
-    List<ParkingFacility> findByIsActiveTrue();
+    // [id, locationLat, locationLng] rows for the in-memory geo index
+    @Query("SELECT pf.id, pf.locationLat, pf.locationLng FROM ParkingFacility pf WHERE pf.isActive = true")
+    List<Object[]> findActiveFacilityLocations();
     
-    List<ParkingFacility> findByFacilityTypeAndIsActiveTrue(ParkingFacility.FacilityType facilityType);
+    // Delta update so concurrent transitions never lose each other's changes. Every spot transition writes this
+    // row before its counter cells, so the facility row lock orders transitions against a counter repair; see SpotCounterService.
+    @Modifying
+    @Query("UPDATE ParkingFacility pf SET pf.totalSpots = pf.totalSpots + :totalDelta, pf.availableSpots = pf.availableSpots + :availableDelta WHERE pf.id = :facilityId")
+    int adjustSpotCounts(@Param("facilityId") Long facilityId,
+                         @Param("totalDelta") int totalDelta,
+                         @Param("availableDelta") int availableDelta);
     
-    @Query(value = """
-        SELECT pf.* FROM parking_facilities pf 
-        WHERE pf.is_active = true 
-        AND ST_Distance_Sphere(
-            POINT(pf.location_lng, pf.location_lat),
-            POINT(:lng, :lat)
-        ) <= :radiusMeters
-        ORDER BY ST_Distance_Sphere(
-            POINT(pf.location_lng, pf.location_lat),
-            POINT(:lng, :lat)
-        ) ASC
-        """, nativeQuery = true)
-    List<ParkingFacility> findNearbyFacilities(@Param("lat") BigDecimal lat, 
-                                               @Param("lng") BigDecimal lng, 
-                                               @Param("radiusMeters") Integer radiusMeters);
+    @Modifying
+    @Query("UPDATE ParkingFacility pf SET pf.totalSpots = :totalSpots, pf.availableSpots = :availableSpots WHERE pf.id = :facilityId")
+    int setSpotCounts(@Param("facilityId") Long facilityId,
+                      @Param("totalSpots") int totalSpots,
+                      @Param("availableSpots") int availableSpots);
     
-    @Query("SELECT pf FROM ParkingFacility pf WHERE pf.isActive = true AND pf.availableSpots > 0")
-    List<ParkingFacility> findFacilitiesWithAvailableSpots();
-    
-    @Query(value = """
-        SELECT pf.* FROM parking_facilities pf 
-        WHERE pf.is_active = true 
-        AND pf.available_spots > 0
-        AND ST_Distance_Sphere(
-            POINT(pf.location_lng, pf.location_lat),
-            POINT(:lng, :lat)
-        ) <= :radiusMeters
-        ORDER BY pf.available_spots DESC, ST_Distance_Sphere(
-            POINT(pf.location_lng, pf.location_lat),
-            POINT(:lng, :lat)
-        ) ASC
-        LIMIT :maxResults
-        """, nativeQuery = true)
-    List<ParkingFacility> findAvailableNearbyFacilities(@Param("lat") BigDecimal lat, 
-                                                         @Param("lng") BigDecimal lng, 
-                                                         @Param("radiusMeters") Integer radiusMeters,
-                                                         @Param("maxResults") Integer maxResults);
+    // [id, totalSpots, availableSpots] for every facility, compared against the spot table by the drift check
+    @Query("SELECT pf.id, pf.totalSpots, pf.availableSpots FROM ParkingFacility pf")
+    List<Object[]> findAllSpotCounts();
+
+
+    @Query(FacilityView.SELECT + "WHERE pf.id = :facilityId")
+    Optional<FacilityView> findFacilityViewById(@Param("facilityId") Long facilityId);
+
+    @Query(FacilityView.SELECT + "WHERE pf.id IN :facilityIds")
+    List<FacilityView> findFacilityViewsByIdIn(@Param("facilityIds") Collection<Long> facilityIds);
+
+    @Query(FacilityView.SELECT + "WHERE pf.isActive = true ORDER BY pf.id")
+    List<FacilityView> findActiveFacilityViews();
+
+    // Keyset page of active facilities in id order, starting after afterId
+    @Query(FacilityView.SELECT + "WHERE pf.isActive = true AND pf.id > :afterId ORDER BY pf.id")
+    List<FacilityView> findActiveFacilityViewPage(@Param("afterId") Long afterId, Limit limit);
+
+    @Query(FacilityView.SELECT + "WHERE pf.isActive = true AND pf.facilityType = :facilityType ORDER BY pf.id")
+    List<FacilityView> findActiveFacilityViewsByType(@Param("facilityType") ParkingFacility.FacilityType facilityType);
+
+    @Query(FacilityView.SELECT + "WHERE pf.isActive = true AND pf.availableSpots > 0 ORDER BY pf.id")
+    List<FacilityView> findFacilityViewsWithAvailableSpots();
 }
\ No newline at end of file
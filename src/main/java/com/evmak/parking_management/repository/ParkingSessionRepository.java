@@ -1,51 +1,29 @@
 package com.evmak.parking_management.repository;
 
 import com.evmak.parking_management.entity.ParkingSession;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ParkingSessionRepository extends JpaRepository<ParkingSession, Long> {
     
-    Optional<ParkingSession> findBySessionReference(String sessionReference);
-    
     List<ParkingSession> findByUserIdAndStatus(Long userId, ParkingSession.SessionStatus status);
     
-    List<ParkingSession> findByUserId(Long userId);
-    
-    @Query("SELECT ps FROM ParkingSession ps WHERE ps.spot.id = :spotId AND ps.status = 'ACTIVE'")
-    Optional<ParkingSession> findActiveSessionBySpotId(@Param("spotId") Long spotId);
-    
-    @Query("SELECT ps FROM ParkingSession ps WHERE ps.user.id = :userId AND ps.status = 'ACTIVE'")
-    List<ParkingSession> findActiveSessionsByUserId(@Param("userId") Long userId);
-    
     @Query("SELECT COUNT(ps) FROM ParkingSession ps WHERE ps.spot.facility.id = :facilityId AND ps.status = 'ACTIVE'")
     Integer countActiveSessionsByFacilityId(@Param("facilityId") Long facilityId);
     
-    @Query("""
-        SELECT ps FROM ParkingSession ps 
-        WHERE ps.startedAt BETWEEN :startDate AND :endDate 
-        ORDER BY ps.startedAt DESC
-        """)
-    List<ParkingSession> findSessionsByDateRange(@Param("startDate") LocalDateTime startDate, 
-                                                  @Param("endDate") LocalDateTime endDate);
-    
-    @Query("""
-        SELECT ps FROM ParkingSession ps 
-        WHERE ps.spot.facility.id = :facilityId 
-        AND ps.startedAt BETWEEN :startDate AND :endDate 
-        ORDER BY ps.startedAt DESC
-        """)
-    List<ParkingSession> findSessionsByFacilityAndDateRange(@Param("facilityId") Long facilityId,
-                                                             @Param("startDate") LocalDateTime startDate, 
-                                                             @Param("endDate") LocalDateTime endDate);
-    
     @Query("""
         SELECT AVG(ps.actualDurationMinutes) 
         FROM ParkingSession ps 
@@ -65,4 +43,102 @@ public interface ParkingSessionRepository extends JpaRepository<ParkingSession,
         """)
     List<Object[]> findBusiestSpotsByDateRange(@Param("startDate") LocalDateTime startDate, 
                                                @Param("endDate") LocalDateTime endDate);
-}
\ No newline at end of file
+
+    // Flat row for read endpoints, paged and streamed listings: serializing the entity would walk its lazy associations, one query
+    // (and a nested user/vehicle graph) per row
+    interface SessionView {
+        Long getId();
+        String getSessionReference();
+        Long getUserId();
+        Long getVehicleId();
+        Long getSpotId();
+        ParkingSession.SessionStatus getStatus();
+        Integer getPlannedDurationHours();
+        Integer getActualDurationMinutes();
+        BigDecimal getHourlyRate();
+        BigDecimal getTotalAmount();
+        LocalDateTime getStartedAt();
+        LocalDateTime getEndedAt();
+    }
+
+    String SESSION_VIEW = """
+        SELECT ps.id AS id, ps.sessionReference AS sessionReference, ps.user.id AS userId, ps.vehicle.id AS vehicleId,
+            ps.spot.id AS spotId, ps.status AS status, ps.plannedDurationHours AS plannedDurationHours,
+            ps.actualDurationMinutes AS actualDurationMinutes, ps.hourlyRate AS hourlyRate,
+            ps.totalAmount AS totalAmount, ps.startedAt AS startedAt, ps.endedAt AS endedAt
+        FROM ParkingSession ps
+        """;
+
+    @Query(SESSION_VIEW + "WHERE ps.id = :sessionId")
+    Optional<SessionView> findSessionViewById(@Param("sessionId") Long sessionId);
+
+    @Query(SESSION_VIEW + "WHERE ps.sessionReference = :sessionReference")
+    Optional<SessionView> findSessionViewByReference(@Param("sessionReference") String sessionReference);
+
+    @Query(SESSION_VIEW + "WHERE ps.spot.id = :spotId AND ps.status = 'ACTIVE'")
+    Optional<SessionView> findActiveSessionViewBySpotId(@Param("spotId") Long spotId);
+
+    @Query(SESSION_VIEW + "WHERE ps.user.id = :userId AND ps.status = 'ACTIVE'" + NEWEST_FIRST)
+    List<SessionView> findActiveSessionViewsByUserId(@Param("userId") Long userId);
+
+    // Newest first; rows strictly after the (beforeStartedAt, beforeId) cursor of the previous page
+    String KEYSET_AFTER_CURSOR = """
+        AND (ps.startedAt < :beforeStartedAt OR (ps.startedAt = :beforeStartedAt AND ps.id < :beforeId))
+        ORDER BY ps.startedAt DESC, ps.id DESC
+        """;
+
+    String NEWEST_FIRST = " ORDER BY ps.startedAt DESC, ps.id DESC";
+
+    // Fetch size for streamed exports; MySQL only honours it with useCursorFetch=true on the URL
+    String EXPORT_FETCH_SIZE = "1000";
+
+    @Query(SESSION_VIEW + "WHERE ps.startedAt BETWEEN :startDate AND :endDate " + KEYSET_AFTER_CURSOR)
+    List<SessionView> findSessionPage(@Param("startDate") LocalDateTime startDate,
+                                      @Param("endDate") LocalDateTime endDate,
+                                      @Param("beforeStartedAt") LocalDateTime beforeStartedAt,
+                                      @Param("beforeId") Long beforeId,
+                                      Limit limit);
+
+    @Query(SESSION_VIEW + "WHERE ps.user.id = :userId AND ps.startedAt BETWEEN :startDate AND :endDate " + KEYSET_AFTER_CURSOR)
+    List<SessionView> findUserSessionPage(@Param("userId") Long userId,
+                                          @Param("startDate") LocalDateTime startDate,
+                                          @Param("endDate") LocalDateTime endDate,
+                                          @Param("beforeStartedAt") LocalDateTime beforeStartedAt,
+                                          @Param("beforeId") Long beforeId,
+                                          Limit limit);
+
+    @Query(SESSION_VIEW + "WHERE ps.spot.facility.id = :facilityId AND ps.startedAt BETWEEN :startDate AND :endDate " + KEYSET_AFTER_CURSOR)
+    List<SessionView> findFacilitySessionPage(@Param("facilityId") Long facilityId,
+                                              @Param("startDate") LocalDateTime startDate,
+                                              @Param("endDate") LocalDateTime endDate,
+                                              @Param("beforeStartedAt") LocalDateTime beforeStartedAt,
+                                              @Param("beforeId") Long beforeId,
+                                              Limit limit);
+
+    // Streams must be consumed inside a transaction and closed; rows are not managed, so memory stays flat
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(SESSION_VIEW + "WHERE ps.startedAt BETWEEN :startDate AND :endDate" + NEWEST_FIRST)
+    Stream<SessionView> streamSessions(@Param("startDate") LocalDateTime startDate,
+                                       @Param("endDate") LocalDateTime endDate);
+
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(SESSION_VIEW + "WHERE ps.user.id = :userId AND ps.startedAt BETWEEN :startDate AND :endDate" + NEWEST_FIRST)
+    Stream<SessionView> streamUserSessions(@Param("userId") Long userId,
+                                           @Param("startDate") LocalDateTime startDate,
+                                           @Param("endDate") LocalDateTime endDate);
+
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(SESSION_VIEW + "WHERE ps.spot.facility.id = :facilityId AND ps.startedAt BETWEEN :startDate AND :endDate" + NEWEST_FIRST)
+    Stream<SessionView> streamFacilitySessions(@Param("facilityId") Long facilityId,
+                                               @Param("startDate") LocalDateTime startDate,
+                                               @Param("endDate") LocalDateTime endDate);
+}
@@ -1,6 +1,8 @@
 package com.evmak.parking_management.repository;
 
+import com.evmak.parking_management.dto.SpotView;
 import com.evmak.parking_management.entity.ParkingSpot;
+import com.evmak.parking_management.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -8,31 +10,62 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ParkingSpotRepository extends JpaRepository<ParkingSpot, Long> {
     
-    List<ParkingSpot> findByFacilityIdAndStatus(Long facilityId, ParkingSpot.SpotStatus status);
-    
     @Query("SELECT COUNT(ps) FROM ParkingSpot ps WHERE ps.facility.id = :facilityId AND ps.status = :status")
     Integer countByFacilityIdAndStatus(@Param("facilityId") Long facilityId, 
                                        @Param("status") ParkingSpot.SpotStatus status);
     
-    @Query("SELECT ps FROM ParkingSpot ps WHERE ps.facility.id = :facilityId AND ps.status = 'AVAILABLE' AND ps.spotType = :spotType")
-    List<ParkingSpot> findAvailableSpotsByTypeInFacility(@Param("facilityId") Long facilityId, 
-                                                          @Param("spotType") ParkingSpot.SpotType spotType);
-    
     @Query("SELECT ps FROM ParkingSpot ps WHERE ps.facility.id = :facilityId AND ps.status = 'AVAILABLE' ORDER BY ps.spotNumber")
     List<ParkingSpot> findAvailableSpotsInFacility(@Param("facilityId") Long facilityId);
     
-    @Query("SELECT ps FROM ParkingSpot ps WHERE ps.status = 'RESERVED' AND ps.reservationExpiresAt < :currentTime")
-    List<ParkingSpot> findExpiredReservations(@Param("currentTime") LocalDateTime currentTime);
+    // Status writes (this one, claimAvailableSpot, transitionStatus) go through SpotStateService, which publishes them
+    @Modifying
+    @Query("UPDATE ParkingSpot ps SET ps.status = 'AVAILABLE', ps.reservedBy = null, ps.reservationExpiresAt = null, ps.lastUpdated = CURRENT_TIMESTAMP WHERE ps.id IN :spotIds AND ps.status = 'RESERVED'")
+    int releaseReservedSpots(@Param("spotIds") Collection<Long> spotIds);
+    
+    // [spotId, facilityId, spotType] of spot holds (RESERVED spots without an ACTIVE or CONFIRMED reservation behind them)
+    @Query("""
+        SELECT ps.id, ps.facility.id, ps.spotType FROM ParkingSpot ps 
+        WHERE ps.id IN :spotIds AND ps.status = 'RESERVED' AND ps.reservationExpiresAt <= :currentTime
+        AND NOT EXISTS (SELECT r FROM Reservation r WHERE r.spot = ps AND r.status IN ('ACTIVE', 'CONFIRMED'))
+        """)
+    List<Object[]> findDueSpotHolds(@Param("spotIds") Collection<Long> spotIds, @Param("currentTime") LocalDateTime currentTime);
     
+    @Query("""
+        SELECT ps.id, ps.reservationExpiresAt FROM ParkingSpot ps 
+        WHERE ps.status = 'RESERVED' AND ps.reservationExpiresAt IS NOT NULL
+        AND NOT EXISTS (SELECT r FROM Reservation r WHERE r.spot = ps AND r.status IN ('ACTIVE', 'CONFIRMED'))
+        """)
+    List<Object[]> findSpotHoldExpiries();
+    
+    // Atomic compare-and-set claim: succeeds (returns 1) only if the spot is still AVAILABLE
+    @Modifying
+    @Query("UPDATE ParkingSpot ps SET ps.status = 'RESERVED', ps.reservedBy = :user, ps.reservationExpiresAt = :expiresAt, ps.lastUpdated = CURRENT_TIMESTAMP WHERE ps.id = :spotId AND ps.facility.id = :facilityId AND ps.status = 'AVAILABLE'")
+    int claimAvailableSpot(@Param("spotId") Long spotId, 
+                           @Param("facilityId") Long facilityId, 
+                           @Param("user") User user, 
+                           @Param("expiresAt") LocalDateTime expiresAt);
+    
+    // Compare-and-set to any status but RESERVED (which needs a holder, see claimAvailableSpot); clears the hold
     @Modifying
-    @Query("UPDATE ParkingSpot ps SET ps.status = 'AVAILABLE', ps.reservedBy = null, ps.reservationExpiresAt = null WHERE ps.status = 'RESERVED' AND ps.reservationExpiresAt < :currentTime")
-    Integer releaseExpiredReservations(@Param("currentTime") LocalDateTime currentTime);
+    @Query("UPDATE ParkingSpot ps SET ps.status = :to, ps.reservedBy = null, ps.reservationExpiresAt = null, ps.lastUpdated = CURRENT_TIMESTAMP WHERE ps.id = :spotId AND ps.facility.id = :facilityId AND ps.status = :from")
+    int transitionStatus(@Param("spotId") Long spotId, 
+                         @Param("facilityId") Long facilityId, 
+                         @Param("from") ParkingSpot.SpotStatus from, 
+                         @Param("to") ParkingSpot.SpotStatus to);
+    
+    // RESERVED -> OCCUPIED, matching only while the spot is held for the given user; clears the hold
+    @Modifying
+    @Query("UPDATE ParkingSpot ps SET ps.status = 'OCCUPIED', ps.reservedBy = null, ps.reservationExpiresAt = null, ps.lastUpdated = CURRENT_TIMESTAMP WHERE ps.id = :spotId AND ps.facility.id = :facilityId AND ps.status = 'RESERVED' AND ps.reservedBy.id = :userId")
+    int occupyHeldSpot(@Param("spotId") Long spotId, 
+                       @Param("facilityId") Long facilityId, 
+                       @Param("userId") Long userId);
     
     @Query("SELECT ps FROM ParkingSpot ps WHERE ps.facility.id = :facilityId AND ps.status = 'AVAILABLE' AND (:spotType IS NULL OR ps.spotType = :spotType) ORDER BY ps.spotNumber LIMIT 1")
     Optional<ParkingSpot> findFirstAvailableSpot(@Param("facilityId") Long facilityId, 
@@ -43,11 +76,34 @@ public interface ParkingSpotRepository extends JpaRepository<ParkingSpot, Long>
     
     Optional<ParkingSpot> findByFacilityIdAndSpotNumber(Long facilityId, String spotNumber);
     
-    List<ParkingSpot> findByFacilityId(Long facilityId);
+    @Query("SELECT ps.spotType FROM ParkingSpot ps WHERE ps.id = :spotId")
+    Optional<ParkingSpot.SpotType> findSpotTypeById(@Param("spotId") Long spotId);
+    
+    // [facilityId, spotType, status, count] recounted from the spots themselves, to check the materialized counters
+    @Query("SELECT ps.facility.id, ps.spotType, ps.status, COUNT(ps) FROM ParkingSpot ps GROUP BY ps.facility.id, ps.spotType, ps.status")
+    List<Object[]> countAllByFacilityTypeAndStatus();
     
-    @Query("SELECT COUNT(ps) FROM ParkingSpot ps WHERE ps.facility.id = :facilityId AND ps.status = 'AVAILABLE'")
-    Integer countAvailableSpotsByFacilityId(@Param("facilityId") Long facilityId);
+    @Query("SELECT ps.spotType, ps.status, COUNT(ps) FROM ParkingSpot ps WHERE ps.facility.id = :facilityId GROUP BY ps.spotType, ps.status")
+    List<Object[]> countByTypeAndStatus(@Param("facilityId") Long facilityId);
     
-    @Query("SELECT COUNT(ps) FROM ParkingSpot ps WHERE ps.facility.id = :facilityId")
-    Integer countSpotsByFacilityId(@Param("facilityId") Long facilityId);
-}
\ No newline at end of file
+    // Lightweight rows [id, facilityId, spotType, status, floorLevel] used to build the in-memory occupancy index
+    @Query("SELECT ps.id, ps.facility.id, ps.spotType, ps.status, ps.floorLevel FROM ParkingSpot ps ORDER BY ps.facility.id, ps.spotNumber")
+    List<Object[]> findAllSpotOccupancyRows();
+    
+    @Query("SELECT ps.id, ps.facility.id, ps.spotType, ps.status, ps.floorLevel FROM ParkingSpot ps WHERE ps.facility.id = :facilityId ORDER BY ps.spotNumber")
+    List<Object[]> findSpotOccupancyRowsByFacilityId(@Param("facilityId") Long facilityId);
+
+    @Query(SpotView.SELECT + "WHERE ps.id = :spotId")
+    Optional<SpotView> findSpotViewById(@Param("spotId") Long spotId);
+
+    @Query(SpotView.SELECT + "WHERE ps.facility.id = :facilityId ORDER BY ps.spotNumber")
+    List<SpotView> findSpotViewsByFacilityId(@Param("facilityId") Long facilityId);
+
+    @Query(SpotView.SELECT + "WHERE ps.facility.id = :facilityId AND ps.status = :status ORDER BY ps.spotNumber")
+    List<SpotView> findSpotViewsByFacilityIdAndStatus(@Param("facilityId") Long facilityId,
+                                                      @Param("status") ParkingSpot.SpotStatus status);
+
+    @Query(SpotView.SELECT + "WHERE ps.facility.id = :facilityId AND ps.status = 'AVAILABLE' AND ps.spotType = :spotType ORDER BY ps.spotNumber")
+    List<SpotView> findAvailableSpotViewsByType(@Param("facilityId") Long facilityId,
+                                                @Param("spotType") ParkingSpot.SpotType spotType);
+}
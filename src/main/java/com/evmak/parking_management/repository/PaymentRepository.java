@@ -1,13 +1,16 @@
 package com.evmak.parking_management.repository;
 
 import com.evmak.parking_management.entity.Payment;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,9 +25,84 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     
     List<Payment> findBySessionIdAndStatus(Long sessionId, Payment.PaymentStatus status);
     
+    // Records a provider outcome without loading the row; null leaves the existing external id or completion time.
+    // Only applies while the payment is still in expectedStatus, so a webhook that got there first is never undone.
+    @Modifying
+    @Query("""
+        UPDATE Payment p SET p.status = :status,
+            p.externalPaymentId = COALESCE(:externalPaymentId, p.externalPaymentId),
+            p.completedAt = COALESCE(:completedAt, p.completedAt),
+            p.updatedAt = CURRENT_TIMESTAMP
+        WHERE p.id = :id AND p.status = :expectedStatus
+        """)
+    int updateOutcome(@Param("id") Long id,
+                      @Param("expectedStatus") Payment.PaymentStatus expectedStatus,
+                      @Param("status") Payment.PaymentStatus status,
+                      @Param("externalPaymentId") String externalPaymentId,
+                      @Param("completedAt") LocalDateTime completedAt);
+    
+    // Status reported by the provider (webhook or reconciler). Matches on the provider id, or on our reference
+    // when the callback beats the initiation response; replays and out-of-order events update nothing.
+    @Modifying
+    @Query("""
+        UPDATE Payment p SET p.status = :status,
+            p.externalPaymentId = COALESCE(p.externalPaymentId, :externalPaymentId),
+            p.completedAt = COALESCE(:completedAt, p.completedAt),
+            p.updatedAt = CURRENT_TIMESTAMP
+        WHERE (p.externalPaymentId = :externalPaymentId OR p.paymentReference = :paymentReference)
+        AND p.status = :expectedStatus
+        """)
+    int applyProviderStatus(@Param("externalPaymentId") String externalPaymentId,
+                            @Param("paymentReference") String paymentReference,
+                            @Param("expectedStatus") Payment.PaymentStatus expectedStatus,
+                            @Param("status") Payment.PaymentStatus status,
+                            @Param("completedAt") LocalDateTime completedAt);
+    
     @Query("SELECT p FROM Payment p WHERE p.status = 'PENDING' AND p.createdAt < :cutoffTime")
     List<Payment> findStalePayments(@Param("cutoffTime") LocalDateTime cutoffTime);
     
+    @Modifying
+    @Query("""
+        UPDATE Payment p SET p.status = :status,
+            p.completedAt = COALESCE(:completedAt, p.completedAt),
+            p.updatedAt = CURRENT_TIMESTAMP
+        WHERE p.id IN :ids AND p.status = :expectedStatus
+        """)
+    int applyProviderStatusToIds(@Param("ids") Collection<Long> ids,
+                                 @Param("expectedStatus") Payment.PaymentStatus expectedStatus,
+                                 @Param("status") Payment.PaymentStatus status,
+                                 @Param("completedAt") LocalDateTime completedAt);
+    
+    // Keyset page of stale payments the provider knows about: [id, externalPaymentId], ordered by id
+    @Query("""
+        SELECT p.id, p.externalPaymentId FROM Payment p
+        WHERE p.status = 'PENDING' AND p.createdAt < :cutoffTime AND p.externalPaymentId IS NOT NULL
+        AND p.id > :afterId
+        ORDER BY p.id
+        """)
+    List<Object[]> findStalePaymentPage(@Param("cutoffTime") LocalDateTime cutoffTime,
+                                        @Param("afterId") Long afterId,
+                                        Limit limit);
+    
+    // Keyset page of stale payments that never got a provider transaction id (the charge request failed or its
+    // response was lost): [id, paymentReference], ordered by id. These are looked up by our reference instead.
+    @Query("""
+        SELECT p.id, p.paymentReference FROM Payment p
+        WHERE p.status = 'PENDING' AND p.createdAt < :cutoffTime AND p.externalPaymentId IS NULL
+        AND p.id > :afterId
+        ORDER BY p.id
+        """)
+    List<Object[]> findUnsubmittedPaymentPage(@Param("cutoffTime") LocalDateTime cutoffTime,
+                                          @Param("afterId") Long afterId,
+                                          Limit limit);
+    
+    // [count, oldest createdAt] of every stale PENDING payment, with or without a provider transaction id
+    @Query("""
+        SELECT COUNT(p), MIN(p.createdAt) FROM Payment p
+        WHERE p.status = 'PENDING' AND p.createdAt < :cutoffTime
+        """)
+    List<Object[]> getStalePaymentBacklog(@Param("cutoffTime") LocalDateTime cutoffTime);
+    
     @Query("""
         SELECT SUM(p.amount) 
         FROM Payment p 
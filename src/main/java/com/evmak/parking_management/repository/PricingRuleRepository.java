@@ -21,6 +21,14 @@ public interface PricingRuleRepository extends JpaRepository<PricingRule, Long>
     
     List<PricingRule> findByIsActiveTrueOrderByPriorityDesc();
     
+    // Days are fetched up front so the rules can be compiled outside a session
+    @Query("SELECT DISTINCT pr FROM PricingRule pr LEFT JOIN FETCH pr.daysOfWeek WHERE pr.isActive = true")
+    List<PricingRule> findActiveRulesWithDays();
+    
+    // Changes whenever a rule is added, removed or updated
+    @Query("SELECT COUNT(pr), MAX(pr.updatedAt), SUM(pr.id) FROM PricingRule pr")
+    List<Object[]> findRulesFingerprint();
+    
     List<PricingRule> findByRuleTypeAndIsActiveTrue(PricingRule.RuleType ruleType);
     
     @Query("""
@@ -1,6 +1,7 @@
 package com.evmak.parking_management.repository;
 
 import com.evmak.parking_management.entity.Reservation;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -8,6 +9,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -25,6 +27,26 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
     @Query("UPDATE Reservation r SET r.status = 'EXPIRED' WHERE r.status = 'ACTIVE' AND r.expiresAt < :currentTime")
     Integer expireOldReservations(@Param("currentTime") LocalDateTime currentTime);
     
+    // [reservationId, spotId, facilityId, spotType] for the given reservations that are still ACTIVE and past their hold
+    @Query("SELECT r.id, s.id, r.facility.id, s.spotType FROM Reservation r LEFT JOIN r.spot s WHERE r.id IN :ids AND r.status = 'ACTIVE' AND r.expiresAt <= :currentTime")
+    List<Object[]> findDueReservations(@Param("ids") Collection<Long> ids, @Param("currentTime") LocalDateTime currentTime);
+    
+    @Query("SELECT r.id FROM Reservation r WHERE r.status = 'ACTIVE' AND r.expiresAt <= :currentTime")
+    List<Long> findExpiredReservationIds(@Param("currentTime") LocalDateTime currentTime);
+    
+    // [reservationId, expiresAt] for every ACTIVE reservation, used to rebuild the expiry scheduler on startup
+    @Query("SELECT r.id, r.expiresAt FROM Reservation r WHERE r.status = 'ACTIVE'")
+    List<Object[]> findActiveReservationExpiries();
+    
+    @Modifying
+    @Query("UPDATE Reservation r SET r.status = 'EXPIRED', r.updatedAt = CURRENT_TIMESTAMP WHERE r.id IN :ids AND r.status = 'ACTIVE'")
+    int expireReservations(@Param("ids") Collection<Long> ids);
+    
+    // Ends the reservation behind a spot's hold when the spot leaves RESERVED by any route other than its expiry
+    @Modifying
+    @Query("UPDATE Reservation r SET r.status = :status, r.updatedAt = CURRENT_TIMESTAMP WHERE r.spot.id = :spotId AND r.status IN ('ACTIVE', 'CONFIRMED')")
+    int endSpotReservations(@Param("spotId") Long spotId, @Param("status") Reservation.ReservationStatus status);
+    
     @Query("""
         SELECT r FROM Reservation r 
         WHERE r.facility.id = :facilityId 
@@ -47,6 +69,46 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
                                                           @Param("startTime") LocalDateTime startTime,
                                                           @Param("endTime") LocalDateTime endTime);
     
+    // Everything a spot reservation validates in one round trip:
+    // [user, vehicle, facility, spot, active reservations of the user, overlapping reservations on the spot].
+    // Returns no row when any of the ids does not exist.
+    @Query("""
+        SELECT u, v, f, s,
+            (SELECT COUNT(a) FROM Reservation a WHERE a.user = u AND a.status = 'ACTIVE'),
+            (SELECT COUNT(o) FROM Reservation o WHERE o.spot = s AND o.status IN ('ACTIVE', 'CONFIRMED')
+                AND o.reservedFrom <= :endTime AND o.reservedUntil >= :startTime)
+        FROM User u, Vehicle v, ParkingFacility f, ParkingSpot s
+        WHERE u.id = :userId AND v.id = :vehicleId AND f.id = :facilityId AND s.id = :spotId
+        """)
+    List<Object[]> findSpotReservationContext(@Param("userId") Long userId,
+                                              @Param("vehicleId") Long vehicleId,
+                                              @Param("facilityId") Long facilityId,
+                                              @Param("spotId") Long spotId,
+                                              @Param("startTime") LocalDateTime startTime,
+                                              @Param("endTime") LocalDateTime endTime);
+    
+    // [user, vehicle, facility, active reservations of the user] for server-side spot selection
+    @Query("""
+        SELECT u, v, f,
+            (SELECT COUNT(a) FROM Reservation a WHERE a.user = u AND a.status = 'ACTIVE')
+        FROM User u, Vehicle v, ParkingFacility f
+        WHERE u.id = :userId AND v.id = :vehicleId AND f.id = :facilityId
+        """)
+    List<Object[]> findReservationContext(@Param("userId") Long userId,
+                                          @Param("vehicleId") Long vehicleId,
+                                          @Param("facilityId") Long facilityId);
+    
     @Query("SELECT r FROM Reservation r WHERE r.user.id = :userId ORDER BY r.createdAt DESC")
     List<Reservation> findByUserIdOrderByCreatedAtDesc(@Param("userId") Long userId);
+
+    // Keyset page of a user's reservations, newest first, starting after (beforeCreatedAt, beforeId)
+    @Query("""
+        SELECT r FROM Reservation r WHERE r.user.id = :userId
+        AND (r.createdAt < :beforeCreatedAt OR (r.createdAt = :beforeCreatedAt AND r.id < :beforeId))
+        ORDER BY r.createdAt DESC, r.id DESC
+        """)
+    List<Reservation> findUserReservationPage(@Param("userId") Long userId,
+                                              @Param("beforeCreatedAt") LocalDateTime beforeCreatedAt,
+                                              @Param("beforeId") Long beforeId,
+                                              Limit limit);
 }
\ No newline at end of file
@@ -1,12 +1,19 @@
 package com.evmak.parking_management.repository;
 
 import com.evmak.parking_management.entity.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
@@ -28,4 +35,35 @@ public interface UserRepository extends JpaRepository<User, Long> {
     
     @Query("SELECT u FROM User u WHERE u.email = :email AND u.isActive = true")
     Optional<User> findActiveUserByEmail(@Param("email") String email);
-}
\ No newline at end of file
+
+    // Flat row for paged and streamed listings, without the lazy vehicle/session/reservation collections
+    interface UserView {
+        Long getId();
+        String getUsername();
+        String getEmail();
+        String getPhoneNumber();
+        String getFirstName();
+        String getLastName();
+        User.UserRole getRole();
+        Boolean getIsActive();
+        LocalDateTime getCreatedAt();
+    }
+
+    String USER_VIEW = """
+        SELECT u.id AS id, u.username AS username, u.email AS email, u.phoneNumber AS phoneNumber,
+            u.firstName AS firstName, u.lastName AS lastName, u.role AS role, u.isActive AS isActive,
+            u.createdAt AS createdAt
+        FROM User u
+        """;
+
+    // Keyset page in id order, starting after afterId
+    @Query(USER_VIEW + "WHERE u.id > :afterId ORDER BY u.id")
+    List<UserView> findUserPage(@Param("afterId") Long afterId, Limit limit);
+
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = ParkingSessionRepository.EXPORT_FETCH_SIZE),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(USER_VIEW + "ORDER BY u.id")
+    Stream<UserView> streamUsers();
+}
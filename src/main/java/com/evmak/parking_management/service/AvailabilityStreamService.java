@@ -0,0 +1,254 @@
+package com.evmak.parking_management.service;
+
+import com.evmak.parking_management.entity.ParkingSpot;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Pushes live facility availability to SSE subscribers. Occupancy changes only mark a facility dirty;
+// a fixed-rate flusher sends at most one update per facility per interval, and each subscriber is written
+// to on its own virtual thread so a slow client never holds up the others.
+@Service
+public class AvailabilityStreamService {
+
+    @Autowired
+    private SpotOccupancyService occupancyService;
+
+    @Value("${app.availability.stream.timeout-ms:1800000}")
+    private long emitterTimeoutMs = 1_800_000;
+
+    private final ConcurrentHashMap<Long, FacilityChannel> channels = new ConcurrentHashMap<>();
+    private final Set<Long> dirtyFacilities = ConcurrentHashMap.newKeySet();
+    private final ExecutorService sendExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @FunctionalInterface
+    interface UpdateSender {
+        void send(AvailabilityUpdate update) throws IOException;
+    }
+
+    @PostConstruct
+    public void registerListener() {
+        occupancyService.addChangeListener(this::markDirty);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        channels.values().forEach(channel -> channel.subscribers.forEach(Subscriber::close));
+        sendExecutor.shutdownNow();
+    }
+
+    public SseEmitter subscribe(Long facilityId) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscriber subscriber = register(facilityId, update -> {
+            if (update == AvailabilityUpdate.HEARTBEAT) {
+                emitter.send(SseEmitter.event().comment("heartbeat"));
+            } else {
+                emitter.send(SseEmitter.event()
+                    .id(String.valueOf(update.version))
+                    .name("availability")
+                    .data(update));
+            }
+        }, emitter::complete);
+
+        emitter.onCompletion(() -> unregister(facilityId, subscriber));
+        emitter.onTimeout(() -> unregister(facilityId, subscriber));
+        emitter.onError(error -> unregister(facilityId, subscriber));
+        return emitter;
+    }
+
+    Subscriber register(Long facilityId, UpdateSender sender, Runnable onClose) {
+        Subscriber subscriber = new Subscriber(sender, onClose);
+        // compute keeps add/remove atomic with dropping empty channels
+        FacilityChannel channel = channels.compute(facilityId, (id, existing) -> {
+            FacilityChannel target = existing != null ? existing : new FacilityChannel(id);
+            target.subscribers.add(subscriber);
+            return target;
+        });
+
+        // New subscribers get the current snapshot straight away
+        subscriber.offer(channel.current(occupancyService));
+        return subscriber;
+    }
+
+    void unregister(Long facilityId, Subscriber subscriber) {
+        channels.computeIfPresent(facilityId, (id, channel) -> {
+            channel.subscribers.remove(subscriber);
+            return channel.subscribers.isEmpty() ? null : channel;
+        });
+    }
+
+    public int getSubscriberCount(Long facilityId) {
+        FacilityChannel channel = channels.get(facilityId);
+        return channel != null ? channel.subscribers.size() : 0;
+    }
+
+    void markDirty(Long facilityId) {
+        if (channels.containsKey(facilityId)) {
+            dirtyFacilities.add(facilityId);
+        }
+    }
+
+    // Runs max-updates-per-second times a second; everything that changed in between is coalesced into one update
+    @Scheduled(fixedRateString = "#{1000 / ${app.availability.stream.max-updates-per-second:5}}")
+    public void flush() {
+        for (Long facilityId : dirtyFacilities) {
+            dirtyFacilities.remove(facilityId);
+            FacilityChannel channel = channels.get(facilityId);
+            if (channel == null) {
+                continue;
+            }
+            AvailabilityUpdate update = channel.next(occupancyService);
+            if (update != null) {
+                channel.subscribers.forEach(subscriber -> subscriber.offer(update));
+            }
+        }
+    }
+
+    // Keeps idle connections open through proxies and detects clients that went away
+    @Scheduled(fixedRateString = "${app.availability.stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        channels.forEach((facilityId, channel) -> channel.subscribers.forEach(Subscriber::heartbeat));
+    }
+
+    private static class FacilityChannel {
+        final Long facilityId;
+        final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        final AtomicLong version = new AtomicLong();
+        // Counts as of the last broadcast update: available, reserved, occupied, total
+        private int[] lastCounts;
+
+        FacilityChannel(Long facilityId) {
+            this.facilityId = facilityId;
+        }
+
+        private static int[] counts(SpotOccupancyService occupancyService, Long facilityId) {
+            return new int[]{
+                occupancyService.countAvailable(facilityId),
+                occupancyService.countByStatus(facilityId, ParkingSpot.SpotStatus.RESERVED),
+                occupancyService.countByStatus(facilityId, ParkingSpot.SpotStatus.OCCUPIED),
+                occupancyService.countTotal(facilityId)
+            };
+        }
+
+        // Snapshot for a new subscriber; does not advance the broadcast state
+        synchronized AvailabilityUpdate current(SpotOccupancyService occupancyService) {
+            int[] counts = counts(occupancyService, facilityId);
+            if (lastCounts == null) {
+                lastCounts = counts; // First subscriber - later deltas are relative to this snapshot
+            }
+            return new AvailabilityUpdate(facilityId, version.get(), counts[0], counts[1], counts[2], counts[3], 0);
+        }
+
+        // Next broadcast update, or null when nothing changed since the previous one
+        synchronized AvailabilityUpdate next(SpotOccupancyService occupancyService) {
+            int[] counts = counts(occupancyService, facilityId);
+            if (Arrays.equals(counts, lastCounts)) {
+                return null;
+            }
+            int delta = lastCounts != null ? counts[0] - lastCounts[0] : 0;
+            lastCounts = counts;
+            return new AvailabilityUpdate(facilityId, version.incrementAndGet(), counts[0], counts[1], counts[2], counts[3], delta);
+        }
+    }
+
+    // Each subscriber keeps only its latest pending update, so a slow client skips stale ones instead of queueing
+    class Subscriber {
+        private final UpdateSender sender;
+        private final Runnable onClose;
+        private final AtomicReference<AvailabilityUpdate> latest = new AtomicReference<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+
+        Subscriber(UpdateSender sender, Runnable onClose) {
+            this.sender = sender;
+            this.onClose = onClose;
+        }
+
+        void offer(AvailabilityUpdate update) {
+            latest.set(update);
+            scheduleDrain();
+        }
+
+        // A pending real update doubles as the heartbeat, so never replace it
+        void heartbeat() {
+            if (latest.compareAndSet(null, AvailabilityUpdate.HEARTBEAT)) {
+                scheduleDrain();
+            }
+        }
+
+        private void scheduleDrain() {
+            if (!closed && draining.compareAndSet(false, true)) {
+                sendExecutor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                AvailabilityUpdate update;
+                while (!closed && (update = latest.getAndSet(null)) != null) {
+                    sender.send(update); // Fails fast for clients that disconnected
+                }
+            } catch (Exception e) {
+                close();
+            } finally {
+                draining.set(false);
+            }
+            // An update may have arrived between the last poll and releasing the flag
+            if (!closed && latest.get() != null) {
+                scheduleDrain();
+            }
+        }
+
+        void close() {
+            if (!closed) {
+                closed = true;
+                try {
+                    onClose.run();
+                } catch (Exception ignored) {
+                    // Already completed by the container
+                }
+            }
+        }
+    }
+
+    public static class AvailabilityUpdate {
+        static final AvailabilityUpdate HEARTBEAT = new AvailabilityUpdate(null, 0, 0, 0, 0, 0, 0);
+
+        public final Long facilityId;
+        public final long version;
+        public final int availableSpots;
+        public final int reservedSpots;
+        public final int occupiedSpots;
+        public final int totalSpots;
+        public final int availableDelta;
+        public final long timestamp;
+
+        public AvailabilityUpdate(Long facilityId, long version, int availableSpots, int reservedSpots,
+                                  int occupiedSpots, int totalSpots, int availableDelta) {
+            this.facilityId = facilityId;
+            this.version = version;
+            this.availableSpots = availableSpots;
+            this.reservedSpots = reservedSpots;
+            this.occupiedSpots = occupiedSpots;
+            this.totalSpots = totalSpots;
+            this.availableDelta = availableDelta;
+            this.timestamp = System.currentTimeMillis();
+        }
+    }
+}
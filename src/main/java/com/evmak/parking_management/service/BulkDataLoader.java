@@ -0,0 +1,315 @@
+package com.evmak.parking_management.service;
+
+import com.evmak.parking_management.entity.*;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Capacity-test seeding: streams generated rows into the database a chunk at a time, each chunk in its own short-lived
+// Session and transaction, so the persistence context never holds more than one chunk. Chunks of a table are
+// written in parallel on a ForkJoin pool and inserts go out as JDBC batches (rewritten into multi-row INSERTs on
+// MySQL). Row contents come from SyntheticDataGenerator, so a seed reproduces the same dataset at any parallelism.
+// Only ids are kept between tables, which keeps memory flat at millions of sessions. Rows are appended to whatever
+// is already there, under a run tag that defaults to one derived from the seed.
+@Service
+public class BulkDataLoader {
+
+    private static final String PASSWORD_HASH = "$2a$10$92IXUNpkjO0rOQ5byMi.Ye4oKoEa3Ro9llC/.og/at2.uheWG/igi";
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Value("${app.seed.bulk.users:10000}")
+    private int defaultUsers = 10_000;
+
+    @Value("${app.seed.bulk.vehicles:25000}")
+    private int defaultVehicles = 25_000;
+
+    @Value("${app.seed.bulk.facilities:100}")
+    private int defaultFacilities = 100;
+
+    @Value("${app.seed.bulk.spots:20000}")
+    private int defaultSpots = 20_000;
+
+    @Value("${app.seed.bulk.sessions:1000000}")
+    private int defaultSessions = 1_000_000;
+
+    @Value("${app.seed.bulk.seed:42}")
+    private long defaultSeed = 42;
+
+    // Sessions are spread over this many days, ending yesterday unless last-day (yyyy-MM-dd) pins the window
+    @Value("${app.seed.bulk.history-days:365}")
+    private int historyDays = 365;
+
+    @Value("${app.seed.bulk.last-day:}")
+    private String lastDay = "";
+
+    // Rows generated and committed per transaction
+    @Value("${app.seed.bulk.chunk-size:5000}")
+    private int chunkSize = 5_000;
+
+    // Chunks written at once; each holds a pooled connection, so keep it below the pool size
+    @Value("${app.seed.bulk.parallelism:4}")
+    private int parallelism = 4;
+
+    // Statements per JDBC batch; matches hibernate.jdbc.batch_size and the sequence allocation size
+    @Value("${app.seed.bulk.jdbc-batch-size:50}")
+    private int jdbcBatchSize = 50;
+
+    public static class BulkLoadReport {
+        public long users;
+        public long vehicles;
+        public long facilities;
+        public long spots;
+        public long sessions;
+        public long payments;
+        public long seed;
+        public String runTag;
+        public long elapsedMs;
+
+        public long getRows() {
+            return users + vehicles + facilities + spots + sessions + payments;
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedMs > 0 ? getRows() * 1000.0 / elapsedMs : 0;
+        }
+    }
+
+    // Null targets fall back to the app.seed.bulk.* defaults
+    public BulkLoadReport load(Integer users, Integer vehicles, Integer facilities, Integer spots, Integer sessions, Long seed) {
+        return load(users, vehicles, facilities, spots, sessions, seed, null);
+    }
+
+    // runTag goes into the unique columns (usernames, plates, facility names). It defaults to one derived from the
+    // seed, so a seed reproduces the dataset exactly; pass a distinct tag to append another copy of the same seed.
+    public BulkLoadReport load(Integer users, Integer vehicles, Integer facilities, Integer spots, Integer sessions,
+                               Long seed, String runTag) {
+        int userCount = users != null ? users : defaultUsers;
+        int vehicleCount = vehicles != null ? vehicles : defaultVehicles;
+        int facilityCount = facilities != null ? facilities : defaultFacilities;
+        int spotCount = spots != null ? spots : defaultSpots;
+        int sessionCount = sessions != null ? sessions : defaultSessions;
+        if (userCount < 1 || vehicleCount < 1 || facilityCount < 1 || spotCount < facilityCount || sessionCount < 0) {
+            throw new IllegalArgumentException("Bulk load needs at least one user, vehicle and facility, "
+                + "at least one spot per facility and a non-negative session count");
+        }
+        if (runTag != null && !runTag.matches("[a-z0-9]{1,8}")) {
+            throw new IllegalArgumentException("Run tag must be 1-8 lowercase letters or digits");
+        }
+
+        BulkLoadReport report = new BulkLoadReport();
+        report.seed = seed != null ? seed : defaultSeed;
+        report.runTag = runTag != null ? runTag : "s" + Long.toString(report.seed & 0xFFFFFFFFL, 36);
+        SyntheticDataGenerator generator = new SyntheticDataGenerator(report.seed,
+            lastDay.isBlank() ? LocalDate.now().minusDays(1) : LocalDate.parse(lastDay), historyDays);
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        String tag = report.runTag;
+        long begin = System.currentTimeMillis();
+        System.out.println("🚚 Bulk loading " + userCount + " users, " + vehicleCount + " vehicles, " + facilityCount
+            + " facilities, " + spotCount + " spots and " + sessionCount + " sessions (seed " + report.seed + ", run " + tag + ")...");
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            long[] userIds = new long[userCount];
+            inChunks(pool, sessionFactory, "users", userCount, (session, i) -> {
+                SplittableRandom random = generator.random(SyntheticDataGenerator.Table.USERS, i);
+                User user = new User();
+                user.setUsername("load" + tag + "_" + i);
+                user.setEmail(user.getUsername() + "@load.test");
+                user.setPasswordHash(PASSWORD_HASH);
+                user.setFirstName("Load");
+                user.setLastName("User" + i);
+                user.setRole(User.UserRole.USER);
+                user.setPhoneNumber("+25570" + String.format("%07d", random.nextInt(10_000_000)));
+                user.setIsActive(true);
+                user.setCreatedAt(generator.pastMoment(random, 2 * 365));
+                user.setUpdatedAt(user.getCreatedAt());
+                session.persist(user);
+                userIds[i] = user.getId();
+            });
+            report.users = userCount;
+
+            long[] vehicleIds = new long[vehicleCount];
+            long[] vehicleOwners = new long[vehicleCount];
+            Vehicle.VehicleType[] vehicleTypes = Vehicle.VehicleType.values();
+            inChunks(pool, sessionFactory, "vehicles", vehicleCount, (session, i) -> {
+                SplittableRandom random = generator.random(SyntheticDataGenerator.Table.VEHICLES, i);
+                Vehicle vehicle = new Vehicle();
+                // Every user gets a vehicle before anyone gets a second one
+                long owner = userIds[i < userCount ? i : random.nextInt(userCount)];
+                vehicle.setUser(session.getReference(User.class, owner));
+                vehicle.setLicensePlate("L" + tag + Integer.toString(i, 36).toUpperCase());
+                vehicle.setMake("Toyota");
+                vehicle.setModel("Corolla");
+                vehicle.setColor("White");
+                vehicle.setVehicleType(vehicleTypes[random.nextInt(vehicleTypes.length)]);
+                vehicle.setIsActive(true);
+                vehicle.setCreatedAt(generator.pastMoment(random, 365));
+                vehicle.setUpdatedAt(vehicle.getCreatedAt());
+                session.persist(vehicle);
+                vehicleIds[i] = vehicle.getId();
+                vehicleOwners[i] = owner;
+            });
+            report.vehicles = vehicleCount;
+
+            long[] facilityIds = new long[facilityCount];
+            BigDecimal[] facilityRates = new BigDecimal[facilityCount];
+            inChunks(pool, sessionFactory, "facilities", facilityCount, (session, i) -> {
+                SplittableRandom random = generator.random(SyntheticDataGenerator.Table.FACILITIES, i);
+                ParkingFacility facility = new ParkingFacility();
+                facility.setName("Load Test Facility " + tag + "-" + (i + 1));
+                facility.setFacilityType(i % 3 == 0 ? ParkingFacility.FacilityType.STREET_ZONE : ParkingFacility.FacilityType.GARAGE);
+                facility.setAddress((i + 1) + " Load Test Road, Dar es Salaam");
+                facility.setLocationLat(BigDecimal.valueOf(-6.7924 + (random.nextDouble() - 0.5) * 0.1));
+                facility.setLocationLng(BigDecimal.valueOf(39.2083 + (random.nextDouble() - 0.5) * 0.1));
+                facility.setBaseHourlyRate(new BigDecimal(1000 + random.nextInt(4000)));
+                // Spots are dealt round robin, so the first (spotCount % facilityCount) facilities get one extra
+                int spotsHere = spotCount / facilityCount + (i < spotCount % facilityCount ? 1 : 0);
+                facility.setTotalSpots(spotsHere);
+                facility.setAvailableSpots(spotsHere);
+                facility.setMaxHours(24);
+                facility.setIsActive(true);
+                facility.setCreatedAt(generator.pastMoment(random, 2 * 365));
+                facility.setUpdatedAt(facility.getCreatedAt());
+                session.persist(facility);
+                facilityIds[i] = facility.getId();
+                facilityRates[i] = facility.getBaseHourlyRate();
+            });
+            report.facilities = facilityCount;
+
+            long[] spotIds = new long[spotCount];
+            ParkingSpot.SpotType[] spotTypes = ParkingSpot.SpotType.values();
+            inChunks(pool, sessionFactory, "spots", spotCount, (session, i) -> {
+                SplittableRandom random = generator.random(SyntheticDataGenerator.Table.SPOTS, i);
+                int number = i / facilityCount;
+                ParkingSpot spot = new ParkingSpot();
+                spot.setFacility(session.getReference(ParkingFacility.class, facilityIds[i % facilityCount]));
+                spot.setSpotNumber(String.format("B%d-%03d", number / 100, number % 100 + 1));
+                spot.setFloorLevel(number / 100);
+                spot.setSpotType(spotTypes[random.nextInt(spotTypes.length)]);
+                spot.setStatus(ParkingSpot.SpotStatus.AVAILABLE);
+                spot.setCreatedAt(generator.pastMoment(random, 365));
+                spot.setLastUpdated(spot.getCreatedAt());
+                session.persist(spot);
+                spotIds[i] = spot.getId();
+            });
+            report.spots = spotCount;
+
+            LongAdder payments = new LongAdder();
+            // Historic sessions only: live ones would have to match spot status and the occupancy counters
+            inChunks(pool, sessionFactory, "sessions", sessionCount, (session, i) -> {
+                SyntheticDataGenerator.SessionRow row = generator.session(i, vehicleCount, spotCount);
+                ParkingSession parkingSession = new ParkingSession();
+                parkingSession.setUser(session.getReference(User.class, vehicleOwners[row.vehicle]));
+                parkingSession.setVehicle(session.getReference(Vehicle.class, vehicleIds[row.vehicle]));
+                parkingSession.setSpot(session.getReference(ParkingSpot.class, spotIds[row.spot]));
+                parkingSession.setHourlyRate(facilityRates[row.spot % facilityCount]);
+                parkingSession.setStatus(row.status);
+                parkingSession.setStartedAt(row.startedAt);
+                parkingSession.setPlannedDurationHours(row.plannedHours);
+                parkingSession.setActualDurationMinutes(row.actualMinutes);
+                parkingSession.setEndedAt(row.getEndedAt());
+                parkingSession.setTotalAmount(parkingSession.getHourlyRate().multiply(BigDecimal.valueOf((row.actualMinutes + 59) / 60)));
+                parkingSession.setCreatedAt(row.startedAt);
+                parkingSession.setUpdatedAt(parkingSession.getEndedAt());
+                session.persist(parkingSession);
+
+                if (row.paymentMethod != null) {
+                    Payment payment = new Payment();
+                    payment.setSession(parkingSession);
+                    payment.setAmount(parkingSession.getTotalAmount());
+                    payment.setCurrency("TZS");
+                    payment.setPaymentMethod(row.paymentMethod);
+                    payment.setPaymentProvider("X-PAYMENT-PROVIDER");
+                    payment.setStatus(Payment.PaymentStatus.COMPLETED);
+                    payment.setCompletedAt(parkingSession.getEndedAt().plusMinutes(row.paymentDelayMinutes));
+                    payment.setCreatedAt(parkingSession.getEndedAt());
+                    payment.setUpdatedAt(payment.getCompletedAt());
+                    session.persist(payment);
+                    payments.increment();
+                }
+            });
+            report.sessions = sessionCount;
+            report.payments = payments.sum();
+        } finally {
+            pool.shutdown();
+        }
+
+        report.elapsedMs = System.currentTimeMillis() - begin;
+        System.out.printf("✅ Bulk load finished: %d rows in %.1fs (%.0f rows/s)%n",
+            report.getRows(), report.elapsedMs / 1000.0, report.getRowsPerSecond());
+        return report;
+    }
+
+    private interface RowWriter {
+        void write(Session session, int index);
+    }
+
+    // Writes `count` rows in chunks of chunkSize, one transaction per chunk, up to `parallelism` chunks at a time.
+    // A failed chunk rolls back on its own and fails the load once the chunks already running have finished.
+    // getReference() keeps foreign keys as uninitialized proxies, so rows of earlier tables are never reloaded.
+    private void inChunks(ForkJoinPool pool, SessionFactory sessionFactory, String table, int count, RowWriter writer) {
+        long begin = System.currentTimeMillis();
+        AtomicInteger written = new AtomicInteger();
+        int reportEvery = chunkSize * 20;
+        List<ForkJoinTask<?>> chunks = new ArrayList<>();
+        for (int chunkStart = 0; chunkStart < count; chunkStart += chunkSize) {
+            int start = chunkStart;
+            int end = Math.min(start + chunkSize, count);
+            chunks.add(pool.submit(() -> {
+                writeChunk(sessionFactory, start, end, writer);
+                int done = written.addAndGet(end - start);
+                if (done == count || done / reportEvery != (done - (end - start)) / reportEvery) {
+                    long elapsed = Math.max(1, System.currentTimeMillis() - begin);
+                    System.out.println("   " + table + ": " + done + "/" + count + " (" + (done * 1000L / elapsed) + " rows/s)");
+                }
+            }));
+        }
+        RuntimeException failure = null;
+        for (ForkJoinTask<?> chunk : chunks) {
+            try {
+                chunk.join();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void writeChunk(SessionFactory sessionFactory, int start, int end, RowWriter writer) {
+        try (Session session = sessionFactory.openSession()) {
+            session.setJdbcBatchSize(jdbcBatchSize);
+            Transaction transaction = session.beginTransaction();
+            try {
+                for (int i = start; i < end; i++) {
+                    writer.write(session, i);
+                }
+                transaction.commit();
+            } catch (RuntimeException e) {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+                throw e;
+            }
+        }
+    }
+}
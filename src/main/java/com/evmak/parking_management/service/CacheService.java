@@ -1,18 +1,24 @@
 package com.evmak.parking_management.service;
 
+import com.evmak.parking_management.dto.FacilityView;
+import com.evmak.parking_management.dto.SpotView;
+import com.evmak.parking_management.entity.OutboxEvent;
 import com.evmak.parking_management.entity.ParkingSpot;
-import com.evmak.parking_management.entity.ParkingFacility;
 import com.evmak.parking_management.repository.ParkingSpotRepository;
 import com.evmak.parking_management.repository.ParkingFacilityRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 @Service
@@ -27,14 +33,26 @@ public class CacheService {
     @Autowired
     private ParkingFacilityRepository facilityRepository;
 
-    private static final String AVAILABILITY_KEY_PREFIX = "availability:facility:";
-    private static final String SPOT_STATUS_KEY_PREFIX = "spot:status:";
-    private static final String FACILITY_STATS_KEY_PREFIX = "facility:stats:";
+    @Autowired
+    private SpotOccupancyService occupancyService;
+
+    @Autowired
+    private CacheStatsService cacheStatsService;
+
+    @Autowired
+    private FacilityGeoIndexService geoIndexService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    static final String AVAILABILITY_KEY_PREFIX = "availability:facility:";
+    static final String SPOT_STATUS_KEY_PREFIX = "spot:status:";
+    static final String FACILITY_STATS_KEY_PREFIX = "facility:stats:";
 
     // Real-time availability tracking
     public void updateSpotAvailability(Long facilityId, Long spotId, ParkingSpot.SpotStatus status) {
         String key = SPOT_STATUS_KEY_PREFIX + spotId;
-        redisTemplate.opsForValue().set(key, status.toString(), 30, TimeUnit.SECONDS);
+        cacheStatsService.time("set", () -> redisTemplate.opsForValue().set(key, status.toString(), 30, TimeUnit.SECONDS));
         
         // Update facility availability count
         updateFacilityAvailability(facilityId);
@@ -43,11 +61,77 @@ public class CacheService {
         evictSpotCache(spotId);
     }
 
+    // Spot status changes and facility writes, relayed from the outbox in batches well after their transactions
+    // committed (so nothing can re-cache the old state after this runs). Keys are dropped rather than rewritten: the
+    // relay may deliver a change twice or after a newer one, and every dropped key is recomputed from the source on
+    // its next read.
+    @EventListener
+    public void onDomainEvents(OutboxRelay.DomainEventBatch batch) {
+        Set<Long> changedFacilityIds = batch.facilityIds(OutboxEvent.AggregateType.FACILITY);
+        if (!changedFacilityIds.isEmpty()) {
+            // Any nearby search may include a created, moved or deactivated facility
+            clear("nearbyFacilities");
+            changedFacilityIds.forEach(facilityId -> evict("parkingFacilities", facilityId));
+        }
+
+        Set<Long> facilityIds = batch.facilityIds(OutboxEvent.AggregateType.SPOT);
+        if (facilityIds.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>();
+        for (OutboxRelay.DomainEvent event : batch.events()) {
+            if (event.aggregateType() == OutboxEvent.AggregateType.SPOT) {
+                event.payload().path("spotIds").forEach(spotId -> keys.add(SPOT_STATUS_KEY_PREFIX + spotId.asLong()));
+            }
+        }
+        for (Long facilityId : facilityIds) {
+            keys.add(AVAILABILITY_KEY_PREFIX + facilityId);
+            keys.add(FACILITY_STATS_KEY_PREFIX + facilityId);
+        }
+        try {
+            cacheStatsService.time("delete", () -> { redisTemplate.delete(keys); });
+        } catch (Exception e) {
+            // Log error but don't fail the relay; the keys expire within their 30s TTL
+            System.err.println("Failed to drop spot status cache keys: " + e.getMessage());
+        }
+        // Called on the cache directly: @CacheEvict does not apply to calls from within this class
+        for (Long facilityId : facilityIds) {
+            evict("parkingSpots", facilityId + ":available");
+            evict("parkingFacilities", facilityId);
+        }
+    }
+
+    private void evict(String cacheName, Object key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache == null) {
+            return;
+        }
+        try {
+            cache.evict(key);
+            cacheStatsService.recordEviction(cacheName);
+        } catch (Exception e) {
+            System.err.println("Failed to evict " + cacheName + " entry " + key + ": " + e.getMessage());
+        }
+    }
+
+    private void clear(String cacheName) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache == null) {
+            return;
+        }
+        try {
+            cache.clear();
+            cacheStatsService.recordEviction(cacheName);
+        } catch (Exception e) {
+            System.err.println("Failed to clear " + cacheName + ": " + e.getMessage());
+        }
+    }
+
     public void updateFacilityAvailability(Long facilityId) {
         try {
-            // Get real-time count from database
-            Integer availableCount = spotRepository.countAvailableSpotsByFacilityId(facilityId);
-            Integer totalCount = spotRepository.countSpotsByFacilityId(facilityId);
+            // Get real-time count from the in-memory occupancy index
+            Integer availableCount = occupancyService.countAvailable(facilityId);
+            Integer totalCount = occupancyService.countTotal(facilityId);
             
             // Store in Redis with short TTL for real-time access
             String availabilityKey = AVAILABILITY_KEY_PREFIX + facilityId;
@@ -55,8 +139,10 @@ public class CacheService {
             
             FacilityAvailability availability = new FacilityAvailability(facilityId, availableCount, totalCount, LocalDateTime.now());
             
-            redisTemplate.opsForValue().set(availabilityKey, availability, 30, TimeUnit.SECONDS);
-            redisTemplate.opsForValue().set(statsKey, availability, 30, TimeUnit.SECONDS);
+            cacheStatsService.time("set", () -> {
+                redisTemplate.opsForValue().set(availabilityKey, availability, 30, TimeUnit.SECONDS);
+                redisTemplate.opsForValue().set(statsKey, availability, 30, TimeUnit.SECONDS);
+            });
             
             // Invalidate cached facility data
             evictFacilityCache(facilityId);
@@ -69,78 +155,98 @@ public class CacheService {
 
     public FacilityAvailability getRealTimeAvailability(Long facilityId) {
         String key = AVAILABILITY_KEY_PREFIX + facilityId;
-        FacilityAvailability cached = (FacilityAvailability) redisTemplate.opsForValue().get(key);
+        FacilityAvailability cached = (FacilityAvailability) cacheStatsService.time("get", () -> redisTemplate.opsForValue().get(key));
         
         if (cached != null && cached.isRecent()) {
+            cacheStatsService.recordHit(CacheStatsService.AVAILABILITY);
             return cached;
         }
+        cacheStatsService.recordMiss(CacheStatsService.AVAILABILITY);
         
         // Cache miss or stale data - update and return fresh data
         updateFacilityAvailability(facilityId);
-        return (FacilityAvailability) redisTemplate.opsForValue().get(key);
+        return (FacilityAvailability) cacheStatsService.time("get", () -> redisTemplate.opsForValue().get(key));
     }
 
     public ParkingSpot.SpotStatus getSpotStatus(Long spotId) {
         String key = SPOT_STATUS_KEY_PREFIX + spotId;
-        String status = (String) redisTemplate.opsForValue().get(key);
+        String status = (String) cacheStatsService.time("get", () -> redisTemplate.opsForValue().get(key));
         
         if (status != null) {
+            cacheStatsService.recordHit(CacheStatsService.SPOT_STATUS);
             return ParkingSpot.SpotStatus.valueOf(status);
         }
+        cacheStatsService.recordMiss(CacheStatsService.SPOT_STATUS);
         
         // Cache miss - fetch from database and cache
         ParkingSpot spot = spotRepository.findById(spotId).orElse(null);
         if (spot != null) {
-            redisTemplate.opsForValue().set(key, spot.getStatus().toString(), 30, TimeUnit.SECONDS);
+            cacheStatsService.time("set", () -> redisTemplate.opsForValue().set(key, spot.getStatus().toString(), 30, TimeUnit.SECONDS));
             return spot.getStatus();
         }
         
         return null;
     }
 
-    // Cached database queries
-    @Cacheable(value = "parkingSpots", key = "#facilityId + ':available'")
-    public List<ParkingSpot> getCachedAvailableSpots(Long facilityId) {
-        return spotRepository.findByFacilityIdAndStatus(facilityId, ParkingSpot.SpotStatus.AVAILABLE);
+    // Cached database queries - flat views rather than entities, so entries hold only the columns the API returns.
+    // sync makes a miss load through Cache.get(key, loader), so the fill is not broadcast as an invalidation.
+    @Cacheable(value = "parkingSpots", key = "#facilityId + ':available'", sync = true)
+    public List<SpotView> getCachedAvailableSpots(Long facilityId) {
+        return spotRepository.findSpotViewsByFacilityIdAndStatus(facilityId, ParkingSpot.SpotStatus.AVAILABLE);
+    }
+
+    @Cacheable(value = "parkingFacilities", key = "#facilityId", sync = true)
+    public FacilityView getCachedFacility(Long facilityId) {
+        return facilityRepository.findFacilityViewById(facilityId).orElse(null);
     }
 
-    @Cacheable(value = "parkingFacilities", key = "#facilityId")
-    public ParkingFacility getCachedFacility(Long facilityId) {
-        return facilityRepository.findById(facilityId).orElse(null);
+    // Requests from the same cache cell share one cached candidate list: everything within the radius of the cell's
+    // centre plus the cell's half-diagonal, which covers the radius around any point in the cell. The exact radius
+    // and order are then applied from the requested point.
+    public List<FacilityView> getCachedNearbyFacilities(Double latitude, Double longitude, Integer radiusKm) {
+        double radiusMeters = radiusKm * 1000.0;
+        double cellLatitude = geoIndexService.snapToCacheCell(latitude);
+        double cellLongitude = geoIndexService.snapToCacheCell(longitude);
+        double candidateRadius = radiusMeters + geoIndexService.cacheCellPaddingMeters();
+
+        Cache cache = cacheManager.getCache("nearbyFacilities");
+        List<FacilityView> candidates = cache != null
+            ? cache.get(cellLatitude + ":" + cellLongitude + ":" + radiusKm,
+                () -> nearbyCandidates(cellLatitude, cellLongitude, candidateRadius))
+            : nearbyCandidates(cellLatitude, cellLongitude, candidateRadius);
+        return geoIndexService.filterWithin(candidates, latitude, longitude, radiusMeters);
     }
 
-    @Cacheable(value = "parkingFacilities", key = "'nearby:' + #latitude + ':' + #longitude + ':' + #radiusKm")
-    public List<ParkingFacility> getCachedNearbyFacilities(Double latitude, Double longitude, Integer radiusKm) {
-        return facilityRepository.findNearbyFacilities(
-            BigDecimal.valueOf(latitude), 
-            BigDecimal.valueOf(longitude), 
-            radiusKm * 1000); // Convert km to meters
+    // Copied into an ArrayList: the JSON serializer records the list's class, and the immutable toList()
+    // implementation cannot be instantiated when the entry is read back
+    private List<FacilityView> nearbyCandidates(double latitude, double longitude, double radiusMeters) {
+        return new ArrayList<>(geoIndexService.findNearbyFacilities(latitude, longitude, radiusMeters));
     }
 
     // Cache invalidation methods
     @CacheEvict(value = "parkingSpots", allEntries = true)
     public void evictAllSpotsCache() {
-        // Evict all parking spots cache
+        cacheStatsService.recordEviction("parkingSpots"); // Evict all parking spots cache
     }
 
     @CacheEvict(value = "parkingSpots", key = "#facilityId + ':available'")
     public void evictFacilitySpotsCache(Long facilityId) {
-        // Evict specific facility spots cache
+        cacheStatsService.recordEviction("parkingSpots"); // Evict specific facility spots cache
     }
 
     @CacheEvict(value = "parkingSpots", key = "#spotId")
     public void evictSpotCache(Long spotId) {
-        // Evict specific spot cache
+        cacheStatsService.recordEviction("parkingSpots"); // Evict specific spot cache
     }
 
     @CacheEvict(value = "parkingFacilities", key = "#facilityId")
     public void evictFacilityCache(Long facilityId) {
-        // Evict specific facility cache
+        cacheStatsService.recordEviction("parkingFacilities"); // Evict specific facility cache
     }
 
     @CacheEvict(value = "parkingFacilities", allEntries = true)
     public void evictAllFacilitiesCache() {
-        // Evict all facilities cache
+        cacheStatsService.recordEviction("parkingFacilities"); // Evict all facilities cache
     }
 
     // Batch cache warming for high-traffic facilities
@@ -156,17 +262,9 @@ public class CacheService {
         }
     }
 
-    // Performance monitoring
+    // Performance monitoring - served from maintained counters, never touches Redis
     public CacheStats getCacheStats() {
-        try {
-            Long availabilityKeys = Long.valueOf(redisTemplate.keys(AVAILABILITY_KEY_PREFIX + "*").size());
-            Long spotStatusKeys = Long.valueOf(redisTemplate.keys(SPOT_STATUS_KEY_PREFIX + "*").size());
-            Long facilityStatsKeys = Long.valueOf(redisTemplate.keys(FACILITY_STATS_KEY_PREFIX + "*").size());
-            
-            return new CacheStats(availabilityKeys, spotStatusKeys, facilityStatsKeys);
-        } catch (Exception e) {
-            return new CacheStats(0L, 0L, 0L);
-        }
+        return cacheStatsService.snapshot();
     }
 
     // Data classes
@@ -196,12 +294,28 @@ public class CacheService {
         public final Long spotStatusKeysCount;
         public final Long facilityStatsKeysCount;
         public final Long totalKeysCount;
+        public final LocalDateTime keyCountsSampledAt; // Key counts come from a background SCAN sample
+        public final Long hits;
+        public final Long misses;
+        public final Double hitRatio;
+        public final Long evictions;
+        public final Double redisGetP50Ms;
+        public final Double redisGetP99Ms;
 
-        public CacheStats(Long availabilityKeys, Long spotStatusKeys, Long facilityStatsKeys) {
+        public CacheStats(Long availabilityKeys, Long spotStatusKeys, Long facilityStatsKeys,
+                          LocalDateTime keyCountsSampledAt, long hits, long misses, long evictions,
+                          double redisGetP50Ms, double redisGetP99Ms) {
             this.availabilityKeysCount = availabilityKeys;
             this.spotStatusKeysCount = spotStatusKeys;
             this.facilityStatsKeysCount = facilityStatsKeys;
             this.totalKeysCount = availabilityKeys + spotStatusKeys + facilityStatsKeys;
+            this.keyCountsSampledAt = keyCountsSampledAt;
+            this.hits = hits;
+            this.misses = misses;
+            this.hitRatio = hits + misses > 0 ? (double) hits / (hits + misses) : 0.0;
+            this.evictions = evictions;
+            this.redisGetP50Ms = redisGetP50Ms;
+            this.redisGetP99Ms = redisGetP99Ms;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,167 @@
+package com.evmak.parking_management.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Cache statistics maintained incrementally: hit/miss and eviction counters and Redis latency timers are
+// updated on every call, key counts come from a background SCAN sampler. Nothing here ever issues KEYS.
+@Service
+public class CacheStatsService {
+
+    static final String AVAILABILITY = "availability";
+    static final String SPOT_STATUS = "spotStatus";
+    static final String FACILITY_STATS = "facilityStats";
+
+    // Keyspace name -> Redis key prefix sampled by the background scan
+    static final Map<String, String> KEYSPACE_PREFIXES = Map.of(
+        AVAILABILITY, CacheService.AVAILABILITY_KEY_PREFIX,
+        SPOT_STATUS, CacheService.SPOT_STATUS_KEY_PREFIX,
+        FACILITY_STATS, CacheService.FACILITY_STATS_KEY_PREFIX
+    );
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Keys requested per SCAN round trip; keeps each call short so Redis is never blocked
+    @Value("${app.cache.stats.scan-count:500}")
+    private int scanCount = 500;
+
+    private final Map<String, AtomicLong> sampledKeyCounts = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private volatile LocalDateTime keyCountsSampledAt;
+
+    @PostConstruct
+    public void registerGauges() {
+        for (String keyspace : KEYSPACE_PREFIXES.keySet()) {
+            AtomicLong count = sampledKeyCounts.computeIfAbsent(keyspace, k -> new AtomicLong());
+            Gauge.builder("cache.redis.keys", count, AtomicLong::get)
+                .tag("keyspace", keyspace)
+                .description("Key count from the last background SCAN sample")
+                .register(meterRegistry);
+        }
+    }
+
+    public void recordHit(String keyspace) {
+        counter("cache.redis.gets", keyspace, "hit").increment();
+    }
+
+    public void recordMiss(String keyspace) {
+        counter("cache.redis.gets", keyspace, "miss").increment();
+    }
+
+    public void recordEviction(String cacheName) {
+        counter("cache.evictions", cacheName, null).increment();
+    }
+
+    // Times a Redis round trip; returns whatever the call returns
+    public <T> T time(String operation, Supplier<T> call) {
+        return timer(operation).record(call);
+    }
+
+    public void time(String operation, Runnable call) {
+        timer(operation).record(call);
+    }
+
+    // Incremental SCAN per prefix; runs off the request path so stats reads are O(1)
+    @Scheduled(initialDelayString = "${app.cache.stats.sample-interval-ms:60000}",
+               fixedDelayString = "${app.cache.stats.sample-interval-ms:60000}")
+    public void sampleKeyCounts() {
+        try {
+            for (Map.Entry<String, String> entry : KEYSPACE_PREFIXES.entrySet()) {
+                long count = 0;
+                ScanOptions options = ScanOptions.scanOptions().match(entry.getValue() + "*").count(scanCount).build();
+                try (Cursor<String> cursor = redisTemplate.scan(options)) {
+                    while (cursor.hasNext()) {
+                        cursor.next();
+                        count++;
+                    }
+                }
+                sampledKeyCounts.computeIfAbsent(entry.getKey(), k -> new AtomicLong()).set(count);
+            }
+            keyCountsSampledAt = LocalDateTime.now();
+        } catch (Exception e) {
+            // Keep the previous sample
+            System.err.println("Failed to sample cache key counts: " + e.getMessage());
+        }
+    }
+
+    public CacheService.CacheStats snapshot() {
+        long hits = 0;
+        long misses = 0;
+        long evictions = 0;
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            long count = (long) entry.getValue().count();
+            if (entry.getKey().startsWith("cache.evictions")) {
+                evictions += count;
+            } else if (entry.getKey().endsWith("|hit")) {
+                hits += count;
+            } else {
+                misses += count;
+            }
+        }
+
+        Timer getTimer = timers.get("get");
+        return new CacheService.CacheStats(
+            sampledKey(AVAILABILITY), sampledKey(SPOT_STATUS), sampledKey(FACILITY_STATS),
+            keyCountsSampledAt, hits, misses, evictions,
+            percentileMs(getTimer, 0.5), percentileMs(getTimer, 0.99));
+    }
+
+    private long sampledKey(String keyspace) {
+        AtomicLong count = sampledKeyCounts.get(keyspace);
+        return count != null ? count.get() : 0L;
+    }
+
+    private Counter counter(String name, String keyspace, String result) {
+        String id = name + "|" + keyspace + (result != null ? "|" + result : "");
+        return counters.computeIfAbsent(id, k -> {
+            Counter.Builder builder = Counter.builder(name).tag(name.equals("cache.evictions") ? "cache" : "keyspace", keyspace);
+            if (result != null) {
+                builder.tag("result", result);
+            }
+            return builder.register(meterRegistry);
+        });
+    }
+
+    private Timer timer(String operation) {
+        return timers.computeIfAbsent(operation, op -> Timer.builder("cache.redis.latency")
+            .tag("operation", op)
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .publishPercentileHistogram()
+            .register(meterRegistry));
+    }
+
+    private static double percentileMs(Timer timer, double percentile) {
+        if (timer == null) {
+            return 0.0;
+        }
+        for (ValueAtPercentile value : timer.takeSnapshot().percentileValues()) {
+            if (value.percentile() == percentile) {
+                return value.value(TimeUnit.MILLISECONDS);
+            }
+        }
+        return 0.0;
+    }
+}
@@ -0,0 +1,88 @@
+package com.evmak.parking_management.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Statement;
+import java.util.List;
+
+// Empties every application table with TRUNCATE instead of repository deleteAll(), which loads each entity and
+// deletes it row by row through its cascades. Id sequences are left alone: instances may still hold allocated
+// blocks, and restarting them would hand out ids twice.
+@Service
+public class DataResetService {
+
+    // Children before parents, so the order is valid even where foreign key checks cannot be switched off
+    static final List<String> TABLES = List.of(
+        "outbox_events", "facility_spot_counters", "pricing_rule_days", "violations", "payments", "reservations",
+        "parking_sessions", "pricing_rules", "parking_spots", "vehicles", "parking_facilities", "users");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private SpotOccupancyService occupancyService;
+
+    @Autowired
+    private FacilityGeoIndexService geoIndexService;
+
+    @Autowired
+    private PricingEngine pricingEngine;
+
+    // Truncates all tables, then drops everything cached from them and rebuilds the in-memory indexes (now empty)
+    public long resetAll() {
+        long begin = System.currentTimeMillis();
+        truncateAll();
+        evictCaches();
+        occupancyService.rebuildAll();
+        geoIndexService.rebuildAll();
+        pricingEngine.refresh();
+        return System.currentTimeMillis() - begin;
+    }
+
+    // TRUNCATE commits any open transaction on MySQL and H2, so callers must not have unflushed work pending.
+    // Everything runs on one connection because the foreign key switch is per session; it is always switched
+    // back on before the connection returns to the pool.
+    public void truncateAll() {
+        System.out.println("🧹 Truncating " + TABLES.size() + " tables...");
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            boolean h2 = connection.getMetaData().getDatabaseProductName().toLowerCase().contains("h2");
+            String checksOff = h2 ? "SET REFERENTIAL_INTEGRITY FALSE" : "SET FOREIGN_KEY_CHECKS = 0";
+            String checksOn = h2 ? "SET REFERENTIAL_INTEGRITY TRUE" : "SET FOREIGN_KEY_CHECKS = 1";
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(checksOff);
+                try {
+                    for (String table : TABLES) {
+                        statement.execute("TRUNCATE TABLE " + table);
+                    }
+                } finally {
+                    statement.execute(checksOn);
+                }
+            }
+            return null;
+        });
+    }
+
+    // Runs after the truncate, so anything cached in between already reflects the empty tables. Clearing a
+    // two-tier cache also tells the other nodes to drop their local copies.
+    public void evictCaches() {
+        for (String name : cacheManager.getCacheNames()) {
+            Cache cache = cacheManager.getCache(name);
+            if (cache == null) {
+                continue;
+            }
+            try {
+                cache.clear();
+            } catch (Exception e) {
+                System.err.println("Failed to clear cache " + name + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.evmak.parking_management.service;
 import com.evmak.parking_management.entity.*;
 import com.evmak.parking_management.repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -39,6 +40,13 @@ public class DataSeedingService {
     @Autowired
     private PricingRuleRepository pricingRuleRepository;
 
+    @Autowired
+    private DataResetService dataResetService;
+
+    // Seeds every generator of the large dataset, so two runs produce the same data (timestamps stay relative to now)
+    @Value("${app.seed.random-seed:42}")
+    private long randomSeed = 42;
+
     @Transactional
     public void seedData() {
         seedDatabase();
@@ -63,15 +71,11 @@ public class DataSeedingService {
         printDataStatistics();
     }
     
+    // Runs first in the seeding transaction, before anything is pending that the TRUNCATE's implicit commit could flush
     private void clearExistingData() {
         System.out.println("🧹 Clearing existing data...");
-        paymentRepository.deleteAll();
-        sessionRepository.deleteAll();
-        spotRepository.deleteAll();
-        vehicleRepository.deleteAll();
-        facilityRepository.deleteAll();
-        userRepository.deleteAll();
-        pricingRuleRepository.deleteAll();
+        dataResetService.truncateAll();
+        dataResetService.evictCaches();
     }
 
     private void seedDatabase() {
@@ -275,7 +279,7 @@ public class DataSeedingService {
     private List<User> createLargeUserBase(int userCount) {
         System.out.println("👥 Creating " + userCount + " users...");
         List<User> users = new ArrayList<>();
-        Random random = new Random();
+        Random random = random("users");
         
         String[] firstNames = {"John", "Jane", "Michael", "Sarah", "David", "Emily", "Robert", "Jessica", "William", "Ashley",
                               "James", "Amanda", "Christopher", "Stephanie", "Daniel", "Melissa", "Matthew", "Nicole", "Anthony", "Elizabeth",
@@ -343,7 +347,7 @@ public class DataSeedingService {
     private List<Vehicle> createLargeVehicleBase(List<User> users, int vehicleCount) {
         System.out.println("🚗 Creating " + vehicleCount + " vehicles...");
         List<Vehicle> vehicles = new ArrayList<>();
-        Random random = new Random();
+        Random random = random("vehicles");
         
         String[] makes = {"Toyota", "Honda", "Nissan", "Ford", "BMW", "Mercedes", "Audi", "Volkswagen", "Hyundai", "Kia",
                          "Mazda", "Subaru", "Mitsubishi", "Isuzu", "Suzuki", "Daihatsu", "Peugeot", "Renault", "Volvo", "Land Rover"};
@@ -387,7 +391,7 @@ public class DataSeedingService {
     private List<ParkingFacility> createLargeFacilityBase(int facilityCount) {
         System.out.println("🏢 Creating " + facilityCount + " parking facilities...");
         List<ParkingFacility> facilities = new ArrayList<>();
-        Random random = new Random();
+        Random random = random("facilities");
         
         String[] facilityNames = {
             "Central Business District Garage", "Kivukoni Front Parking", "Uhuru Street Complex", "Samora Avenue Garage",
@@ -464,7 +468,7 @@ public class DataSeedingService {
     private List<ParkingSpot> createLargeParkingSpotBase(List<ParkingFacility> facilities, int minTotalSpots) {
         System.out.println("🅿️ Creating " + minTotalSpots + "+ parking spots across " + facilities.size() + " facilities...");
         List<ParkingSpot> allSpots = new ArrayList<>();
-        Random random = new Random();
+        Random random = random("spots");
         
         int totalSpotsCreated = 0;
         
@@ -543,7 +547,7 @@ public class DataSeedingService {
     
     private List<ParkingFacility> createMegaFacilities(int additionalSpotsNeeded) {
         List<ParkingFacility> megaFacilities = new ArrayList<>();
-        Random random = new Random();
+        Random random = random("mega-facilities");
         
         String[] megaNames = {
             "Dar es Salaam International Convention Centre", "Mlimani City Mega Complex", 
@@ -580,7 +584,7 @@ public class DataSeedingService {
     
     private List<ParkingSpot> createSpotsForMegaFacility(ParkingFacility facility) {
         List<ParkingSpot> spots = new ArrayList<>();
-        Random random = new Random();
+        Random random = random("mega-spots:" + facility.getName());
         
         for (int i = 1; i <= facility.getTotalSpots(); i++) {
             ParkingSpot spot = new ParkingSpot();
@@ -616,7 +620,7 @@ public class DataSeedingService {
     private void createLargeParkingSessionBase(List<User> users, List<Vehicle> vehicles, List<ParkingSpot> spots, int sessionCount) {
         System.out.println("📋 Creating " + sessionCount + " parking sessions...");
         
-        Random random = new Random();
+        Random random = random("sessions");
         List<ParkingSession> sessions = new ArrayList<>();
         List<Payment> payments = new ArrayList<>();
         
@@ -724,7 +728,7 @@ public class DataSeedingService {
                             payment.setUpdatedAt(payment.getCreatedAt());
                             
                             batchPayments.add(payment);
-                            payment.setSession(session); // Will be set after session is saved
+                            payment.setSession(session);
                         }
                     } else if (status == ParkingSession.SessionStatus.ACTIVE) {
                         // Active sessions - no end time yet
@@ -743,13 +747,9 @@ public class DataSeedingService {
                 }
             }
             
-            // Save batch
-            List<ParkingSession> savedSessions = sessionRepository.saveAll(batchSessions);
-            
-            // Update payment sessions and save payments
-            for (int j = 0; j < batchPayments.size() && j < savedSessions.size(); j++) {
-                batchPayments.get(j).setSession(savedSessions.get(j));
-            }
+            // Save batch; pooled ids let Hibernate send these as JDBC batches. Payments already point at their
+            // (now persistent) sessions.
+            sessionRepository.saveAll(batchSessions);
             
             if (!batchPayments.isEmpty()) {
                 paymentRepository.saveAll(batchPayments);
@@ -761,6 +761,11 @@ public class DataSeedingService {
         System.out.println("✅ Created " + sessionCount + " parking sessions with payments");
     }
     
+    // One stream per step, so adding draws to one step leaves the others' data unchanged
+    private Random random(String step) {
+        return new Random(randomSeed * 31 + step.hashCode());
+    }
+    
     private void printDataStatistics() {
         System.out.println("\n📊 DATABASE STATISTICS:");
         System.out.println("═══════════════════════");
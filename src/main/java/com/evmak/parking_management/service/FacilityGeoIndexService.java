@@ -0,0 +1,302 @@
+package com.evmak.parking_management.service;
+
+import com.evmak.parking_management.dto.FacilityView;
+import com.evmak.parking_management.entity.ParkingFacility;
+import com.evmak.parking_management.repository.ParkingFacilityRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// In-memory grid over active facility locations. A nearby search only visits the cells overlapping the
+// query's bounding box and computes exact great-circle distances for the facilities found there.
+// Facility writes on this instance are applied once they commit; the grid is also rebuilt from the database
+// periodically, which is how writes made on other instances reach it.
+@Service
+public class FacilityGeoIndexService {
+
+    // Same mean radius MySQL's ST_Distance_Sphere uses, so distances match the old queries
+    static final double EARTH_RADIUS_METERS = 6_370_986.0;
+
+    @Autowired
+    private ParkingFacilityRepository facilityRepository;
+
+    // Grid cell edge in degrees (0.01 deg is about 1.1 km north-south)
+    @Value("${app.geo.cell-degrees:0.01}")
+    private double cellDegrees = 0.01;
+
+    // Cached nearby searches are keyed by the query point snapped to this grid (0.001 deg is about 110 m)
+    @Value("${app.geo.cache-cell-degrees:0.001}")
+    private double cacheCellDegrees = 0.001;
+
+    private volatile GeoGrid grid;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${app.geo.rebuild-interval-ms:60000}", fixedDelayString = "${app.geo.rebuild-interval-ms:60000}")
+    public void rebuildAll() {
+        try {
+            GeoGrid rebuilt = new GeoGrid(cellDegrees);
+            for (Object[] row : facilityRepository.findActiveFacilityLocations()) {
+                rebuilt.put((Long) row[0], ((BigDecimal) row[1]).doubleValue(), ((BigDecimal) row[2]).doubleValue());
+            }
+            grid = rebuilt;
+            System.out.println("Facility geo index rebuilt for " + rebuilt.size() + " facilities");
+        } catch (Exception e) {
+            // Loaded lazily on first search if the startup rebuild fails
+            grid = null;
+            System.err.println("Failed to rebuild facility geo index: " + e.getMessage());
+        }
+    }
+
+    // Keep the index in step with a created, moved, activated or deactivated facility. Inside a transaction the
+    // change is applied after commit, so a rolled-back write never shows up in searches.
+    public void updateFacility(ParkingFacility facility) {
+        Long facilityId = facility.getId();
+        boolean listed = Boolean.TRUE.equals(facility.getIsActive())
+            && facility.getLocationLat() != null && facility.getLocationLng() != null;
+        double lat = listed ? facility.getLocationLat().doubleValue() : 0;
+        double lng = listed ? facility.getLocationLng().doubleValue() : 0;
+        afterCommit(() -> {
+            GeoGrid current = grid;
+            if (current == null) {
+                return; // Picked up by the lazy rebuild
+            }
+            if (listed) {
+                current.put(facilityId, lat, lng);
+            } else {
+                current.remove(facilityId);
+            }
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    // Facility ids within radiusMeters, nearest first
+    public List<Neighbor> findNearby(double latitude, double longitude, double radiusMeters) {
+        return grid().search(latitude, longitude, radiusMeters);
+    }
+
+    // Nearby active facilities, nearest first, loaded in one query
+    public List<FacilityView> findNearbyFacilities(double latitude, double longitude, double radiusMeters) {
+        Map<Long, Double> distances = distances(findNearby(latitude, longitude, radiusMeters));
+        return load(distances).stream()
+            .filter(facility -> Boolean.TRUE.equals(facility.isActive()))
+            .sorted(Comparator.comparingDouble(facility -> distances.get(facility.id())))
+            .toList();
+    }
+
+    // Nearby facilities with free spots: most available first, then nearest - same ordering as the old native query
+    public List<FacilityView> findAvailableNearbyFacilities(double latitude, double longitude, double radiusMeters, int maxResults) {
+        Map<Long, Double> distances = distances(findNearby(latitude, longitude, radiusMeters));
+        return load(distances).stream()
+            .filter(facility -> facility.availableSpots() > 0 && Boolean.TRUE.equals(facility.isActive()))
+            .sorted(Comparator.comparingInt(FacilityView::availableSpots).reversed()
+                .thenComparingDouble(facility -> distances.get(facility.id())))
+            .limit(maxResults)
+            .toList();
+    }
+
+    // Snap a coordinate to the cache grid so nearby requests from the same block share a cache entry
+    public double snapToCacheCell(double degrees) {
+        return (Math.floor(degrees / cacheCellDegrees) + 0.5) * cacheCellDegrees;
+    }
+
+    // Distance from a cache cell's centre to its corner at the equator, where cells are widest. A search around the
+    // centre widened by this much finds everything within the radius of any point in the cell.
+    public double cacheCellPaddingMeters() {
+        return haversineMeters(0, 0, cacheCellDegrees / 2, cacheCellDegrees / 2);
+    }
+
+    // The facilities within radiusMeters of the point, nearest first
+    public List<FacilityView> filterWithin(List<FacilityView> facilities, double latitude, double longitude, double radiusMeters) {
+        Map<Long, Double> distances = new HashMap<>(facilities.size() * 2);
+        for (FacilityView facility : facilities) {
+            if (facility.locationLat() != null && facility.locationLng() != null) {
+                double distance = haversineMeters(latitude, longitude,
+                    facility.locationLat().doubleValue(), facility.locationLng().doubleValue());
+                if (distance <= radiusMeters) {
+                    distances.put(facility.id(), distance);
+                }
+            }
+        }
+        return facilities.stream()
+            .filter(facility -> distances.containsKey(facility.id()))
+            .sorted(Comparator.comparingDouble(facility -> distances.get(facility.id())))
+            .toList();
+    }
+
+    public int size() {
+        return grid().size();
+    }
+
+    private static Map<Long, Double> distances(List<Neighbor> neighbors) {
+        Map<Long, Double> distances = new HashMap<>(neighbors.size() * 2);
+        neighbors.forEach(neighbor -> distances.put(neighbor.facilityId, neighbor.distanceMeters));
+        return distances;
+    }
+
+    private List<FacilityView> load(Map<Long, Double> distances) {
+        return distances.isEmpty() ? List.of() : facilityRepository.findFacilityViewsByIdIn(distances.keySet());
+    }
+
+    private GeoGrid grid() {
+        GeoGrid current = grid;
+        if (current == null) {
+            synchronized (this) {
+                if (grid == null) {
+                    rebuildAll();
+                }
+                current = grid != null ? grid : new GeoGrid(cellDegrees);
+            }
+        }
+        return current;
+    }
+
+    static double haversineMeters(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+            + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    // Uniform lat/lng grid; each cell holds a small copy-on-write array so searches never lock
+    static class GeoGrid {
+        private final double cellDegrees;
+        private final int lngCells;
+        private final Map<Long, Entry[]> cells = new ConcurrentHashMap<>();
+        private final Map<Long, Entry> byFacility = new ConcurrentHashMap<>();
+
+        GeoGrid(double cellDegrees) {
+            this.cellDegrees = cellDegrees;
+            this.lngCells = (int) Math.ceil(360.0 / cellDegrees);
+        }
+
+        int size() {
+            return byFacility.size();
+        }
+
+        synchronized void put(long facilityId, double lat, double lng) {
+            remove(facilityId);
+            Entry entry = new Entry(facilityId, lat, lng);
+            byFacility.put(facilityId, entry);
+            cells.merge(cellKey(latCell(lat), lngCell(lng)), new Entry[]{entry}, (existing, added) -> {
+                Entry[] merged = Arrays.copyOf(existing, existing.length + 1);
+                merged[existing.length] = added[0];
+                return merged;
+            });
+        }
+
+        synchronized void remove(long facilityId) {
+            Entry entry = byFacility.remove(facilityId);
+            if (entry == null) {
+                return;
+            }
+            cells.computeIfPresent(cellKey(latCell(entry.lat), lngCell(entry.lng)), (key, existing) -> {
+                Entry[] remaining = Arrays.stream(existing).filter(e -> e.facilityId != facilityId).toArray(Entry[]::new);
+                return remaining.length == 0 ? null : remaining;
+            });
+        }
+
+        List<Neighbor> search(double lat, double lng, double radiusMeters) {
+            // Bounding box of the search circle in degrees
+            double dLat = Math.toDegrees(radiusMeters / EARTH_RADIUS_METERS);
+            double cosLat = Math.cos(Math.toRadians(lat));
+            double minLat = Math.max(-90.0, lat - dLat);
+            double maxLat = Math.min(90.0, lat + dLat);
+            // Near the poles the box covers every longitude
+            boolean allLongitudes = maxLat >= 90.0 || minLat <= -90.0 || cosLat < 1e-9
+                || dLat / cosLat >= 180.0;
+            double dLng = allLongitudes ? 180.0 : dLat / cosLat;
+
+            int fromLatCell = latCell(minLat);
+            int toLatCell = latCell(maxLat);
+            int fromLngCell = allLongitudes ? 0 : (int) Math.floor((lng - dLng + 180.0) / cellDegrees);
+            int toLngCell = allLongitudes ? lngCells - 1 : (int) Math.floor((lng + dLng + 180.0) / cellDegrees);
+            if (toLngCell - fromLngCell >= lngCells) {
+                fromLngCell = 0;
+                toLngCell = lngCells - 1;
+            }
+
+            List<Neighbor> result = new ArrayList<>();
+            for (int latCell = fromLatCell; latCell <= toLatCell; latCell++) {
+                for (int lngCell = fromLngCell; lngCell <= toLngCell; lngCell++) {
+                    // floorMod wraps cells across the antimeridian
+                    Entry[] entries = cells.get(cellKey(latCell, Math.floorMod(lngCell, lngCells)));
+                    if (entries == null) {
+                        continue;
+                    }
+                    for (Entry entry : entries) {
+                        if (entry.lat < minLat || entry.lat > maxLat) {
+                            continue; // Cheap prefilter before the exact distance
+                        }
+                        double distance = haversineMeters(lat, lng, entry.lat, entry.lng);
+                        if (distance <= radiusMeters) {
+                            result.add(new Neighbor(entry.facilityId, distance));
+                        }
+                    }
+                }
+            }
+            result.sort(Comparator.comparingDouble(neighbor -> neighbor.distanceMeters));
+            return result;
+        }
+
+        private int latCell(double lat) {
+            return (int) Math.floor((lat + 90.0) / cellDegrees);
+        }
+
+        private int lngCell(double lng) {
+            return Math.floorMod((int) Math.floor((lng + 180.0) / cellDegrees), lngCells);
+        }
+
+        private static long cellKey(int latCell, int lngCell) {
+            return ((long) latCell << 32) | (lngCell & 0xFFFFFFFFL);
+        }
+    }
+
+    private static final class Entry {
+        final long facilityId;
+        final double lat;
+        final double lng;
+
+        Entry(long facilityId, double lat, double lng) {
+            this.facilityId = facilityId;
+            this.lat = lat;
+            this.lng = lng;
+        }
+    }
+
+    public static class Neighbor {
+        public final Long facilityId;
+        public final double distanceMeters;
+
+        public Neighbor(Long facilityId, double distanceMeters) {
+            this.facilityId = facilityId;
+            this.distanceMeters = distanceMeters;
+        }
+    }
+}
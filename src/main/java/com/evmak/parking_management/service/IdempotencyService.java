@@ -0,0 +1,266 @@
+package com.evmak.parking_management.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Replays the first response for a repeated Idempotency-Key instead of running the request again, so client
+// retries never create a second payment or reservation attempt. Keys live in Redis with a TTL; while Redis is
+// unreachable a size-bounded in-process cache takes over.
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    static final String KEY_PREFIX = "idempotency:";
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // How long a completed response is replayed for
+    @Value("${app.idempotency.ttl-ms:86400000}")
+    private long ttlMs = 86_400_000;
+
+    // How long a claim survives without a response, e.g. when the node handling it dies
+    @Value("${app.idempotency.in-progress-ttl-ms:60000}")
+    private long inProgressTtlMs = 60_000;
+
+    @Value("${app.idempotency.local.max-size:10000}")
+    private long localMaxSize = 10_000;
+
+    // After a Redis failure the local cache is used on its own for this long
+    @Value("${app.idempotency.redis-retry-ms:5000}")
+    private long redisRetryMs = 5_000;
+
+    // Keys the request fingerprints stored alongside each response
+    @Value("${app.idempotency.fingerprint-secret:${app.jwt.secret}}")
+    private String fingerprintSecret;
+
+    private Cache<String, StoredResponse> local;
+    private volatile long redisRetryAt;
+
+    public static class StoredResponse {
+        public String fingerprint;
+        public boolean completed;
+        public int status;
+        public String body;
+
+        public StoredResponse() {}
+
+        StoredResponse(String fingerprint, boolean completed, int status, String body) {
+            this.fingerprint = fingerprint;
+            this.completed = completed;
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        local = Caffeine.newBuilder()
+            .maximumSize(localMaxSize)
+            .expireAfterWrite(Duration.ofMillis(ttlMs))
+            .build();
+    }
+
+    public ResponseEntity<?> execute(String scope, String idempotencyKey, Object request,
+                                     Supplier<? extends ResponseEntity<?>> handler) {
+        return executeAsync(scope, idempotencyKey, request, () -> CompletableFuture.completedFuture(handler.get())).join();
+    }
+
+    // Runs the handler once per (caller, scope, key). A duplicate gets the stored response, or 409 while the
+    // first request is still running; reusing a key for a different request body is a 422.
+    public CompletableFuture<ResponseEntity<?>> executeAsync(String scope, String idempotencyKey, Object request,
+                                                             Supplier<? extends CompletableFuture<? extends ResponseEntity<?>>> handler) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return run(handler);
+        }
+        if (idempotencyKey.length() > 255) {
+            return CompletableFuture.completedFuture(rejection(400, "Idempotency-Key must be at most 255 characters", "INVALID_IDEMPOTENCY_KEY"));
+        }
+
+        String key = KEY_PREFIX + scope + ":" + caller() + ":" + idempotencyKey;
+        String fingerprint;
+        try {
+            fingerprint = fingerprint(key, request);
+        } catch (Exception e) {
+            return run(handler); // Cannot tell duplicates apart; behave as if no key was sent
+        }
+
+        StoredResponse existing = claim(key, fingerprint);
+        if (existing != null) {
+            if (!fingerprint.equals(existing.fingerprint)) {
+                count("mismatch");
+                return CompletableFuture.completedFuture(rejection(422,
+                    "Idempotency-Key was already used for a different request", "IDEMPOTENCY_KEY_REUSED"));
+            }
+            if (!existing.completed) {
+                count("in_progress");
+                return CompletableFuture.completedFuture(rejection(409,
+                    "A request with this Idempotency-Key is still being processed", "IDEMPOTENCY_KEY_IN_PROGRESS"));
+            }
+            count("replayed");
+            return CompletableFuture.completedFuture(replay(existing));
+        }
+
+        count("executed");
+        CompletableFuture<ResponseEntity<?>> result;
+        try {
+            result = run(handler);
+        } catch (RuntimeException e) {
+            release(key);
+            throw e;
+        }
+        return result.whenComplete((response, error) -> {
+            // Only a 503 (busy gateway or open circuit) guarantees nothing was sent; let that retry run for real.
+            // A 502 may follow a charge the provider took, so it is stored and replayed with the same payment.
+            if (error != null || response == null || response.getStatusCode().value() == 503) {
+                release(key);
+                return;
+            }
+            try {
+                String body = response.getBody() != null ? objectMapper.writeValueAsString(response.getBody()) : null;
+                store(key, new StoredResponse(fingerprint, true, response.getStatusCode().value(), body));
+            } catch (Exception e) {
+                System.err.println("Failed to store idempotent response: " + e.getMessage());
+                release(key);
+            }
+        });
+    }
+
+    private static CompletableFuture<ResponseEntity<?>> run(
+            Supplier<? extends CompletableFuture<? extends ResponseEntity<?>>> handler) {
+        return handler.get().thenApply(response -> response);
+    }
+
+    // Atomically registers an in-progress claim; returns the existing entry if the key was already taken
+    private StoredResponse claim(String key, String fingerprint) {
+        StoredResponse claim = new StoredResponse(fingerprint, false, 0, null);
+        if (redisAvailable()) {
+            try {
+                // A second attempt covers an entry that expired between SETNX and GET
+                for (int attempt = 0; attempt < 2; attempt++) {
+                    Boolean claimed = redisTemplate.opsForValue().setIfAbsent(key, claim, inProgressTtlMs, TimeUnit.MILLISECONDS);
+                    if (Boolean.TRUE.equals(claimed)) {
+                        return null;
+                    }
+                    if (redisTemplate.opsForValue().get(key) instanceof StoredResponse existing) {
+                        return existing;
+                    }
+                }
+            } catch (Exception e) {
+                redisFailed(e);
+            }
+        }
+        return local.asMap().putIfAbsent(key, claim);
+    }
+
+    private void store(String key, StoredResponse response) {
+        // A claim taken locally during a Redis outage must not stay in progress once Redis is back
+        local.asMap().computeIfPresent(key, (k, claim) -> response);
+        if (redisAvailable()) {
+            try {
+                redisTemplate.opsForValue().set(key, response, ttlMs, TimeUnit.MILLISECONDS);
+                return;
+            } catch (Exception e) {
+                redisFailed(e);
+            }
+        }
+        local.put(key, response);
+    }
+
+    private void release(String key) {
+        local.invalidate(key);
+        if (redisAvailable()) {
+            try {
+                redisTemplate.delete(key);
+            } catch (Exception e) {
+                redisFailed(e);
+            }
+        }
+    }
+
+    private boolean redisAvailable() {
+        return System.currentTimeMillis() >= redisRetryAt;
+    }
+
+    private void redisFailed(Exception e) {
+        redisRetryAt = System.currentTimeMillis() + redisRetryMs;
+        System.err.println("Idempotency store falling back to local cache: " + e.getMessage());
+    }
+
+    private ResponseEntity<?> replay(StoredResponse stored) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(stored.status).header(REPLAYED_HEADER, "true");
+        if (stored.body == null) {
+            return builder.build();
+        }
+        return builder.contentType(MediaType.APPLICATION_JSON).body(stored.body);
+    }
+
+    private ResponseEntity<?> rejection(int status, String message, String errorCode) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(status);
+        if (status == 409) {
+            builder.header(HttpHeaders.RETRY_AFTER, "1");
+        }
+        return builder.body(Map.of("success", false, "message", message, "errorCode", errorCode));
+    }
+
+    // Keyed HMAC over the request with card data reduced to the last four digits, so what sits in Redis for the
+    // TTL reveals nothing about the card (CVV and expiry may not be kept in any form, hashed included)
+    private String fingerprint(String key, Object request) throws Exception {
+        JsonNode body = objectMapper.valueToTree(request);
+        if (body instanceof ObjectNode fields) {
+            JsonNode cardNumber = fields.remove("cardNumber");
+            fields.remove("cardExpiry");
+            fields.remove("cardCvv");
+            if (cardNumber != null && cardNumber.isTextual()) {
+                String digits = cardNumber.asText();
+                fields.put("cardLast4", digits.substring(Math.max(0, digits.length() - 4)));
+            }
+        }
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(fingerprintSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        mac.update(key.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(mac.doFinal(objectMapper.writeValueAsBytes(body)));
+    }
+
+    // Keys are per caller, so two users can never see each other's responses
+    private static String caller() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.isAuthenticated() ? authentication.getName() : "anonymous";
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("idempotency.requests", "outcome", outcome).increment();
+    }
+}
@@ -0,0 +1,63 @@
+package com.evmak.parking_management.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+// Writes a repository Stream as newline-delimited JSON while the rows are still being read, so an export of any size
+// needs one row in memory at a time. The first row is flushed straight away for a fast first byte; after that
+// output is flushed every FLUSH_EVERY rows.
+@Service
+public class NdjsonExporter {
+
+    public static final String MEDIA_TYPE = "application/x-ndjson";
+
+    private static final int FLUSH_EVERY = 1000;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Runs the query in a read-only transaction (repository streams need one) and returns the number of rows written.
+    // A client that disconnects mid-export surfaces as an UncheckedIOException and ends the query.
+    public long export(Supplier<? extends Stream<?>> query, OutputStream out) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        Long rows = transaction.execute(status -> {
+            long written = 0;
+            try (Stream<?> stream = query.get();
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(null);
+                Iterator<?> rowIterator = stream.iterator();
+                while (rowIterator.hasNext()) {
+                    writer.writeValue(generator, rowIterator.next());
+                    generator.writeRaw('\n');
+                    if (++written == 1 || written % FLUSH_EVERY == 0) {
+                        generator.flush();
+                    }
+                }
+                generator.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return written;
+        });
+        return rows != null ? rows : 0;
+    }
+}
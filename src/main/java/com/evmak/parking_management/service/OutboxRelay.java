@@ -0,0 +1,176 @@
+package com.evmak.parking_management.service;
+
+import com.evmak.parking_management.entity.OutboxEvent;
+import com.evmak.parking_management.repository.OutboxEventRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Drains the outbox: claims the oldest events, publishes them to in-process subscribers as one DomainEventBatch
+// (and, when enabled, appends them to a Redis stream for other consumers), then deletes them, all in one
+// transaction. A crash or a failing subscriber rolls the batch back and it is relayed again, so delivery is
+// at-least-once and subscribers must be idempotent. They run on the relay thread inside its transaction and
+// should catch their own failures: a subscriber that keeps throwing stalls the outbox.
+@Service
+public class OutboxRelay {
+
+    @Autowired
+    private OutboxEventRepository outboxRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private RedisConnectionFactory redisConnectionFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Events claimed, published and deleted per transaction
+    @Value("${app.outbox.batch-size:500}")
+    private int batchSize = 500;
+
+    @Value("${app.outbox.redis-stream.enabled:false}")
+    private boolean streamEnabled = false;
+
+    @Value("${app.outbox.redis-stream.key:parking:events}")
+    private String streamKey = "parking:events";
+
+    // Approximate cap on the stream's length; consumers further behind than this lose the oldest events
+    @Value("${app.outbox.redis-stream.max-length:100000}")
+    private long streamMaxLength = 100_000;
+
+    private StringRedisTemplate streamTemplate;
+
+    // Drains every full batch waiting, then waits for the next tick
+    @Scheduled(initialDelayString = "${app.outbox.relay-interval-ms:200}", fixedDelayString = "${app.outbox.relay-interval-ms:200}")
+    public void relayPending() {
+        try {
+            int relayed;
+            do {
+                relayed = relayBatch();
+            } while (relayed == batchSize);
+        } catch (Exception e) {
+            // Never let an exception cancel the periodic task; the batch stays in the outbox
+            System.err.println("Outbox relay failed: " + e.getMessage());
+        }
+    }
+
+    // Returns how many events were relayed
+    public int relayBatch() {
+        List<DomainEvent> relayed = new TransactionTemplate(transactionManager).execute(status -> {
+            List<OutboxEvent> claimed = outboxRepository.claimOldest(Limit.of(batchSize));
+            if (claimed.isEmpty()) {
+                return List.of();
+            }
+            List<DomainEvent> events = new ArrayList<>(claimed.size());
+            for (OutboxEvent row : claimed) {
+                events.add(toDomainEvent(row));
+            }
+            eventPublisher.publishEvent(new DomainEventBatch(events));
+            if (streamEnabled) {
+                appendToStream(claimed);
+            }
+            outboxRepository.deleteAllInBatch(claimed);
+            return events;
+        });
+        if (relayed == null || relayed.isEmpty()) {
+            return 0;
+        }
+        // Measured once the batch committed; a rolled-back batch is counted when it is relayed again
+        LocalDateTime now = LocalDateTime.now();
+        for (DomainEvent event : relayed) {
+            meterRegistry.counter("outbox.events.relayed", "aggregate", event.aggregateType().name()).increment();
+            meterRegistry.timer("outbox.relay.lag").record(Duration.between(event.createdAt(), now));
+        }
+        return relayed.size();
+    }
+
+    private DomainEvent toDomainEvent(OutboxEvent row) {
+        JsonNode payload;
+        try {
+            payload = objectMapper.readTree(row.getPayload());
+        } catch (Exception e) {
+            throw new IllegalStateException("Outbox event " + row.getId() + " has an unreadable payload", e);
+        }
+        return new DomainEvent(row.getId(), row.getAggregateType(), row.getAggregateId(), row.getEventType(),
+            row.getFacilityId(), payload, row.getCreatedAt());
+    }
+
+    // Best effort: the in-process subscribers are the source of truth, so a Redis outage does not hold them up
+    private void appendToStream(List<OutboxEvent> rows) {
+        try {
+            StringRedisTemplate template = streamTemplate();
+            for (OutboxEvent row : rows) {
+                Map<String, String> fields = new HashMap<>();
+                fields.put("id", row.getId().toString());
+                fields.put("aggregateType", row.getAggregateType().name());
+                fields.put("eventType", row.getEventType());
+                fields.put("payload", row.getPayload());
+                fields.put("createdAt", row.getCreatedAt().toString());
+                if (row.getAggregateId() != null) {
+                    fields.put("aggregateId", row.getAggregateId().toString());
+                }
+                if (row.getFacilityId() != null) {
+                    fields.put("facilityId", row.getFacilityId().toString());
+                }
+                template.opsForStream().add(StreamRecords.string(fields).withStreamKey(streamKey));
+            }
+            template.opsForStream().trim(streamKey, streamMaxLength, true);
+        } catch (Exception e) {
+            meterRegistry.counter("outbox.stream.failed").increment(rows.size());
+            System.err.println("Failed to append " + rows.size() + " outbox events to stream " + streamKey + ": " + e.getMessage());
+        }
+    }
+
+    private synchronized StringRedisTemplate streamTemplate() {
+        if (streamTemplate == null) {
+            streamTemplate = new StringRedisTemplate(redisConnectionFactory);
+        }
+        return streamTemplate;
+    }
+
+    // One committed change, as written by OutboxService; payload is the event's JSON body
+    public record DomainEvent(Long id, OutboxEvent.AggregateType aggregateType, Long aggregateId, String eventType,
+                              Long facilityId, JsonNode payload, LocalDateTime createdAt) {}
+
+    // Events in outbox order. The same event can arrive in more than one batch after a failed relay.
+    public record DomainEventBatch(List<DomainEvent> events) {
+
+        public Set<Long> facilityIds(OutboxEvent.AggregateType aggregateType) {
+            Set<Long> facilityIds = new LinkedHashSet<>();
+            for (DomainEvent event : events) {
+                if (event.aggregateType() == aggregateType && event.facilityId() != null) {
+                    facilityIds.add(event.facilityId());
+                }
+            }
+            return facilityIds;
+        }
+    }
+}
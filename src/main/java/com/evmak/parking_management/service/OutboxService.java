@@ -0,0 +1,98 @@
+package com.evmak.parking_management.service;
+
+import com.evmak.parking_management.entity.OutboxEvent;
+import com.evmak.parking_management.entity.ParkingFacility;
+import com.evmak.parking_management.entity.ParkingSession;
+import com.evmak.parking_management.entity.Payment;
+import com.evmak.parking_management.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+
+// Writes domain events to the outbox table in the caller's transaction: an event is stored exactly when the change
+// it describes commits, and OutboxRelay hands it to subscribers afterwards. Appending outside a transaction is a
+// bug (the event could outlive a rolled-back change, or be lost with a committed one), so it is refused.
+@Service
+public class OutboxService {
+
+    public static final String SPOT_STATUS_CHANGED = "SPOT_STATUS_CHANGED";
+    public static final String SPOT_CREATED = "SPOT_CREATED";
+
+    @Autowired
+    private OutboxEventRepository outboxRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Published by SpotStateService inside the transition's transaction, like the counter update
+    @EventListener
+    public void onSpotTransition(SpotStateService.SpotTransition transition) {
+        List<Long> spotIds = transition.spotIds();
+        append(OutboxEvent.AggregateType.SPOT, spotIds.size() == 1 ? spotIds.get(0) : null,
+            SPOT_STATUS_CHANGED, transition.facilityId(), transition);
+    }
+
+    @EventListener
+    public void onSpotCreated(SpotStateService.SpotCreated created) {
+        append(OutboxEvent.AggregateType.SPOT, created.spotId(), SPOT_CREATED, created.facilityId(),
+            new SpotStateService.SpotTransition(created.facilityId(), created.spotType(), null, created.status(),
+                List.of(created.spotId()), 1));
+    }
+
+    // eventType is FACILITY_CREATED, FACILITY_UPDATED or FACILITY_DEACTIVATED
+    public void recordFacility(ParkingFacility facility, String eventType) {
+        append(OutboxEvent.AggregateType.FACILITY, facility.getId(), eventType, facility.getId(),
+            new FacilityChange(facility.getLocationLat(), facility.getLocationLng(), facility.getIsActive()));
+    }
+
+    // eventType is SESSION_STARTED, SESSION_ENDED, SESSION_CANCELLED or SESSION_EXPIRED
+    public void recordSession(ParkingSession session, Long facilityId, String eventType) {
+        append(OutboxEvent.AggregateType.SESSION, session.getId(), eventType, facilityId,
+            new SessionChange(session.getSessionReference(), session.getStatus(),
+                session.getSpot() != null ? session.getSpot().getId() : null, session.getTotalAmount()));
+    }
+
+    // One payment moved from `from` (null when it was just created) to `to`. paymentId is null when the payment
+    // was matched by its references rather than its id.
+    public void recordPayment(Long paymentId, String paymentReference, String externalPaymentId,
+                              Payment.PaymentStatus from, Payment.PaymentStatus to) {
+        append(OutboxEvent.AggregateType.PAYMENT, paymentId, "PAYMENT_" + to, null,
+            new PaymentTransition(paymentId != null ? List.of(paymentId) : List.of(), paymentReference,
+                externalPaymentId, from, to, 1));
+    }
+
+    // `count` of the given payments moved; like a partial spot release, the ids are only listed when all of them did
+    public void recordPayments(Collection<Long> paymentIds, Payment.PaymentStatus from, Payment.PaymentStatus to, int count) {
+        append(OutboxEvent.AggregateType.PAYMENT, null, "PAYMENT_" + to, null,
+            new PaymentTransition(count == paymentIds.size() ? List.copyOf(paymentIds) : List.of(), null, null, from, to, count));
+    }
+
+    public void append(OutboxEvent.AggregateType aggregateType, Long aggregateId, String eventType,
+                       Long facilityId, Object payload) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Outbox event " + eventType + " must be appended inside the transaction that made the change");
+        }
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Outbox payload for " + eventType + " is not serializable", e);
+        }
+        outboxRepository.save(new OutboxEvent(aggregateType, aggregateId, eventType, facilityId, json));
+    }
+
+    public record FacilityChange(BigDecimal locationLat, BigDecimal locationLng, Boolean isActive) {}
+
+    public record SessionChange(String sessionReference, ParkingSession.SessionStatus status,
+                                Long spotId, BigDecimal totalAmount) {}
+
+    public record PaymentTransition(List<Long> paymentIds, String paymentReference, String externalPaymentId,
+                                    Payment.PaymentStatus from, Payment.PaymentStatus to, int count) {}
+}
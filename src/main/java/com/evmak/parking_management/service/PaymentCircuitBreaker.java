@@ -0,0 +1,137 @@
+package com.evmak.parking_management.service;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+// Count-based circuit breaker for the payment provider. Outcomes of the last windowSize calls are kept in a ring;
+// once at least minimumCalls are recorded and the failure rate reaches the threshold the breaker opens and calls
+// fail fast. After openMs a few trial calls are let through (half-open); if they all succeed it closes again,
+// any failure re-opens it.
+public class PaymentCircuitBreaker {
+
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openMs;
+    private final int halfOpenCalls;
+    private final LongSupplier clock;
+
+    private final boolean[] failures;
+    private int recorded;
+    private int next;
+    private int failureCount;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int trialsStarted;
+    private int trialsSucceeded;
+
+    public PaymentCircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold,
+                                 long openMs, int halfOpenCalls, LongSupplier clock) {
+        this.windowSize = windowSize;
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openMs = openMs;
+        this.halfOpenCalls = halfOpenCalls;
+        this.clock = clock;
+        this.failures = new boolean[windowSize];
+    }
+
+    // Whether a call may go out now. A permitted half-open trial must be followed by onSuccess, onFailure
+    // or releasePermission.
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= openMs) {
+            state = State.HALF_OPEN;
+            trialsStarted = 0;
+            trialsSucceeded = 0;
+        }
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> {
+                if (trialsStarted < halfOpenCalls) {
+                    trialsStarted++;
+                    yield true;
+                }
+                yield false;
+            }
+        };
+    }
+
+    // The permitted call never reached the provider (e.g. rejected by the bulkhead)
+    public synchronized void releasePermission() {
+        if (state == State.HALF_OPEN && trialsStarted > 0) {
+            trialsStarted--;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++trialsSucceeded >= halfOpenCalls) {
+                state = State.CLOSED;
+                resetWindow();
+            }
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && recorded >= minimumCalls && failureRate() >= failureRateThreshold) {
+            open();
+        }
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= openMs) {
+            return State.HALF_OPEN; // Next call will be a trial
+        }
+        return state;
+    }
+
+    // Percentage of failed calls in the current window
+    public synchronized double getFailureRate() {
+        return failureRate();
+    }
+
+    public synchronized int getBufferedCalls() {
+        return recorded;
+    }
+
+    private void record(boolean failed) {
+        if (recorded == windowSize && failures[next]) {
+            failureCount--;
+        }
+        failures[next] = failed;
+        if (failed) {
+            failureCount++;
+        }
+        next = (next + 1) % windowSize;
+        recorded = Math.min(recorded + 1, windowSize);
+    }
+
+    private double failureRate() {
+        return recorded == 0 ? 0.0 : failureCount * 100.0 / recorded;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = clock.getAsLong();
+        resetWindow();
+        System.err.println("Payment provider circuit opened for " + openMs + " ms");
+    }
+
+    private void resetWindow() {
+        recorded = 0;
+        next = 0;
+        failureCount = 0;
+        Arrays.fill(failures, false);
+    }
+}
@@ -0,0 +1,366 @@
+package com.evmak.parking_management.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+// Non-blocking client for the X-PAYMENT-PROVIDER API. Connections are pooled by the JDK client, every call has
+// a connect and response timeout, and a bulkhead caps in-flight provider calls so a slow provider cannot absorb
+// every request thread. Callers get a future; no thread waits on the network.
+//
+// A circuit breaker sheds calls while the provider is failing. Idempotent reads (verify) are additionally retried
+// with capped, jittered backoff and can be hedged: a second copy goes out if the first is slower than the
+// endpoint's recent p95, and whichever answers first wins.
+@Service
+public class PaymentGatewayClient {
+
+    private static final String API_VERSION = "2024-01";
+    private static final int HEDGE_MIN_SAMPLES = 20;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${x-payment-provider.api.url:https://api.x-payment-provider.com}")
+    private String baseUrl = "https://api.x-payment-provider.com";
+
+    @Value("${x-payment-provider.api.key:your-api-key-here}")
+    private String apiKey = "your-api-key-here";
+
+    @Value("${app.payment.client.connect-timeout-ms:2000}")
+    private long connectTimeoutMs = 2_000;
+
+    @Value("${app.payment.client.request-timeout-ms:10000}")
+    private long requestTimeoutMs = 10_000;
+
+    // Provider calls allowed in flight at once
+    @Value("${app.payment.client.max-in-flight:64}")
+    private int maxInFlight = 64;
+
+    // How long a caller may wait for a free slot before the call is rejected with GatewayBusyException
+    @Value("${app.payment.client.bulkhead-wait-ms:100}")
+    private long bulkheadWaitMs = 100;
+
+    @Value("${app.payment.circuit.window-size:20}")
+    private int circuitWindowSize = 20;
+
+    @Value("${app.payment.circuit.minimum-calls:10}")
+    private int circuitMinimumCalls = 10;
+
+    @Value("${app.payment.circuit.failure-rate-threshold:50}")
+    private double circuitFailureRateThreshold = 50;
+
+    @Value("${app.payment.circuit.open-ms:30000}")
+    private long circuitOpenMs = 30_000;
+
+    @Value("${app.payment.circuit.half-open-calls:3}")
+    private int circuitHalfOpenCalls = 3;
+
+    // Attempts per idempotent call, including the first
+    @Value("${app.payment.retry.max-attempts:3}")
+    private int retryMaxAttempts = 3;
+
+    @Value("${app.payment.retry.base-delay-ms:100}")
+    private long retryBaseDelayMs = 100;
+
+    @Value("${app.payment.retry.max-delay-ms:2000}")
+    private long retryMaxDelayMs = 2_000;
+
+    @Value("${app.payment.hedge.enabled:false}")
+    private boolean hedgeEnabled = false;
+
+    // Used until the endpoint has enough samples for a meaningful p95
+    @Value("${app.payment.hedge.default-delay-ms:500}")
+    private long hedgeDefaultDelayMs = 500;
+
+    @Value("${app.payment.hedge.min-delay-ms:50}")
+    private long hedgeMinDelayMs = 50;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private ExecutorService executor;
+    private HttpClient httpClient;
+    private Semaphore bulkhead;
+    private PaymentCircuitBreaker circuitBreaker;
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+            .executor(executor)
+            .build();
+        bulkhead = new Semaphore(maxInFlight);
+        circuitBreaker = new PaymentCircuitBreaker(circuitWindowSize, circuitMinimumCalls, circuitFailureRateThreshold,
+            circuitOpenMs, circuitHalfOpenCalls, System::currentTimeMillis);
+
+        // 0 = closed, 1 = half-open, 2 = open
+        Gauge.builder("payment.gateway.circuit.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+            .description("Payment provider circuit breaker state (0 closed, 1 half-open, 2 open)")
+            .register(meterRegistry);
+        Gauge.builder("payment.gateway.circuit.failure.rate", circuitBreaker, PaymentCircuitBreaker::getFailureRate)
+            .description("Failed provider calls in the breaker window, percent")
+            .register(meterRegistry);
+        Gauge.builder("payment.gateway.bulkhead.available", bulkhead, Semaphore::availablePermits)
+            .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Charges and refunds are sent exactly once; retrying them could double-charge
+    public CompletableFuture<GatewayResponse> post(String endpoint, String path, Map<String, Object> payload) {
+        try {
+            String body = objectMapper.writeValueAsString(payload);
+            return send(endpoint, request(path)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body)));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    public CompletableFuture<GatewayResponse> get(String endpoint, String path) {
+        return send(endpoint, request(path).GET());
+    }
+
+    // For reads the provider treats as idempotent: retried on transport errors and 5xx, optionally hedged
+    public CompletableFuture<GatewayResponse> getIdempotent(String endpoint, String path) {
+        return attempt(endpoint, path, 1);
+    }
+
+    public int getAvailablePermits() {
+        return bulkhead.availablePermits();
+    }
+
+    public PaymentCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    // Latency percentiles of successful calls per endpoint, in milliseconds
+    public Map<String, Map<String, Double>> getLatencySummary() {
+        Map<String, Map<String, Double>> summary = new TreeMap<>();
+        timers.forEach((key, timer) -> {
+            Map<String, Double> values = new LinkedHashMap<>();
+            values.put("count", (double) timer.count());
+            for (ValueAtPercentile percentile : timer.takeSnapshot().percentileValues()) {
+                values.put("p" + Math.round(percentile.percentile() * 100), percentile.value(TimeUnit.MILLISECONDS));
+            }
+            summary.put(key, values);
+        });
+        return summary;
+    }
+
+    private CompletableFuture<GatewayResponse> attempt(String endpoint, String path, int attempt) {
+        CompletableFuture<GatewayResponse> call = hedgeEnabled ? hedged(endpoint, path) : get(endpoint, path);
+        return call.handle((response, error) -> {
+            if (attempt >= retryMaxAttempts || !isRetryable(response, error)) {
+                return error == null ? CompletableFuture.completedFuture(response) : CompletableFuture.<GatewayResponse>failedFuture(unwrap(error));
+            }
+            counter("payment.gateway.retries", endpoint).increment();
+            return CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(backoffMs(attempt), TimeUnit.MILLISECONDS, executor))
+                .thenCompose(ignored -> attempt(endpoint, path, attempt + 1));
+        }).thenCompose(next -> next);
+    }
+
+    // Full jitter: uniformly random up to the capped exponential delay, so retries from many callers spread out
+    long backoffMs(int attempt) {
+        long ceiling = Math.min(retryMaxDelayMs, retryBaseDelayMs << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static boolean isRetryable(GatewayResponse response, Throwable error) {
+        if (error != null) {
+            Throwable cause = unwrap(error);
+            // Retrying a shed call would only add load where it was just refused
+            return !(cause instanceof GatewayBusyException) && !(cause instanceof CircuitOpenException);
+        }
+        return response.statusCode >= 500;
+    }
+
+    private CompletableFuture<GatewayResponse> hedged(String endpoint, String path) {
+        CompletableFuture<GatewayResponse> result = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        // First answer wins; a failure only counts once nothing else is still in flight
+        BiConsumer<GatewayResponse, Throwable> settle = (response, error) -> {
+            if (error == null) {
+                result.complete(response);
+            } else if (outstanding.decrementAndGet() == 0) {
+                result.completeExceptionally(unwrap(error));
+            }
+        };
+
+        get(endpoint, path).whenComplete(settle);
+        CompletableFuture.delayedExecutor(hedgeDelayMs(endpoint), TimeUnit.MILLISECONDS, executor).execute(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            outstanding.incrementAndGet();
+            counter("payment.gateway.hedges", endpoint).increment();
+            get(endpoint, path).whenComplete(settle);
+        });
+        return result;
+    }
+
+    long hedgeDelayMs(String endpoint) {
+        Timer timer = timers.get(endpoint);
+        if (timer == null || timer.count() < HEDGE_MIN_SAMPLES) {
+            return hedgeDefaultDelayMs;
+        }
+        for (ValueAtPercentile percentile : timer.takeSnapshot().percentileValues()) {
+            if (percentile.percentile() == 0.95) {
+                return Math.max(hedgeMinDelayMs, (long) percentile.value(TimeUnit.MILLISECONDS));
+            }
+        }
+        return hedgeDefaultDelayMs;
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .timeout(Duration.ofMillis(requestTimeoutMs))
+            .header("Authorization", "Bearer " + apiKey)
+            .header("X-API-Version", API_VERSION);
+    }
+
+    private CompletableFuture<GatewayResponse> send(String endpoint, HttpRequest.Builder builder) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            counter("payment.gateway.rejected", endpoint, "circuit_open").increment();
+            return CompletableFuture.failedFuture(new CircuitOpenException());
+        }
+
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire(bulkheadWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            circuitBreaker.releasePermission();
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        if (!acquired) {
+            circuitBreaker.releasePermission();
+            counter("payment.gateway.rejected", endpoint, "bulkhead_full").increment();
+            return CompletableFuture.failedFuture(new GatewayBusyException(maxInFlight));
+        }
+
+        long start = System.nanoTime();
+        try {
+            return httpClient.sendAsync(builder.build(), HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> new GatewayResponse(response.statusCode(), parse(response.body())))
+                .whenComplete((response, error) -> {
+                    bulkhead.release();
+                    boolean failed = error != null || response.statusCode >= 500;
+                    if (failed) {
+                        circuitBreaker.onFailure();
+                    } else {
+                        circuitBreaker.onSuccess();
+                        timer(endpoint).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    }
+                    counter("payment.gateway.calls", endpoint, failed ? "failure" : "success").increment();
+                });
+        } catch (Exception e) {
+            bulkhead.release();
+            circuitBreaker.releasePermission();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private Timer timer(String endpoint) {
+        return timers.computeIfAbsent(endpoint, key -> Timer.builder("payment.gateway.latency")
+            .tag("endpoint", endpoint)
+            .description("Latency of successful payment provider calls")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .publishPercentileHistogram()
+            .register(meterRegistry));
+    }
+
+    private Counter counter(String name, String endpoint) {
+        return counter(name, endpoint, null);
+    }
+
+    private Counter counter(String name, String endpoint, String outcome) {
+        String key = name + "|" + endpoint + "|" + outcome;
+        return counters.computeIfAbsent(key, k -> {
+            Counter.Builder builder = Counter.builder(name).tag("endpoint", endpoint);
+            if (outcome != null) {
+                builder.tag("outcome", outcome);
+            }
+            return builder.register(meterRegistry);
+        });
+    }
+
+    private Map<String, Object> parse(String body) {
+        if (body == null || body.isBlank()) {
+            return Map.of();
+        }
+        try {
+            return objectMapper.readValue(body, new TypeReference<Map<String, Object>>() {});
+        } catch (Exception e) {
+            return Map.of(); // Non-JSON error page from a proxy or load balancer
+        }
+    }
+
+    static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    public static class GatewayResponse {
+        public final int statusCode;
+        public final Map<String, Object> body;
+
+        public GatewayResponse(int statusCode, Map<String, Object> body) {
+            this.statusCode = statusCode;
+            this.body = body;
+        }
+
+        public boolean isOk() {
+            return statusCode == 200;
+        }
+
+        public String getString(String field) {
+            Object value = body.get(field);
+            return value != null ? value.toString() : null;
+        }
+    }
+
+    public static class GatewayBusyException extends RuntimeException {
+        public GatewayBusyException(int maxInFlight) {
+            super("Payment provider is at its limit of " + maxInFlight + " in-flight calls");
+        }
+    }
+
+    public static class CircuitOpenException extends RuntimeException {
+        public CircuitOpenException() {
+            super("Payment provider circuit is open");
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.evmak.parking_management.service;
+
+import com.evmak.parking_management.repository.PaymentRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.LongFunction;
+
+// Safety net for lost webhooks: payments still PENDING well after they were initiated are verified with the
+// provider. The sweep walks the backlog a keyset page at a time, keeps at most `parallelism` verify calls in
+// flight, and writes each page back with one UPDATE per status transition. Payments that never got a provider
+// transaction id are looked up by our payment reference once they are older than unsubmitted-fail-after-ms:
+// those the provider has are settled with its status and transaction id, the rest are failed.
+@Service
+public class PaymentReconciler {
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // A PENDING payment is only stale once its webhook is overdue
+    @Value("${app.payment.reconcile.stale-after-ms:600000}")
+    private long staleAfterMs = 600_000;
+
+    // A PENDING payment without a provider transaction id is looked up by reference after this long
+    @Value("${app.payment.reconcile.unsubmitted-fail-after-ms:3600000}")
+    private long unsubmittedFailAfterMs = 3_600_000;
+
+    // Stale payments loaded per keyset page; bounds memory however large the backlog is
+    @Value("${app.payment.reconcile.page-size:500}")
+    private int pageSize = 500;
+
+    // Provider verify calls in flight at once during a sweep
+    @Value("${app.payment.reconcile.parallelism:20}")
+    private int parallelism = 20;
+
+    private final AtomicLong backlog = new AtomicLong();
+    private final AtomicLong lagSeconds = new AtomicLong();
+
+    @PostConstruct
+    public void registerGauges() {
+        Gauge.builder("payment.reconcile.backlog", backlog, AtomicLong::get)
+            .description("Stale PENDING payments left after the last reconciliation sweep")
+            .register(meterRegistry);
+        Gauge.builder("payment.reconcile.lag", lagSeconds, AtomicLong::get)
+            .description("Age of the oldest stale PENDING payment after the last sweep")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${app.payment.reconcile.interval-ms:60000}", fixedDelayString = "${app.payment.reconcile.interval-ms:60000}")
+    public void reconcileStalePayments() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            int updated = reconcile(now.minus(Duration.ofMillis(staleAfterMs)), now.minus(Duration.ofMillis(unsubmittedFailAfterMs)));
+            if (updated > 0) {
+                System.out.println("Payment reconciler settled " + updated + " stale payments, " + backlog.get() + " still pending");
+            }
+        } catch (Exception e) {
+            System.err.println("Payment reconciliation failed: " + e.getMessage());
+        }
+    }
+
+    // Returns how many stale payments changed status
+    int reconcile(LocalDateTime cutoff, LocalDateTime unsubmittedCutoff) {
+        int updated = 0;
+        AtomicBoolean gatewayUnavailable = new AtomicBoolean();
+        try {
+            updated += sweep(afterId -> paymentRepository.findUnsubmittedPaymentPage(unsubmittedCutoff, afterId, Limit.of(pageSize)),
+                this::verifyUnsubmitted, gatewayUnavailable);
+            if (!gatewayUnavailable.get()) {
+                updated += sweep(afterId -> paymentRepository.findStalePaymentPage(cutoff, afterId, Limit.of(pageSize)),
+                    this::verifyStale, gatewayUnavailable);
+            }
+        } finally {
+            refreshBacklog(cutoff);
+        }
+        return updated;
+    }
+
+    // Walks keyset pages of [id, lookup key] rows, verifying each page and writing it back before the next
+    private int sweep(LongFunction<List<Object[]>> nextPage,
+                      BiFunction<Object[], PageOutcome, CompletableFuture<Void>> verify,
+                      AtomicBoolean gatewayUnavailable) {
+        int updated = 0;
+        long afterId = 0;
+        while (true) {
+            List<Object[]> page = nextPage.apply(afterId);
+            if (page.isEmpty()) {
+                break;
+            }
+            PageOutcome outcome = verifyPage(page, verify);
+            for (Map.Entry<PaymentService.StatusTransition, Queue<Long>> entry : outcome.byTransition.entrySet()) {
+                updated += paymentService.applyProviderStatus(entry.getKey(), new ArrayList<>(entry.getValue()));
+            }
+            for (PaymentService.ProviderPayment found : outcome.recovered) {
+                // One at a time so the provider transaction id is recorded along with the status
+                if (paymentService.applyProviderStatus(found.transactionId, found.paymentReference,
+                        PaymentService.StatusTransition.forPending(found.status))) {
+                    updated++;
+                }
+            }
+            if (outcome.gatewayUnavailable) {
+                gatewayUnavailable.set(true);
+                break; // Provider is down; the rest waits for the next sweep
+            }
+            if (page.size() < pageSize) {
+                break;
+            }
+            afterId = (Long) page.get(page.size() - 1)[0];
+        }
+        return updated;
+    }
+
+    // Verifies one page with a sliding window of `parallelism` provider calls
+    private PageOutcome verifyPage(List<Object[]> page, BiFunction<Object[], PageOutcome, CompletableFuture<Void>> verify) {
+        PageOutcome outcome = new PageOutcome();
+        Semaphore window = new Semaphore(parallelism);
+        List<CompletableFuture<Void>> calls = new ArrayList<>(page.size());
+        for (Object[] row : page) {
+            if (outcome.gatewayUnavailable) {
+                break;
+            }
+            try {
+                window.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            calls.add(verify.apply(row, outcome)
+                .handle((ignored, error) -> {
+                    window.release();
+                    if (error != null) {
+                        if (PaymentGatewayClient.unwrap(error) instanceof PaymentGatewayClient.CircuitOpenException) {
+                            outcome.gatewayUnavailable = true;
+                        }
+                        count("error");
+                    }
+                    return null;
+                }));
+        }
+        CompletableFuture.allOf(calls.toArray(new CompletableFuture[0])).join();
+        return outcome;
+    }
+
+    // Row is [id, externalPaymentId]
+    private CompletableFuture<Void> verifyStale(Object[] row, PageOutcome outcome) {
+        Long paymentId = (Long) row[0];
+        return paymentService.fetchProviderStatus((String) row[1])
+            .thenAccept(providerStatus -> queue(outcome, paymentId, PaymentService.StatusTransition.forPending(providerStatus)));
+    }
+
+    // Row is [id, paymentReference]. The charge may have been taken even though its response was lost, so the
+    // payment is only failed once the provider confirms it never received it.
+    private CompletableFuture<Void> verifyUnsubmitted(Object[] row, PageOutcome outcome) {
+        Long paymentId = (Long) row[0];
+        return paymentService.fetchProviderPaymentByReference((String) row[1])
+            .thenAccept(found -> {
+                if (!found.isFound()) {
+                    outcome.byTransition.computeIfAbsent(PaymentService.StatusTransition.FAIL, t -> new ConcurrentLinkedQueue<>()).add(paymentId);
+                    count("unsubmitted");
+                } else if (found.transactionId != null && PaymentService.StatusTransition.forPending(found.status) != null) {
+                    outcome.recovered.add(found);
+                    count("recovered");
+                } else {
+                    count("unchanged");
+                }
+            });
+    }
+
+    private void queue(PageOutcome outcome, Long paymentId, PaymentService.StatusTransition transition) {
+        if (transition == null) {
+            count("unchanged");
+        } else {
+            if (transition == PaymentService.StatusTransition.REFUND_PENDING) {
+                System.err.println("Payment " + paymentId + " is refunded at the provider but was never recorded as completed");
+            }
+            outcome.byTransition.computeIfAbsent(transition, t -> new ConcurrentLinkedQueue<>()).add(paymentId);
+            count(transition.name().toLowerCase());
+        }
+    }
+
+    private void refreshBacklog(LocalDateTime cutoff) {
+        List<Object[]> rows = paymentRepository.getStalePaymentBacklog(cutoff);
+        Object[] row = rows.isEmpty() ? null : rows.get(0);
+        long count = row != null && row[0] != null ? ((Number) row[0]).longValue() : 0;
+        LocalDateTime oldest = row != null ? (LocalDateTime) row[1] : null;
+        backlog.set(count);
+        lagSeconds.set(oldest != null ? Math.max(0, Duration.between(oldest, LocalDateTime.now()).toSeconds()) : 0);
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("payment.reconcile.verifications", "outcome", outcome).increment();
+    }
+
+    private static class PageOutcome {
+        final Map<PaymentService.StatusTransition, Queue<Long>> byTransition = new ConcurrentHashMap<>();
+        final Queue<PaymentService.ProviderPayment> recovered = new ConcurrentLinkedQueue<>();
+        volatile boolean gatewayUnavailable;
+    }
+}
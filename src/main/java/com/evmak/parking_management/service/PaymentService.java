@@ -3,20 +3,24 @@ package com.evmak.parking_management.service;
 import com.evmak.parking_management.entity.Payment;
 import com.evmak.parking_management.entity.ParkingSession;
 import com.evmak.parking_management.repository.PaymentRepository;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.evmak.parking_management.service.PaymentGatewayClient.CircuitOpenException;
+import com.evmak.parking_management.service.PaymentGatewayClient.GatewayBusyException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
+// Provider calls run asynchronously through PaymentGatewayClient. Only the PENDING insert and the final status
+// update run in (short) transactions, so no database connection is held while the provider is working.
 @Service
 public class PaymentService {
 
@@ -24,18 +28,16 @@ public class PaymentService {
     private PaymentRepository paymentRepository;
 
     @Autowired
-    private RestTemplate restTemplate;
+    private PaymentGatewayClient gatewayClient;
 
-    @Value("${x-payment-provider.api.url:https://api.x-payment-provider.com}")
-    private String xPaymentApiUrl;
+    @Autowired
+    private OutboxService outboxService;
 
-    @Value("${x-payment-provider.api.key:your-api-key-here}")
-    private String xPaymentApiKey;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
 
     @Value("${x-payment-provider.merchant.id:MERCHANT_001}")
-    private String merchantId;
-
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private String merchantId = "MERCHANT_001";
 
     public static class PaymentRequest {
         public Long sessionId;
@@ -105,249 +107,364 @@ public class PaymentService {
         }
     }
 
-    @Transactional
-    public PaymentResult initiatePayment(ParkingSession session, PaymentRequest request) {
+    public CompletableFuture<PaymentResult> initiatePayment(ParkingSession session, PaymentRequest request) {
+        String endpoint;
+        String path;
+        Map<String, Object> payload;
+        String successMessage;
+        String errorCode;
+        String errorPrefix;
+        if (request.getPaymentMethod() == Payment.PaymentMethod.CARD) {
+            endpoint = "card";
+            path = "/v1/payments/card";
+            successMessage = "Card payment processed successfully";
+            errorCode = "CARD_PAYMENT_ERROR";
+            errorPrefix = "Card payment failed: ";
+        } else if (request.getPaymentMethod() == Payment.PaymentMethod.MOBILE_MONEY) {
+            endpoint = "mobile-money";
+            path = "/v1/payments/mobile-money";
+            successMessage = "Mobile money payment initiated successfully";
+            errorCode = "MOBILE_MONEY_ERROR";
+            errorPrefix = "Mobile money payment failed: ";
+        } else {
+            return CompletableFuture.completedFuture(PaymentResult.failure("Unsupported payment method", "UNSUPPORTED_METHOD"));
+        }
+
+        Payment payment;
         try {
             // Create local payment record
-            Payment payment = new Payment(session, request.getAmount(), request.getPaymentMethod());
-            payment.setCurrency(request.getCurrency());
-            payment.setPaymentProvider("X-PAYMENT-PROVIDER");
-            payment.setStatus(Payment.PaymentStatus.PENDING);
-            payment = paymentRepository.save(payment);
-
-            // Call X-PAYMENT-PROVIDER API based on payment method
-            PaymentResult result;
-            if (request.getPaymentMethod() == Payment.PaymentMethod.CARD) {
-                result = processCardPayment(payment, request);
-            } else if (request.getPaymentMethod() == Payment.PaymentMethod.MOBILE_MONEY) {
-                result = processMobileMoneyPayment(payment, request);
-            } else {
-                return PaymentResult.failure("Unsupported payment method", "UNSUPPORTED_METHOD");
-            }
-
-            // Update payment status based on result
-            if (result.success) {
-                payment.setExternalPaymentId(result.transactionId);
-                payment.setStatus(Payment.PaymentStatus.COMPLETED);
-                payment.setCompletedAt(LocalDateTime.now());
-            } else {
-                payment.setStatus(Payment.PaymentStatus.FAILED);
-            }
-            
-            payment = paymentRepository.save(payment);
-            return new PaymentResult(result.success, result.message, payment, result.errorCode, result.transactionId);
-
+            payment = transactionTemplate().execute(status -> {
+                Payment pending = new Payment(session, request.getAmount(), request.getPaymentMethod());
+                pending.setCurrency(request.getCurrency());
+                pending.setPaymentProvider("X-PAYMENT-PROVIDER");
+                pending.setStatus(Payment.PaymentStatus.PENDING);
+                Payment saved = paymentRepository.save(pending);
+                outboxService.recordPayment(saved.getId(), saved.getPaymentReference(), null, null, Payment.PaymentStatus.PENDING);
+                return saved;
+            });
+            payload = request.getPaymentMethod() == Payment.PaymentMethod.CARD
+                ? cardPayload(payment, request)
+                : mobileMoneyPayload(payment, request);
         } catch (Exception e) {
-            return PaymentResult.failure("Payment processing failed: " + e.getMessage(), "PROCESSING_ERROR");
+            return CompletableFuture.completedFuture(
+                PaymentResult.failure("Payment processing failed: " + e.getMessage(), "PROCESSING_ERROR"));
         }
-    }
 
-    private PaymentResult processCardPayment(Payment payment, PaymentRequest request) {
-        try {
-            // Prepare X-PAYMENT-PROVIDER card payment payload
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("merchant_id", merchantId);
-            payload.put("payment_reference", payment.getPaymentReference());
-            payload.put("amount", request.getAmount().toString());
-            payload.put("currency", request.getCurrency());
-            payload.put("payment_method", "CARD");
-            
-            Map<String, Object> cardData = new HashMap<>();
-            cardData.put("card_number", request.getCardNumber());
-            cardData.put("expiry_date", request.getCardExpiry());
-            cardData.put("cvv", request.getCardCvv());
-            payload.put("card_details", cardData);
-            
-            Map<String, Object> customer = new HashMap<>();
-            customer.put("email", request.getCustomerEmail());
-            customer.put("phone", request.getCustomerPhone());
-            payload.put("customer", customer);
-
-            // Set headers
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Authorization", "Bearer " + xPaymentApiKey);
-            headers.set("X-API-Version", "2024-01");
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(payload, headers);
-
-            // Call X-PAYMENT-PROVIDER card payment endpoint
-            ResponseEntity<Map> response = restTemplate.postForEntity(
-                xPaymentApiUrl + "/v1/payments/card", entity, Map.class);
-
-            if (response.getStatusCode() == HttpStatus.OK) {
-                Map<String, Object> responseBody = response.getBody();
-                if ("success".equals(responseBody.get("status"))) {
-                    String transactionId = (String) responseBody.get("transaction_id");
-                    return PaymentResult.success(payment, "Card payment processed successfully", transactionId);
+        // Call X-PAYMENT-PROVIDER API based on payment method
+        return gatewayClient.post(endpoint, path, payload)
+            .handle((response, error) -> {
+                if (error != null) {
+                    return gatewayFailure(error, payment, errorPrefix, errorCode);
+                }
+                if (!response.isOk()) {
+                    // A provider-side 5xx may come after the charge was taken; a 4xx is a refusal
+                    return response.statusCode >= 500
+                        ? outcomeUnknown(payment, "Payment gateway error", "GATEWAY_ERROR")
+                        : PaymentResult.failure("Payment gateway error", "GATEWAY_ERROR");
+                }
+                if ("success".equals(response.getString("status"))) {
+                    return PaymentResult.success(payment, successMessage, response.getString("transaction_id"));
+                }
+                return PaymentResult.failure(response.getString("message"), response.getString("error_code"));
+            })
+            .thenApply(result -> {
+                // Update payment status based on result. Mobile money is only confirmed once the customer approves
+                // it on their phone; that arrives later through the webhook (or the reconciler).
+                if (!result.success && result.payment != null) {
+                    // Undecided: left PENDING for the webhook or the reconciler, which match it by its reference
+                    return result;
+                } else if (!result.success) {
+                    recordOutcome(payment, Payment.PaymentStatus.PENDING, Payment.PaymentStatus.FAILED, null, null);
+                } else if (request.getPaymentMethod() == Payment.PaymentMethod.MOBILE_MONEY) {
+                    recordOutcome(payment, Payment.PaymentStatus.PENDING, Payment.PaymentStatus.PENDING, result.transactionId, null);
                 } else {
-                    String errorMessage = (String) responseBody.get("message");
-                    String errorCode = (String) responseBody.get("error_code");
-                    return PaymentResult.failure(errorMessage, errorCode);
+                    recordOutcome(payment, Payment.PaymentStatus.PENDING, Payment.PaymentStatus.COMPLETED, result.transactionId, LocalDateTime.now());
                 }
-            } else {
-                return PaymentResult.failure("Payment gateway error", "GATEWAY_ERROR");
-            }
+                return new PaymentResult(result.success, result.message, payment, result.errorCode, result.transactionId);
+            })
+            .exceptionally(e -> PaymentResult.failure("Payment processing failed: " + PaymentGatewayClient.unwrap(e).getMessage(), "PROCESSING_ERROR"));
+    }
 
-        } catch (Exception e) {
-            return PaymentResult.failure("Card payment failed: " + e.getMessage(), "CARD_PAYMENT_ERROR");
+    private Map<String, Object> cardPayload(Payment payment, PaymentRequest request) {
+        // Prepare X-PAYMENT-PROVIDER card payment payload
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("merchant_id", merchantId);
+        payload.put("payment_reference", payment.getPaymentReference());
+        payload.put("amount", request.getAmount().toString());
+        payload.put("currency", request.getCurrency());
+        payload.put("payment_method", "CARD");
+
+        Map<String, Object> cardData = new HashMap<>();
+        cardData.put("card_number", request.getCardNumber());
+        cardData.put("expiry_date", request.getCardExpiry());
+        cardData.put("cvv", request.getCardCvv());
+        payload.put("card_details", cardData);
+
+        Map<String, Object> customer = new HashMap<>();
+        customer.put("email", request.getCustomerEmail());
+        customer.put("phone", request.getCustomerPhone());
+        payload.put("customer", customer);
+        return payload;
+    }
+
+    private Map<String, Object> mobileMoneyPayload(Payment payment, PaymentRequest request) {
+        // Prepare X-PAYMENT-PROVIDER mobile money payload
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("merchant_id", merchantId);
+        payload.put("payment_reference", payment.getPaymentReference());
+        payload.put("amount", request.getAmount().toString());
+        payload.put("currency", request.getCurrency());
+        payload.put("payment_method", "MOBILE_MONEY");
+        payload.put("provider", request.getMobileMoneyProvider());
+        payload.put("customer_phone", request.getCustomerPhone());
+
+        Map<String, Object> customer = new HashMap<>();
+        customer.put("phone", request.getCustomerPhone());
+        if (request.getCustomerEmail() != null) {
+            customer.put("email", request.getCustomerEmail());
         }
+        payload.put("customer", customer);
+        return payload;
     }
 
-    private PaymentResult processMobileMoneyPayment(Payment payment, PaymentRequest request) {
+    // Status as last recorded locally; webhooks and the reconciler keep it current without a provider call
+    public PaymentResult getPaymentStatus(String paymentReference) {
         try {
-            // Prepare X-PAYMENT-PROVIDER mobile money payload
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("merchant_id", merchantId);
-            payload.put("payment_reference", payment.getPaymentReference());
-            payload.put("amount", request.getAmount().toString());
-            payload.put("currency", request.getCurrency());
-            payload.put("payment_method", "MOBILE_MONEY");
-            payload.put("provider", request.getMobileMoneyProvider());
-            payload.put("customer_phone", request.getCustomerPhone());
-
-            Map<String, Object> customer = new HashMap<>();
-            customer.put("phone", request.getCustomerPhone());
-            if (request.getCustomerEmail() != null) {
-                customer.put("email", request.getCustomerEmail());
+            Optional<Payment> paymentOpt = paymentRepository.findByPaymentReference(paymentReference);
+            if (paymentOpt.isEmpty()) {
+                return PaymentResult.failure("Payment not found", "PAYMENT_NOT_FOUND");
             }
-            payload.put("customer", customer);
+            Payment payment = paymentOpt.get();
+            return PaymentResult.success(payment, "Payment is " + payment.getStatus(), payment.getExternalPaymentId());
+        } catch (Exception e) {
+            return PaymentResult.failure("Payment lookup failed: " + e.getMessage(), "PROCESSING_ERROR");
+        }
+    }
 
-            // Set headers
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Authorization", "Bearer " + xPaymentApiKey);
-            headers.set("X-API-Version", "2024-01");
+    // Asks the provider for the current status of a payment; used by the reconciler for payments whose
+    // webhook never arrived. Gateway errors (busy, circuit open, timeouts) complete the future exceptionally.
+    public CompletableFuture<String> fetchProviderStatus(String externalPaymentId) {
+        // Call X-PAYMENT-PROVIDER verification endpoint; a read, so it may be retried and hedged
+        return gatewayClient.getIdempotent("verify", "/v1/payments/" + externalPaymentId + "/verify")
+            .thenApply(response -> {
+                if (!response.isOk()) {
+                    throw new IllegalStateException("Verification failed with HTTP " + response.statusCode);
+                }
+                return response.getString("status");
+            });
+    }
 
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(payload, headers);
+    // Asks the provider about a payment by our own reference, for payments whose charge response (and so their
+    // provider transaction id) was lost. A 404 means the charge never reached the provider.
+    public CompletableFuture<ProviderPayment> fetchProviderPaymentByReference(String paymentReference) {
+        return gatewayClient.getIdempotent("verify", "/v1/payments/by-reference/" + paymentReference)
+            .thenApply(response -> {
+                if (response.statusCode == 404) {
+                    return ProviderPayment.notFound(paymentReference);
+                }
+                if (!response.isOk()) {
+                    throw new IllegalStateException("Lookup failed with HTTP " + response.statusCode);
+                }
+                return new ProviderPayment(paymentReference, response.getString("transaction_id"), response.getString("status"));
+            });
+    }
 
-            // Call X-PAYMENT-PROVIDER mobile money endpoint
-            ResponseEntity<Map> response = restTemplate.postForEntity(
-                xPaymentApiUrl + "/v1/payments/mobile-money", entity, Map.class);
+    public static class ProviderPayment {
+        public final String paymentReference;
+        public final String transactionId;
+        public final String status;
 
-            if (response.getStatusCode() == HttpStatus.OK) {
-                Map<String, Object> responseBody = response.getBody();
-                if ("success".equals(responseBody.get("status"))) {
-                    String transactionId = (String) responseBody.get("transaction_id");
-                    return PaymentResult.success(payment, "Mobile money payment initiated successfully", transactionId);
-                } else {
-                    String errorMessage = (String) responseBody.get("message");
-                    String errorCode = (String) responseBody.get("error_code");
-                    return PaymentResult.failure(errorMessage, errorCode);
-                }
-            } else {
-                return PaymentResult.failure("Payment gateway error", "GATEWAY_ERROR");
-            }
+        public ProviderPayment(String paymentReference, String transactionId, String status) {
+            this.paymentReference = paymentReference;
+            this.transactionId = transactionId;
+            this.status = status;
+        }
 
-        } catch (Exception e) {
-            return PaymentResult.failure("Mobile money payment failed: " + e.getMessage(), "MOBILE_MONEY_ERROR");
+        public static ProviderPayment notFound(String paymentReference) {
+            return new ProviderPayment(paymentReference, null, null);
+        }
+
+        public boolean isFound() {
+            return status != null;
         }
     }
 
-    @Transactional
-    public PaymentResult verifyPayment(String paymentReference) {
-        try {
-            Optional<Payment> paymentOpt = paymentRepository.findByPaymentReference(paymentReference);
-            if (paymentOpt.isEmpty()) {
-                return PaymentResult.failure("Payment not found", "PAYMENT_NOT_FOUND");
+    // Applies a provider-reported status. Each provider status moves the payment along exactly one edge, so
+    // duplicate or late reports (webhook retries, a reconciler racing a webhook) are no-ops. Returns whether
+    // the payment changed.
+    public boolean applyProviderStatus(String externalPaymentId, String paymentReference, String providerStatus) {
+        return applyProviderStatus(externalPaymentId, paymentReference, StatusTransition.of(providerStatus));
+    }
+
+    public boolean applyProviderStatus(String externalPaymentId, String paymentReference, StatusTransition transition) {
+        if (transition == null) {
+            return false;
+        }
+        Integer updated = transactionTemplate().execute(tx -> {
+            int changed = paymentRepository.applyProviderStatus(
+                externalPaymentId, paymentReference, transition.from, transition.to, transition.completedAt());
+            if (changed > 0) {
+                outboxService.recordPayment(null, paymentReference, externalPaymentId, transition.from, transition.to);
             }
+            return changed;
+        });
+        return updated != null && updated > 0;
+    }
 
-            Payment payment = paymentOpt.get();
+    // Batched form of applyProviderStatus for payments that reported the same transition; one statement per batch
+    public int applyProviderStatus(StatusTransition transition, Collection<Long> paymentIds) {
+        if (paymentIds.isEmpty()) {
+            return 0;
+        }
+        Integer updated = transactionTemplate().execute(tx -> {
+            int changed = paymentRepository.applyProviderStatusToIds(
+                paymentIds, transition.from, transition.to, transition.completedAt());
+            if (changed > 0) {
+                outboxService.recordPayments(paymentIds, transition.from, transition.to, changed);
+            }
+            return changed;
+        });
+        return updated != null ? updated : 0;
+    }
 
-            // Call X-PAYMENT-PROVIDER verification endpoint
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("Authorization", "Bearer " + xPaymentApiKey);
-            headers.set("X-API-Version", "2024-01");
-
-            HttpEntity<String> entity = new HttpEntity<>(headers);
-
-            ResponseEntity<Map> response = restTemplate.exchange(
-                xPaymentApiUrl + "/v1/payments/" + payment.getExternalPaymentId() + "/verify",
-                HttpMethod.GET, entity, Map.class);
-
-            if (response.getStatusCode() == HttpStatus.OK) {
-                Map<String, Object> responseBody = response.getBody();
-                String status = (String) responseBody.get("status");
-                
-                // Update payment status based on verification result
-                switch (status) {
-                    case "completed":
-                        payment.setStatus(Payment.PaymentStatus.COMPLETED);
-                        payment.setCompletedAt(LocalDateTime.now());
-                        break;
-                    case "failed":
-                        payment.setStatus(Payment.PaymentStatus.FAILED);
-                        break;
-                    case "pending":
-                        payment.setStatus(Payment.PaymentStatus.PENDING);
-                        break;
-                    default:
-                        payment.setStatus(Payment.PaymentStatus.FAILED);
-                }
+    // The single edge a provider status moves a payment along
+    public enum StatusTransition {
+        COMPLETE(Payment.PaymentStatus.PENDING, Payment.PaymentStatus.COMPLETED),
+        FAIL(Payment.PaymentStatus.PENDING, Payment.PaymentStatus.FAILED),
+        REFUND(Payment.PaymentStatus.COMPLETED, Payment.PaymentStatus.REFUNDED),
+        // Refunded before its completion was ever recorded here; only the reconciler takes this edge
+        REFUND_PENDING(Payment.PaymentStatus.PENDING, Payment.PaymentStatus.REFUNDED);
+
+        public final Payment.PaymentStatus from;
+        public final Payment.PaymentStatus to;
 
-                payment = paymentRepository.save(payment);
-                return PaymentResult.success(payment, "Payment verification completed", payment.getExternalPaymentId());
+        StatusTransition(Payment.PaymentStatus from, Payment.PaymentStatus to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        // Null for "pending" and anything unrecognised, which leave the payment as it is
+        public static StatusTransition of(String providerStatus) {
+            if (providerStatus == null) {
+                return null;
             }
+            return switch (providerStatus.toLowerCase()) {
+                case "completed", "success" -> COMPLETE;
+                case "failed", "cancelled", "expired" -> FAIL;
+                case "refunded" -> REFUND;
+                default -> null;
+            };
+        }
 
-            return PaymentResult.failure("Verification failed", "VERIFICATION_ERROR");
+        // For payments known to be PENDING, where REFUND could never match
+        public static StatusTransition forPending(String providerStatus) {
+            StatusTransition transition = of(providerStatus);
+            return transition == REFUND ? REFUND_PENDING : transition;
+        }
 
-        } catch (Exception e) {
-            return PaymentResult.failure("Payment verification failed: " + e.getMessage(), "VERIFICATION_ERROR");
+        LocalDateTime completedAt() {
+            return this == COMPLETE ? LocalDateTime.now() : null;
         }
     }
 
-    public PaymentResult refundPayment(String paymentReference, BigDecimal refundAmount) {
+    public CompletableFuture<PaymentResult> refundPayment(String paymentReference, BigDecimal refundAmount) {
+        Payment payment;
+        Map<String, Object> payload;
         try {
             Optional<Payment> paymentOpt = paymentRepository.findByPaymentReference(paymentReference);
             if (paymentOpt.isEmpty()) {
-                return PaymentResult.failure("Payment not found", "PAYMENT_NOT_FOUND");
+                return CompletableFuture.completedFuture(PaymentResult.failure("Payment not found", "PAYMENT_NOT_FOUND"));
             }
 
-            Payment payment = paymentOpt.get();
+            payment = paymentOpt.get();
 
             if (!payment.isCompleted()) {
-                return PaymentResult.failure("Cannot refund incomplete payment", "PAYMENT_NOT_COMPLETED");
+                return CompletableFuture.completedFuture(
+                    PaymentResult.failure("Cannot refund incomplete payment", "PAYMENT_NOT_COMPLETED"));
             }
 
             if (refundAmount.compareTo(payment.getAmount()) > 0) {
-                return PaymentResult.failure("Refund amount exceeds payment amount", "INVALID_REFUND_AMOUNT");
+                return CompletableFuture.completedFuture(
+                    PaymentResult.failure("Refund amount exceeds payment amount", "INVALID_REFUND_AMOUNT"));
             }
 
             // Prepare refund payload
-            Map<String, Object> payload = new HashMap<>();
+            payload = new HashMap<>();
             payload.put("merchant_id", merchantId);
             payload.put("original_payment_id", payment.getExternalPaymentId());
             payload.put("refund_amount", refundAmount.toString());
             payload.put("currency", payment.getCurrency());
             payload.put("reason", "Customer requested refund");
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(PaymentResult.failure("Refund failed: " + e.getMessage(), "REFUND_ERROR"));
+        }
 
-            // Set headers
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Authorization", "Bearer " + xPaymentApiKey);
-            headers.set("X-API-Version", "2024-01");
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(payload, headers);
-
-            // Call X-PAYMENT-PROVIDER refund endpoint
-            ResponseEntity<Map> response = restTemplate.postForEntity(
-                xPaymentApiUrl + "/v1/payments/refund", entity, Map.class);
-
-            if (response.getStatusCode() == HttpStatus.OK) {
-                Map<String, Object> responseBody = response.getBody();
-                if ("success".equals(responseBody.get("status"))) {
-                    payment.setStatus(Payment.PaymentStatus.REFUNDED);
-                    payment = paymentRepository.save(payment);
-                    
-                    String refundId = (String) responseBody.get("refund_id");
-                    return PaymentResult.success(payment, "Refund processed successfully", refundId);
+        // Call X-PAYMENT-PROVIDER refund endpoint
+        return gatewayClient.post("refund", "/v1/payments/refund", payload)
+            .handle((response, error) -> {
+                if (error != null) {
+                    return gatewayFailure(error, null, "Refund failed: ", "REFUND_ERROR");
                 }
-            }
+                if (response.isOk() && "success".equals(response.getString("status"))) {
+                    recordOutcome(payment, Payment.PaymentStatus.COMPLETED, Payment.PaymentStatus.REFUNDED, null, null);
+                    return PaymentResult.success(payment, "Refund processed successfully", response.getString("refund_id"));
+                }
+                return PaymentResult.failure("Refund processing failed", "REFUND_ERROR");
+            })
+            .exceptionally(e -> PaymentResult.failure("Refund failed: " + PaymentGatewayClient.unwrap(e).getMessage(), "REFUND_ERROR"));
+    }
 
-            return PaymentResult.failure("Refund processing failed", "REFUND_ERROR");
+    // One UPDATE (plus its outbox event) on the provider's callback thread; the returned payment mirrors the row
+    private void recordOutcome(Payment payment, Payment.PaymentStatus expectedStatus, Payment.PaymentStatus status,
+                               String externalPaymentId, LocalDateTime completedAt) {
+        Integer updated = transactionTemplate().execute(tx -> {
+            int changed = paymentRepository.updateOutcome(payment.getId(), expectedStatus, status, externalPaymentId, completedAt);
+            if (changed > 0) {
+                outboxService.recordPayment(payment.getId(), payment.getPaymentReference(), externalPaymentId, expectedStatus, status);
+            }
+            return changed;
+        });
+        if (updated == null || updated == 0) {
+            // A webhook moved the payment on first; report what it recorded
+            paymentRepository.findById(payment.getId()).ifPresent(current -> {
+                payment.setStatus(current.getStatus());
+                payment.setExternalPaymentId(current.getExternalPaymentId());
+                payment.setCompletedAt(current.getCompletedAt());
+            });
+            return;
+        }
+        payment.setStatus(status);
+        if (externalPaymentId != null) {
+            payment.setExternalPaymentId(externalPaymentId);
+        }
+        if (completedAt != null) {
+            payment.setCompletedAt(completedAt);
+        }
+    }
 
-        } catch (Exception e) {
-            return PaymentResult.failure("Refund failed: " + e.getMessage(), "REFUND_ERROR");
+    // Busy and open-circuit failures happen before anything is sent, so the payment can fail outright. Any other
+    // error (a timeout, a dropped connection) may come after the provider took the charge; refunds pass no payment
+    // because a failed refund leaves the row untouched either way.
+    private PaymentResult gatewayFailure(Throwable error, Payment payment, String messagePrefix, String errorCode) {
+        Throwable cause = PaymentGatewayClient.unwrap(error);
+        if (cause instanceof GatewayBusyException) {
+            return PaymentResult.failure("Payment provider is busy, please retry shortly", "GATEWAY_BUSY");
         }
+        if (cause instanceof CircuitOpenException) {
+            return PaymentResult.failure("Payment provider is unavailable, please retry later", "GATEWAY_UNAVAILABLE");
+        }
+        return payment == null
+            ? PaymentResult.failure(messagePrefix + cause.getMessage(), errorCode)
+            : outcomeUnknown(payment, messagePrefix + cause.getMessage(), errorCode);
+    }
+
+    // A failure that still carries the payment: it stays PENDING until the provider reports what happened
+    private static PaymentResult outcomeUnknown(Payment payment, String message, String errorCode) {
+        return new PaymentResult(false, message + "; payment " + payment.getPaymentReference()
+            + " stays pending until the provider confirms it", payment, errorCode, null);
+    }
+
+    private TransactionTemplate transactionTemplate() {
+        return new TransactionTemplate(transactionManager);
     }
-}
\ No newline at end of file
+}
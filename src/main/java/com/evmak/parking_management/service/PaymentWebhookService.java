@@ -0,0 +1,109 @@
+package com.evmak.parking_management.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Map;
+
+// Ingests X-PAYMENT-PROVIDER status callbacks. The raw body must carry a valid HMAC-SHA256 signature; the
+// status is then applied through PaymentService.applyProviderStatus, which makes redelivered and out-of-order
+// events harmless.
+@Service
+public class PaymentWebhookService {
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${x-payment-provider.webhook.secret:}")
+    private String webhookSecret = "";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public static class WebhookResult {
+        public final boolean accepted;
+        public final boolean applied; // False for duplicates and events about payments that are not ours
+        public final String message;
+        public final String errorCode;
+
+        public WebhookResult(boolean accepted, boolean applied, String message, String errorCode) {
+            this.accepted = accepted;
+            this.applied = applied;
+            this.message = message;
+            this.errorCode = errorCode;
+        }
+
+        public static WebhookResult rejected(String message, String errorCode) {
+            return new WebhookResult(false, false, message, errorCode);
+        }
+    }
+
+    public WebhookResult handle(String body, String signature) {
+        if (webhookSecret == null || webhookSecret.isBlank()) {
+            return record(WebhookResult.rejected("Webhook secret is not configured", "WEBHOOK_NOT_CONFIGURED"));
+        }
+        if (body == null || signature == null || !signatureMatches(body, signature)) {
+            return record(WebhookResult.rejected("Invalid webhook signature", "INVALID_SIGNATURE"));
+        }
+
+        Map<String, Object> event;
+        try {
+            event = objectMapper.readValue(body, new TypeReference<Map<String, Object>>() {});
+        } catch (Exception e) {
+            return record(WebhookResult.rejected("Malformed webhook payload", "INVALID_PAYLOAD"));
+        }
+
+        String transactionId = stringValue(event.get("transaction_id"));
+        String paymentReference = stringValue(event.get("payment_reference"));
+        String status = stringValue(event.get("status"));
+        if ((transactionId == null && paymentReference == null) || status == null) {
+            return record(WebhookResult.rejected("Webhook payload is missing transaction_id or status", "INVALID_PAYLOAD"));
+        }
+
+        try {
+            boolean applied = paymentService.applyProviderStatus(transactionId, paymentReference, status);
+            return record(new WebhookResult(true, applied,
+                applied ? "Payment status updated" : "No change - event already applied or payment unknown", null));
+        } catch (Exception e) {
+            // Not acknowledged, so the provider redelivers it
+            return record(WebhookResult.rejected("Failed to apply webhook: " + e.getMessage(), "PROCESSING_ERROR"));
+        }
+    }
+
+    // Hex HMAC-SHA256 of the raw body, compared in constant time
+    boolean signatureMatches(String body, String signature) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(webhookSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            byte[] expected = mac.doFinal(body.getBytes(StandardCharsets.UTF_8));
+            String provided = signature.startsWith("sha256=") ? signature.substring(7) : signature;
+            return MessageDigest.isEqual(expected, HexFormat.of().parseHex(provided.trim()));
+        } catch (IllegalArgumentException e) {
+            return false; // Not hex
+        } catch (Exception e) {
+            System.err.println("Failed to verify webhook signature: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private WebhookResult record(WebhookResult result) {
+        String outcome = !result.accepted ? result.errorCode.toLowerCase() : result.applied ? "applied" : "duplicate";
+        meterRegistry.counter("payment.webhook.events", "outcome", outcome).increment();
+        return result;
+    }
+
+    private static String stringValue(Object value) {
+        return value != null ? value.toString() : null;
+    }
+}
@@ -0,0 +1,229 @@
+package com.evmak.parking_management.service;
+
+import com.evmak.parking_management.entity.PricingRule;
+import com.evmak.parking_management.repository.PricingRuleRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compiles active pricing rules into per-facility minute-of-week tables, so a quote is one array lookup per
+// billed hour instead of evaluating every rule against the clock. Tables are rebuilt when the rules change.
+@Service
+public class PricingEngine {
+
+    static final int MINUTES_PER_DAY = 24 * 60;
+    static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+
+    @Autowired
+    private PricingRuleRepository pricingRuleRepository;
+
+    @Autowired
+    private SpotOccupancyService occupancyService;
+
+    // Facilities without rules of their own share the global table
+    private volatile Map<Long, CompiledSchedule> facilitySchedules = Map.of();
+    private volatile CompiledSchedule globalSchedule = CompiledSchedule.FLAT;
+    private volatile List<Object[]> lastFingerprint;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void refresh() {
+        try {
+            lastFingerprint = pricingRuleRepository.findRulesFingerprint();
+            compile(pricingRuleRepository.findActiveRulesWithDays());
+        } catch (Exception e) {
+            // Keep serving the previous tables
+            System.err.println("Failed to compile pricing rules: " + e.getMessage());
+        }
+    }
+
+    // Cheap change check; rules are only recompiled when a row was added, removed or updated
+    @Scheduled(initialDelayString = "${app.pricing.refresh-ms:60000}", fixedDelayString = "${app.pricing.refresh-ms:60000}")
+    public void refreshIfChanged() {
+        try {
+            List<Object[]> fingerprint = pricingRuleRepository.findRulesFingerprint();
+            if (lastFingerprint == null || !Arrays.deepEquals(fingerprint.toArray(), lastFingerprint.toArray())) {
+                refresh();
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to check pricing rules for changes: " + e.getMessage());
+        }
+    }
+
+    void compile(List<PricingRule> activeRules) {
+        List<PricingRule> globalRules = new ArrayList<>();
+        Map<Long, List<PricingRule>> rulesByFacility = new HashMap<>();
+        for (PricingRule rule : activeRules) {
+            if (rule.getFacility() == null) {
+                globalRules.add(rule);
+            } else {
+                rulesByFacility.computeIfAbsent(rule.getFacility().getId(), k -> new ArrayList<>()).add(rule);
+            }
+        }
+
+        Map<Long, CompiledSchedule> compiled = new HashMap<>();
+        rulesByFacility.forEach((facilityId, rules) -> {
+            rules.addAll(globalRules);
+            compiled.put(facilityId, CompiledSchedule.compile(rules));
+        });
+        globalSchedule = CompiledSchedule.compile(globalRules);
+        facilitySchedules = compiled;
+        System.out.println("Pricing rules compiled: " + activeRules.size() + " rules, "
+            + compiled.size() + " facility-specific schedules");
+    }
+
+    // Price for parking from start for durationMinutes, billed per started hour at the multiplier in force
+    // when each hour begins
+    public Quote quote(Long facilityId, BigDecimal baseHourlyRate, LocalDateTime start, long durationMinutes) {
+        CompiledSchedule schedule = facilitySchedules.getOrDefault(facilityId, globalSchedule);
+        long hours = (durationMinutes + 59) / 60; // Round up to next hour
+        OccupancyLookup occupancy = new OccupancyLookup(facilityId);
+
+        int minuteOfWeek = minuteOfWeek(start);
+        BigDecimal firstMultiplier = schedule.multiplierAt(minuteOfWeek, occupancy);
+        BigDecimal multiplierSum = BigDecimal.ZERO;
+        for (long hour = 0; hour < hours; hour++) {
+            multiplierSum = multiplierSum.add(hour == 0 ? firstMultiplier : schedule.multiplierAt(minuteOfWeek, occupancy));
+            minuteOfWeek = (minuteOfWeek + 60) % MINUTES_PER_WEEK;
+        }
+
+        return new Quote(
+            baseHourlyRate.multiply(firstMultiplier).setScale(2, RoundingMode.HALF_UP),
+            baseHourlyRate.multiply(multiplierSum).setScale(2, RoundingMode.HALF_UP),
+            hours);
+    }
+
+    static int minuteOfWeek(LocalDateTime time) {
+        return (time.getDayOfWeek().getValue() - 1) * MINUTES_PER_DAY + time.getHour() * 60 + time.getMinute();
+    }
+
+    // Occupancy is only read when a demand rule is actually consulted, and at most once per quote
+    private class OccupancyLookup {
+        private final Long facilityId;
+        private double percentage = Double.NaN;
+
+        OccupancyLookup(Long facilityId) {
+            this.facilityId = facilityId;
+        }
+
+        double percentage() {
+            if (Double.isNaN(percentage)) {
+                int total = occupancyService.countTotal(facilityId);
+                percentage = total > 0 ? (total - occupancyService.countAvailable(facilityId)) * 100.0 / total : 0.0;
+            }
+            return percentage;
+        }
+    }
+
+    // One pricing outcome per rule; a demand tier only applies at or above its occupancy threshold
+    static final class Tier {
+        final BigDecimal multiplier;
+        final double demandThreshold; // Negative when the rule applies regardless of demand
+
+        Tier(PricingRule rule) {
+            this.multiplier = rule.getMultiplier();
+            this.demandThreshold = rule.getRuleType() == PricingRule.RuleType.DEMAND_BASED && rule.getDemandThresholdPercentage() != null
+                ? rule.getDemandThresholdPercentage().doubleValue() : -1;
+        }
+    }
+
+    // slotByMinute maps each minute of the week (Monday 00:00 = 0) to the tiers in force then, highest priority
+    // first. Distinct tier lists are shared, so a table costs 20 KB however many rules it was built from.
+    static final class CompiledSchedule {
+        static final CompiledSchedule FLAT = new CompiledSchedule(new short[MINUTES_PER_WEEK], new Tier[][]{new Tier[0]});
+
+        final short[] slotByMinute;
+        final Tier[][] slots;
+
+        private CompiledSchedule(short[] slotByMinute, Tier[][] slots) {
+            this.slotByMinute = slotByMinute;
+            this.slots = slots;
+        }
+
+        static CompiledSchedule compile(List<PricingRule> rules) {
+            if (rules.isEmpty()) {
+                return FLAT;
+            }
+            // Higher priority rules override lower ones; ties go to the older rule
+            List<PricingRule> ordered = new ArrayList<>(rules);
+            ordered.sort(Comparator.comparing((PricingRule rule) -> rule.getPriority() != null ? rule.getPriority() : 0).reversed()
+                .thenComparing(rule -> rule.getId() != null ? rule.getId() : Long.MAX_VALUE));
+            Tier[] tiers = ordered.stream().map(Tier::new).toArray(Tier[]::new);
+
+            short[] slotByMinute = new short[MINUTES_PER_WEEK];
+            Map<List<Tier>, Short> slotIds = new HashMap<>();
+            List<Tier[]> slots = new ArrayList<>();
+            for (int minute = 0; minute < MINUTES_PER_WEEK; minute++) {
+                List<Tier> active = new ArrayList<>();
+                for (int i = 0; i < ordered.size(); i++) {
+                    if (covers(ordered.get(i), minute)) {
+                        active.add(tiers[i]);
+                        if (tiers[i].demandThreshold < 0) {
+                            break; // Always applies - nothing below it can win
+                        }
+                    }
+                }
+                Short slot = slotIds.get(active);
+                if (slot == null) {
+                    slot = (short) slots.size();
+                    slotIds.put(active, slot);
+                    slots.add(active.toArray(new Tier[0]));
+                }
+                slotByMinute[minute] = slot;
+            }
+            return new CompiledSchedule(slotByMinute, slots.toArray(new Tier[0][]));
+        }
+
+        BigDecimal multiplierAt(int minuteOfWeek, OccupancyLookup occupancy) {
+            for (Tier tier : slots[slotByMinute[minuteOfWeek]]) {
+                if (tier.demandThreshold < 0 || occupancy.percentage() >= tier.demandThreshold) {
+                    return tier.multiplier;
+                }
+            }
+            return BigDecimal.ONE;
+        }
+
+        // Same window and day checks as PricingRule.isApplicableNow, at minute resolution; windows whose end is
+        // before their start run over midnight
+        private static boolean covers(PricingRule rule, int minuteOfWeek) {
+            int day = minuteOfWeek / MINUTES_PER_DAY;
+            int minute = minuteOfWeek % MINUTES_PER_DAY;
+            if (rule.getDaysOfWeek() != null && !rule.getDaysOfWeek().isEmpty()
+                    && !rule.getDaysOfWeek().contains(PricingRule.DayOfWeek.values()[day])) {
+                return false;
+            }
+            LocalTime startTime = rule.getStartTime();
+            LocalTime endTime = rule.getEndTime();
+            if (startTime == null || endTime == null) {
+                return true;
+            }
+            int start = startTime.getHour() * 60 + startTime.getMinute();
+            int end = endTime.getHour() * 60 + endTime.getMinute();
+            return start <= end ? minute >= start && minute <= end : minute >= start || minute <= end;
+        }
+    }
+
+    public static class Quote {
+        public final BigDecimal hourlyRate; // Rate for the first billed hour
+        public final BigDecimal totalAmount;
+        public final long billedHours;
+
+        public Quote(BigDecimal hourlyRate, BigDecimal totalAmount, long billedHours) {
+            this.hourlyRate = hourlyRate;
+            this.totalAmount = totalAmount;
+            this.billedHours = billedHours;
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package com.evmak.parking_management.service;
+
+import com.evmak.parking_management.entity.ParkingSpot;
+import com.evmak.parking_management.repository.ParkingSpotRepository;
+import com.evmak.parking_management.repository.ReservationRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Releases reservation and spot holds as soon as they expire instead of waiting for a manual cleanup call.
+// The wheel only knows holds registered on this instance (or recovered at its startup); a low-frequency sweep of
+// the database releases anything it missed, e.g. holds taken on an instance that went down.
+@Service
+public class ReservationExpiryScheduler {
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private ParkingSpotRepository spotRepository;
+
+    @Autowired
+    private SpotStateService spotStateService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.reservation.expiry.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.reservation.expiry.tick-ms:1000}")
+    private long tickMs = 1000;
+
+    @Value("${app.reservation.expiry.batch-size:500}")
+    private int batchSize = 500;
+
+    public enum HoldType {
+        RESERVATION, SPOT_HOLD
+    }
+
+    // Registrations arrive from request threads; the wheel itself is only touched by the tick thread
+    private final ConcurrentLinkedQueue<Expiry> pending = new ConcurrentLinkedQueue<>();
+    private TimingWheel wheel;
+    private ScheduledExecutorService ticker;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        wheel = new TimingWheel(System.currentTimeMillis() / tickMs);
+        recover();
+
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reservation-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    public void scheduleReservation(Long reservationId, LocalDateTime expiresAt) {
+        schedule(HoldType.RESERVATION, reservationId, expiresAt);
+    }
+
+    public void scheduleSpotHold(Long spotId, LocalDateTime expiresAt) {
+        schedule(HoldType.SPOT_HOLD, spotId, expiresAt);
+    }
+
+    private void schedule(HoldType type, Long id, LocalDateTime expiresAt) {
+        if (enabled && id != null && expiresAt != null) {
+            // Round up so a hold is never released before its expiry time
+            long deadlineMillis = expiresAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            pending.add(new Expiry(type, id, (deadlineMillis + tickMs - 1) / tickMs));
+        }
+    }
+
+    // Re-register every outstanding hold from the database, e.g. after a restart
+    private void recover() {
+        try {
+            int recovered = 0;
+            for (Object[] row : reservationRepository.findActiveReservationExpiries()) {
+                scheduleReservation((Long) row[0], (LocalDateTime) row[1]);
+                recovered++;
+            }
+            for (Object[] row : spotRepository.findSpotHoldExpiries()) {
+                scheduleSpotHold((Long) row[0], (LocalDateTime) row[1]);
+                recovered++;
+            }
+            System.out.println("Reservation expiry scheduler recovered " + recovered + " holds");
+        } catch (Exception e) {
+            System.err.println("Failed to recover reservation holds: " + e.getMessage());
+        }
+    }
+
+    private void tick() {
+        try {
+            Expiry expiry;
+            while ((expiry = pending.poll()) != null) {
+                wheel.add(expiry);
+            }
+
+            List<Expiry> due = wheel.advanceTo(System.currentTimeMillis() / tickMs);
+            if (!due.isEmpty()) {
+                release(due);
+            }
+        } catch (Exception e) {
+            // Never let an exception cancel the periodic task
+            System.err.println("Reservation expiry tick failed: " + e.getMessage());
+        }
+    }
+
+    private void release(List<Expiry> due) {
+        List<Long> reservationIds = new ArrayList<>();
+        List<Long> spotIds = new ArrayList<>();
+        for (Expiry expiry : due) {
+            (expiry.type == HoldType.RESERVATION ? reservationIds : spotIds).add(expiry.id);
+        }
+        int released = releaseReservations(reservationIds) + releaseSpotHolds(spotIds);
+        if (released > 0) {
+            System.out.println("Released " + released + " expired holds");
+        }
+    }
+
+    // Backstop for holds the wheel never saw; releasing is conditional, so racing the wheel or another instance is harmless
+    @Scheduled(initialDelayString = "${app.reservation.expiry.sweep-interval-ms:300000}",
+               fixedDelayString = "${app.reservation.expiry.sweep-interval-ms:300000}")
+    public void sweepExpired() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int released = releaseAllExpired();
+            if (released > 0) {
+                System.out.println("Expiry sweep released " + released + " holds missed by the timing wheel");
+            }
+        } catch (Exception e) {
+            // Never let an exception cancel the periodic task
+            System.err.println("Reservation expiry sweep failed: " + e.getMessage());
+        }
+    }
+
+    // Bulk release of everything already past its expiry, used by the manual cleanup endpoints and the sweep
+    public int releaseAllExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> reservationIds = reservationRepository.findExpiredReservationIds(now);
+        List<Long> spotIds = spotRepository.findSpotHoldExpiries().stream()
+            .filter(row -> !((LocalDateTime) row[1]).isAfter(now))
+            .map(row -> (Long) row[0])
+            .toList();
+        return releaseReservations(reservationIds) + releaseSpotHolds(spotIds);
+    }
+
+    public int releaseReservations(List<Long> reservationIds) {
+        int released = 0;
+        for (List<Long> batch : batches(reservationIds)) {
+            Integer count = transactionTemplate().execute(status -> {
+                List<Object[]> rows = reservationRepository.findDueReservations(batch, LocalDateTime.now());
+                if (rows.isEmpty()) {
+                    return 0; // Confirmed, cancelled or already expired in the meantime
+                }
+
+                List<Long> expiredIds = new ArrayList<>(rows.size());
+                Map<SpotGroup, List<Long>> spotsByGroup = new HashMap<>();
+                for (Object[] row : rows) {
+                    expiredIds.add((Long) row[0]);
+                    if (row[1] != null) {
+                        spotsByGroup.computeIfAbsent(new SpotGroup((Long) row[2], (ParkingSpot.SpotType) row[3]),
+                            k -> new ArrayList<>()).add((Long) row[1]);
+                    }
+                }
+
+                int expired = reservationRepository.expireReservations(expiredIds);
+                spotsByGroup.forEach((group, spots) -> spotStateService.releaseHolds(group.facilityId, group.spotType, spots));
+                return expired;
+            });
+            released += count != null ? count : 0;
+        }
+        return released;
+    }
+
+    public int releaseSpotHolds(List<Long> spotIds) {
+        int released = 0;
+        for (List<Long> batch : batches(spotIds)) {
+            Integer count = transactionTemplate().execute(status -> {
+                List<Object[]> rows = spotRepository.findDueSpotHolds(batch, LocalDateTime.now());
+                if (rows.isEmpty()) {
+                    return 0;
+                }
+
+                Map<SpotGroup, List<Long>> spotsByGroup = new HashMap<>();
+                for (Object[] row : rows) {
+                    spotsByGroup.computeIfAbsent(new SpotGroup((Long) row[1], (ParkingSpot.SpotType) row[2]),
+                        k -> new ArrayList<>()).add((Long) row[0]);
+                }
+                int freed = 0;
+                for (Map.Entry<SpotGroup, List<Long>> group : spotsByGroup.entrySet()) {
+                    freed += spotStateService.releaseHolds(group.getKey().facilityId, group.getKey().spotType, group.getValue());
+                }
+                return freed;
+            });
+            released += count != null ? count : 0;
+        }
+        return released;
+    }
+
+    private List<List<Long>> batches(List<Long> ids) {
+        List<List<Long>> batches = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            batches.add(ids.subList(from, Math.min(from + batchSize, ids.size())));
+        }
+        return batches;
+    }
+
+    private TransactionTemplate transactionTemplate() {
+        return new TransactionTemplate(transactionManager);
+    }
+
+    // Holds are released per facility and spot type, the granularity of a spot transition
+    private record SpotGroup(Long facilityId, ParkingSpot.SpotType spotType) {}
+
+    static final class Expiry {
+        final HoldType type;
+        final long id;
+        final long deadlineTick;
+
+        Expiry(HoldType type, long id, long deadlineTick) {
+            this.type = type;
+            this.id = id;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+
+    // Hierarchical timing wheel: LEVELS wheels of 64 slots, each slot of level n spans 64^n ticks.
+    // An entry sits on the lowest level whose current rotation contains its deadline and is cascaded down
+    // when that slot comes round, so add and expire are O(1) regardless of how many holds are pending.
+    static final class TimingWheel {
+        private static final int LEVELS = 4;
+        private static final int SLOT_BITS = 6;
+        private static final int SLOTS = 1 << SLOT_BITS;
+        private static final int SLOT_MASK = SLOTS - 1;
+
+        @SuppressWarnings("unchecked")
+        private final ArrayDeque<Expiry>[][] slots = new ArrayDeque[LEVELS][SLOTS];
+        // Deadlines beyond the top level's rotation (~194 days at 1s ticks)
+        private final List<Expiry> overflow = new ArrayList<>();
+        private final List<Expiry> due = new ArrayList<>();
+        private long currentTick;
+        private int size;
+
+        TimingWheel(long startTick) {
+            this.currentTick = startTick;
+        }
+
+        void add(Expiry expiry) {
+            size++;
+            long deadline = expiry.deadlineTick;
+            if (deadline <= currentTick) {
+                due.add(expiry);
+                return;
+            }
+            for (int level = 0; level < LEVELS; level++) {
+                int shift = SLOT_BITS * (level + 1);
+                if ((deadline >>> shift) == (currentTick >>> shift)) {
+                    int slot = (int) (deadline >>> (SLOT_BITS * level)) & SLOT_MASK;
+                    ArrayDeque<Expiry> bucket = slots[level][slot];
+                    if (bucket == null) {
+                        bucket = slots[level][slot] = new ArrayDeque<>();
+                    }
+                    bucket.add(expiry);
+                    return;
+                }
+            }
+            overflow.add(expiry);
+        }
+
+        // Advances the wheel one tick at a time up to targetTick and returns every entry that became due
+        List<Expiry> advanceTo(long targetTick) {
+            while (currentTick < targetTick) {
+                currentTick++;
+
+                // Cascade higher levels whose slot boundary was reached, top level first
+                for (int level = LEVELS - 1; level >= 1; level--) {
+                    int shift = SLOT_BITS * level;
+                    if ((currentTick & ((1L << shift) - 1)) == 0) {
+                        if (level == LEVELS - 1 && !overflow.isEmpty()) {
+                            List<Expiry> reinsert = new ArrayList<>(overflow);
+                            overflow.clear();
+                            size -= reinsert.size();
+                            reinsert.forEach(this::add);
+                        }
+                        cascade(slots[level], (int) (currentTick >>> shift) & SLOT_MASK);
+                    }
+                }
+
+                ArrayDeque<Expiry> bucket = slots[0][(int) currentTick & SLOT_MASK];
+                if (bucket != null && !bucket.isEmpty()) {
+                    due.addAll(bucket);
+                    bucket.clear();
+                }
+            }
+
+            List<Expiry> result = new ArrayList<>(due);
+            size -= result.size();
+            due.clear();
+            return result;
+        }
+
+        private void cascade(ArrayDeque<Expiry>[] level, int slot) {
+            ArrayDeque<Expiry> bucket = level[slot];
+            if (bucket == null || bucket.isEmpty()) {
+                return;
+            }
+            List<Expiry> entries = new ArrayList<>(bucket);
+            bucket.clear();
+            size -= entries.size();
+            entries.forEach(this::add);
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
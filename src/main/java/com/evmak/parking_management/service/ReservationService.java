@@ -3,15 +3,17 @@ package com.evmak.parking_management.service;
 import com.evmak.parking_management.entity.*;
 import com.evmak.parking_management.repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Set;
 
 @Service
 public class ReservationService {
@@ -31,154 +33,288 @@ public class ReservationService {
     @Autowired
     private ParkingFacilityRepository facilityRepository;
 
-    // Distributed locking mechanism for high concurrency
-    private final ConcurrentHashMap<Long, ReentrantLock> spotLocks = new ConcurrentHashMap<>();
+    @Autowired
+    private SpotOccupancyService occupancyService;
+
+    @Autowired
+    private ReservationExpiryScheduler expiryScheduler;
+
+    @Autowired
+    private PricingEngine pricingEngine;
+
+    @Autowired
+    private SpotStateService spotStateService;
+
+    @Value("${app.reservation.max-claim-attempts:5}")
+    private int maxClaimAttempts = 5;
 
     public static class ReservationResult {
         public final boolean success;
         public final String message;
         public final Reservation reservation;
         public final String errorCode;
+        // Set when the requested spot was taken and the caller allowed another spot to be reserved instead
+        public final Long reroutedToSpotId;
 
         public ReservationResult(boolean success, String message, Reservation reservation, String errorCode) {
+            this(success, message, reservation, errorCode, null);
+        }
+
+        public ReservationResult(boolean success, String message, Reservation reservation, String errorCode,
+                                 Long reroutedToSpotId) {
             this.success = success;
             this.message = message;
             this.reservation = reservation;
             this.errorCode = errorCode;
+            this.reroutedToSpotId = reroutedToSpotId;
         }
 
         public static ReservationResult success(Reservation reservation, String message) {
             return new ReservationResult(true, message, reservation, null);
         }
 
+        public static ReservationResult rerouted(Reservation reservation, Long spotId, String message) {
+            return new ReservationResult(true, message, reservation, null, spotId);
+        }
+
         public static ReservationResult failure(String message, String errorCode) {
             return new ReservationResult(false, message, null, errorCode);
         }
     }
 
+    // Entities validated for a reservation request; failure is set when validation rejected the request
+    private static class ReservationContext {
+        final User user;
+        final Vehicle vehicle;
+        final ParkingFacility facility;
+        final ParkingSpot spot;
+        final long overlappingReservations;
+        final ReservationResult failure;
+
+        ReservationContext(User user, Vehicle vehicle, ParkingFacility facility, ParkingSpot spot, 
+                           long overlappingReservations, ReservationResult failure) {
+            this.user = user;
+            this.vehicle = vehicle;
+            this.facility = facility;
+            this.spot = spot;
+            this.overlappingReservations = overlappingReservations;
+            this.failure = failure;
+        }
+
+        static ReservationContext rejected(String message, String errorCode) {
+            return new ReservationContext(null, null, null, null, 0, ReservationResult.failure(message, errorCode));
+        }
+    }
+
     @Transactional
     public ReservationResult reserveSpot(Long userId, Long vehicleId, Long facilityId, 
                                        Long spotId, Integer durationMinutes) {
+        return reserveSpot(userId, vehicleId, facilityId, spotId, durationMinutes, false);
+    }
+
+    // With allowReroute, a requested spot that is taken (or claimed first by a concurrent request) is replaced by
+    // another free spot of the same type, nearest floor first; the result names the spot that was reserved instead
+    @Transactional
+    public ReservationResult reserveSpot(Long userId, Long vehicleId, Long facilityId, 
+                                       Long spotId, Integer durationMinutes, boolean allowReroute) {
         
-        // Get distributed lock for the specific spot
-        ReentrantLock lock = spotLocks.computeIfAbsent(spotId, k -> new ReentrantLock());
-        
-        if (!lock.tryLock()) {
-            return ReservationResult.failure("Spot is currently being reserved by another user", "SPOT_LOCKED");
+        // Calculate reservation times
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime reservedUntil = now.plusMinutes(durationMinutes);
+        LocalDateTime expiresAt = now.plusMinutes(15); // 15-minute hold
+
+        // User, vehicle, facility, spot and reservation counts are validated from a single query
+        ReservationContext context = loadContext(userId, vehicleId, facilityId, spotId, now, reservedUntil);
+        if (context.failure != null) {
+            return context.failure;
+        }
+
+        ParkingSpot spot = context.spot;
+
+        if (spot.getStatus() == ParkingSpot.SpotStatus.AVAILABLE) {
+            // Check for overlapping reservations
+            if (context.overlappingReservations > 0) {
+                return ReservationResult.failure("Time slot conflicts with existing reservation", "TIME_CONFLICT");
+            }
+        } else if (!allowReroute) {
+            return ReservationResult.failure("Parking spot is not available", "SPOT_NOT_AVAILABLE");
+        }
+
+        // Claim the spot with a conditional UPDATE; if another request won it, move on to the next free spot of the same type
+        Long claimedSpotId = claimSpot(facilityId, spot.getSpotType(), spot.getFloorLevel(), spotId, allowReroute,
+            context.user, now, reservedUntil, expiresAt);
+        if (claimedSpotId == null) {
+            return ReservationResult.failure("Parking spot is not available", "SPOT_NOT_AVAILABLE");
         }
 
-        try {
-            return performReservation(userId, vehicleId, facilityId, spotId, durationMinutes);
-        } finally {
-            lock.unlock();
+        Reservation reservation = createReservation(context, claimedSpotId, now, reservedUntil, expiresAt, durationMinutes);
+
+        if (!claimedSpotId.equals(spotId)) {
+            return ReservationResult.rerouted(reservation, claimedSpotId,
+                "Requested spot was taken; spot " + claimedSpotId + " reserved instead. You have 15 minutes to confirm your arrival.");
         }
+        return ReservationResult.success(reservation, 
+            "Spot reserved successfully. You have 15 minutes to confirm your arrival.");
     }
 
-    private ReservationResult performReservation(Long userId, Long vehicleId, Long facilityId, 
-                                               Long spotId, Integer durationMinutes) {
+    // Server-side spot selection: claims the best free spot of the requested type, preferring the given floor
+    @Transactional
+    public ReservationResult reserveAnySpot(Long userId, Long vehicleId, Long facilityId, 
+                                          ParkingSpot.SpotType spotType, Integer preferredFloor, 
+                                          Integer durationMinutes) {
         
-        // Validate user exists and is active
-        Optional<User> userOpt = userRepository.findById(userId);
-        if (userOpt.isEmpty() || !userOpt.get().getIsActive()) {
-            return ReservationResult.failure("User not found or inactive", "USER_INVALID");
-        }
-        User user = userOpt.get();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime reservedUntil = now.plusMinutes(durationMinutes);
+        LocalDateTime expiresAt = now.plusMinutes(15); // 15-minute hold
 
-        // Validate vehicle belongs to user
-        Optional<Vehicle> vehicleOpt = vehicleRepository.findById(vehicleId);
-        if (vehicleOpt.isEmpty() || !vehicleOpt.get().getUser().getId().equals(userId) || !vehicleOpt.get().getIsActive()) {
-            return ReservationResult.failure("Vehicle not found or doesn't belong to user", "VEHICLE_INVALID");
+        ReservationContext context = loadContext(userId, vehicleId, facilityId, null, now, reservedUntil);
+        if (context.failure != null) {
+            return context.failure;
         }
-        Vehicle vehicle = vehicleOpt.get();
 
-        // Validate facility exists and is active
-        Optional<ParkingFacility> facilityOpt = facilityRepository.findById(facilityId);
-        if (facilityOpt.isEmpty() || !facilityOpt.get().getIsActive()) {
-            return ReservationResult.failure("Parking facility not found or inactive", "FACILITY_INVALID");
+        Long claimedSpotId = claimSpot(facilityId, spotType, preferredFloor, null, true,
+            context.user, now, reservedUntil, expiresAt);
+        if (claimedSpotId == null) {
+            return ReservationResult.failure("No " + (spotType != null ? spotType + " " : "") + 
+                "spots available in this facility", "NO_SPOTS_AVAILABLE");
         }
-        ParkingFacility facility = facilityOpt.get();
 
-        // Check if user has existing active reservations (limit to 1 active reservation per user)
-        List<Reservation> activeReservations = reservationRepository.findByUserIdAndStatus(userId, Reservation.ReservationStatus.ACTIVE);
-        if (!activeReservations.isEmpty()) {
-            return ReservationResult.failure("User already has an active reservation", "ACTIVE_RESERVATION_EXISTS");
+        Reservation reservation = createReservation(context, claimedSpotId, now, reservedUntil, expiresAt, durationMinutes);
+
+        return ReservationResult.success(reservation, 
+            "Spot " + claimedSpotId + " reserved successfully. You have 15 minutes to confirm your arrival.");
+    }
+
+    // Loads and validates everything a reservation needs in one statement (spotId is null for server-side selection)
+    private ReservationContext loadContext(Long userId, Long vehicleId, Long facilityId, Long spotId, 
+                                           LocalDateTime reservedFrom, LocalDateTime reservedUntil) {
+        List<Object[]> rows = spotId != null
+            ? reservationRepository.findSpotReservationContext(userId, vehicleId, facilityId, spotId, reservedFrom, reservedUntil)
+            : reservationRepository.findReservationContext(userId, vehicleId, facilityId);
+        if (rows.isEmpty()) {
+            return diagnoseMissing(userId, vehicleId, facilityId, spotId);
         }
 
-        // Validate spot and check availability
-        Optional<ParkingSpot> spotOpt = spotRepository.findById(spotId);
-        if (spotOpt.isEmpty()) {
-            return ReservationResult.failure("Parking spot not found", "SPOT_NOT_FOUND");
+        Object[] row = rows.get(0);
+        User user = (User) row[0];
+        Vehicle vehicle = (Vehicle) row[1];
+        ParkingFacility facility = (ParkingFacility) row[2];
+        ParkingSpot spot = spotId != null ? (ParkingSpot) row[3] : null;
+        long activeReservations = (Long) row[spotId != null ? 4 : 3];
+        long overlappingReservations = spotId != null ? (Long) row[5] : 0;
+
+        // Validate user is active
+        if (!user.getIsActive()) {
+            return ReservationContext.rejected("User not found or inactive", "USER_INVALID");
         }
-        
-        ParkingSpot spot = spotOpt.get();
-        
-        // Verify spot belongs to the facility
-        if (!spot.getFacility().getId().equals(facilityId)) {
-            return ReservationResult.failure("Spot does not belong to the specified facility", "SPOT_FACILITY_MISMATCH");
+
+        // Validate vehicle belongs to user
+        if (!vehicle.getUser().getId().equals(userId) || !vehicle.getIsActive()) {
+            return ReservationContext.rejected("Vehicle not found or doesn't belong to user", "VEHICLE_INVALID");
         }
 
-        // Check if spot is available
-        if (spot.getStatus() != ParkingSpot.SpotStatus.AVAILABLE) {
-            return ReservationResult.failure("Parking spot is not available", "SPOT_NOT_AVAILABLE");
+        // Validate facility is active
+        if (!facility.getIsActive()) {
+            return ReservationContext.rejected("Parking facility not found or inactive", "FACILITY_INVALID");
         }
 
-        // Check if spot reservation has expired (cleanup)
-        if (spot.getReservationExpiresAt() != null && spot.getReservationExpiresAt().isBefore(LocalDateTime.now())) {
-            spot.setStatus(ParkingSpot.SpotStatus.AVAILABLE);
-            spot.setReservedBy(null);
-            spot.setReservationExpiresAt(null);
-            spotRepository.save(spot);
+        // Check if user has existing active reservations (limit to 1 active reservation per user)
+        if (activeReservations > 0) {
+            return ReservationContext.rejected("User already has an active reservation", "ACTIVE_RESERVATION_EXISTS");
         }
 
-        // Double-check availability after cleanup
-        if (spot.getStatus() != ParkingSpot.SpotStatus.AVAILABLE) {
-            return ReservationResult.failure("Parking spot became unavailable", "SPOT_UNAVAILABLE");
+        // Verify spot belongs to the facility
+        if (spot != null && !spot.getFacility().getId().equals(facilityId)) {
+            return ReservationContext.rejected("Spot does not belong to the specified facility", "SPOT_FACILITY_MISMATCH");
         }
 
-        // Calculate reservation times
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime reservedFrom = now;
-        LocalDateTime reservedUntil = now.plusMinutes(durationMinutes);
-        LocalDateTime expiresAt = now.plusMinutes(15); // 15-minute hold
+        return new ReservationContext(user, vehicle, facility, spot, overlappingReservations, null);
+    }
 
-        // Check for overlapping reservations
-        List<Reservation> overlapping = reservationRepository.findOverlappingReservationsForSpot(
-            spotId, reservedFrom, reservedUntil);
-        if (!overlapping.isEmpty()) {
-            return ReservationResult.failure("Time slot conflicts with existing reservation", "TIME_CONFLICT");
+    // The context query returns no row when an id does not exist; work out which one for the error code
+    private ReservationContext diagnoseMissing(Long userId, Long vehicleId, Long facilityId, Long spotId) {
+        if (!userRepository.existsById(userId)) {
+            return ReservationContext.rejected("User not found or inactive", "USER_INVALID");
         }
+        if (!vehicleRepository.existsById(vehicleId)) {
+            return ReservationContext.rejected("Vehicle not found or doesn't belong to user", "VEHICLE_INVALID");
+        }
+        if (!facilityRepository.existsById(facilityId)) {
+            return ReservationContext.rejected("Parking facility not found or inactive", "FACILITY_INVALID");
+        }
+        return ReservationContext.rejected("Parking spot not found", "SPOT_NOT_FOUND");
+    }
+
+    private Reservation createReservation(ReservationContext context, Long spotId, LocalDateTime reservedFrom, 
+                                          LocalDateTime reservedUntil, LocalDateTime expiresAt, Integer durationMinutes) {
+        ParkingFacility facility = context.facility;
 
-        // Create reservation
         Reservation reservation = new Reservation();
-        reservation.setUser(user);
-        reservation.setVehicle(vehicle);
+        reservation.setUser(context.user);
+        reservation.setVehicle(context.vehicle);
         reservation.setFacility(facility);
-        reservation.setSpot(spot);
+        reservation.setSpot(spotRepository.getReferenceById(spotId));
         reservation.setReservedFrom(reservedFrom);
         reservation.setReservedUntil(reservedUntil);
-        reservation.setHourlyRate(facility.getBaseHourlyRate());
         reservation.setExpiresAt(expiresAt);
         reservation.setStatus(Reservation.ReservationStatus.ACTIVE);
 
-        // Calculate total amount
-        long hours = (durationMinutes + 59) / 60; // Round up to next hour
-        reservation.setTotalAmount(facility.getBaseHourlyRate().multiply(BigDecimal.valueOf(hours)));
+        // Price the reserved window with the facility's compiled pricing rules
+        PricingEngine.Quote quote = pricingEngine.quote(facility.getId(), facility.getBaseHourlyRate(), reservedFrom, durationMinutes);
+        reservation.setHourlyRate(quote.hourlyRate);
+        reservation.setTotalAmount(quote.totalAmount);
 
-        // Save reservation first
         reservation = reservationRepository.save(reservation);
+        expiryScheduler.scheduleReservation(reservation.getId(), expiresAt);
 
-        // Update spot status
-        spot.setStatus(ParkingSpot.SpotStatus.RESERVED);
-        spot.setReservedBy(user);
-        spot.setReservationExpiresAt(expiresAt);
-        spotRepository.save(spot);
+        return reservation;
+    }
 
-        // Update facility available spots count
-        facility.setAvailableSpots(facility.getAvailableSpots() - 1);
-        facilityRepository.save(facility);
+    // Returns the id of the spot that was claimed, or null if no spot could be claimed within the attempt budget.
+    // firstChoice is tried first when given (its overlap check was part of the request's validation); without
+    // allowOthers nothing else is tried. Further candidates come from the occupancy index, nearest floor first, and
+    // are skipped if the requested window overlaps one of their reservations.
+    private Long claimSpot(Long facilityId, ParkingSpot.SpotType spotType, Integer preferredFloor, Long firstChoice,
+                           boolean allowOthers, User user, LocalDateTime reservedFrom, LocalDateTime reservedUntil,
+                           LocalDateTime expiresAt) {
+        Set<Long> attempted = new HashSet<>();
+        Iterator<Long> ranked = null;
+        Long candidate = firstChoice;
+
+        for (int attempt = 0; attempt < maxClaimAttempts; attempt++) {
+            if (candidate == null) {
+                if (ranked == null) {
+                    ranked = occupancyService.rankAvailableSpotIds(facilityId, spotType, preferredFloor, maxClaimAttempts + 1).iterator();
+                }
+                candidate = nextCandidate(facilityId, spotType, ranked, attempted);
+                if (candidate == null) {
+                    return null;
+                }
+            }
+            boolean overlaps = !candidate.equals(firstChoice)
+                && !reservationRepository.findOverlappingReservationsForSpot(candidate, reservedFrom, reservedUntil).isEmpty();
+            if (!overlaps && spotStateService.reserve(facilityId, candidate, spotType, user, expiresAt)) {
+                return candidate;
+            }
+            attempted.add(candidate);
+            if (!allowOthers) {
+                return null;
+            }
+            candidate = null;
+        }
+        return null;
+    }
 
-        return ReservationResult.success(reservation, 
-            "Spot reserved successfully. You have 15 minutes to confirm your arrival.");
+    private Long nextCandidate(Long facilityId, ParkingSpot.SpotType spotType, Iterator<Long> ranked, Set<Long> attempted) {
+        while (ranked.hasNext()) {
+            Long spotId = ranked.next();
+            if (!attempted.contains(spotId)) {
+                return spotId;
+            }
+        }
+        // The local index may lag behind other instances - fall back to the database
+        Optional<ParkingSpot> fromDatabase = spotRepository.findFirstAvailableSpot(facilityId, spotType);
+        return fromDatabase.map(ParkingSpot::getId).filter(id -> !attempted.contains(id)).orElse(null);
     }
 
     @Transactional
@@ -200,12 +336,7 @@ public class ReservationService {
             reservation.setStatus(Reservation.ReservationStatus.EXPIRED);
             reservationRepository.save(reservation);
             
-            // Release the spot
-            ParkingSpot spot = reservation.getSpot();
-            spot.setStatus(ParkingSpot.SpotStatus.AVAILABLE);
-            spot.setReservedBy(null);
-            spot.setReservationExpiresAt(null);
-            spotRepository.save(spot);
+            releaseSpot(reservation);
             
             return ReservationResult.failure("Reservation has expired", "RESERVATION_EXPIRED");
         }
@@ -241,50 +372,29 @@ public class ReservationService {
         reservation.setStatus(Reservation.ReservationStatus.CANCELLED);
         reservation = reservationRepository.save(reservation);
 
-        // Release the spot
-        ParkingSpot spot = reservation.getSpot();
-        spot.setStatus(ParkingSpot.SpotStatus.AVAILABLE);
-        spot.setReservedBy(null);
-        spot.setReservationExpiresAt(null);
-        spotRepository.save(spot);
-
-        // Update facility available spots count
-        ParkingFacility facility = reservation.getFacility();
-        facility.setAvailableSpots(facility.getAvailableSpots() + 1);
-        facilityRepository.save(facility);
+        releaseSpot(reservation);
 
         return ReservationResult.success(reservation, "Reservation cancelled successfully");
     }
 
-    @Transactional
-    public void cleanupExpiredReservations() {
-        LocalDateTime now = LocalDateTime.now();
-        
-        // Find expired reservations
-        List<Reservation> expiredReservations = reservationRepository.findExpiredReservations(now);
-        
-        for (Reservation reservation : expiredReservations) {
-            // Update reservation status
-            reservation.setStatus(Reservation.ReservationStatus.EXPIRED);
-            reservationRepository.save(reservation);
-            
-            // Release the spot
-            ParkingSpot spot = reservation.getSpot();
-            if (spot != null) {
-                spot.setStatus(ParkingSpot.SpotStatus.AVAILABLE);
-                spot.setReservedBy(null);
-                spot.setReservationExpiresAt(null);
-                spotRepository.save(spot);
-                
-                // Update facility count
-                ParkingFacility facility = spot.getFacility();
-                facility.setAvailableSpots(facility.getAvailableSpots() + 1);
-                facilityRepository.save(facility);
-            }
+    // Frees the reservation's spot if it is still held; a spot already taken over (e.g. OCCUPIED) is left alone
+    private void releaseSpot(Reservation reservation) {
+        if (reservation.getSpot() != null) {
+            spotStateService.transition(reservation.getFacility().getId(), reservation.getSpot().getId(), null,
+                ParkingSpot.SpotStatus.RESERVED, ParkingSpot.SpotStatus.AVAILABLE);
         }
     }
 
+    // Holds are normally released by the expiry scheduler within a tick; this sweeps anything left over in bulk
+    public int cleanupExpiredReservations() {
+        return expiryScheduler.releaseAllExpired();
+    }
+
     public List<Reservation> getUserReservations(Long userId) {
         return reservationRepository.findByUserIdOrderByCreatedAtDesc(userId);
     }
+
+    public List<Reservation> getUserReservationPage(Long userId, LocalDateTime beforeCreatedAt, Long beforeId, int rows) {
+        return reservationRepository.findUserReservationPage(userId, beforeCreatedAt, beforeId, Limit.of(rows));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,286 @@
+package com.evmak.parking_management.service;
+
+import com.evmak.parking_management.dto.FacilityView;
+import com.evmak.parking_management.entity.FacilitySpotCounter;
+import com.evmak.parking_management.entity.ParkingSpot;
+import com.evmak.parking_management.repository.FacilitySpotCounterRepository;
+import com.evmak.parking_management.repository.ParkingFacilityRepository;
+import com.evmak.parking_management.repository.ParkingSpotRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Per-facility spot counts kept current incrementally. Every spot transition (see SpotStateService) moves counts between
+// (facility, type, status) cells and adjusts parking_facilities.total_spots/available_spots with delta UPDATEs
+// in the transition's own transaction, so availability is read by primary key instead of counting spots.
+// A periodic drift check recounts the spot table and repairs any facility whose counters diverged.
+//
+// Ordering: a transition writes the facility row before its counter cells, and a repair locks that row before
+// recounting. A transition that commits first is seen by the recount; one still open applies its delta on top of the repair.
+@Service
+public class SpotCounterService {
+
+    private static final ParkingSpot.SpotStatus[] STATUSES = ParkingSpot.SpotStatus.values();
+    private static final ParkingSpot.SpotType[] TYPES = ParkingSpot.SpotType.values();
+
+    @Autowired
+    private FacilitySpotCounterRepository counterRepository;
+
+    @Autowired
+    private ParkingFacilityRepository facilityRepository;
+
+    @Autowired
+    private ParkingSpotRepository spotRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Repairs triggered by a transition run here, after the transition's transaction completed and outside its
+    // thread: the transition still holds its pooled connection while its synchronizations run
+    private final ExecutorService repairExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "spot-counter-repair");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Set<Long> pendingRepairs = ConcurrentHashMap.newKeySet();
+
+    @PreDestroy
+    public void stop() {
+        repairExecutor.shutdownNow();
+    }
+
+    // Record `count` spots of one type moving from one status to another. Joins the caller's transaction; the
+    // spot rows themselves must already have been (or be about to be) updated in that same transaction.
+    @Transactional
+    public void recordTransition(Long facilityId, ParkingSpot.SpotType spotType,
+                                 ParkingSpot.SpotStatus from, ParkingSpot.SpotStatus to, int count) {
+        if (count == 0 || from == to) {
+            return;
+        }
+        int availableDelta = (to == ParkingSpot.SpotStatus.AVAILABLE ? count : 0)
+            - (from == ParkingSpot.SpotStatus.AVAILABLE ? count : 0);
+        facilityRepository.adjustSpotCounts(facilityId, 0, availableDelta);
+        int moved = counterRepository.adjust(facilityId, spotType, from, -count)
+            + counterRepository.adjust(facilityId, spotType, to, count);
+        if (moved < 2) {
+            repairLater(facilityId); // Facility has no counter rows yet
+        }
+    }
+
+    // Published by SpotStateService inside the transition's transaction, so the counters commit or roll back with it
+    @EventListener
+    public void onSpotTransition(SpotStateService.SpotTransition transition) {
+        recordTransition(transition.facilityId(), transition.spotType(), transition.from(), transition.to(), transition.count());
+    }
+
+    // Published by SpotStateService.create inside the insert's transaction
+    @EventListener
+    public void onSpotCreated(SpotStateService.SpotCreated created) {
+        Long facilityId = created.facilityId();
+        facilityRepository.adjustSpotCounts(facilityId, 1, created.status() == ParkingSpot.SpotStatus.AVAILABLE ? 1 : 0);
+        if (counterRepository.adjust(facilityId, created.spotType(), created.status(), 1) == 0) {
+            repairLater(facilityId);
+        }
+    }
+
+    // One primary key range read: every (type, status) cell of the facility
+    public Availability getAvailability(Long facilityId) {
+        return new Availability(facilityId, counterRepository.findByFacilityId(facilityId));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void checkOnStartup() {
+        checkForDrift();
+    }
+
+    // Compares every facility's counters with a recount of the spot table and repairs the ones that differ.
+    // The comparison takes no locks; each suspect facility is recounted again under its row lock before repair.
+    @Scheduled(initialDelayString = "${app.availability.counters.check-interval-ms:300000}",
+               fixedDelayString = "${app.availability.counters.check-interval-ms:300000}")
+    public int checkForDrift() {
+        try {
+            Set<Long> drifted = findDriftedFacilities();
+            int repaired = 0;
+            for (Long facilityId : drifted) {
+                if (repair(facilityId)) {
+                    repaired++;
+                }
+            }
+            if (repaired > 0) {
+                System.out.println("Spot counters repaired for " + repaired + " facilities");
+            }
+            return repaired;
+        } catch (Exception e) {
+            // Never let an exception cancel the periodic task
+            System.err.println("Spot counter drift check failed: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    // Recounts one facility under its row lock and rewrites its counters; true if anything had drifted
+    public boolean repair(Long facilityId) {
+        Boolean changed = transactionTemplate().execute(status -> {
+            if (facilityRepository.adjustSpotCounts(facilityId, 0, 0) == 0) {
+                return false; // Facility no longer exists
+            }
+            Map<Cell, Integer> expected = new HashMap<>();
+            for (Object[] row : spotRepository.countByTypeAndStatus(facilityId)) {
+                expected.put(new Cell((ParkingSpot.SpotType) row[0], (ParkingSpot.SpotStatus) row[1]), ((Long) row[2]).intValue());
+            }
+
+            boolean drifted = false;
+            Map<Cell, FacilitySpotCounter> stored = new HashMap<>();
+            for (FacilitySpotCounter counter : counterRepository.findByFacilityId(facilityId)) {
+                stored.put(new Cell(counter.getSpotType(), counter.getStatus()), counter);
+            }
+            List<FacilitySpotCounter> writes = new ArrayList<>();
+            for (ParkingSpot.SpotType type : TYPES) {
+                for (ParkingSpot.SpotStatus spotStatus : STATUSES) {
+                    Cell cell = new Cell(type, spotStatus);
+                    int count = expected.getOrDefault(cell, 0);
+                    FacilitySpotCounter counter = stored.get(cell);
+                    if (counter == null) {
+                        writes.add(new FacilitySpotCounter(facilityId, type, spotStatus, count));
+                        drifted |= count != 0;
+                    } else if (counter.getSpotCount() != count) {
+                        counter.setSpotCount(count);
+                        drifted = true;
+                    }
+                }
+            }
+            counterRepository.saveAll(writes);
+
+            int total = expected.values().stream().mapToInt(Integer::intValue).sum();
+            int available = 0;
+            for (ParkingSpot.SpotType type : TYPES) {
+                available += expected.getOrDefault(new Cell(type, ParkingSpot.SpotStatus.AVAILABLE), 0);
+            }
+            FacilityView facility = facilityRepository.findFacilityViewById(facilityId).orElseThrow();
+            if (facility.totalSpots() != total || facility.availableSpots() != available) {
+                facilityRepository.setSpotCounts(facilityId, total, available);
+                drifted = true;
+            }
+            return drifted;
+        });
+        if (Boolean.TRUE.equals(changed)) {
+            meterRegistry.counter("spot.counters.repaired").increment();
+        }
+        return Boolean.TRUE.equals(changed);
+    }
+
+    // Facilities whose counter cells or facility totals disagree with the spot table (or have no counter rows)
+    private Set<Long> findDriftedFacilities() {
+        Map<Long, Map<Cell, Integer>> expected = new HashMap<>();
+        for (Object[] row : spotRepository.countAllByFacilityTypeAndStatus()) {
+            expected.computeIfAbsent((Long) row[0], k -> new HashMap<>())
+                .put(new Cell((ParkingSpot.SpotType) row[1], (ParkingSpot.SpotStatus) row[2]), ((Long) row[3]).intValue());
+        }
+        Map<Long, Map<Cell, Integer>> stored = new HashMap<>();
+        for (Object[] row : counterRepository.findAllNonZeroCounts()) {
+            stored.computeIfAbsent((Long) row[0], k -> new HashMap<>())
+                .put(new Cell((ParkingSpot.SpotType) row[1], (ParkingSpot.SpotStatus) row[2]), (Integer) row[3]);
+        }
+
+        Set<Long> drifted = new HashSet<>();
+        for (Object[] row : facilityRepository.findAllSpotCounts()) {
+            Long facilityId = (Long) row[0];
+            Map<Cell, Integer> cells = expected.getOrDefault(facilityId, Map.of());
+            int total = cells.values().stream().mapToInt(Integer::intValue).sum();
+            int available = 0;
+            for (Map.Entry<Cell, Integer> cell : cells.entrySet()) {
+                if (cell.getKey().status == ParkingSpot.SpotStatus.AVAILABLE) {
+                    available += cell.getValue();
+                }
+            }
+            if (!cells.equals(stored.getOrDefault(facilityId, Map.of()))
+                    || !Objects.equals(row[1], total) || !Objects.equals(row[2], available)) {
+                drifted.add(facilityId);
+            }
+        }
+        return drifted;
+    }
+
+    // Queues one repair per facility once the current transaction has completed (committed or not)
+    private void repairLater(Long facilityId) {
+        if (!pendingRepairs.add(facilityId)) {
+            return;
+        }
+        Runnable task = () -> {
+            pendingRepairs.remove(facilityId);
+            try {
+                repair(facilityId);
+            } catch (Exception e) {
+                System.err.println("Spot counter repair failed for facility " + facilityId + ": " + e.getMessage());
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    repairExecutor.execute(task);
+                }
+            });
+        } else {
+            repairExecutor.execute(task);
+        }
+    }
+
+    // Always a transaction of its own, even when a caller's transaction is still open
+    private TransactionTemplate transactionTemplate() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return template;
+    }
+
+    private record Cell(ParkingSpot.SpotType type, ParkingSpot.SpotStatus status) {}
+
+    public static class Availability {
+        public final Long facilityId;
+        public final int totalSpots;
+        public final int availableSpots;
+        public final Map<ParkingSpot.SpotStatus, Integer> byStatus;
+        public final Map<ParkingSpot.SpotType, Integer> availableByType;
+
+        public Availability(Long facilityId, List<FacilitySpotCounter> counters) {
+            this.facilityId = facilityId;
+            this.byStatus = new EnumMap<>(ParkingSpot.SpotStatus.class);
+            this.availableByType = new EnumMap<>(ParkingSpot.SpotType.class);
+            int total = 0;
+            for (FacilitySpotCounter counter : counters) {
+                total += counter.getSpotCount();
+                byStatus.merge(counter.getStatus(), counter.getSpotCount(), Integer::sum);
+                if (counter.getStatus() == ParkingSpot.SpotStatus.AVAILABLE) {
+                    availableByType.merge(counter.getSpotType(), counter.getSpotCount(), Integer::sum);
+                }
+            }
+            this.totalSpots = total;
+            this.availableSpots = byStatus.getOrDefault(ParkingSpot.SpotStatus.AVAILABLE, 0);
+        }
+    }
+}
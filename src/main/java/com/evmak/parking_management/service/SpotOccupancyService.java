@@ -0,0 +1,413 @@
+package com.evmak.parking_management.service;
+
+import com.evmak.parking_management.entity.ParkingSpot;
+import com.evmak.parking_management.repository.FacilitySpotCounterRepository;
+import com.evmak.parking_management.repository.ParkingSpotRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// In-memory spot bitmaps per facility. Each instance applies the transitions it commits itself; changes committed
+// by other instances are picked up by a periodic reconcile against facility_spot_counters (kept transactionally by
+// SpotCounterService), which reloads any loaded facility whose counts disagree.
+@Service
+public class SpotOccupancyService {
+
+    @Autowired
+    private ParkingSpotRepository spotRepository;
+
+    @Autowired
+    private FacilitySpotCounterRepository counterRepository;
+
+    private static final ParkingSpot.SpotStatus[] STATUSES = ParkingSpot.SpotStatus.values();
+    private static final ParkingSpot.SpotType[] TYPES = ParkingSpot.SpotType.values();
+
+    // One occupancy bitmap per facility, loaded at startup or lazily on first access. A full rebuild swaps in a new
+    // map rather than clearing this one, so readers never see it half-filled.
+    private volatile ConcurrentHashMap<Long, FacilityOccupancy> facilities = new ConcurrentHashMap<>();
+
+    // Notified with the facility id whenever a facility's occupancy changes (e.g. to push live availability)
+    private final List<Consumer<Long>> changeListeners = new CopyOnWriteArrayList<>();
+
+    public void addChangeListener(Consumer<Long> listener) {
+        changeListeners.add(listener);
+    }
+
+    private void notifyChanged(Long facilityId) {
+        for (Consumer<Long> listener : changeListeners) {
+            try {
+                listener.accept(facilityId);
+            } catch (Exception e) {
+                System.err.println("Occupancy change listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildAll() {
+        try {
+            Map<Long, List<Object[]>> rowsByFacility = new LinkedHashMap<>();
+            for (Object[] row : spotRepository.findAllSpotOccupancyRows()) {
+                rowsByFacility.computeIfAbsent((Long) row[1], k -> new ArrayList<>()).add(row);
+            }
+
+            ConcurrentHashMap<Long, FacilityOccupancy> rebuilt = new ConcurrentHashMap<>();
+            rowsByFacility.forEach((facilityId, rows) -> rebuilt.put(facilityId, new FacilityOccupancy(rows)));
+            facilities = rebuilt;
+            rowsByFacility.keySet().forEach(this::notifyChanged);
+            System.out.println("Spot occupancy index rebuilt for " + rebuilt.size() + " facilities");
+        } catch (Exception e) {
+            // Facilities are loaded lazily on first access if the startup rebuild fails
+            facilities = new ConcurrentHashMap<>();
+            System.err.println("Failed to rebuild spot occupancy index: " + e.getMessage());
+        }
+    }
+
+    // Compares every loaded facility's status counts with its spot counters and drops the ones that differ, so
+    // they are reloaded on next access. Returns how many were dropped.
+    @Scheduled(initialDelayString = "${app.availability.occupancy.reconcile-interval-ms:15000}",
+               fixedDelayString = "${app.availability.occupancy.reconcile-interval-ms:15000}")
+    public int reconcileWithCounters() {
+        try {
+            Map<Long, int[]> countersByFacility = new HashMap<>();
+            for (Object[] row : counterRepository.findAllNonZeroCounts()) {
+                ParkingSpot.SpotStatus status = (ParkingSpot.SpotStatus) row[2];
+                countersByFacility.computeIfAbsent((Long) row[0], k -> new int[STATUSES.length])[status.ordinal()]
+                    += ((Number) row[3]).intValue();
+            }
+
+            int dropped = 0;
+            ConcurrentHashMap<Long, FacilityOccupancy> current = facilities;
+            for (Map.Entry<Long, FacilityOccupancy> entry : current.entrySet()) {
+                int[] expected = countersByFacility.getOrDefault(entry.getKey(), new int[STATUSES.length]);
+                if (!entry.getValue().hasCounts(expected) && current.remove(entry.getKey(), entry.getValue())) {
+                    notifyChanged(entry.getKey());
+                    dropped++;
+                }
+            }
+            if (dropped > 0) {
+                System.out.println("Spot occupancy reloaded for " + dropped + " facilities that disagreed with their counters");
+            }
+            return dropped;
+        } catch (Exception e) {
+            // Never let an exception cancel the periodic task
+            System.err.println("Spot occupancy reconcile failed: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    public void rebuildFacility(Long facilityId) {
+        facilities.put(facilityId, loadFacility(facilityId));
+        notifyChanged(facilityId);
+    }
+
+    // Drop a facility so it is reloaded from the database on next access (e.g. after spots are added)
+    public void invalidateFacility(Long facilityId) {
+        facilities.remove(facilityId);
+        notifyChanged(facilityId);
+    }
+
+    // Status writes are applied once the surrounding transaction commits so a rollback never leaks into the index
+    public void recordStatusChange(Long facilityId, Long spotId, ParkingSpot.SpotStatus status) {
+        afterCommit(() -> applyStatusChange(facilityId, spotId, status));
+    }
+
+    // Published by SpotStateService inside the transition's transaction
+    @EventListener
+    public void onSpotTransition(SpotStateService.SpotTransition transition) {
+        if (transition.spotIds().isEmpty()) {
+            // Only the count is known - reload the facility lazily once the change is visible
+            afterCommit(() -> invalidateFacility(transition.facilityId()));
+            return;
+        }
+        for (Long spotId : transition.spotIds()) {
+            recordStatusChange(transition.facilityId(), spotId, transition.to());
+        }
+    }
+
+    // A new spot is picked up by reloading its facility once the insert is visible
+    @EventListener
+    public void onSpotCreated(SpotStateService.SpotCreated created) {
+        afterCommit(() -> invalidateFacility(created.facilityId()));
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private void applyStatusChange(Long facilityId, Long spotId, ParkingSpot.SpotStatus status) {
+        // A facility that is not loaded yet will be read fresh from the database on first access
+        FacilityOccupancy occupancy = facilities.get(facilityId);
+        if (occupancy != null && !occupancy.setStatus(spotId, status)) {
+            // Unknown spot (created after the facility was loaded) - reload the facility lazily
+            facilities.remove(facilityId, occupancy);
+        }
+        notifyChanged(facilityId);
+    }
+
+    // Fast lookups
+
+    public int countByStatus(Long facilityId, ParkingSpot.SpotStatus status) {
+        return occupancy(facilityId).count(status);
+    }
+
+    public int countAvailable(Long facilityId) {
+        return countByStatus(facilityId, ParkingSpot.SpotStatus.AVAILABLE);
+    }
+
+    public int countTotal(Long facilityId) {
+        return occupancy(facilityId).size();
+    }
+
+    // Only consults facilities already loaded; empty if the spot is not in the index
+    public Optional<ParkingSpot.SpotType> findSpotType(Long facilityId, Long spotId) {
+        FacilityOccupancy occupancy = facilities.get(facilityId);
+        return occupancy != null ? Optional.ofNullable(occupancy.spotType(spotId)) : Optional.empty();
+    }
+
+    public Optional<Long> findFirstAvailableSpotId(Long facilityId, ParkingSpot.SpotType spotType) {
+        long spotId = occupancy(facilityId).firstAvailable(spotType);
+        return spotId < 0 ? Optional.empty() : Optional.of(spotId);
+    }
+
+    public List<Long> listAvailableSpotIds(Long facilityId, ParkingSpot.SpotType spotType) {
+        return occupancy(facilityId).listAvailable(spotType);
+    }
+
+    // Available spots ordered by distance from the preferred floor (spot number order within a floor), capped at limit
+    public List<Long> rankAvailableSpotIds(Long facilityId, ParkingSpot.SpotType spotType, Integer preferredFloor, int limit) {
+        return occupancy(facilityId).rankAvailable(spotType, preferredFloor, limit);
+    }
+
+    // Compare the in-memory counts with the database and report per-status differences
+    public ConsistencyReport checkConsistency(Long facilityId) {
+        FacilityOccupancy occupancy = occupancy(facilityId);
+        Map<ParkingSpot.SpotStatus, Integer> indexCounts = new EnumMap<>(ParkingSpot.SpotStatus.class);
+        Map<ParkingSpot.SpotStatus, Integer> databaseCounts = new EnumMap<>(ParkingSpot.SpotStatus.class);
+        boolean consistent = true;
+
+        for (ParkingSpot.SpotStatus status : STATUSES) {
+            int indexCount = occupancy.count(status);
+            Integer databaseCount = spotRepository.countByFacilityIdAndStatus(facilityId, status);
+            int dbCount = databaseCount != null ? databaseCount : 0;
+            indexCounts.put(status, indexCount);
+            databaseCounts.put(status, dbCount);
+            if (indexCount != dbCount) {
+                consistent = false;
+            }
+        }
+
+        return new ConsistencyReport(facilityId, consistent, indexCounts, databaseCounts);
+    }
+
+    private FacilityOccupancy occupancy(Long facilityId) {
+        return facilities.computeIfAbsent(facilityId, this::loadFacility);
+    }
+
+    private FacilityOccupancy loadFacility(Long facilityId) {
+        return new FacilityOccupancy(spotRepository.findSpotOccupancyRowsByFacilityId(facilityId));
+    }
+
+    // Per-facility bitmaps: one bitset per status and per type, indexed by spot ordinal (spot number order)
+    static class FacilityOccupancy {
+        private final long[] spotIds;
+        private final Map<Long, Integer> ordinals;
+        private final byte[] statusByOrdinal;
+        private final int[] floorByOrdinal;
+        private final long[][] statusBits;
+        private final long[][] typeBits;
+        private final int[] statusCounts;
+
+        // Rows are [spotId, facilityId, spotType, status, floorLevel] ordered by spot number
+        FacilityOccupancy(List<Object[]> rows) {
+            int size = rows.size();
+            int words = Math.max(1, (size + 63) >>> 6);
+
+            this.spotIds = new long[size];
+            this.ordinals = new HashMap<>(size * 2);
+            this.statusByOrdinal = new byte[size];
+            this.floorByOrdinal = new int[size];
+            this.statusBits = new long[STATUSES.length][words];
+            this.typeBits = new long[TYPES.length][words];
+            this.statusCounts = new int[STATUSES.length];
+
+            for (int ordinal = 0; ordinal < size; ordinal++) {
+                Object[] row = rows.get(ordinal);
+                long spotId = (Long) row[0];
+                ParkingSpot.SpotType type = (ParkingSpot.SpotType) row[2];
+                ParkingSpot.SpotStatus status = (ParkingSpot.SpotStatus) row[3];
+                Integer floorLevel = (Integer) row[4];
+
+                spotIds[ordinal] = spotId;
+                ordinals.put(spotId, ordinal);
+                set(typeBits[type.ordinal()], ordinal);
+                set(statusBits[status.ordinal()], ordinal);
+                statusByOrdinal[ordinal] = (byte) status.ordinal();
+                floorByOrdinal[ordinal] = floorLevel != null ? floorLevel : 0;
+                statusCounts[status.ordinal()]++;
+            }
+        }
+
+        synchronized boolean setStatus(Long spotId, ParkingSpot.SpotStatus status) {
+            Integer ordinal = ordinals.get(spotId);
+            if (ordinal == null) {
+                return false;
+            }
+
+            int previous = statusByOrdinal[ordinal];
+            if (previous != status.ordinal()) {
+                clear(statusBits[previous], ordinal);
+                statusCounts[previous]--;
+                set(statusBits[status.ordinal()], ordinal);
+                statusCounts[status.ordinal()]++;
+                statusByOrdinal[ordinal] = (byte) status.ordinal();
+            }
+            return true;
+        }
+
+        synchronized ParkingSpot.SpotType spotType(Long spotId) {
+            Integer ordinal = ordinals.get(spotId);
+            if (ordinal != null) {
+                for (ParkingSpot.SpotType type : TYPES) {
+                    if ((typeBits[type.ordinal()][ordinal >>> 6] & (1L << ordinal)) != 0) {
+                        return type;
+                    }
+                }
+            }
+            return null;
+        }
+
+        synchronized int count(ParkingSpot.SpotStatus status) {
+            return statusCounts[status.ordinal()];
+        }
+
+        synchronized boolean hasCounts(int[] expected) {
+            return Arrays.equals(statusCounts, expected);
+        }
+
+        int size() {
+            return spotIds.length;
+        }
+
+        synchronized long firstAvailable(ParkingSpot.SpotType spotType) {
+            long[] available = statusBits[ParkingSpot.SpotStatus.AVAILABLE.ordinal()];
+            long[] type = spotType != null ? typeBits[spotType.ordinal()] : null;
+
+            for (int word = 0; word < available.length; word++) {
+                long bits = type != null ? available[word] & type[word] : available[word];
+                if (bits != 0) {
+                    return spotIds[(word << 6) + Long.numberOfTrailingZeros(bits)];
+                }
+            }
+            return -1;
+        }
+
+        synchronized List<Long> listAvailable(ParkingSpot.SpotType spotType) {
+            long[] available = statusBits[ParkingSpot.SpotStatus.AVAILABLE.ordinal()];
+            long[] type = spotType != null ? typeBits[spotType.ordinal()] : null;
+            List<Long> result = new ArrayList<>(statusCounts[ParkingSpot.SpotStatus.AVAILABLE.ordinal()]);
+
+            for (int word = 0; word < available.length; word++) {
+                long bits = type != null ? available[word] & type[word] : available[word];
+                while (bits != 0) {
+                    result.add(spotIds[(word << 6) + Long.numberOfTrailingZeros(bits)]);
+                    bits &= bits - 1;
+                }
+            }
+            return result;
+        }
+
+        synchronized List<Long> rankAvailable(ParkingSpot.SpotType spotType, Integer preferredFloor, int limit) {
+            long[] available = statusBits[ParkingSpot.SpotStatus.AVAILABLE.ordinal()];
+            long[] type = spotType != null ? typeBits[spotType.ordinal()] : null;
+
+            if (preferredFloor == null) {
+                List<Long> result = new ArrayList<>(Math.min(limit, 64));
+                for (int word = 0; word < available.length && result.size() < limit; word++) {
+                    long bits = type != null ? available[word] & type[word] : available[word];
+                    while (bits != 0 && result.size() < limit) {
+                        result.add(spotIds[(word << 6) + Long.numberOfTrailingZeros(bits)]);
+                        bits &= bits - 1;
+                    }
+                }
+                return result;
+            }
+
+            // Keep the best `limit` ordinals per floor distance; ordinals arrive in spot number order
+            Map<Integer, List<Integer>> byDistance = new TreeMap<>();
+            for (int word = 0; word < available.length; word++) {
+                long bits = type != null ? available[word] & type[word] : available[word];
+                while (bits != 0) {
+                    int ordinal = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    List<Integer> bucket = byDistance.computeIfAbsent(
+                        Math.abs(floorByOrdinal[ordinal] - preferredFloor), k -> new ArrayList<>());
+                    if (bucket.size() < limit) {
+                        bucket.add(ordinal);
+                    }
+                    bits &= bits - 1;
+                }
+            }
+
+            List<Long> result = new ArrayList<>(limit);
+            for (List<Integer> bucket : byDistance.values()) {
+                for (int ordinal : bucket) {
+                    if (result.size() == limit) {
+                        return result;
+                    }
+                    result.add(spotIds[ordinal]);
+                }
+            }
+            return result;
+        }
+
+        private static void set(long[] bits, int ordinal) {
+            bits[ordinal >>> 6] |= 1L << ordinal;
+        }
+
+        private static void clear(long[] bits, int ordinal) {
+            bits[ordinal >>> 6] &= ~(1L << ordinal);
+        }
+    }
+
+    public static class ConsistencyReport {
+        public final Long facilityId;
+        public final boolean consistent;
+        public final Map<ParkingSpot.SpotStatus, Integer> indexCounts;
+        public final Map<ParkingSpot.SpotStatus, Integer> databaseCounts;
+
+        public ConsistencyReport(Long facilityId, boolean consistent,
+                                 Map<ParkingSpot.SpotStatus, Integer> indexCounts,
+                                 Map<ParkingSpot.SpotStatus, Integer> databaseCounts) {
+            this.facilityId = facilityId;
+            this.consistent = consistent;
+            this.indexCounts = indexCounts;
+            this.databaseCounts = databaseCounts;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.evmak.parking_management.service;
+
+import com.evmak.parking_management.dto.SpotView;
+import com.evmak.parking_management.entity.ParkingSpot;
+import com.evmak.parking_management.entity.Reservation;
+import com.evmak.parking_management.entity.User;
+import com.evmak.parking_management.repository.ParkingSpotRepository;
+import com.evmak.parking_management.repository.ReservationRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+// The only place spot status changes. Each change is checked against the allowed transitions, applied with one
+// conditional UPDATE (it only matches while the spot still has the status the caller saw) and published as a
+// SpotTransition. Listeners keep the derived state current: facility counters and an outbox event in the same
+// transaction, the occupancy index (and through it the live availability stream) once it commits, and the caches
+// when OutboxRelay delivers the event.
+@Service
+public class SpotStateService {
+
+    private static final Map<ParkingSpot.SpotStatus, Set<ParkingSpot.SpotStatus>> ALLOWED =
+        new EnumMap<>(ParkingSpot.SpotStatus.class);
+
+    static {
+        ALLOWED.put(ParkingSpot.SpotStatus.AVAILABLE, EnumSet.of(
+            ParkingSpot.SpotStatus.RESERVED, ParkingSpot.SpotStatus.OCCUPIED, ParkingSpot.SpotStatus.OUT_OF_ORDER));
+        ALLOWED.put(ParkingSpot.SpotStatus.RESERVED, EnumSet.of(
+            ParkingSpot.SpotStatus.AVAILABLE, ParkingSpot.SpotStatus.OCCUPIED, ParkingSpot.SpotStatus.OUT_OF_ORDER));
+        ALLOWED.put(ParkingSpot.SpotStatus.OCCUPIED, EnumSet.of(
+            ParkingSpot.SpotStatus.AVAILABLE, ParkingSpot.SpotStatus.OUT_OF_ORDER));
+        ALLOWED.put(ParkingSpot.SpotStatus.OUT_OF_ORDER, EnumSet.of(ParkingSpot.SpotStatus.AVAILABLE));
+    }
+
+    @Autowired
+    private ParkingSpotRepository spotRepository;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private SpotOccupancyService occupancyService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    public static boolean isAllowed(ParkingSpot.SpotStatus from, ParkingSpot.SpotStatus to) {
+        return ALLOWED.get(from).contains(to);
+    }
+
+    // Saves a new spot and publishes it, so counters, occupancy index and caches learn about it like any transition
+    @Transactional
+    public ParkingSpot create(ParkingSpot spot) {
+        ParkingSpot saved = spotRepository.save(spot);
+        if (saved.getFacility() != null) {
+            eventPublisher.publishEvent(new SpotCreated(saved.getFacility().getId(), saved.getId(),
+                saved.getSpotType(), saved.getStatus()));
+        }
+        return saved;
+    }
+
+    // Moves one spot from the status the caller saw to a new one; false if the spot was no longer in `from`.
+    // Leaving RESERVED clears the holder and cancels the reservation behind the hold, which also disarms its
+    // expiry (the scheduler only releases reservations that are still ACTIVE). spotType may be null when the
+    // caller does not know it.
+    @Transactional
+    public boolean transition(Long facilityId, Long spotId, ParkingSpot.SpotType spotType,
+                              ParkingSpot.SpotStatus from, ParkingSpot.SpotStatus to) {
+        if (!isAllowed(from, to)) {
+            throw new IllegalArgumentException("Spot transition " + from + " -> " + to + " is not allowed");
+        }
+        if (to == ParkingSpot.SpotStatus.RESERVED) {
+            throw new IllegalArgumentException("Spots are reserved with reserve(), which records the hold");
+        }
+        if (spotRepository.transitionStatus(spotId, facilityId, from, to) == 0) {
+            return false;
+        }
+        if (from == ParkingSpot.SpotStatus.RESERVED) {
+            reservationRepository.endSpotReservations(spotId, Reservation.ReservationStatus.CANCELLED);
+        }
+        publish(facilityId, spotId, spotType, from, to);
+        return true;
+    }
+
+    // AVAILABLE -> RESERVED with the holder and hold expiry; false if another request claimed the spot first
+    @Transactional
+    public boolean reserve(Long facilityId, Long spotId, ParkingSpot.SpotType spotType,
+                           User reservedBy, LocalDateTime expiresAt) {
+        if (spotRepository.claimAvailableSpot(spotId, facilityId, reservedBy, expiresAt) == 0) {
+            return false;
+        }
+        publish(facilityId, spotId, spotType, ParkingSpot.SpotStatus.AVAILABLE, ParkingSpot.SpotStatus.RESERVED);
+        return true;
+    }
+
+    // RESERVED -> AVAILABLE for a batch of one facility's spots of one type; returns how many were still reserved.
+    // When some had already moved on, which ones is unknown, so the event carries only the count.
+    @Transactional
+    public int releaseHolds(Long facilityId, ParkingSpot.SpotType spotType, List<Long> spotIds) {
+        int released = spotRepository.releaseReservedSpots(spotIds);
+        if (released > 0) {
+            eventPublisher.publishEvent(new SpotTransition(facilityId, spotType,
+                ParkingSpot.SpotStatus.RESERVED, ParkingSpot.SpotStatus.AVAILABLE,
+                released == spotIds.size() ? List.copyOf(spotIds) : List.of(), released));
+        }
+        return released;
+    }
+
+    // Session start: AVAILABLE -> OCCUPIED, or RESERVED -> OCCUPIED only for the user the spot is held for, whose
+    // reservation is completed in the same transaction. Unlike changeStatus, a spot already OCCUPIED is refused.
+    @Transactional
+    public TransitionResult occupy(Long spotId, Long userId) {
+        Optional<SpotView> current = spotRepository.findSpotViewById(spotId);
+        if (current.isEmpty()) {
+            return TransitionResult.failure("Parking spot not found", "SPOT_NOT_FOUND");
+        }
+        SpotView spot = current.get();
+        boolean occupied = switch (spot.status()) {
+            case AVAILABLE -> spotRepository.transitionStatus(spotId, spot.facilityId(),
+                ParkingSpot.SpotStatus.AVAILABLE, ParkingSpot.SpotStatus.OCCUPIED) == 1;
+            case RESERVED -> userId != null && spotRepository.occupyHeldSpot(spotId, spot.facilityId(), userId) == 1;
+            default -> false;
+        };
+        if (!occupied) {
+            return spot.status() == ParkingSpot.SpotStatus.RESERVED
+                ? TransitionResult.failure("Parking spot is reserved for another user", "SPOT_RESERVED")
+                : TransitionResult.failure("Parking spot is not available", "SPOT_NOT_AVAILABLE");
+        }
+        if (spot.status() == ParkingSpot.SpotStatus.RESERVED) {
+            reservationRepository.endSpotReservations(spotId, Reservation.ReservationStatus.COMPLETED);
+        }
+        publish(spot.facilityId(), spotId, spot.spotType(), spot.status(), ParkingSpot.SpotStatus.OCCUPIED);
+        return TransitionResult.success(withStatus(spot, ParkingSpot.SpotStatus.OCCUPIED));
+    }
+
+    // Validated change from whatever status the spot has now, for the admin spot endpoints; asking for the status
+    // the spot already has succeeds without a write. RESERVED is refused: a reservation needs a hold that expires,
+    // see reserve().
+    @Transactional
+    public TransitionResult changeStatus(Long spotId, ParkingSpot.SpotStatus to) {
+        Optional<SpotView> current = spotRepository.findSpotViewById(spotId);
+        if (current.isEmpty()) {
+            return TransitionResult.failure("Parking spot not found", "SPOT_NOT_FOUND");
+        }
+        SpotView spot = current.get();
+        if (spot.status() == to) {
+            return TransitionResult.success(spot);
+        }
+        if (to == ParkingSpot.SpotStatus.RESERVED || !isAllowed(spot.status(), to)) {
+            return TransitionResult.failure("Cannot change spot from " + spot.status() + " to " + to, "TRANSITION_NOT_ALLOWED");
+        }
+        if (!transition(spot.facilityId(), spotId, spot.spotType(), spot.status(), to)) {
+            return TransitionResult.failure("Spot status changed concurrently, retry", "SPOT_STATUS_CHANGED");
+        }
+        return TransitionResult.success(withStatus(spot, to));
+    }
+
+    private static SpotView withStatus(SpotView spot, ParkingSpot.SpotStatus status) {
+        return new SpotView(spot.id(), spot.facilityId(), spot.spotNumber(),
+            spot.spotType(), spot.floorLevel(), status, null);
+    }
+
+    private void publish(Long facilityId, Long spotId, ParkingSpot.SpotType spotType,
+                         ParkingSpot.SpotStatus from, ParkingSpot.SpotStatus to) {
+        ParkingSpot.SpotType type = spotType != null ? spotType
+            : occupancyService.findSpotType(facilityId, spotId).or(() -> spotRepository.findSpotTypeById(spotId)).orElseThrow();
+        eventPublisher.publishEvent(new SpotTransition(facilityId, type, from, to, List.of(spotId), 1));
+    }
+
+    // `count` spots of one facility and type moved from one status to another. spotIds lists them when known
+    // (always for single-spot changes); it is empty when only the count is.
+    public record SpotTransition(Long facilityId, ParkingSpot.SpotType spotType,
+                                 ParkingSpot.SpotStatus from, ParkingSpot.SpotStatus to,
+                                 List<Long> spotIds, int count) {}
+
+    // A spot was added to a facility with the given type and initial status
+    public record SpotCreated(Long facilityId, Long spotId, ParkingSpot.SpotType spotType, ParkingSpot.SpotStatus status) {}
+
+    public static class TransitionResult {
+        public final boolean success;
+        public final String message;
+        public final SpotView spot;
+        public final String errorCode;
+
+        public TransitionResult(boolean success, String message, SpotView spot, String errorCode) {
+            this.success = success;
+            this.message = message;
+            this.spot = spot;
+            this.errorCode = errorCode;
+        }
+
+        public static TransitionResult success(SpotView spot) {
+            return new TransitionResult(true, "Spot status is " + spot.status(), spot, null);
+        }
+
+        public static TransitionResult failure(String message, String errorCode) {
+            return new TransitionResult(false, message, null, errorCode);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.evmak.parking_management.service;
+
+import com.evmak.parking_management.entity.ParkingSession;
+import com.evmak.parking_management.entity.Payment;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.SplittableRandom;
+
+// Deterministic scale-test data. Every row draws from its own SplittableRandom derived from (seed, table, row index),
+// so a seed yields the same dataset whatever the thread count, chunk size or order in which rows are generated.
+// Session starts follow weekday rush hours and quieter weekends; commuters arriving in the morning peak stay all day.
+public class SyntheticDataGenerator {
+
+    public enum Table {
+        USERS, VEHICLES, FACILITIES, SPOTS, SESSIONS
+    }
+
+    // Relative arrival volume per hour of day
+    private static final double[] WEEKDAY_HOURS = {
+        0.1, 0.05, 0.05, 0.05, 0.1, 0.4, 1.5, 4.0, 5.0, 3.0, 1.8, 1.8,
+        2.5, 2.2, 1.6, 1.8, 3.5, 4.5, 3.5, 1.8, 1.0, 0.6, 0.3, 0.2
+    };
+    private static final double[] WEEKEND_HOURS = {
+        0.2, 0.1, 0.05, 0.05, 0.05, 0.1, 0.3, 0.6, 1.2, 2.0, 2.8, 3.2,
+        3.4, 3.2, 3.0, 2.8, 2.4, 2.0, 1.8, 1.6, 1.2, 0.8, 0.5, 0.3
+    };
+    private static final double[] WEEKDAY_CUMULATIVE = cumulative(WEEKDAY_HOURS);
+    private static final double[] WEEKEND_CUMULATIVE = cumulative(WEEKEND_HOURS);
+
+    // Weekend days get this share of a weekday's sessions
+    private static final double WEEKEND_WEIGHT = 0.55;
+
+    private final long seed;
+    private final LocalDate lastDay;
+    private final int historyDays;
+
+    public static class SessionRow {
+        public int vehicle;
+        public int spot;
+        public LocalDateTime startedAt;
+        public int plannedHours;
+        public int actualMinutes;
+        public ParkingSession.SessionStatus status;
+        // Null for sessions that were never paid
+        public Payment.PaymentMethod paymentMethod;
+        public int paymentDelayMinutes;
+
+        public LocalDateTime getEndedAt() {
+            return startedAt.plusMinutes(actualMinutes);
+        }
+    }
+
+    // Sessions start on one of the `historyDays` days up to and including lastDay
+    public SyntheticDataGenerator(long seed, LocalDate lastDay, int historyDays) {
+        this.seed = seed;
+        this.lastDay = lastDay;
+        this.historyDays = historyDays;
+    }
+
+    public SplittableRandom random(Table table, long index) {
+        return new SplittableRandom(mix(mix(mix(seed) ^ table.ordinal()) + index));
+    }
+
+    // A moment within the last maxDays days, for created_at style columns
+    public LocalDateTime pastMoment(SplittableRandom random, int maxDays) {
+        return lastDay.atStartOfDay()
+            .minusDays(random.nextInt(maxDays))
+            .plusSeconds(random.nextInt(86_400));
+    }
+
+    public SessionRow session(long index, int vehicleCount, int spotCount) {
+        SplittableRandom random = random(Table.SESSIONS, index);
+        SessionRow row = new SessionRow();
+        row.vehicle = random.nextInt(vehicleCount);
+        row.spot = random.nextInt(spotCount);
+
+        LocalDate day;
+        do {
+            day = lastDay.minusDays(random.nextInt(historyDays));
+        } while (isWeekend(day) && random.nextDouble() >= WEEKEND_WEIGHT);
+        int hour = pick(random, isWeekend(day) ? WEEKEND_CUMULATIVE : WEEKDAY_CUMULATIVE);
+        row.startedAt = day.atTime(hour, random.nextInt(60));
+
+        boolean commuter = !isWeekend(day) && hour >= 6 && hour <= 9 && random.nextDouble() < 0.6;
+        row.plannedHours = commuter ? 8 + random.nextInt(3) : 1 + (int) Math.min(7, exponential(random, 1.5));
+        row.actualMinutes = (int) (row.plannedHours * 60 * (0.8 + random.nextDouble() * 0.4));
+
+        if (random.nextDouble() < 0.9) {
+            row.status = ParkingSession.SessionStatus.COMPLETED;
+            double method = random.nextDouble();
+            row.paymentMethod = method < 0.6 ? Payment.PaymentMethod.MOBILE_MONEY
+                : method < 0.9 ? Payment.PaymentMethod.CARD : Payment.PaymentMethod.CASH;
+            // Most drivers pay on the way out, a few much later
+            row.paymentDelayMinutes = (int) Math.min(24 * 60, exponential(random, 5));
+        } else {
+            row.status = ParkingSession.SessionStatus.EXPIRED;
+        }
+        return row;
+    }
+
+    static boolean isWeekend(LocalDate day) {
+        return day.getDayOfWeek() == DayOfWeek.SATURDAY || day.getDayOfWeek() == DayOfWeek.SUNDAY;
+    }
+
+    private static int pick(SplittableRandom random, double[] cumulative) {
+        double target = random.nextDouble() * cumulative[cumulative.length - 1];
+        for (int i = 0; i < cumulative.length; i++) {
+            if (target < cumulative[i]) {
+                return i;
+            }
+        }
+        return cumulative.length - 1;
+    }
+
+    private static double exponential(SplittableRandom random, double mean) {
+        return -Math.log(1 - random.nextDouble()) * mean;
+    }
+
+    private static double[] cumulative(double[] weights) {
+        double[] cumulative = new double[weights.length];
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i];
+            cumulative[i] = sum;
+        }
+        return cumulative;
+    }
+
+    // SplitMix64 finalizer, so neighbouring indexes get unrelated streams
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,18 @@
+-- Pooled id sequences for entities that moved off AUTO_INCREMENT so Hibernate can batch their inserts.
+-- MySQL has no sequences, so each is a one-row table holding the next value (Hibernate's sequence emulation).
+-- Seeded 51 above the current max id: the pooled optimizer treats a stored value as the top of a 50-id block.
+
+CREATE TABLE parking_sessions_seq (next_val BIGINT NOT NULL) ENGINE=InnoDB;
+INSERT INTO parking_sessions_seq SELECT COALESCE(MAX(id), 0) + 51 FROM parking_sessions;
+
+CREATE TABLE payments_seq (next_val BIGINT NOT NULL) ENGINE=InnoDB;
+INSERT INTO payments_seq SELECT COALESCE(MAX(id), 0) + 51 FROM payments;
+
+CREATE TABLE parking_spots_seq (next_val BIGINT NOT NULL) ENGINE=InnoDB;
+INSERT INTO parking_spots_seq SELECT COALESCE(MAX(id), 0) + 51 FROM parking_spots;
+
+CREATE TABLE reservations_seq (next_val BIGINT NOT NULL) ENGINE=InnoDB;
+INSERT INTO reservations_seq SELECT COALESCE(MAX(id), 0) + 51 FROM reservations;
+
+CREATE TABLE vehicles_seq (next_val BIGINT NOT NULL) ENGINE=InnoDB;
+INSERT INTO vehicles_seq SELECT COALESCE(MAX(id), 0) + 51 FROM vehicles;
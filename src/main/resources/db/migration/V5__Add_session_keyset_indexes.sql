@@ -0,0 +1,6 @@
+-- Keyset pagination and exports read sessions newest first by (started_at, id), overall and per user.
+-- The user index also covers lookups by user_id alone, so idx_sessions_user_id becomes redundant.
+
+CREATE INDEX idx_sessions_started_id ON parking_sessions (started_at, id);
+CREATE INDEX idx_sessions_user_started_id ON parking_sessions (user_id, started_at, id);
+DROP INDEX idx_sessions_user_id ON parking_sessions;
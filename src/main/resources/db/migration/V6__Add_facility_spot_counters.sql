@@ -0,0 +1,36 @@
+-- Materialized spot counts per (facility, spot type, status). Spot transitions move counts between cells with
+-- delta UPDATEs by primary key in the transition's own transaction, and availability is read from these rows.
+
+CREATE TABLE facility_spot_counters (
+    facility_id BIGINT NOT NULL,
+    spot_type ENUM('REGULAR', 'DISABLED', 'ELECTRIC', 'COMPACT') NOT NULL,
+    status ENUM('AVAILABLE', 'OCCUPIED', 'RESERVED', 'OUT_OF_ORDER') NOT NULL,
+    spot_count INT NOT NULL DEFAULT 0,
+
+    PRIMARY KEY (facility_id, spot_type, status),
+    FOREIGN KEY (facility_id) REFERENCES parking_facilities(id) ON DELETE CASCADE
+) ENGINE=InnoDB;
+
+-- Every cell exists from the start, so transitions only ever update
+INSERT INTO facility_spot_counters (facility_id, spot_type, status, spot_count)
+SELECT pf.id, t.spot_type, s.status, COALESCE(c.spot_count, 0)
+FROM parking_facilities pf
+CROSS JOIN (SELECT 'REGULAR' AS spot_type UNION ALL SELECT 'DISABLED' UNION ALL SELECT 'ELECTRIC' UNION ALL SELECT 'COMPACT') t
+CROSS JOIN (SELECT 'AVAILABLE' AS status UNION ALL SELECT 'OCCUPIED' UNION ALL SELECT 'RESERVED' UNION ALL SELECT 'OUT_OF_ORDER') s
+LEFT JOIN (
+    SELECT facility_id, spot_type, status, COUNT(*) AS spot_count
+    FROM parking_spots
+    GROUP BY facility_id, spot_type, status
+) c ON c.facility_id = pf.id AND c.spot_type = t.spot_type AND c.status = s.status;
+
+UPDATE parking_facilities pf
+SET total_spots = (SELECT COUNT(*) FROM parking_spots ps WHERE ps.facility_id = pf.id),
+    available_spots = (SELECT COUNT(*) FROM parking_spots ps WHERE ps.facility_id = pf.id AND ps.status = 'AVAILABLE');
+
+-- The availability triggers recounted the whole facility on every spot change and rewrote
+-- parking_facilities.total_spots/available_spots, which would now double-apply the application's deltas.
+-- Status changes still made by the remaining triggers are picked up by the periodic drift check.
+DROP TRIGGER IF EXISTS update_facility_availability_after_spot_update;
+DROP TRIGGER IF EXISTS update_facility_availability_after_spot_insert;
+DROP TRIGGER IF EXISTS update_facility_availability_after_spot_delete;
+DROP PROCEDURE IF EXISTS update_facility_availability_cache;
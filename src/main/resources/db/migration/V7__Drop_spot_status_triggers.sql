@@ -0,0 +1,8 @@
+-- Spot status changes go through the application's SpotStateService, which keeps the facility counters,
+-- occupancy index and caches in step. These triggers and procedures changed spot status behind its back.
+-- Session end/cancel now frees the spot in the application, and expired holds are released by the expiry scheduler.
+
+DROP TRIGGER IF EXISTS check_reservation_expiry_before_spot_update;
+DROP TRIGGER IF EXISTS update_spot_status_after_session_change;
+DROP PROCEDURE IF EXISTS reserve_parking_spot;
+DROP PROCEDURE IF EXISTS cleanup_expired_reservations;
@@ -0,0 +1,17 @@
+-- Transactional outbox: spot, session and payment changes insert their domain event here in the same transaction,
+-- and OutboxRelay drains the table in id order, deleting each batch once subscribers have seen it.
+-- No foreign keys: an event must outlive the row it describes until it has been relayed.
+
+CREATE TABLE outbox_events (
+    id BIGINT PRIMARY KEY,
+    aggregate_type ENUM('SPOT', 'SESSION', 'PAYMENT') NOT NULL,
+    aggregate_id BIGINT,
+    event_type VARCHAR(50) NOT NULL,
+    facility_id BIGINT,
+    payload TEXT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+) ENGINE=InnoDB;
+
+-- Pooled id sequence (Hibernate's table emulation on MySQL), as in V4
+CREATE TABLE outbox_events_seq (next_val BIGINT NOT NULL) ENGINE=InnoDB;
+INSERT INTO outbox_events_seq VALUES (1);
@@ -0,0 +1,3 @@
+-- Facility writes publish through the outbox too, so the facility and nearby-search caches are dropped after commit
+ALTER TABLE outbox_events
+    MODIFY aggregate_type ENUM('SPOT', 'SESSION', 'PAYMENT', 'FACILITY') NOT NULL;
@@ -0,0 +1,153 @@
+package com.evmak.parking_management.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TwoTierCacheManagerTest {
+
+    // Stands in for Redis: shared L2 plus a pub/sub channel delivering to every node
+    private final ConcurrentMapCacheManager remote = new ConcurrentMapCacheManager();
+    private final List<TwoTierCacheManager> nodes = new CopyOnWriteArrayList<>();
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private TwoTierCacheManager nodeA;
+    private TwoTierCacheManager nodeB;
+
+    @BeforeEach
+    void setUp() {
+        nodeA = newNode(registry);
+        nodeB = newNode(new SimpleMeterRegistry());
+    }
+
+    private TwoTierCacheManager newNode(MeterRegistry meterRegistry) {
+        TwoTierCacheManager node = new TwoTierCacheManager(remote, Map.of("parkingFacilities", Duration.ofMinutes(15)),
+            Duration.ofMinutes(5), 100, message -> nodes.forEach(n -> n.handleInvalidation(message)), meterRegistry);
+        nodes.add(node);
+        return node;
+    }
+
+    @Test
+    void testRepeatedReadsAreServedFromL1() {
+        Cache cache = nodeA.getCache("parkingFacilities");
+        remote.getCache("parkingFacilities").put(1L, "Garage A");
+
+        assertEquals("Garage A", cache.get(1L).get()); // L1 miss, L2 hit
+        remote.getCache("parkingFacilities").evict(1L);
+        assertEquals("Garage A", cache.get(1L).get()); // L1 hit - Redis not consulted
+
+        assertEquals(1.0, counter("l1", "hit"));
+        assertEquals(1.0, counter("l1", "miss"));
+        assertEquals(1.0, counter("l2", "hit"));
+        assertEquals(0.5, registry.get("cache.tier.hit.ratio")
+            .tags("cache", "parkingFacilities", "tier", "l1").gauge().value());
+    }
+
+    @Test
+    void testWriteOnOneNodeInvalidatesOtherNodesL1() {
+        nodeA.getCache("parkingFacilities").put(1L, "Garage A");
+        assertEquals("Garage A", nodeB.getCache("parkingFacilities").get(1L).get());
+
+        nodeA.getCache("parkingFacilities").put(1L, "Garage A (renamed)");
+        assertEquals("Garage A (renamed)", nodeB.getCache("parkingFacilities").get(1L).get());
+
+        nodeA.getCache("parkingFacilities").evict(1L);
+        assertNull(nodeB.getCache("parkingFacilities").get(1L));
+    }
+
+    @Test
+    void testClearDropsEveryL1Entry() {
+        Cache cacheB = nodeB.getCache("parkingSpots");
+        cacheB.put("1:available", List.of("S1"));
+        cacheB.put("2:available", List.of("S2"));
+
+        nodeA.getCache("parkingSpots").clear();
+
+        assertNull(cacheB.get("1:available"));
+        assertNull(cacheB.get("2:available"));
+    }
+
+    @Test
+    void testLoaderRunsOnlyWhenBothTiersMiss() {
+        Cache cache = nodeA.getCache("parkingFacilities");
+        int[] loads = {0};
+
+        assertEquals("Loaded", cache.get(7L, () -> { loads[0]++; return "Loaded"; }));
+        assertEquals("Loaded", cache.get(7L, () -> { loads[0]++; return "Again"; }));
+        assertEquals(1, loads[0]);
+        assertEquals("Loaded", remote.getCache("parkingFacilities").get(7L).get());
+    }
+
+    @Test
+    void testReadThroughFillIsNotBroadcast() {
+        Cache cacheB = nodeB.getCache("parkingFacilities");
+        cacheB.put(3L, "Garage C");
+        assertEquals("Garage C", cacheB.get(3L).get());
+        int[] broadcasts = {0};
+        TwoTierCacheManager nodeC = new TwoTierCacheManager(remote, Map.of(), Duration.ofMinutes(5), 100,
+            message -> broadcasts[0]++, new SimpleMeterRegistry());
+
+        assertEquals("Loaded", nodeC.getCache("parkingFacilities").get(8L, () -> "Loaded"));
+
+        assertEquals(0, broadcasts[0]);
+        assertEquals("Garage C", cacheB.get(3L).get());
+    }
+
+    @Test
+    void testRedisFailureFallsBackToL1AndLoader() {
+        Cache failing = new ConcurrentMapCache("parkingFacilities") {
+            @Override
+            public ValueWrapper get(Object key) {
+                throw new IllegalStateException("Redis down");
+            }
+
+            @Override
+            public void put(Object key, Object value) {
+                throw new IllegalStateException("Redis down");
+            }
+
+            @Override
+            public void evict(Object key) {
+                throw new IllegalStateException("Redis down");
+            }
+        };
+        CacheManager failingRemote = new ConcurrentMapCacheManager() {
+            @Override
+            public Cache getCache(String name) {
+                return failing;
+            }
+        };
+        MeterRegistry meters = new SimpleMeterRegistry();
+        Cache cache = new TwoTierCacheManager(failingRemote, Map.of(), Duration.ofMinutes(5), 100,
+            message -> {}, meters).getCache("parkingFacilities");
+        int[] loads = {0};
+
+        assertNull(cache.get(1L));
+        assertEquals("Loaded", cache.get(1L, () -> { loads[0]++; return "Loaded"; }));
+        assertEquals("Loaded", cache.get(1L, () -> { loads[0]++; return "Again"; })); // Served from L1
+        cache.put(1L, "Updated");
+        assertEquals("Updated", cache.get(1L).get());
+        cache.evict(1L);
+        assertNull(cache.get(1L));
+
+        assertEquals(1, loads[0]);
+        assertEquals(6.0, meters.get("cache.tier.errors").counters().stream().mapToDouble(c -> c.count()).sum());
+    }
+
+    private double counter(String tier, String result) {
+        return registry.get("cache.tier.gets")
+            .tags("cache", "parkingFacilities", "tier", tier, "result", result).counter().count();
+    }
+}
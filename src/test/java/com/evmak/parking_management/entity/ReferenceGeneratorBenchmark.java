@@ -0,0 +1,42 @@
+package com.evmak.parking_management.entity;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Reference throughput under contention: the shared generator against the previous millis-plus-counter strings.
+// Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+//           -Dexec.mainClass=com.evmak.parking_management.entity.ReferenceGeneratorBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class ReferenceGeneratorBenchmark {
+
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    @Benchmark
+    public String generator() {
+        return ReferenceGenerator.next("PAY-");
+    }
+
+    @Benchmark
+    public String millisAndCounter() {
+        return "PAY-" + System.currentTimeMillis() + "-" + (sequence.incrementAndGet() & 0xFFFF);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(ReferenceGeneratorBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
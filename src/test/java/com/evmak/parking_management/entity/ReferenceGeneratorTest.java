@@ -0,0 +1,85 @@
+package com.evmak.parking_management.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReferenceGeneratorTest {
+
+    private static final int THREADS = 8;
+    private static final int PER_THREAD = 500_000;
+
+    @Test
+    void testMillionsOfConcurrentIdsHaveNoDuplicatesAndIncreasePerThread() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<long[]>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            results.add(executor.submit(() -> {
+                long[] ids = new long[PER_THREAD];
+                start.await();
+                for (int i = 0; i < PER_THREAD; i++) {
+                    ids[i] = ReferenceGenerator.nextId();
+                }
+                return ids;
+            }));
+        }
+        start.countDown();
+
+        long[] all = new long[THREADS * PER_THREAD];
+        int offset = 0;
+        for (Future<long[]> result : results) {
+            long[] ids = result.get();
+            for (int i = 1; i < ids.length; i++) {
+                assertTrue(ids[i] > ids[i - 1], "ids must increase within a thread");
+            }
+            System.arraycopy(ids, 0, all, offset, ids.length);
+            offset += ids.length;
+        }
+        executor.shutdown();
+
+        Arrays.sort(all);
+        for (int i = 1; i < all.length; i++) {
+            assertNotEquals(all[i - 1], all[i], "duplicate id");
+        }
+    }
+
+    @Test
+    void testReferencesAreFixedWidthAndSortInCreationOrder() {
+        String previous = ReferenceGenerator.next("PAY-");
+        for (int i = 0; i < 10_000; i++) {
+            String reference = ReferenceGenerator.next("PAY-");
+            assertEquals(4 + ReferenceGenerator.ENCODED_LENGTH, reference.length());
+            assertTrue(reference.matches("PAY-[0-9A-HJKMNP-TV-Z]{13}"), reference);
+            assertTrue(reference.compareTo(previous) > 0);
+            previous = reference;
+        }
+        assertEquals("RES-000000000000Z", ReferenceGenerator.encode("RES-", 31));
+        assertEquals("RES-7ZZZZZZZZZZZZ", ReferenceGenerator.encode("RES-", Long.MAX_VALUE));
+    }
+
+    @Test
+    void testNodeIdIsEmbeddedAndValidated() {
+        int original = ReferenceGenerator.getNodeId();
+        try {
+            ReferenceGenerator.setNodeId(ReferenceGenerator.MAX_NODE_ID);
+            long id = ReferenceGenerator.nextId();
+            assertEquals(ReferenceGenerator.MAX_NODE_ID, (id >>> ReferenceGenerator.SEQUENCE_BITS) & ReferenceGenerator.MAX_NODE_ID);
+            long millis = (id >>> (ReferenceGenerator.NODE_BITS + ReferenceGenerator.SEQUENCE_BITS)) + ReferenceGenerator.EPOCH_MS;
+            assertTrue(Math.abs(millis - System.currentTimeMillis()) < 60_000);
+
+            assertThrows(IllegalArgumentException.class, () -> ReferenceGenerator.setNodeId(ReferenceGenerator.MAX_NODE_ID + 1));
+            assertThrows(IllegalArgumentException.class, () -> ReferenceGenerator.setNodeId(-1));
+        } finally {
+            ReferenceGenerator.setNodeId(original);
+        }
+    }
+}
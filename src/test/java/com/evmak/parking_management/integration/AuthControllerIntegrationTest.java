@@ -21,6 +21,7 @@ import org.springframework.web.context.WebApplicationContext;
 
 import java.time.LocalDateTime;
 
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -205,4 +206,12 @@ public class AuthControllerIntegrationTest {
                 .header("Authorization", "Bearer invalid-token"))
                 .andExpect(status().isUnauthorized());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testBulkSeed_RequiresAdmin() throws Exception {
+        mockMvc.perform(post("/api/v1/data/seed/bulk"))
+                .andExpect(status().is4xxClientError());
+        mockMvc.perform(post("/api/v1/data/seed/bulk").with(user("driver").roles("USER")))
+                .andExpect(status().isForbidden());
+    }
+}
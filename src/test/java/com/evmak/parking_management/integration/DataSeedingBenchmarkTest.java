@@ -0,0 +1,185 @@
+package com.evmak.parking_management.integration;
+
+import com.evmak.parking_management.ParkingManagementApplication;
+import com.evmak.parking_management.repository.*;
+import com.evmak.parking_management.entity.PricingRule;
+import com.evmak.parking_management.entity.Vehicle;
+import com.evmak.parking_management.service.BulkDataLoader;
+import com.evmak.parking_management.service.DataResetService;
+import com.evmak.parking_management.service.DataSeedingService;
+import com.evmak.parking_management.service.SpotOccupancyService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Times the large seed and counts the JDBC statements it needs; with pooled ids the inserts go out in batches
+@SpringBootTest(classes = ParkingManagementApplication.class)
+@AutoConfigureWebMvc
+@ActiveProfiles("test")
+@Tag("benchmark")
+public class DataSeedingBenchmarkTest {
+
+    @Autowired
+    private DataSeedingService dataSeedingService;
+
+    @Autowired
+    private BulkDataLoader bulkDataLoader;
+
+    @Autowired
+    private DataResetService dataResetService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SpotOccupancyService occupancyService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Autowired
+    private ParkingFacilityRepository facilityRepository;
+
+    @Autowired
+    private ParkingSpotRepository spotRepository;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private ParkingSessionRepository sessionRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PricingRuleRepository pricingRuleRepository;
+
+    @BeforeEach
+    void setUp() {
+        cleanDatabase();
+    }
+
+    @AfterEach
+    void tearDown() {
+        cleanDatabase();
+        occupancyService.rebuildAll();
+    }
+
+    private void cleanDatabase() {
+        reservationRepository.deleteAllInBatch();
+        paymentRepository.deleteAllInBatch();
+        sessionRepository.deleteAllInBatch();
+        pricingRuleRepository.deleteAll();
+        spotRepository.deleteAllInBatch();
+        vehicleRepository.deleteAllInBatch();
+        facilityRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void seedLargeDatasetInBatches() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        long begin = System.nanoTime();
+        dataSeedingService.seedLargeDataset();
+        double seconds = (System.nanoTime() - begin) / 1_000_000_000.0;
+
+        long statements = statistics.getPrepareStatementCount();
+        long inserted = spotRepository.count() + vehicleRepository.count() + sessionRepository.count() + paymentRepository.count();
+        statistics.setStatisticsEnabled(false);
+
+        System.out.printf("seedLargeDataset benchmark: %.2fs, %d rows, %d statements (%.2f statements/row)%n",
+            seconds, inserted, statements, (double) statements / inserted);
+
+        assertTrue(sessionRepository.count() > 0);
+        // Row-at-a-time inserts would need at least one statement per row
+        assertTrue(statements < inserted / 2, "inserts were not batched: " + statements + " statements for " + inserted + " rows");
+    }
+
+    @Test
+    void bulkLoadStreamsChunksInBatches() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        BulkDataLoader.BulkLoadReport report = bulkDataLoader.load(200, 400, 10, 1000, 20000, 7L);
+
+        long statements = statistics.getPrepareStatementCount();
+        statistics.setStatisticsEnabled(false);
+        System.out.printf("bulk load benchmark: %d rows in %dms (%.0f rows/s), %d statements%n",
+            report.getRows(), report.elapsedMs, report.getRowsPerSecond(), statements);
+
+        assertEquals(200, userRepository.count());
+        assertEquals(400, vehicleRepository.count());
+        assertEquals(1000, spotRepository.count());
+        assertEquals(20000, sessionRepository.count());
+        assertEquals(report.payments, paymentRepository.count());
+        assertTrue(report.getRowsPerSecond() > 0);
+        assertTrue(statements < report.getRows() / 2, "inserts were not batched: " + statements + " statements for " + report.getRows() + " rows");
+    }
+
+    @Test
+    void bulkLoadIsReproducibleFromTheSeed() {
+        bulkDataLoader.load(20, 30, 2, 40, 100, 9L);
+        List<String> firstRun = vehicleRepository.findAll().stream().map(Vehicle::getLicensePlate).sorted().toList();
+        cleanDatabase();
+
+        BulkDataLoader.BulkLoadReport report = bulkDataLoader.load(20, 30, 2, 40, 100, 9L);
+
+        assertEquals(firstRun, vehicleRepository.findAll().stream().map(Vehicle::getLicensePlate).sorted().toList());
+        // Another copy of the same seed needs its own tag to keep the unique columns unique
+        assertThrows(ConstraintViolationException.class, () -> bulkDataLoader.load(20, 30, 2, 40, 100, 9L));
+        bulkDataLoader.load(20, 30, 2, 40, 100, 9L, "copy2");
+        assertEquals(40, userRepository.count());
+        assertNotEquals("copy2", report.runTag);
+    }
+
+    @Test
+    void resetTruncatesEveryTable() {
+        bulkDataLoader.load(100, 200, 5, 500, 20000, 7L);
+        PricingRule rule = new PricingRule("Weekend surcharge", PricingRule.RuleType.TIME_BASED, new BigDecimal("1.2"));
+        rule.setDaysOfWeek(Set.of(PricingRule.DayOfWeek.SATURDAY, PricingRule.DayOfWeek.SUNDAY));
+        pricingRuleRepository.save(rule);
+
+        long elapsedMs = dataResetService.resetAll();
+        System.out.printf("reset benchmark: %dms%n", elapsedMs);
+
+        assertEquals(0, userRepository.count());
+        assertEquals(0, vehicleRepository.count());
+        assertEquals(0, facilityRepository.count());
+        assertEquals(0, spotRepository.count());
+        assertEquals(0, sessionRepository.count());
+        assertEquals(0, paymentRepository.count());
+        assertEquals(0, pricingRuleRepository.count());
+
+        // Foreign key checks are back on afterwards
+        assertThrows(DataIntegrityViolationException.class, () -> jdbcTemplate.update(
+            "INSERT INTO pricing_rule_days (pricing_rule_id, day_of_week) VALUES (999999, 'MONDAY')"));
+    }
+}
@@ -0,0 +1,154 @@
+package com.evmak.parking_management.integration;
+
+import com.evmak.parking_management.ParkingManagementApplication;
+import com.evmak.parking_management.entity.OutboxEvent;
+import com.evmak.parking_management.entity.ParkingFacility;
+import com.evmak.parking_management.entity.ParkingSpot;
+import com.evmak.parking_management.repository.OutboxEventRepository;
+import com.evmak.parking_management.repository.ParkingFacilityRepository;
+import com.evmak.parking_management.repository.ParkingSpotRepository;
+import com.evmak.parking_management.service.DataResetService;
+import com.evmak.parking_management.service.OutboxRelay;
+import com.evmak.parking_management.service.OutboxService;
+import com.evmak.parking_management.service.SpotOccupancyService;
+import com.evmak.parking_management.service.SpotStateService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Domain events are stored with the change that produced them and reach subscribers through the relay
+@SpringBootTest(classes = ParkingManagementApplication.class)
+@AutoConfigureWebMvc
+@ActiveProfiles("test")
+public class OutboxIntegrationTest {
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    @Autowired
+    private SpotStateService spotStateService;
+
+    @Autowired
+    private SpotOccupancyService occupancyService;
+
+    @Autowired
+    private DataResetService dataResetService;
+
+    @Autowired
+    private OutboxEventRepository outboxRepository;
+
+    @Autowired
+    private ParkingFacilityRepository facilityRepository;
+
+    @Autowired
+    private ParkingSpotRepository spotRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private MockMvc mockMvc;
+    private ParkingFacility facility;
+    private ParkingSpot spot;
+
+    @BeforeEach
+    void setUp() {
+        dataResetService.truncateAll();
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+
+        facility = facilityRepository.save(new ParkingFacility("Outbox Garage", ParkingFacility.FacilityType.GARAGE,
+            "4 Test Road", new BigDecimal("-6.79240000"), new BigDecimal("39.20830000"), new BigDecimal("2000.00")));
+        spot = spotRepository.save(new ParkingSpot(facility, "O001", ParkingSpot.SpotType.REGULAR));
+        occupancyService.rebuildFacility(facility.getId());
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataResetService.truncateAll();
+        occupancyService.rebuildAll();
+    }
+
+    @Test
+    void eventCommitsAndRollsBackWithItsChange() throws Exception {
+        transactionTemplate.executeWithoutResult(status -> {
+            assertTrue(spotStateService.changeStatus(spot.getId(), ParkingSpot.SpotStatus.OUT_OF_ORDER).success);
+            status.setRollbackOnly();
+        });
+        assertEquals(0, outboxRepository.count());
+
+        mockMvc.perform(put("/api/v1/spots/" + spot.getId() + "/status").param("status", "OUT_OF_ORDER"))
+            .andExpect(status().isOk());
+
+        List<OutboxEvent> events = outboxRepository.findAll();
+        assertEquals(1, events.size());
+        assertEquals(OutboxEvent.AggregateType.SPOT, events.get(0).getAggregateType());
+        assertEquals(spot.getId(), events.get(0).getAggregateId());
+        assertEquals(facility.getId(), events.get(0).getFacilityId());
+        assertEquals(OutboxService.SPOT_STATUS_CHANGED, events.get(0).getEventType());
+
+        // Without a transaction there is no change for the event to commit with
+        assertThrows(IllegalStateException.class, () -> outboxService.append(
+            OutboxEvent.AggregateType.SPOT, spot.getId(), OutboxService.SPOT_STATUS_CHANGED, facility.getId(), Map.of()));
+    }
+
+    @Test
+    void relayDeliversBatchToSubscribersAndDrainsOutbox() throws Exception {
+        mockMvc.perform(put("/api/v1/spots/" + spot.getId() + "/status").param("status", "OUT_OF_ORDER"))
+            .andExpect(status().isOk());
+        mockMvc.perform(put("/api/v1/spots/" + spot.getId() + "/status").param("status", "AVAILABLE"))
+            .andExpect(status().isOk());
+        double relayedBefore = meterRegistry.counter("outbox.events.relayed", "aggregate", "SPOT").count();
+        long cacheDeletesBefore = cacheDeletes();
+
+        assertEquals(2, outboxRelay.relayBatch());
+
+        assertEquals(0, outboxRepository.count());
+        assertEquals(relayedBefore + 2, meterRegistry.counter("outbox.events.relayed", "aggregate", "SPOT").count());
+        // The cache subscriber drops the keys of the whole batch in one Redis call
+        assertEquals(cacheDeletesBefore + 1, cacheDeletes());
+        assertEquals(0, outboxRelay.relayBatch());
+    }
+
+    @Test
+    void facilityDeactivationIsPublished() throws Exception {
+        mockMvc.perform(delete("/api/v1/facilities/" + facility.getId())).andExpect(status().isOk());
+
+        List<OutboxEvent> events = outboxRepository.findAll();
+        assertEquals(1, events.size());
+        assertEquals(OutboxEvent.AggregateType.FACILITY, events.get(0).getAggregateType());
+        assertEquals("FACILITY_DEACTIVATED", events.get(0).getEventType());
+        assertEquals(1, outboxRelay.relayBatch());
+    }
+
+    private long cacheDeletes() {
+        Timer timer = meterRegistry.find("cache.redis.latency").tag("operation", "delete").timer();
+        return timer != null ? timer.count() : 0;
+    }
+}
@@ -0,0 +1,163 @@
+package com.evmak.parking_management.integration;
+
+import com.evmak.parking_management.ParkingManagementApplication;
+import com.evmak.parking_management.config.CacheConfig;
+import com.evmak.parking_management.dto.FacilityView;
+import com.evmak.parking_management.dto.SpotView;
+import com.evmak.parking_management.entity.ParkingSpot;
+import com.evmak.parking_management.repository.ParkingFacilityRepository;
+import com.evmak.parking_management.repository.ParkingSessionRepository;
+import com.evmak.parking_management.repository.ParkingSpotRepository;
+import com.evmak.parking_management.service.BulkDataLoader;
+import com.evmak.parking_management.service.DataResetService;
+import com.evmak.parking_management.service.SpotOccupancyService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+// Read endpoints answer from flat views in a single statement, and the cached views survive the Redis serializer
+@SpringBootTest(classes = ParkingManagementApplication.class)
+@AutoConfigureWebMvc
+@ActiveProfiles("test")
+public class ReadModelIntegrationTest {
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private BulkDataLoader bulkDataLoader;
+
+    @Autowired
+    private DataResetService dataResetService;
+
+    @Autowired
+    private SpotOccupancyService occupancyService;
+
+    @Autowired
+    private ParkingSpotRepository spotRepository;
+
+    @Autowired
+    private ParkingFacilityRepository facilityRepository;
+
+    @Autowired
+    private ParkingSessionRepository sessionRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private MockMvc mockMvc;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        dataResetService.truncateAll();
+        bulkDataLoader.load(20, 40, 3, 120, 200, 5L);
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+        // Switched on here rather than through a property, so the test shares the cached application context
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        statistics.setStatisticsEnabled(false);
+        dataResetService.truncateAll();
+        occupancyService.rebuildAll();
+    }
+
+    @Test
+    void readEndpointsRunOneStatementAndReturnFlatRows() throws Exception {
+        FacilityView facility = facilityRepository.findActiveFacilityViews().get(0);
+        SpotView spot = spotRepository.findSpotViewsByFacilityId(facility.id()).get(0);
+        LocalDateTime latest = LocalDateTime.of(9999, 12, 31, 0, 0);
+        ParkingSessionRepository.SessionView session = sessionRepository.findSessionPage(
+            LocalDateTime.of(1970, 1, 1, 0, 0), latest, latest, Long.MAX_VALUE, Limit.of(1)).get(0);
+
+        JsonNode spots = read("/api/v1/spots/facility/" + facility.id());
+        assertEquals(40, spots.size());
+        assertEquals(facility.id(), spots.get(0).get("facilityId").asLong());
+        assertFalse(spots.get(0).has("facility"));
+
+        JsonNode single = read("/api/v1/spots/" + spot.id());
+        assertEquals(spot.spotNumber(), single.get("spotNumber").asText());
+
+        JsonNode facilities = read("/api/v1/facilities");
+        assertEquals(3, facilities.size());
+        assertFalse(facilities.get(0).has("parkingSpots"));
+
+        read("/api/v1/facilities/" + facility.id());
+        read("/api/v1/facilities/type/" + facility.facilityType());
+
+        JsonNode sessionJson = read("/api/v1/sessions/" + session.getId());
+        assertEquals(session.getSessionReference(), sessionJson.get("sessionReference").asText());
+        assertFalse(sessionJson.has("user"));
+        read("/api/v1/sessions/reference/" + session.getSessionReference());
+    }
+
+    @Test
+    void listingsStayArraysUnlessAPageIsRequested() throws Exception {
+        assertTrue(read("/api/v1/sessions").isArray());
+        assertEquals(200, read("/api/v1/sessions").size());
+        assertTrue(read("/api/v1/users").isArray());
+
+        JsonNode sessions = read("/api/v1/sessions?limit=50");
+        assertEquals(50, sessions.get("items").size());
+        assertFalse(sessions.get("nextCursor").isNull());
+
+        JsonNode facilities = read("/api/v1/facilities?limit=2");
+        assertEquals(2, facilities.get("items").size());
+        JsonNode lastFacilities = read("/api/v1/facilities?cursor=" + facilities.get("nextCursor").asText());
+        assertEquals(1, lastFacilities.get("items").size());
+        assertTrue(lastFacilities.get("nextCursor").isNull());
+    }
+
+    @Test
+    void cachedViewsRoundTripThroughTheRedisSerializer() {
+        GenericJackson2JsonRedisSerializer serializer = CacheConfig.jsonSerializer();
+        Long facilityId = facilityRepository.findActiveFacilityViews().get(0).id();
+
+        List<SpotView> spots =
+            spotRepository.findSpotViewsByFacilityIdAndStatus(facilityId, ParkingSpot.SpotStatus.AVAILABLE);
+        FacilityView facility = facilityRepository.findFacilityViewById(facilityId).orElseThrow();
+        List<FacilityView> nearby = new ArrayList<>(facilityRepository.findActiveFacilityViews());
+
+        byte[] spotBytes = serializer.serialize(spots);
+        assertEquals(spots, serializer.deserialize(spotBytes));
+        assertEquals(facility, serializer.deserialize(serializer.serialize(facility)));
+        assertEquals(nearby, serializer.deserialize(serializer.serialize(nearby)));
+        System.out.printf("cached available spots: %d rows, %d bytes (%d per spot)%n",
+            spots.size(), spotBytes.length, spotBytes.length / Math.max(1, spots.size()));
+    }
+
+    // Counts statements across the whole request, including any lazy loads during serialization
+    private JsonNode read(String path) throws Exception {
+        statistics.clear();
+        String body = mockMvc.perform(get(path)).andReturn().getResponse().getContentAsString();
+        assertEquals(1, statistics.getPrepareStatementCount(), path);
+        return objectMapper.readTree(body);
+    }
+}
@@ -0,0 +1,189 @@
+package com.evmak.parking_management.integration;
+
+import com.evmak.parking_management.ParkingManagementApplication;
+import com.evmak.parking_management.entity.*;
+import com.evmak.parking_management.repository.*;
+import com.evmak.parking_management.service.ReservationService;
+import com.evmak.parking_management.service.SpotOccupancyService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Fires many parallel reservations at one facility and checks that no spot is ever booked twice.
+// Sizes can be raised with -Dreservation.concurrency.requests / .spots / .threads
+@SpringBootTest(classes = ParkingManagementApplication.class)
+@AutoConfigureWebMvc
+@ActiveProfiles("test")
+@Tag("benchmark")
+public class ReservationConcurrencyIntegrationTest {
+
+    private static final int REQUESTS = Integer.getInteger("reservation.concurrency.requests", 2000);
+    private static final int SPOTS = Integer.getInteger("reservation.concurrency.spots", 200);
+    private static final int THREADS = Integer.getInteger("reservation.concurrency.threads", 32);
+    private static final int HOT_SPOTS = 20;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private SpotOccupancyService occupancyService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Autowired
+    private ParkingFacilityRepository facilityRepository;
+
+    @Autowired
+    private ParkingSpotRepository spotRepository;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    private ParkingFacility facility;
+    private List<ParkingSpot> spots;
+    private List<Vehicle> vehicles;
+
+    @BeforeEach
+    void setUp() {
+        cleanDatabase();
+
+        facility = new ParkingFacility("Concurrency Garage", ParkingFacility.FacilityType.GARAGE, "1 Test Road",
+            new BigDecimal("-6.79240000"), new BigDecimal("39.20830000"), new BigDecimal("2000.00"));
+        facility.setTotalSpots(SPOTS);
+        facility.setAvailableSpots(SPOTS);
+        facility = facilityRepository.save(facility);
+
+        List<ParkingSpot> newSpots = new ArrayList<>();
+        for (int i = 0; i < SPOTS; i++) {
+            ParkingSpot.SpotType type = i % 5 == 4 ? ParkingSpot.SpotType.ELECTRIC : ParkingSpot.SpotType.REGULAR;
+            newSpots.add(new ParkingSpot(facility, String.format("C%04d", i + 1), type));
+        }
+        spots = spotRepository.saveAll(newSpots);
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            User user = new User("load" + i, "load" + i + "@test.com", "hash", "Load", "User" + i);
+            users.add(user);
+        }
+        users = userRepository.saveAll(users);
+
+        List<Vehicle> newVehicles = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            newVehicles.add(new Vehicle(users.get(i), String.format("T%06d", i), Vehicle.VehicleType.CAR));
+        }
+        vehicles = vehicleRepository.saveAll(newVehicles);
+
+        occupancyService.rebuildFacility(facility.getId());
+    }
+
+    @AfterEach
+    void tearDown() {
+        cleanDatabase();
+        occupancyService.rebuildAll();
+    }
+
+    private void cleanDatabase() {
+        reservationRepository.deleteAllInBatch();
+        spotRepository.deleteAllInBatch();
+        vehicleRepository.deleteAllInBatch();
+        facilityRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void parallelReservations_NeverDoubleBookASpot() throws Exception {
+        // Everyone aims at a small set of "best" spots to force conflicts, and losers reroute to other spots
+        runConcurrently("reserve", (vehicle, i) -> reservationService.reserveSpot(
+            vehicle.getUser().getId(), vehicle.getId(), facility.getId(), spots.get(i % HOT_SPOTS).getId(), 60, true));
+    }
+
+    @Test
+    void parallelAutoReservations_NeverDoubleBookASpot() throws Exception {
+        runConcurrently("reserve/auto", (vehicle, i) -> reservationService.reserveAnySpot(
+            vehicle.getUser().getId(), vehicle.getId(), facility.getId(), null, null, 60));
+    }
+
+    private void runConcurrently(String mode, BiFunction<Vehicle, Integer, ReservationService.ReservationResult> reserve) 
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger successes = new AtomicInteger();
+        Map<String, AtomicInteger> failuresByCode = new ConcurrentHashMap<>();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < REQUESTS; i++) {
+            Vehicle vehicle = vehicles.get(i);
+            int request = i;
+            futures.add(executor.submit(() -> {
+                start.await();
+                ReservationService.ReservationResult result = reserve.apply(vehicle, request);
+                if (result.success) {
+                    successes.incrementAndGet();
+                } else {
+                    failuresByCode.computeIfAbsent(result.errorCode, k -> new AtomicInteger()).incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        long startNanos = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES); // Propagates any unexpected exception
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        executor.shutdown();
+
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        System.out.printf("Reservation concurrency [%s]: %d requests, %d threads, %d spots -> %d reserved, failures %s, %.1f req/s%n",
+            mode, REQUESTS, THREADS, SPOTS, successes.get(), failuresByCode, REQUESTS / seconds);
+
+        // No spot may have more than one active reservation
+        List<Reservation> active = reservationRepository.findAll().stream()
+            .filter(r -> r.getStatus() == Reservation.ReservationStatus.ACTIVE)
+            .toList();
+        Map<Long, Integer> reservationsPerSpot = new HashMap<>();
+        for (Reservation reservation : active) {
+            reservationsPerSpot.merge(reservation.getSpot().getId(), 1, Integer::sum);
+        }
+        reservationsPerSpot.forEach((spotId, count) ->
+            assertEquals(1, count, "Spot " + spotId + " was double-booked"));
+
+        int reservedSpots = spotRepository.countByFacilityIdAndStatus(facility.getId(), ParkingSpot.SpotStatus.RESERVED);
+        assertTrue(successes.get() > 0);
+        assertTrue(successes.get() <= SPOTS);
+        assertEquals(successes.get(), active.size());
+        assertEquals(successes.get(), reservedSpots);
+        failuresByCode.keySet().forEach(code -> assertTrue(
+            code.equals("SPOT_NOT_AVAILABLE") || code.equals("NO_SPOTS_AVAILABLE"), "Unexpected failure " + code));
+
+        // Facility counter and in-memory index must agree with the spot table
+        assertEquals(SPOTS - successes.get(), facilityRepository.findById(facility.getId()).orElseThrow().getAvailableSpots());
+        assertTrue(occupancyService.checkConsistency(facility.getId()).consistent);
+    }
+}
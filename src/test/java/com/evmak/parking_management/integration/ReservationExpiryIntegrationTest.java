@@ -0,0 +1,160 @@
+package com.evmak.parking_management.integration;
+
+import com.evmak.parking_management.ParkingManagementApplication;
+import com.evmak.parking_management.entity.*;
+import com.evmak.parking_management.repository.*;
+import com.evmak.parking_management.service.ReservationExpiryScheduler;
+import com.evmak.parking_management.service.ReservationService;
+import com.evmak.parking_management.service.SpotOccupancyService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = ParkingManagementApplication.class)
+@AutoConfigureWebMvc
+@ActiveProfiles("test")
+public class ReservationExpiryIntegrationTest {
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private ReservationExpiryScheduler expiryScheduler;
+
+    @Autowired
+    private SpotOccupancyService occupancyService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Autowired
+    private ParkingFacilityRepository facilityRepository;
+
+    @Autowired
+    private ParkingSpotRepository spotRepository;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    private ParkingFacility facility;
+    private ParkingSpot spot;
+    private ParkingSpot heldSpot;
+    private Vehicle vehicle;
+
+    @BeforeEach
+    void setUp() {
+        cleanDatabase();
+
+        facility = new ParkingFacility("Expiry Garage", ParkingFacility.FacilityType.GARAGE, "2 Test Road",
+            new BigDecimal("-6.79240000"), new BigDecimal("39.20830000"), new BigDecimal("2000.00"));
+        facility.setTotalSpots(2);
+        facility.setAvailableSpots(2);
+        facility = facilityRepository.save(facility);
+
+        spot = spotRepository.save(new ParkingSpot(facility, "E001", ParkingSpot.SpotType.REGULAR));
+        heldSpot = spotRepository.save(new ParkingSpot(facility, "E002", ParkingSpot.SpotType.REGULAR));
+
+        User user = userRepository.save(new User("expiry", "expiry@test.com", "hash", "Expiry", "User"));
+        vehicle = vehicleRepository.save(new Vehicle(user, "EXP001", Vehicle.VehicleType.CAR));
+
+        occupancyService.rebuildFacility(facility.getId());
+    }
+
+    @AfterEach
+    void tearDown() {
+        cleanDatabase();
+        occupancyService.rebuildAll();
+    }
+
+    private void cleanDatabase() {
+        reservationRepository.deleteAllInBatch();
+        spotRepository.deleteAllInBatch();
+        vehicleRepository.deleteAllInBatch();
+        facilityRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void expiredReservationIsReleasedWithinTicks() throws Exception {
+        ReservationService.ReservationResult result = reservationService.reserveSpot(
+            vehicle.getUser().getId(), vehicle.getId(), facility.getId(), spot.getId(), 60);
+        assertTrue(result.success);
+        assertEquals(1, facilityRepository.findById(facility.getId()).orElseThrow().getAvailableSpots());
+
+        // Shorten the 15-minute hold so the test does not have to wait for it
+        Reservation reservation = reservationRepository.findById(result.reservation.getId()).orElseThrow();
+        LocalDateTime expiresAt = LocalDateTime.now().plusSeconds(1);
+        reservation.setExpiresAt(expiresAt);
+        reservationRepository.save(reservation);
+        expiryScheduler.scheduleReservation(reservation.getId(), expiresAt);
+
+        awaitTrue(() -> reservationRepository.findById(reservation.getId()).orElseThrow().getStatus()
+            == Reservation.ReservationStatus.EXPIRED);
+
+        assertEquals(ParkingSpot.SpotStatus.AVAILABLE, spotRepository.findById(spot.getId()).orElseThrow().getStatus());
+        assertEquals(2, facilityRepository.findById(facility.getId()).orElseThrow().getAvailableSpots());
+        assertEquals(2, occupancyService.countAvailable(facility.getId()));
+    }
+
+    @Test
+    void expiredSpotHoldIsReleasedWithinTicks() throws Exception {
+        LocalDateTime expiresAt = LocalDateTime.now().plusSeconds(1);
+        heldSpot.setStatus(ParkingSpot.SpotStatus.RESERVED);
+        heldSpot.setReservationExpiresAt(expiresAt);
+        spotRepository.save(heldSpot);
+        expiryScheduler.scheduleSpotHold(heldSpot.getId(), expiresAt);
+
+        awaitTrue(() -> spotRepository.findById(heldSpot.getId()).orElseThrow().getStatus()
+            == ParkingSpot.SpotStatus.AVAILABLE);
+        assertNull(spotRepository.findById(heldSpot.getId()).orElseThrow().getReservationExpiresAt());
+    }
+
+    @Test
+    void sweepReleasesHoldsTheWheelNeverSaw() {
+        // Held by another instance: past its expiry but never registered with this instance's wheel
+        heldSpot.setStatus(ParkingSpot.SpotStatus.RESERVED);
+        heldSpot.setReservationExpiresAt(LocalDateTime.now().minusMinutes(1));
+        spotRepository.save(heldSpot);
+
+        expiryScheduler.sweepExpired();
+
+        ParkingSpot released = spotRepository.findById(heldSpot.getId()).orElseThrow();
+        assertEquals(ParkingSpot.SpotStatus.AVAILABLE, released.getStatus());
+        assertNull(released.getReservationExpiresAt());
+    }
+
+    @Test
+    void confirmedReservationIsNotReleased() throws Exception {
+        ReservationService.ReservationResult result = reservationService.reserveSpot(
+            vehicle.getUser().getId(), vehicle.getId(), facility.getId(), spot.getId(), 60);
+        assertTrue(reservationService.confirmReservation(result.reservation.getReservationReference()).success);
+
+        expiryScheduler.scheduleReservation(result.reservation.getId(), LocalDateTime.now());
+        Thread.sleep(2_500);
+
+        assertEquals(Reservation.ReservationStatus.CONFIRMED,
+            reservationRepository.findById(result.reservation.getId()).orElseThrow().getStatus());
+        assertEquals(ParkingSpot.SpotStatus.RESERVED, spotRepository.findById(spot.getId()).orElseThrow().getStatus());
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Hold was not released in time");
+            Thread.sleep(100);
+        }
+    }
+}
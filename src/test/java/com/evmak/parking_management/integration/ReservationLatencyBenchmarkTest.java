@@ -0,0 +1,173 @@
+package com.evmak.parking_management.integration;
+
+import com.evmak.parking_management.ParkingManagementApplication;
+import com.evmak.parking_management.entity.*;
+import com.evmak.parking_management.repository.*;
+import com.evmak.parking_management.service.DataSeedingService;
+import com.evmak.parking_management.service.ReservationService;
+import com.evmak.parking_management.service.SpotOccupancyService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Measures reserveSpot latency (p50/p99) and SQL statements per call under concurrent load on the large seeded dataset.
+// Thread count can be raised with -Dreservation.benchmark.threads
+@SpringBootTest(classes = ParkingManagementApplication.class)
+@AutoConfigureWebMvc
+@ActiveProfiles("test")
+@Tag("benchmark")
+public class ReservationLatencyBenchmarkTest {
+
+    private static final int THREADS = Integer.getInteger("reservation.benchmark.threads", 16);
+
+    @Autowired
+    private DataSeedingService dataSeedingService;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private SpotOccupancyService occupancyService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Autowired
+    private ParkingFacilityRepository facilityRepository;
+
+    @Autowired
+    private ParkingSpotRepository spotRepository;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private ParkingSessionRepository sessionRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PricingRuleRepository pricingRuleRepository;
+
+    @BeforeEach
+    void setUp() {
+        cleanDatabase();
+        dataSeedingService.seedLargeDataset();
+        occupancyService.rebuildAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        cleanDatabase();
+        occupancyService.rebuildAll();
+    }
+
+    private void cleanDatabase() {
+        reservationRepository.deleteAllInBatch();
+        paymentRepository.deleteAllInBatch();
+        sessionRepository.deleteAllInBatch();
+        pricingRuleRepository.deleteAll();
+        spotRepository.deleteAllInBatch();
+        vehicleRepository.deleteAllInBatch();
+        facilityRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void reserveSpotLatencyUnderConcurrentLoad() throws Exception {
+        // One request per active user (a user may hold only one active reservation), aimed at a random spot
+        Random random = new Random(42);
+        List<ParkingSpot> spots = spotRepository.findAll();
+        Map<Long, Vehicle> vehicleByUser = new LinkedHashMap<>();
+        for (Vehicle vehicle : vehicleRepository.findAll()) {
+            if (vehicle.getIsActive()) {
+                vehicleByUser.putIfAbsent(vehicle.getUser().getId(), vehicle);
+            }
+        }
+        Map<Long, Long> facilityBySpot = new LinkedHashMap<>();
+        for (Object[] row : spotRepository.findAllSpotOccupancyRows()) {
+            facilityBySpot.put((Long) row[0], (Long) row[1]);
+        }
+
+        List<long[]> requests = new ArrayList<>();
+        vehicleByUser.forEach((userId, vehicle) -> {
+            Long spotId = spots.get(random.nextInt(spots.size())).getId();
+            requests.add(new long[]{userId, vehicle.getId(), facilityBySpot.get(spotId), spotId});
+        });
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        long[] latencies = new long[requests.size()];
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            int index = i;
+            long[] request = requests.get(i);
+            futures.add(executor.submit(() -> {
+                start.await();
+                long begin = System.nanoTime();
+                ReservationService.ReservationResult result = reservationService.reserveSpot(
+                    request[0], request[1], request[2], request[3], 60);
+                latencies[index] = System.nanoTime() - begin;
+                return result.success;
+            }));
+        }
+
+        start.countDown();
+        int successes = 0;
+        for (Future<Boolean> future : futures) {
+            if (future.get(2, TimeUnit.MINUTES)) {
+                successes++;
+            }
+        }
+        executor.shutdown();
+
+        long statements = statistics.getPrepareStatementCount();
+        statistics.setStatisticsEnabled(false);
+
+        Arrays.sort(latencies);
+        System.out.printf("reserveSpot benchmark: %d requests, %d threads, %d reserved, p50=%.2fms p99=%.2fms max=%.2fms, %.1f statements/request%n",
+            requests.size(), THREADS, successes, percentile(latencies, 50), percentile(latencies, 99),
+            latencies[latencies.length - 1] / 1_000_000.0, (double) statements / requests.size());
+
+        assertFalse(requests.isEmpty());
+        assertTrue(successes > 0);
+    }
+
+    private static double percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+}
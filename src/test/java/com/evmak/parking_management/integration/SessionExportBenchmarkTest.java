@@ -0,0 +1,157 @@
+package com.evmak.parking_management.integration;
+
+import com.evmak.parking_management.ParkingManagementApplication;
+import com.evmak.parking_management.repository.ParkingSessionRepository;
+import com.evmak.parking_management.service.BulkDataLoader;
+import com.evmak.parking_management.service.DataResetService;
+import com.evmak.parking_management.service.NdjsonExporter;
+import com.evmak.parking_management.service.SpotOccupancyService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+// Keyset pages must cover every session exactly once, and exports must stream. Run with
+// -Dexport.benchmark.sessions=1000000 for the 1M-row figures.
+@SpringBootTest(classes = ParkingManagementApplication.class)
+@AutoConfigureWebMvc
+@ActiveProfiles("test")
+@Tag("benchmark")
+public class SessionExportBenchmarkTest {
+
+    private static final int SESSIONS = Integer.getInteger("export.benchmark.sessions", 50_000);
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private BulkDataLoader bulkDataLoader;
+
+    @Autowired
+    private DataResetService dataResetService;
+
+    @Autowired
+    private SpotOccupancyService occupancyService;
+
+    @Autowired
+    private NdjsonExporter ndjsonExporter;
+
+    @Autowired
+    private ParkingSessionRepository sessionRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void setUp() {
+        dataResetService.truncateAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataResetService.truncateAll();
+        occupancyService.rebuildAll();
+    }
+
+    @Test
+    void keysetPagesVisitEverySessionOnceNewestFirst() throws Exception {
+        bulkDataLoader.load(50, 100, 5, 100, 5_000, 11L);
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+
+        Set<Long> seen = new HashSet<>();
+        String cursor = null;
+        LocalDateTime previousStartedAt = null;
+        long previousId = Long.MAX_VALUE;
+        int pages = 0;
+        do {
+            String url = "/api/v1/sessions?limit=700" + (cursor != null ? "&cursor=" + cursor : "");
+            JsonNode page = objectMapper.readTree(mockMvc.perform(get(url)).andReturn().getResponse().getContentAsString());
+            for (JsonNode row : page.get("items")) {
+                LocalDateTime startedAt = LocalDateTime.parse(row.get("startedAt").asText());
+                long id = row.get("id").asLong();
+                if (previousStartedAt != null) {
+                    assertTrue(startedAt.isBefore(previousStartedAt) || (startedAt.equals(previousStartedAt) && id < previousId));
+                }
+                assertTrue(seen.add(id), "session " + id + " served twice");
+                previousStartedAt = startedAt;
+                previousId = id;
+            }
+            cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(5_000, seen.size());
+        assertEquals(8, pages);
+        assertEquals(400, mockMvc.perform(get("/api/v1/sessions?cursor=not-a-cursor")).andReturn().getResponse().getStatus());
+    }
+
+    // Heap growth is printed for comparison across runs but not asserted: the sampler sees uncollected garbage too,
+    // so the figure depends on the collector rather than on how many rows the export holds at once
+    @Test
+    void exportStreamsFirstBytesBeforeTheEnd() {
+        bulkDataLoader.load(1_000, 2_000, 20, 2_000, SESSIONS, 11L);
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long baseline = runtime.totalMemory() - runtime.freeMemory();
+
+        AtomicLong peak = new AtomicLong(baseline);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread sampler = new Thread(() -> {
+            while (running.get()) {
+                peak.accumulateAndGet(runtime.totalMemory() - runtime.freeMemory(), Math::max);
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        sampler.start();
+
+        long begin = System.nanoTime();
+        AtomicLong firstByteAt = new AtomicLong();
+        AtomicLong bytes = new AtomicLong();
+        OutputStream client = new OutputStream() {
+            @Override
+            public void write(int b) {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] buffer, int offset, int length) {
+                firstByteAt.compareAndSet(0, System.nanoTime());
+                bytes.addAndGet(length);
+            }
+        };
+        LocalDateTime from = LocalDateTime.of(1970, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+        long rows = ndjsonExporter.export(() -> sessionRepository.streamSessions(from, to), client);
+        long totalNanos = System.nanoTime() - begin;
+        running.set(false);
+
+        System.out.printf("export benchmark: %d rows, %d MB, first byte %.1fms, total %.2fs, peak heap +%d MB%n",
+            rows, bytes.get() >> 20, (firstByteAt.get() - begin) / 1e6, totalNanos / 1e9, (peak.get() - baseline) >> 20);
+
+        assertEquals(SESSIONS, rows);
+        assertTrue(firstByteAt.get() - begin < totalNanos / 2, "first byte only arrived near the end of the export");
+    }
+}
@@ -0,0 +1,162 @@
+package com.evmak.parking_management.integration;
+
+import com.evmak.parking_management.ParkingManagementApplication;
+import com.evmak.parking_management.entity.*;
+import com.evmak.parking_management.repository.*;
+import com.evmak.parking_management.service.DataResetService;
+import com.evmak.parking_management.service.ReservationService;
+import com.evmak.parking_management.service.SpotCounterService;
+import com.evmak.parking_management.service.SpotOccupancyService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Spot transitions keep the facility counters equal to a recount of parking_spots, and the drift check repairs them
+@SpringBootTest(classes = ParkingManagementApplication.class)
+@AutoConfigureWebMvc
+@ActiveProfiles("test")
+public class SpotCounterIntegrationTest {
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private SpotCounterService spotCounterService;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private SpotOccupancyService occupancyService;
+
+    @Autowired
+    private DataResetService dataResetService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Autowired
+    private ParkingFacilityRepository facilityRepository;
+
+    @Autowired
+    private ParkingSpotRepository spotRepository;
+
+    @Autowired
+    private FacilitySpotCounterRepository counterRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private MockMvc mockMvc;
+    private ParkingFacility facility;
+    private ParkingSpot regularSpot;
+    private Vehicle vehicle;
+
+    @BeforeEach
+    void setUp() {
+        dataResetService.truncateAll();
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+
+        // Facility totals start wrong and no counter rows exist: the first drift check has to build both
+        facility = facilityRepository.save(new ParkingFacility("Counter Garage", ParkingFacility.FacilityType.GARAGE,
+            "3 Test Road", new BigDecimal("-6.79240000"), new BigDecimal("39.20830000"), new BigDecimal("2000.00")));
+        regularSpot = spotRepository.save(new ParkingSpot(facility, "C001", ParkingSpot.SpotType.REGULAR));
+        spotRepository.save(new ParkingSpot(facility, "C002", ParkingSpot.SpotType.REGULAR));
+        spotRepository.save(new ParkingSpot(facility, "C003", ParkingSpot.SpotType.REGULAR));
+        spotRepository.save(new ParkingSpot(facility, "C004", ParkingSpot.SpotType.ELECTRIC));
+
+        User user = userRepository.save(new User("counter", "counter@test.com", "hash", "Counter", "User"));
+        vehicle = vehicleRepository.save(new Vehicle(user, "CNT001", Vehicle.VehicleType.CAR));
+
+        occupancyService.rebuildFacility(facility.getId());
+        assertEquals(1, spotCounterService.checkForDrift());
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataResetService.truncateAll();
+        occupancyService.rebuildAll();
+    }
+
+    @Test
+    void transitionsKeepCountersEqualToRecount() throws Exception {
+        SpotCounterService.Availability initial = spotCounterService.getAvailability(facility.getId());
+        assertEquals(4, initial.totalSpots);
+        assertEquals(4, initial.availableSpots);
+        assertEquals(3, initial.availableByType.get(ParkingSpot.SpotType.REGULAR));
+
+        ReservationService.ReservationResult reserved = reservationService.reserveAnySpot(
+            vehicle.getUser().getId(), vehicle.getId(), facility.getId(), ParkingSpot.SpotType.ELECTRIC, null, 60);
+        assertTrue(reserved.success);
+        SpotCounterService.Availability afterReserve = spotCounterService.getAvailability(facility.getId());
+        assertEquals(3, afterReserve.availableSpots);
+        assertEquals(1, afterReserve.byStatus.get(ParkingSpot.SpotStatus.RESERVED));
+        assertEquals(0, afterReserve.availableByType.get(ParkingSpot.SpotType.ELECTRIC));
+
+        assertTrue(reservationService.cancelReservation(
+            reserved.reservation.getReservationReference(), vehicle.getUser().getId()).success);
+
+        mockMvc.perform(put("/api/v1/spots/" + regularSpot.getId() + "/status").param("status", "OUT_OF_ORDER"))
+            .andExpect(status().isOk());
+
+        // No type requested: the counters resolve the claimed spot's type themselves
+        assertTrue(reservationService.reserveAnySpot(
+            vehicle.getUser().getId(), vehicle.getId(), facility.getId(), null, null, 60).success);
+
+        JsonNode availability = objectMapper.readTree(mockMvc.perform(get("/api/v1/facilities/" + facility.getId() + "/availability"))
+            .andExpect(status().isOk()).andReturn().getResponse().getContentAsString());
+        assertEquals(4, availability.get("totalSpots").asInt());
+        assertEquals(2, availability.get("availableSpots").asInt());
+        assertEquals(1, availability.get("byStatus").get("OUT_OF_ORDER").asInt());
+
+        ParkingFacility stored = facilityRepository.findById(facility.getId()).orElseThrow();
+        assertEquals(4, stored.getTotalSpots());
+        assertEquals(2, stored.getAvailableSpots());
+        assertEquals(0, spotCounterService.checkForDrift());
+    }
+
+    @Test
+    void driftIsRepairedFromRecount() {
+        Long facilityId = facility.getId();
+        transactionTemplate.executeWithoutResult(status -> {
+            counterRepository.adjust(facilityId, ParkingSpot.SpotType.REGULAR, ParkingSpot.SpotStatus.AVAILABLE, 5);
+            facilityRepository.adjustSpotCounts(facilityId, 0, 5);
+        });
+        assertEquals(9, spotCounterService.getAvailability(facilityId).availableSpots);
+        double repairedBefore = meterRegistry.counter("spot.counters.repaired").count();
+
+        assertEquals(1, spotCounterService.checkForDrift());
+
+        assertEquals(4, spotCounterService.getAvailability(facilityId).availableSpots);
+        assertEquals(4, facilityRepository.findById(facilityId).orElseThrow().getAvailableSpots());
+        assertEquals(repairedBefore + 1, meterRegistry.counter("spot.counters.repaired").count());
+        assertEquals(0, spotCounterService.checkForDrift());
+    }
+}
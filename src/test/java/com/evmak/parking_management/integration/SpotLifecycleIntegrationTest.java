@@ -0,0 +1,174 @@
+package com.evmak.parking_management.integration;
+
+import com.evmak.parking_management.ParkingManagementApplication;
+import com.evmak.parking_management.entity.*;
+import com.evmak.parking_management.repository.*;
+import com.evmak.parking_management.service.DataResetService;
+import com.evmak.parking_management.service.OutboxService;
+import com.evmak.parking_management.service.ReservationService;
+import com.evmak.parking_management.service.SpotOccupancyService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Session and reservation flows leave the spot, its reservation and the active sessions in agreement
+@SpringBootTest(classes = ParkingManagementApplication.class)
+@AutoConfigureWebMvc
+@ActiveProfiles("test")
+public class SpotLifecycleIntegrationTest {
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private SpotOccupancyService occupancyService;
+
+    @Autowired
+    private DataResetService dataResetService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Autowired
+    private ParkingFacilityRepository facilityRepository;
+
+    @Autowired
+    private ParkingSpotRepository spotRepository;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private ParkingSessionRepository sessionRepository;
+
+    @Autowired
+    private OutboxEventRepository outboxRepository;
+
+    private MockMvc mockMvc;
+    private ParkingFacility facility;
+    private ParkingSpot spot;
+    private Vehicle vehicle;
+    private Vehicle otherVehicle;
+
+    @BeforeEach
+    void setUp() {
+        dataResetService.truncateAll();
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+
+        facility = facilityRepository.save(new ParkingFacility("Lifecycle Garage", ParkingFacility.FacilityType.GARAGE,
+            "5 Test Road", new BigDecimal("-6.79240000"), new BigDecimal("39.20830000"), new BigDecimal("2000.00")));
+        spot = spotRepository.save(new ParkingSpot(facility, "L001", ParkingSpot.SpotType.REGULAR));
+        User user = userRepository.save(new User("holder", "holder@test.com", "hash", "Spot", "Holder"));
+        User other = userRepository.save(new User("other", "other@test.com", "hash", "Other", "Driver"));
+        vehicle = vehicleRepository.save(new Vehicle(user, "LFC001", Vehicle.VehicleType.CAR));
+        otherVehicle = vehicleRepository.save(new Vehicle(other, "LFC002", Vehicle.VehicleType.CAR));
+        occupancyService.rebuildFacility(facility.getId());
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataResetService.truncateAll();
+        occupancyService.rebuildAll();
+    }
+
+    @Test
+    void occupiedSpotCannotStartSecondSession() throws Exception {
+        startSession(vehicle).andExpect(status().isOk());
+        startSession(otherVehicle).andExpect(status().isBadRequest());
+
+        assertEquals(ParkingSpot.SpotStatus.OCCUPIED, spotRepository.findById(spot.getId()).orElseThrow().getStatus());
+        assertEquals(1, sessionRepository.count());
+    }
+
+    @Test
+    void heldSpotOnlyStartsForItsHolderAndCompletesTheReservation() throws Exception {
+        ReservationService.ReservationResult reserved = reservationService.reserveSpot(
+            vehicle.getUser().getId(), vehicle.getId(), facility.getId(), spot.getId(), 60);
+        assertTrue(reserved.success);
+
+        startSession(otherVehicle).andExpect(status().isBadRequest());
+        assertEquals(ParkingSpot.SpotStatus.RESERVED, spotRepository.findById(spot.getId()).orElseThrow().getStatus());
+
+        startSession(vehicle).andExpect(status().isOk());
+        assertEquals(ParkingSpot.SpotStatus.OCCUPIED, spotRepository.findById(spot.getId()).orElseThrow().getStatus());
+        assertEquals(Reservation.ReservationStatus.COMPLETED,
+            reservationRepository.findById(reserved.reservation.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void deletingActiveSessionReleasesItsSpot() throws Exception {
+        startSession(vehicle).andExpect(status().isOk());
+        Long sessionId = sessionRepository.findAll().get(0).getId();
+
+        mockMvc.perform(delete("/api/v1/sessions/" + sessionId)).andExpect(status().isOk());
+
+        assertEquals(ParkingSession.SessionStatus.EXPIRED, sessionRepository.findById(sessionId).orElseThrow().getStatus());
+        assertEquals(ParkingSpot.SpotStatus.AVAILABLE, spotRepository.findById(spot.getId()).orElseThrow().getStatus());
+        assertEquals(1, occupancyService.countAvailable(facility.getId()));
+        startSession(otherVehicle).andExpect(status().isOk());
+    }
+
+    @Test
+    void adminStatusChangeOnHeldSpotCancelsItsReservation() throws Exception {
+        ReservationService.ReservationResult reserved = reservationService.reserveSpot(
+            vehicle.getUser().getId(), vehicle.getId(), facility.getId(), spot.getId(), 60);
+        assertTrue(reserved.success);
+
+        mockMvc.perform(put("/api/v1/spots/" + spot.getId() + "/status").param("status", "OUT_OF_ORDER"))
+            .andExpect(status().isOk());
+
+        ParkingSpot updated = spotRepository.findById(spot.getId()).orElseThrow();
+        assertEquals(ParkingSpot.SpotStatus.OUT_OF_ORDER, updated.getStatus());
+        assertNull(updated.getReservedBy());
+        assertEquals(Reservation.ReservationStatus.CANCELLED,
+            reservationRepository.findById(reserved.reservation.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void createdSpotIsCountedAndPublished() throws Exception {
+        outboxRepository.deleteAll();
+        String body = """
+            {"facility": {"id": %d}, "spotNumber": "L002", "spotType": "REGULAR"}
+            """.formatted(facility.getId());
+
+        mockMvc.perform(post("/api/v1/spots").contentType(MediaType.APPLICATION_JSON).content(body))
+            .andExpect(status().isOk());
+
+        assertEquals(2, occupancyService.countAvailable(facility.getId()));
+        List<OutboxEvent> events = outboxRepository.findAll();
+        assertEquals(1, events.size());
+        assertEquals(OutboxService.SPOT_CREATED, events.get(0).getEventType());
+        assertEquals(facility.getId(), events.get(0).getFacilityId());
+    }
+
+    private ResultActions startSession(Vehicle driver) throws Exception {
+        String body = """
+            {"user": {"id": %d}, "vehicle": {"id": %d}, "spot": {"id": %d}, "hourlyRate": 2000.00}
+            """.formatted(driver.getUser().getId(), driver.getId(), spot.getId());
+        return mockMvc.perform(post("/api/v1/sessions/start").contentType(MediaType.APPLICATION_JSON).content(body));
+    }
+}
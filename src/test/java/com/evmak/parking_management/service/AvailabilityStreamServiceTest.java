@@ -0,0 +1,104 @@
+package com.evmak.parking_management.service;
+
+import com.evmak.parking_management.entity.ParkingSpot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT) // Not every test reads every count
+class AvailabilityStreamServiceTest {
+
+    @Mock
+    private SpotOccupancyService occupancyService;
+
+    @InjectMocks
+    private AvailabilityStreamService streamService;
+
+    private final AtomicInteger available = new AtomicInteger(40);
+
+    @BeforeEach
+    void setUp() {
+        when(occupancyService.countAvailable(1L)).thenAnswer(invocation -> available.get());
+        when(occupancyService.countByStatus(1L, ParkingSpot.SpotStatus.RESERVED)).thenAnswer(invocation -> 50 - available.get());
+        when(occupancyService.countByStatus(1L, ParkingSpot.SpotStatus.OCCUPIED)).thenReturn(10);
+        when(occupancyService.countTotal(1L)).thenReturn(60);
+    }
+
+    @Test
+    void testBurstOfChangesIsCoalescedIntoOneUpdatePerSubscriber() throws Exception {
+        List<BlockingQueue<AvailabilityStreamService.AvailabilityUpdate>> inboxes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            BlockingQueue<AvailabilityStreamService.AvailabilityUpdate> inbox = new LinkedBlockingQueue<>();
+            streamService.register(1L, inbox::add, () -> { });
+            inboxes.add(inbox);
+        }
+
+        // Every subscriber gets the current snapshot on connect
+        for (BlockingQueue<AvailabilityStreamService.AvailabilityUpdate> inbox : inboxes) {
+            AvailabilityStreamService.AvailabilityUpdate initial = inbox.poll(5, TimeUnit.SECONDS);
+            assertNotNull(initial);
+            assertEquals(40, initial.availableSpots);
+        }
+
+        // 25 reservations land between two flushes
+        for (int i = 0; i < 25; i++) {
+            available.decrementAndGet();
+            streamService.markDirty(1L);
+        }
+        streamService.flush();
+
+        for (BlockingQueue<AvailabilityStreamService.AvailabilityUpdate> inbox : inboxes) {
+            AvailabilityStreamService.AvailabilityUpdate update = inbox.poll(5, TimeUnit.SECONDS);
+            assertNotNull(update);
+            assertEquals(15, update.availableSpots);
+            assertEquals(35, update.reservedSpots);
+            assertEquals(-25, update.availableDelta);
+            assertEquals(1, update.version);
+            assertNull(inbox.poll(100, TimeUnit.MILLISECONDS), "Only one update per flush");
+        }
+
+        // Nothing changed since the last flush - nothing is sent
+        streamService.markDirty(1L);
+        streamService.flush();
+        assertNull(inboxes.get(0).poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void testFailingSubscriberIsClosedAndRemoved() throws Exception {
+        AtomicInteger closed = new AtomicInteger();
+        AvailabilityStreamService.Subscriber subscriber = streamService.register(1L, update -> {
+            throw new java.io.IOException("Broken pipe");
+        }, closed::incrementAndGet);
+
+        for (int i = 0; i < 50 && closed.get() == 0; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(1, closed.get());
+
+        streamService.unregister(1L, subscriber);
+        assertEquals(0, streamService.getSubscriberCount(1L));
+    }
+
+    @Test
+    void testChangesForFacilitiesWithoutSubscribersAreIgnored() {
+        streamService.markDirty(2L);
+        streamService.flush();
+        assertEquals(0, streamService.getSubscriberCount(2L));
+    }
+}
@@ -0,0 +1,103 @@
+package com.evmak.parking_management.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CacheStatsServiceTest {
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private CacheStatsService cacheStatsService;
+
+    @Test
+    void testKeyCountsComeFromScanNeverKeys() {
+        cacheStatsService.registerGauges();
+        when(redisTemplate.scan(any(ScanOptions.class))).thenAnswer(invocation -> {
+            String pattern = invocation.<ScanOptions>getArgument(0).getPattern();
+            if (pattern.startsWith(CacheService.AVAILABILITY_KEY_PREFIX)) {
+                return cursor(List.of("availability:facility:1", "availability:facility:2"));
+            }
+            if (pattern.startsWith(CacheService.SPOT_STATUS_KEY_PREFIX)) {
+                return cursor(List.of("spot:status:1", "spot:status:2", "spot:status:3"));
+            }
+            return cursor(List.of());
+        });
+
+        cacheStatsService.sampleKeyCounts();
+        CacheService.CacheStats stats = cacheStatsService.snapshot();
+
+        assertEquals(2L, stats.availabilityKeysCount);
+        assertEquals(3L, stats.spotStatusKeysCount);
+        assertEquals(0L, stats.facilityStatsKeysCount);
+        assertEquals(5L, stats.totalKeysCount);
+        assertNotNull(stats.keyCountsSampledAt);
+        assertEquals(3.0, meterRegistry.get("cache.redis.keys").tag("keyspace", CacheStatsService.SPOT_STATUS).gauge().value());
+        verify(redisTemplate, never()).keys(anyString());
+    }
+
+    @Test
+    void testFailedSampleKeepsPreviousCounts() {
+        when(redisTemplate.scan(any(ScanOptions.class)))
+            .thenAnswer(invocation -> cursor(List.of("k1")))
+            .thenAnswer(invocation -> cursor(List.of("k1")))
+            .thenAnswer(invocation -> cursor(List.of("k1")))
+            .thenThrow(new RuntimeException("Connection refused"));
+
+        cacheStatsService.sampleKeyCounts();
+        cacheStatsService.sampleKeyCounts();
+
+        assertEquals(3L, cacheStatsService.snapshot().totalKeysCount);
+    }
+
+    @Test
+    void testHitsMissesEvictionsAndLatencyAreTrackedIncrementally() {
+        cacheStatsService.recordHit(CacheStatsService.AVAILABILITY);
+        cacheStatsService.recordHit(CacheStatsService.SPOT_STATUS);
+        cacheStatsService.recordHit(CacheStatsService.SPOT_STATUS);
+        cacheStatsService.recordMiss(CacheStatsService.SPOT_STATUS);
+        cacheStatsService.recordEviction("parkingFacilities");
+        assertEquals("value", cacheStatsService.time("get", () -> "value"));
+
+        CacheService.CacheStats stats = cacheStatsService.snapshot();
+
+        assertEquals(3L, stats.hits);
+        assertEquals(1L, stats.misses);
+        assertEquals(0.75, stats.hitRatio);
+        assertEquals(1L, stats.evictions);
+        assertEquals(1L, meterRegistry.get("cache.redis.latency").tag("operation", "get").timer().count());
+        assertEquals(2.0, meterRegistry.get("cache.redis.gets")
+            .tags("keyspace", CacheStatsService.SPOT_STATUS, "result", "hit").counter().count());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Cursor<String> cursor(List<String> keys) {
+        Iterator<String> iterator = keys.iterator();
+        Cursor<String> cursor = mock(Cursor.class);
+        lenient().when(cursor.hasNext()).thenAnswer(invocation -> iterator.hasNext());
+        lenient().when(cursor.next()).thenAnswer(invocation -> iterator.next());
+        return cursor;
+    }
+}
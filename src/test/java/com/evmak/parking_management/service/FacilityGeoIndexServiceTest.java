@@ -0,0 +1,196 @@
+package com.evmak.parking_management.service;
+
+import com.evmak.parking_management.dto.FacilityView;
+import com.evmak.parking_management.entity.ParkingFacility;
+import com.evmak.parking_management.repository.ParkingFacilityRepository;
+import com.evmak.parking_management.service.FacilityGeoIndexService.GeoGrid;
+import com.evmak.parking_management.service.FacilityGeoIndexService.Neighbor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class FacilityGeoIndexServiceTest {
+
+    @Mock
+    private ParkingFacilityRepository facilityRepository;
+
+    @InjectMocks
+    private FacilityGeoIndexService geoIndexService;
+
+    @Test
+    void testGridSearchMatchesFullScanAt100kFacilities() {
+        Random random = new Random(42);
+        int count = 100_000;
+        double[] lats = new double[count];
+        double[] lngs = new double[count];
+        GeoGrid grid = new GeoGrid(0.01);
+        // Dense metro area around Dar es Salaam, about 100 km across
+        for (int i = 0; i < count; i++) {
+            lats[i] = -6.8 + (random.nextDouble() - 0.5);
+            lngs[i] = 39.25 + (random.nextDouble() - 0.5);
+            grid.put(i, lats[i], lngs[i]);
+        }
+
+        for (int query = 0; query < 50; query++) {
+            double lat = -6.8 + (random.nextDouble() - 0.5);
+            double lng = 39.25 + (random.nextDouble() - 0.5);
+            double radius = 200 + random.nextInt(3_000);
+
+            List<Long> expected = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                if (FacilityGeoIndexService.haversineMeters(lat, lng, lats[i], lngs[i]) <= radius) {
+                    expected.add((long) i);
+                }
+            }
+            List<Neighbor> found = grid.search(lat, lng, radius);
+            assertEquals(Set.copyOf(expected), Set.copyOf(found.stream().map(n -> n.facilityId).toList()));
+            for (int i = 1; i < found.size(); i++) {
+                assertTrue(found.get(i - 1).distanceMeters <= found.get(i).distanceMeters, "Nearest first");
+            }
+        }
+
+        // Warm up, then measure a 1 km search
+        for (int i = 0; i < 2_000; i++) {
+            grid.search(-6.8, 39.25, 1_000);
+        }
+        long start = System.nanoTime();
+        int iterations = 2_000;
+        for (int i = 0; i < iterations; i++) {
+            grid.search(-6.8 + (i % 100) * 0.001, 39.25, 1_000);
+        }
+        double averageMicros = (System.nanoTime() - start) / 1_000.0 / iterations;
+        System.out.printf("Grid nearby search over %d facilities: %.1f us/query%n", count, averageMicros);
+        assertTrue(averageMicros < 1_000, "Nearby search should stay sub-millisecond, was " + averageMicros + " us");
+    }
+
+    @Test
+    void testSearchWrapsAcrossTheAntimeridian() {
+        GeoGrid grid = new GeoGrid(0.01);
+        grid.put(1, 0.0, 179.999);
+        grid.put(2, 0.0, -179.999);
+        grid.put(3, 0.0, 179.0);
+
+        List<Neighbor> found = grid.search(0.0, 180.0, 500);
+
+        assertEquals(Set.of(1L, 2L), Set.copyOf(found.stream().map(n -> n.facilityId).toList()));
+    }
+
+    @Test
+    void testMovedAndDeactivatedFacilitiesAreReindexed() {
+        GeoGrid grid = new GeoGrid(0.01);
+        grid.put(1, -6.8, 39.25);
+        grid.put(1, -6.9, 39.25); // Moved about 11 km south
+        assertTrue(grid.search(-6.8, 39.25, 1_000).isEmpty());
+        assertEquals(1, grid.search(-6.9, 39.25, 1_000).size());
+
+        grid.remove(1);
+        assertTrue(grid.search(-6.9, 39.25, 1_000).isEmpty());
+        assertEquals(0, grid.size());
+    }
+
+    @Test
+    void testAvailableNearbyOrdersByAvailabilityThenDistance() {
+        when(facilityRepository.findActiveFacilityLocations()).thenReturn(List.of(
+            new Object[]{1L, new BigDecimal("-6.80000000"), new BigDecimal("39.25000000")},
+            new Object[]{2L, new BigDecimal("-6.80200000"), new BigDecimal("39.25000000")},
+            new Object[]{3L, new BigDecimal("-6.80100000"), new BigDecimal("39.25000000")},
+            new Object[]{4L, new BigDecimal("-6.90000000"), new BigDecimal("39.25000000")}));
+        when(facilityRepository.findFacilityViewsByIdIn(any())).thenReturn(List.of(
+            facility(1L, -6.800, 0), facility(2L, -6.802, 12), facility(3L, -6.801, 12)));
+
+        List<FacilityView> result = geoIndexService.findAvailableNearbyFacilities(-6.8, 39.25, 1_000, 10);
+
+        // Facility 1 is full, 4 is out of range; 2 and 3 tie on availability so the nearer one comes first
+        assertEquals(List.of(3L, 2L), result.stream().map(FacilityView::id).toList());
+    }
+
+    @Test
+    void testCacheKeysSnapToTheSameCell() {
+        assertEquals(geoIndexService.snapToCacheCell(-6.80012), geoIndexService.snapToCacheCell(-6.80049));
+        assertNotEquals(geoIndexService.snapToCacheCell(-6.80012), geoIndexService.snapToCacheCell(-6.80112));
+    }
+
+    @Test
+    void testFacilityWritesApplyOnlyAfterCommit() {
+        when(facilityRepository.findActiveFacilityLocations()).thenReturn(List.of());
+        geoIndexService.rebuildAll();
+        ParkingFacility created = new ParkingFacility("Created", ParkingFacility.FacilityType.GARAGE, "Address",
+            new BigDecimal("-6.80000000"), new BigDecimal("39.25000000"), new BigDecimal("1000.00"));
+        created.setId(7L);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            geoIndexService.updateFacility(created);
+            assertTrue(geoIndexService.findNearby(-6.8, 39.25, 100).isEmpty(), "Not visible before commit");
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(1, geoIndexService.findNearby(-6.8, 39.25, 100).size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCellCandidatesFilteredFromTheExactPointMatchFullScan() {
+        Random random = new Random(7);
+        Map<Long, FacilityView> facilities = new HashMap<>();
+        List<Object[]> locations = new ArrayList<>();
+        for (long id = 1; id <= 2_000; id++) {
+            FacilityView view = facility(id, -6.8 + (random.nextDouble() - 0.5) * 0.1, 39.25 + (random.nextDouble() - 0.5) * 0.1, 1);
+            facilities.put(id, view);
+            locations.add(new Object[]{id, view.locationLat(), view.locationLng()});
+        }
+        when(facilityRepository.findActiveFacilityLocations()).thenReturn(locations);
+        when(facilityRepository.findFacilityViewsByIdIn(any())).thenAnswer(invocation ->
+            ((Collection<Long>) invocation.getArgument(0)).stream().map(facilities::get).toList());
+
+        for (int query = 0; query < 50; query++) {
+            double lat = -6.8 + (random.nextDouble() - 0.5) * 0.05;
+            double lng = 39.25 + (random.nextDouble() - 0.5) * 0.05;
+            double radius = 500 + random.nextInt(2_000);
+
+            // What the nearby cache stores for the cell, narrowed to the requested point
+            List<FacilityView> candidates = geoIndexService.findNearbyFacilities(geoIndexService.snapToCacheCell(lat),
+                geoIndexService.snapToCacheCell(lng), radius + geoIndexService.cacheCellPaddingMeters());
+            List<Long> found = geoIndexService.filterWithin(candidates, lat, lng, radius).stream().map(FacilityView::id).toList();
+
+            List<Long> expected = facilities.values().stream()
+                .filter(view -> FacilityGeoIndexService.haversineMeters(lat, lng,
+                    view.locationLat().doubleValue(), view.locationLng().doubleValue()) <= radius)
+                .map(FacilityView::id)
+                .toList();
+            assertEquals(Set.copyOf(expected), Set.copyOf(found));
+        }
+    }
+
+    private static FacilityView facility(Long id, double lat, int availableSpots) {
+        return facility(id, lat, 39.25, availableSpots);
+    }
+
+    private static FacilityView facility(Long id, double lat, double lng, int availableSpots) {
+        ParkingFacility facility = new ParkingFacility("Facility " + id, ParkingFacility.FacilityType.GARAGE, "Address",
+            BigDecimal.valueOf(lat), BigDecimal.valueOf(lng), new BigDecimal("1000.00"));
+        facility.setId(id);
+        facility.setAvailableSpots(availableSpots);
+        return FacilityView.of(facility);
+    }
+}
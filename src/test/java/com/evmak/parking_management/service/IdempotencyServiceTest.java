@@ -0,0 +1,167 @@
+package com.evmak.parking_management.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceTest {
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, Object> valueOperations;
+
+    @InjectMocks
+    private IdempotencyService idempotencyService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(idempotencyService, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(idempotencyService, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(idempotencyService, "fingerprintSecret", "test-fingerprint-secret");
+        idempotencyService.init();
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    }
+
+    @Test
+    void testDuplicateIsReplayedFromRedisWithoutRunningTheHandler() {
+        when(valueOperations.setIfAbsent(anyString(), any(), anyLong(), eq(TimeUnit.MILLISECONDS))).thenReturn(true, false);
+        IdempotencyService.StoredResponse[] stored = new IdempotencyService.StoredResponse[1];
+        doAnswer(invocation -> stored[0] = invocation.getArgument(1))
+            .when(valueOperations).set(anyString(), any(), anyLong(), eq(TimeUnit.MILLISECONDS));
+        when(valueOperations.get(anyString())).thenAnswer(invocation -> stored[0]);
+
+        ResponseEntity<?> first = idempotencyService.execute("reservations:reserve", "key-1", Map.of("spotId", 4), this::reserve);
+        ResponseEntity<?> retry = idempotencyService.execute("reservations:reserve", "key-1", Map.of("spotId", 4), this::reserve);
+
+        assertEquals(1, executions.get());
+        assertEquals(200, retry.getStatusCode().value());
+        assertEquals("{\"reservation\":\"RES-1\"}", retry.getBody());
+        assertEquals("true", retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertNull(first.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+    }
+
+    @Test
+    void testLocalCacheTakesOverWhileRedisIsDown() {
+        when(valueOperations.setIfAbsent(anyString(), any(), anyLong(), any()))
+            .thenThrow(new RedisConnectionFailureException("Connection refused"));
+
+        idempotencyService.execute("reservations:reserve", "key-1", Map.of("spotId", 4), this::reserve);
+        ResponseEntity<?> retry = idempotencyService.execute("reservations:reserve", "key-1", Map.of("spotId", 4), this::reserve);
+
+        assertEquals(1, executions.get());
+        assertEquals("true", retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        // Redis is skipped for a while after the failure instead of timing out on every request
+        verify(valueOperations, times(1)).setIfAbsent(anyString(), any(), anyLong(), any());
+    }
+
+    @Test
+    void testInFlightDuplicateAndReusedKeyAreRejected() {
+        ReflectionTestUtils.setField(idempotencyService, "redisRetryAt", Long.MAX_VALUE); // Local cache only
+        CompletableFuture<ResponseEntity<?>> running = new CompletableFuture<>();
+
+        idempotencyService.executeAsync("payments:card", "key-1", Map.of("amount", 5000), () -> running);
+        ResponseEntity<?> duplicate = idempotencyService.executeAsync("payments:card", "key-1", Map.of("amount", 5000),
+            () -> CompletableFuture.completedFuture(ResponseEntity.ok("second charge"))).join();
+        ResponseEntity<?> reused = idempotencyService.executeAsync("payments:card", "key-1", Map.of("amount", 9000),
+            () -> CompletableFuture.completedFuture(ResponseEntity.ok("other charge"))).join();
+
+        assertEquals(409, duplicate.getStatusCode().value());
+        assertEquals(422, reused.getStatusCode().value());
+        verifyNoInteractions(valueOperations);
+    }
+
+    @Test
+    void testUnavailableIsNotStoredSoTheRetryRuns() {
+        ReflectionTestUtils.setField(idempotencyService, "redisRetryAt", Long.MAX_VALUE);
+
+        ResponseEntity<?> busy = idempotencyService.execute("payments:card", "key-1", Map.of("amount", 5000),
+            () -> ResponseEntity.status(503).body(Map.of("errorCode", "GATEWAY_BUSY")));
+        ResponseEntity<?> retry = idempotencyService.execute("payments:card", "key-1", Map.of("amount", 5000), this::reserve);
+
+        assertEquals(503, busy.getStatusCode().value());
+        assertEquals(200, retry.getStatusCode().value());
+        assertNull(retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void testBadGatewayIsStoredSoTheRetryCannotChargeAgain() {
+        ReflectionTestUtils.setField(idempotencyService, "redisRetryAt", Long.MAX_VALUE);
+
+        ResponseEntity<?> timedOut = idempotencyService.execute("payments:card", "key-1", Map.of("amount", 5000), () -> {
+            executions.incrementAndGet();
+            return ResponseEntity.status(502).body(Map.of("errorCode", "CARD_PAYMENT_ERROR", "paymentReference", "PAY-1"));
+        });
+        ResponseEntity<?> retry = idempotencyService.execute("payments:card", "key-1", Map.of("amount", 5000), this::reserve);
+
+        assertEquals(502, timedOut.getStatusCode().value());
+        assertEquals(502, retry.getStatusCode().value());
+        assertEquals("true", retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertTrue(String.valueOf(retry.getBody()).contains("PAY-1"));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void testFingerprintIsKeyedAndKeepsOnlyTheLastFourCardDigits() {
+        String key = "idempotency:payments:card:user:key-1";
+        String first = ReflectionTestUtils.invokeMethod(idempotencyService, "fingerprint", key, card("4111111111111111", "12/30", "123"));
+        String otherCvv = ReflectionTestUtils.invokeMethod(idempotencyService, "fingerprint", key, card("4111111111111111", "01/29", "999"));
+        String otherCard = ReflectionTestUtils.invokeMethod(idempotencyService, "fingerprint", key, card("5500000000000004", "12/30", "123"));
+
+        // CVV and expiry never reach the fingerprint; a different card still conflicts
+        assertEquals(first, otherCvv);
+        assertNotEquals(first, otherCard);
+
+        ReflectionTestUtils.setField(idempotencyService, "fingerprintSecret", "another-secret");
+        assertNotEquals(first, ReflectionTestUtils.invokeMethod(idempotencyService, "fingerprint", key, card("4111111111111111", "12/30", "123")));
+    }
+
+    @Test
+    void testRequestsWithoutAKeyAlwaysRun() {
+        ReflectionTestUtils.setField(idempotencyService, "redisRetryAt", Long.MAX_VALUE);
+
+        idempotencyService.execute("reservations:reserve", null, Map.of("spotId", 4), this::reserve);
+        idempotencyService.execute("reservations:reserve", "", Map.of("spotId", 4), this::reserve);
+
+        assertEquals(2, executions.get());
+    }
+
+    private ResponseEntity<?> reserve() {
+        executions.incrementAndGet();
+        return ResponseEntity.ok(Map.of("reservation", "RES-1"));
+    }
+
+    private static PaymentService.PaymentRequest card(String number, String expiry, String cvv) {
+        PaymentService.PaymentRequest request = new PaymentService.PaymentRequest();
+        request.setSessionId(1L);
+        request.setCardNumber(number);
+        request.setCardExpiry(expiry);
+        request.setCardCvv(cvv);
+        return request;
+    }
+}
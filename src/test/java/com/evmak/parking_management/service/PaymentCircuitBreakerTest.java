@@ -0,0 +1,91 @@
+package com.evmak.parking_management.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentCircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong(1_000);
+    private PaymentCircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        // Window of 10, opens at 50% once 4 calls are in, 1 s open, 2 trial calls
+        breaker = new PaymentCircuitBreaker(10, 4, 50, 1_000, 2, now::get);
+    }
+
+    @Test
+    void testStaysClosedUntilMinimumCallsThenOpensAtThreshold() {
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onFailure();
+        assertEquals(PaymentCircuitBreaker.State.CLOSED, breaker.getState(), "Too few calls to judge");
+
+        breaker.onSuccess();
+        breaker.onSuccess();
+        breaker.onFailure();
+        // 4 failures out of 6
+        assertEquals(PaymentCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void testOldOutcomesSlideOutOfTheWindow() {
+        for (int i = 0; i < 4; i++) {
+            breaker.onSuccess();
+        }
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onFailure();
+        assertEquals(PaymentCircuitBreaker.State.CLOSED, breaker.getState());
+        for (int i = 0; i < 10; i++) {
+            breaker.onSuccess();
+        }
+        assertEquals(0.0, breaker.getFailureRate());
+        assertEquals(10, breaker.getBufferedCalls());
+    }
+
+    @Test
+    void testHalfOpenTrialsCloseOrReopenTheCircuit() {
+        openCircuit();
+
+        now.addAndGet(1_000);
+        assertEquals(PaymentCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquirePermission());
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse(breaker.tryAcquirePermission(), "Only two trials at a time");
+        breaker.onSuccess();
+        breaker.onFailure();
+        assertEquals(PaymentCircuitBreaker.State.OPEN, breaker.getState());
+
+        now.addAndGet(1_000);
+        assertTrue(breaker.tryAcquirePermission());
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onSuccess();
+        breaker.onSuccess();
+        assertEquals(PaymentCircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getBufferedCalls());
+    }
+
+    @Test
+    void testReleasedTrialCanBeRetaken() {
+        openCircuit();
+        now.addAndGet(1_000);
+
+        assertTrue(breaker.tryAcquirePermission());
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.releasePermission();
+        assertTrue(breaker.tryAcquirePermission());
+    }
+
+    private void openCircuit() {
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure();
+        }
+        assertEquals(PaymentCircuitBreaker.State.OPEN, breaker.getState());
+    }
+}
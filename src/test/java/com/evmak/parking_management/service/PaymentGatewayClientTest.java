@@ -0,0 +1,213 @@
+package com.evmak.parking_management.service;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentGatewayClientTest {
+
+    private static final long PROVIDER_LATENCY_MS = 200;
+
+    private HttpServer provider;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxObserved = new AtomicInteger();
+    private final AtomicInteger verifyCalls = new AtomicInteger();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PaymentGatewayClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Slow provider that records how many calls it is serving at once
+        provider = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        provider.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        provider.createContext("/v1/payments/card", exchange -> {
+            maxObserved.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(PROVIDER_LATENCY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            byte[] body = "{\"status\":\"success\",\"transaction_id\":\"TX-1\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        // Fails twice, then answers
+        provider.createContext("/v1/payments/TX-1/verify", exchange -> {
+            int call = verifyCalls.incrementAndGet();
+            int status = call <= 2 ? 503 : 200;
+            byte[] body = "{\"status\":\"completed\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        // First call stalls long enough to be hedged
+        provider.createContext("/v1/payments/TX-2/verify", exchange -> {
+            if (verifyCalls.incrementAndGet() == 1) {
+                try {
+                    Thread.sleep(2_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            byte[] body = "{\"status\":\"completed\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        provider.createContext("/v1/payments/refund", exchange -> {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        });
+        provider.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        provider.stop(0);
+        client.shutdown();
+    }
+
+    @Test
+    void testInFlightCallsNeverExceedTheBulkhead() {
+        client = client(4, 10_000);
+
+        List<CompletableFuture<PaymentGatewayClient.GatewayResponse>> calls = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < 16; i++) {
+            calls.add(client.post("card", "/v1/payments/card", Map.of("amount", "1000")));
+        }
+        calls.forEach(call -> assertEquals("TX-1", call.join().getString("transaction_id")));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(maxObserved.get() <= 4, "At most 4 concurrent provider calls, saw " + maxObserved.get());
+        // 16 calls through 4 slots take at least four provider round trips
+        assertTrue(elapsedMs >= 4 * PROVIDER_LATENCY_MS, "Took " + elapsedMs + " ms");
+        assertEquals(4, client.getAvailablePermits());
+    }
+
+    @Test
+    void testCallsBeyondTheBulkheadAreRejectedWithoutWaiting() {
+        client = client(2, 0);
+
+        CompletableFuture<PaymentGatewayClient.GatewayResponse> first = client.post("card", "/v1/payments/card", Map.of());
+        CompletableFuture<PaymentGatewayClient.GatewayResponse> second = client.post("card", "/v1/payments/card", Map.of());
+        CompletableFuture<PaymentGatewayClient.GatewayResponse> third = client.post("card", "/v1/payments/card", Map.of());
+
+        CompletionException rejected = assertThrows(CompletionException.class, third::join);
+        assertInstanceOf(PaymentGatewayClient.GatewayBusyException.class, rejected.getCause());
+        assertTrue(first.join().isOk());
+        assertTrue(second.join().isOk());
+        assertEquals(2, client.getAvailablePermits());
+    }
+
+    @Test
+    void testSlowProviderTimesOutAndReleasesItsSlot() {
+        client = client(1, 0);
+        ReflectionTestUtils.setField(client, "requestTimeoutMs", 50L);
+
+        CompletionException timedOut = assertThrows(CompletionException.class,
+            () -> client.post("card", "/v1/payments/card", Map.of()).join());
+
+        assertInstanceOf(HttpTimeoutException.class, timedOut.getCause());
+        assertEquals(1, client.getAvailablePermits());
+    }
+
+    @Test
+    void testIdempotentCallsRetryServerErrorsWithBackoff() {
+        client = client(4, 0);
+        ReflectionTestUtils.setField(client, "retryBaseDelayMs", 10L);
+
+        PaymentGatewayClient.GatewayResponse response = client.getIdempotent("verify", "/v1/payments/TX-1/verify").join();
+
+        assertEquals(200, response.statusCode);
+        assertEquals(3, verifyCalls.get());
+        assertEquals(2.0, meterRegistry.get("payment.gateway.retries").counter().count());
+    }
+
+    @Test
+    void testRetriesStopAtMaxAttempts() {
+        client = client(4, 0);
+        ReflectionTestUtils.setField(client, "retryBaseDelayMs", 10L);
+        ReflectionTestUtils.setField(client, "retryMaxAttempts", 2);
+
+        PaymentGatewayClient.GatewayResponse response = client.getIdempotent("verify", "/v1/payments/TX-1/verify").join();
+
+        assertEquals(503, response.statusCode);
+        assertEquals(2, verifyCalls.get());
+    }
+
+    @Test
+    void testBackoffIsCappedAndJittered() {
+        client = client(4, 0);
+        for (int i = 0; i < 200; i++) {
+            assertTrue(client.backoffMs(1) <= 100);
+            assertTrue(client.backoffMs(10) <= 2_000);
+        }
+    }
+
+    @Test
+    void testSlowVerifyIsHedgedAndTheFasterAnswerWins() {
+        client = client(4, 0);
+        ReflectionTestUtils.setField(client, "hedgeEnabled", true);
+        ReflectionTestUtils.setField(client, "hedgeDefaultDelayMs", 100L);
+
+        long start = System.nanoTime();
+        PaymentGatewayClient.GatewayResponse response = client.getIdempotent("verify", "/v1/payments/TX-2/verify").join();
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals("completed", response.getString("status"));
+        assertTrue(elapsedMs < 1_500, "Hedge should answer long before the stalled call, took " + elapsedMs + " ms");
+        assertEquals(1.0, meterRegistry.get("payment.gateway.hedges").counter().count());
+    }
+
+    @Test
+    void testCircuitOpensOnRepeatedFailuresAndFailsFast() {
+        client = unstartedClient(4, 0);
+        ReflectionTestUtils.setField(client, "circuitWindowSize", 4);
+        ReflectionTestUtils.setField(client, "circuitMinimumCalls", 4);
+        client.init();
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(500, client.post("refund", "/v1/payments/refund", Map.of()).join().statusCode);
+        }
+        assertEquals(PaymentCircuitBreaker.State.OPEN, client.getCircuitBreaker().getState());
+
+        CompletionException rejected = assertThrows(CompletionException.class,
+            () -> client.post("refund", "/v1/payments/refund", Map.of()).join());
+        assertInstanceOf(PaymentGatewayClient.CircuitOpenException.class, rejected.getCause());
+        assertEquals(2.0, meterRegistry.get("payment.gateway.circuit.state").gauge().value());
+    }
+
+    private PaymentGatewayClient client(int maxInFlight, long bulkheadWaitMs) {
+        PaymentGatewayClient gatewayClient = unstartedClient(maxInFlight, bulkheadWaitMs);
+        gatewayClient.init();
+        return gatewayClient;
+    }
+
+    private PaymentGatewayClient unstartedClient(int maxInFlight, long bulkheadWaitMs) {
+        PaymentGatewayClient gatewayClient = new PaymentGatewayClient();
+        ReflectionTestUtils.setField(gatewayClient, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(gatewayClient, "baseUrl", "http://127.0.0.1:" + provider.getAddress().getPort());
+        ReflectionTestUtils.setField(gatewayClient, "maxInFlight", maxInFlight);
+        ReflectionTestUtils.setField(gatewayClient, "bulkheadWaitMs", bulkheadWaitMs);
+        return gatewayClient;
+    }
+}
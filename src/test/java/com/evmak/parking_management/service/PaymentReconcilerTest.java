@@ -0,0 +1,190 @@
+package com.evmak.parking_management.service;
+
+import com.evmak.parking_management.entity.Payment;
+import com.evmak.parking_management.repository.PaymentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentReconcilerTest {
+
+    @Mock
+    private PaymentRepository paymentRepository;
+
+    @Mock
+    private PaymentService paymentService;
+
+    @InjectMocks
+    private PaymentReconciler reconciler;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LocalDateTime cutoff = LocalDateTime.now().minusMinutes(10);
+    private final LocalDateTime unsubmittedCutoff = LocalDateTime.now().minusHours(1);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(reconciler, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(reconciler, "pageSize", 2);
+        ReflectionTestUtils.setField(reconciler, "parallelism", 2);
+        reconciler.registerGauges();
+    }
+
+    @Test
+    void testBacklogIsWalkedPageByPageAndWrittenBackPerTransition() {
+        when(paymentRepository.findStalePaymentPage(cutoff, 0L, Limit.of(2))).thenReturn(rows(1L, 2L));
+        when(paymentRepository.findStalePaymentPage(cutoff, 2L, Limit.of(2))).thenReturn(rows(3L));
+        when(paymentService.fetchProviderStatus("TX-1")).thenReturn(CompletableFuture.completedFuture("completed"));
+        when(paymentService.fetchProviderStatus("TX-2")).thenReturn(CompletableFuture.completedFuture("pending"));
+        when(paymentService.fetchProviderStatus("TX-3")).thenReturn(CompletableFuture.completedFuture("success"));
+        when(paymentService.applyProviderStatus(eq(PaymentService.StatusTransition.COMPLETE), anyCollection())).thenReturn(1);
+        when(paymentRepository.getStalePaymentBacklog(cutoff))
+            .thenReturn(List.<Object[]>of(new Object[]{1L, LocalDateTime.now().minusMinutes(30)}));
+
+        assertEquals(2, reconciler.reconcile(cutoff, unsubmittedCutoff));
+
+        // One write per page, never one per payment
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<Long>> ids = ArgumentCaptor.forClass(Collection.class);
+        verify(paymentService, times(2)).applyProviderStatus(eq(PaymentService.StatusTransition.COMPLETE), ids.capture());
+        assertEquals(List.of(List.of(1L), List.of(3L)), ids.getAllValues().stream().map(ArrayList::new).toList());
+        assertEquals(1.0, meterRegistry.get("payment.reconcile.backlog").gauge().value());
+        assertTrue(meterRegistry.get("payment.reconcile.lag").gauge().value() >= 30 * 60);
+        assertEquals(1.0, meterRegistry.counter("payment.reconcile.verifications", "outcome", "unchanged").count());
+    }
+
+    @Test
+    void testNoMoreThanParallelismVerifyCallsAreInFlight() {
+        ReflectionTestUtils.setField(reconciler, "pageSize", 10);
+        when(paymentRepository.findStalePaymentPage(eq(cutoff), eq(0L), any()))
+            .thenReturn(rows(1L, 2L, 3L, 4L, 5L, 6L));
+        when(paymentRepository.getStalePaymentBacklog(cutoff)).thenReturn(List.of());
+
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxObserved = new AtomicInteger();
+        when(paymentService.fetchProviderStatus(anyString())).thenAnswer(invocation -> {
+            maxObserved.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                inFlight.decrementAndGet();
+                return "pending";
+            });
+        });
+
+        assertEquals(0, reconciler.reconcile(cutoff, unsubmittedCutoff));
+
+        verify(paymentService, times(6)).fetchProviderStatus(anyString());
+        assertTrue(maxObserved.get() <= 2, "max in flight was " + maxObserved.get());
+        verify(paymentService, never()).applyProviderStatus(any(PaymentService.StatusTransition.class), anyCollection());
+    }
+
+    @Test
+    void testSweepStopsWhenTheCircuitOpens() {
+        when(paymentRepository.findStalePaymentPage(cutoff, 0L, Limit.of(2))).thenReturn(rows(1L, 2L));
+        when(paymentService.fetchProviderStatus("TX-1")).thenReturn(CompletableFuture.completedFuture("failed"));
+        when(paymentService.fetchProviderStatus("TX-2"))
+            .thenReturn(CompletableFuture.failedFuture(new PaymentGatewayClient.CircuitOpenException()));
+        when(paymentService.applyProviderStatus(eq(PaymentService.StatusTransition.FAIL), anyCollection())).thenReturn(1);
+        when(paymentRepository.getStalePaymentBacklog(cutoff)).thenReturn(List.of());
+
+        assertEquals(1, reconciler.reconcile(cutoff, unsubmittedCutoff));
+
+        // Completed verifications are still written back, but the next page is left for the next sweep
+        verify(paymentRepository, times(1)).findStalePaymentPage(any(), anyLong(), any());
+        assertEquals(1.0, meterRegistry.counter("payment.reconcile.verifications", "outcome", "error").count());
+    }
+
+    @Test
+    void testProviderRefundOfAStalePaymentSettlesItAsRefunded() {
+        when(paymentRepository.findStalePaymentPage(cutoff, 0L, Limit.of(2))).thenReturn(rows(1L));
+        when(paymentService.fetchProviderStatus("TX-1")).thenReturn(CompletableFuture.completedFuture("refunded"));
+        when(paymentService.applyProviderStatus(eq(PaymentService.StatusTransition.REFUND_PENDING), anyCollection())).thenReturn(1);
+        when(paymentRepository.getStalePaymentBacklog(cutoff)).thenReturn(List.of());
+
+        assertEquals(1, reconciler.reconcile(cutoff, unsubmittedCutoff));
+
+        // REFUND only matches COMPLETED rows and would leave this one to be verified on every sweep
+        verify(paymentService, never()).applyProviderStatus(eq(PaymentService.StatusTransition.REFUND), anyCollection());
+        assertEquals(Payment.PaymentStatus.PENDING, PaymentService.StatusTransition.REFUND_PENDING.from);
+        assertEquals(Payment.PaymentStatus.REFUNDED, PaymentService.StatusTransition.REFUND_PENDING.to);
+        assertEquals(1.0, meterRegistry.counter("payment.reconcile.verifications", "outcome", "refund_pending").count());
+    }
+
+    @Test
+    void testPaymentsWithoutProviderIdAreFailedOnceTheProviderHasNoRecordOfThem() {
+        when(paymentRepository.findUnsubmittedPaymentPage(unsubmittedCutoff, 0L, Limit.of(2))).thenReturn(references(4L, 5L));
+        when(paymentRepository.findUnsubmittedPaymentPage(unsubmittedCutoff, 5L, Limit.of(2))).thenReturn(references(6L));
+        when(paymentService.fetchProviderPaymentByReference(startsWith("PAY-")))
+            .thenAnswer(invocation -> CompletableFuture.completedFuture(
+                PaymentService.ProviderPayment.notFound(invocation.getArgument(0))));
+        when(paymentService.applyProviderStatus(eq(PaymentService.StatusTransition.FAIL), anyCollection()))
+            .thenAnswer(invocation -> ((Collection<?>) invocation.getArgument(1)).size());
+        when(paymentService.fetchProviderStatus("TX-1")).thenReturn(CompletableFuture.completedFuture("pending"));
+        when(paymentRepository.findStalePaymentPage(cutoff, 0L, Limit.of(2))).thenReturn(rows(1L));
+        // Payment 7 has no provider id but is not old enough to look up yet
+        when(paymentRepository.getStalePaymentBacklog(cutoff))
+            .thenReturn(List.<Object[]>of(new Object[]{2L, LocalDateTime.now().minusMinutes(20)}));
+
+        assertEquals(3, reconciler.reconcile(cutoff, unsubmittedCutoff));
+
+        verify(paymentService, never()).fetchProviderStatus(isNull());
+        assertEquals(3.0, meterRegistry.counter("payment.reconcile.verifications", "outcome", "unsubmitted").count());
+        assertEquals(2.0, meterRegistry.get("payment.reconcile.backlog").gauge().value());
+    }
+
+    @Test
+    void testChargeWhoseResponseWasLostIsSettledWithTheProviderTransactionId() {
+        when(paymentRepository.findUnsubmittedPaymentPage(unsubmittedCutoff, 0L, Limit.of(2))).thenReturn(references(4L, 5L));
+        when(paymentService.fetchProviderPaymentByReference("PAY-4")).thenReturn(CompletableFuture.completedFuture(
+            new PaymentService.ProviderPayment("PAY-4", "TX-4", "completed")));
+        when(paymentService.fetchProviderPaymentByReference("PAY-5"))
+            .thenReturn(CompletableFuture.failedFuture(new PaymentGatewayClient.CircuitOpenException()));
+        when(paymentService.applyProviderStatus("TX-4", "PAY-4", PaymentService.StatusTransition.COMPLETE)).thenReturn(true);
+        when(paymentRepository.getStalePaymentBacklog(cutoff)).thenReturn(List.of());
+
+        assertEquals(1, reconciler.reconcile(cutoff, unsubmittedCutoff));
+
+        // Never failed without an answer from the provider, and the stale sweep waits for the circuit to close
+        verify(paymentService, never()).applyProviderStatus(any(PaymentService.StatusTransition.class), anyCollection());
+        verify(paymentRepository, never()).findStalePaymentPage(any(), anyLong(), any());
+        assertEquals(1.0, meterRegistry.counter("payment.reconcile.verifications", "outcome", "recovered").count());
+    }
+
+    private static List<Object[]> rows(Long... ids) {
+        List<Object[]> rows = new ArrayList<>();
+        for (Long id : ids) {
+            rows.add(new Object[]{id, "TX-" + id});
+        }
+        return rows;
+    }
+
+    private static List<Object[]> references(Long... ids) {
+        List<Object[]> rows = new ArrayList<>();
+        for (Long id : ids) {
+            rows.add(new Object[]{id, "PAY-" + id});
+        }
+        return rows;
+    }
+}
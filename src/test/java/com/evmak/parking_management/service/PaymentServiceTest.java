@@ -0,0 +1,196 @@
+package com.evmak.parking_management.service;
+
+import com.evmak.parking_management.entity.ParkingSession;
+import com.evmak.parking_management.entity.Payment;
+import com.evmak.parking_management.repository.PaymentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.math.BigDecimal;
+import java.net.http.HttpTimeoutException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentServiceTest {
+
+    @Mock
+    private PaymentRepository paymentRepository;
+
+    @Mock
+    private PaymentGatewayClient gatewayClient;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private OutboxService outboxService;
+
+    @InjectMocks
+    private PaymentService paymentService;
+
+    private PaymentService.PaymentRequest request;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        lenient().when(paymentRepository.save(any(Payment.class))).thenAnswer(invocation -> {
+            Payment payment = invocation.getArgument(0);
+            payment.setId(7L);
+            return payment;
+        });
+        lenient().when(paymentRepository.updateOutcome(anyLong(), any(), any(), any(), any())).thenReturn(1);
+
+        request = new PaymentService.PaymentRequest();
+        request.setSessionId(1L);
+        request.setAmount(new BigDecimal("5000.00"));
+        request.setPaymentMethod(Payment.PaymentMethod.CARD);
+        request.setCardNumber("4111111111111111");
+        request.setCardExpiry("12/30");
+        request.setCardCvv("123");
+    }
+
+    @Test
+    void testProviderCallRunsOutsideAnyTransaction() {
+        CompletableFuture<PaymentGatewayClient.GatewayResponse> providerCall = new CompletableFuture<>();
+        when(gatewayClient.post(eq("card"), eq("/v1/payments/card"), anyMap())).thenReturn(providerCall);
+
+        CompletableFuture<PaymentService.PaymentResult> pending = paymentService.initiatePayment(new ParkingSession(), request);
+
+        // The PENDING insert has committed and nothing else is open while the provider works
+        assertFalse(pending.isDone());
+        InOrder inOrder = inOrder(transactionManager, paymentRepository, gatewayClient);
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(paymentRepository).save(any(Payment.class));
+        inOrder.verify(transactionManager).commit(any());
+        inOrder.verify(gatewayClient).post(eq("card"), eq("/v1/payments/card"), anyMap());
+        verifyNoMoreInteractions(transactionManager);
+
+        providerCall.complete(new PaymentGatewayClient.GatewayResponse(200, Map.of("status", "success", "transaction_id", "TX-9")));
+        PaymentService.PaymentResult result = pending.join();
+
+        assertTrue(result.success);
+        assertEquals("TX-9", result.transactionId);
+        assertEquals(Payment.PaymentStatus.COMPLETED, result.payment.getStatus());
+        assertNotNull(result.payment.getCompletedAt());
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(paymentRepository).updateOutcome(eq(7L), eq(Payment.PaymentStatus.PENDING), eq(Payment.PaymentStatus.COMPLETED), eq("TX-9"), any());
+        inOrder.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void testBusyGatewayFailsThePaymentWithGatewayBusy() {
+        when(gatewayClient.post(anyString(), anyString(), anyMap()))
+            .thenReturn(CompletableFuture.failedFuture(new PaymentGatewayClient.GatewayBusyException(64)));
+
+        PaymentService.PaymentResult result = paymentService.initiatePayment(new ParkingSession(), request).join();
+
+        assertFalse(result.success);
+        assertEquals("GATEWAY_BUSY", result.errorCode);
+        assertEquals(Payment.PaymentStatus.FAILED, result.payment.getStatus());
+        verify(paymentRepository).updateOutcome(7L, Payment.PaymentStatus.PENDING, Payment.PaymentStatus.FAILED, null, null);
+    }
+
+    @Test
+    void testOpenCircuitFailsThePaymentWithGatewayUnavailable() {
+        when(gatewayClient.post(anyString(), anyString(), anyMap()))
+            .thenReturn(CompletableFuture.failedFuture(new PaymentGatewayClient.CircuitOpenException()));
+
+        PaymentService.PaymentResult result = paymentService.initiatePayment(new ParkingSession(), request).join();
+
+        assertFalse(result.success);
+        assertEquals("GATEWAY_UNAVAILABLE", result.errorCode);
+    }
+
+    @Test
+    void testTimedOutChargeStaysPendingSoTheWebhookCanCompleteIt() {
+        when(gatewayClient.post(anyString(), anyString(), anyMap()))
+            .thenReturn(CompletableFuture.failedFuture(new HttpTimeoutException("request timed out")));
+        when(paymentRepository.applyProviderStatus(any(), any(), any(), any(), any())).thenReturn(1);
+
+        PaymentService.PaymentResult result = paymentService.initiatePayment(new ParkingSession(), request).join();
+
+        assertFalse(result.success);
+        assertEquals("CARD_PAYMENT_ERROR", result.errorCode);
+        assertEquals(Payment.PaymentStatus.PENDING, result.payment.getStatus());
+        verify(paymentRepository, never()).updateOutcome(anyLong(), any(), any(), any(), any());
+
+        // The provider did take the charge; its webhook matches on our reference and completes the payment
+        assertTrue(paymentService.applyProviderStatus("TX-3", result.payment.getPaymentReference(), "completed"));
+        verify(paymentRepository).applyProviderStatus(eq("TX-3"), eq(result.payment.getPaymentReference()),
+            eq(Payment.PaymentStatus.PENDING), eq(Payment.PaymentStatus.COMPLETED), notNull());
+    }
+
+    @Test
+    void testProviderServerErrorLeavesThePaymentPendingButARefusalFailsIt() {
+        when(gatewayClient.post(anyString(), anyString(), anyMap()))
+            .thenReturn(CompletableFuture.completedFuture(new PaymentGatewayClient.GatewayResponse(502, Map.of())))
+            .thenReturn(CompletableFuture.completedFuture(new PaymentGatewayClient.GatewayResponse(400, Map.of())));
+
+        PaymentService.PaymentResult serverError = paymentService.initiatePayment(new ParkingSession(), request).join();
+        PaymentService.PaymentResult refused = paymentService.initiatePayment(new ParkingSession(), request).join();
+
+        assertEquals(Payment.PaymentStatus.PENDING, serverError.payment.getStatus());
+        assertEquals(Payment.PaymentStatus.FAILED, refused.payment.getStatus());
+        verify(paymentRepository, times(1)).updateOutcome(7L, Payment.PaymentStatus.PENDING, Payment.PaymentStatus.FAILED, null, null);
+    }
+
+    @Test
+    void testAcceptedMobileMoneyPaymentStaysPendingUntilConfirmed() {
+        request.setPaymentMethod(Payment.PaymentMethod.MOBILE_MONEY);
+        request.setCustomerPhone("+255712345678");
+        request.setMobileMoneyProvider("VODACOM");
+        when(gatewayClient.post(anyString(), anyString(), anyMap())).thenReturn(CompletableFuture.completedFuture(
+            new PaymentGatewayClient.GatewayResponse(200, Map.of("status", "success", "transaction_id", "TX-5"))));
+
+        PaymentService.PaymentResult result = paymentService.initiatePayment(new ParkingSession(), request).join();
+
+        assertTrue(result.success);
+        assertEquals(Payment.PaymentStatus.PENDING, result.payment.getStatus());
+        assertEquals("TX-5", result.payment.getExternalPaymentId());
+        verify(paymentRepository).updateOutcome(7L, Payment.PaymentStatus.PENDING, Payment.PaymentStatus.PENDING, "TX-5", null);
+    }
+
+    @Test
+    void testProviderStatusOnlyMovesAlongItsOwnEdge() {
+        when(paymentRepository.applyProviderStatus(any(), any(), any(), any(), any())).thenReturn(1, 0, 1);
+
+        assertTrue(paymentService.applyProviderStatus("TX-1", "PAY-1", "completed"));
+        assertFalse(paymentService.applyProviderStatus("TX-1", "PAY-1", "completed")); // Redelivery
+        assertFalse(paymentService.applyProviderStatus("TX-1", "PAY-1", "pending"));
+        assertTrue(paymentService.applyProviderStatus("TX-1", "PAY-1", "refunded"));
+
+        verify(paymentRepository, times(2)).applyProviderStatus(eq("TX-1"), eq("PAY-1"),
+            eq(Payment.PaymentStatus.PENDING), eq(Payment.PaymentStatus.COMPLETED), notNull());
+        verify(paymentRepository).applyProviderStatus("TX-1", "PAY-1",
+            Payment.PaymentStatus.COMPLETED, Payment.PaymentStatus.REFUNDED, null);
+    }
+
+    @Test
+    void testLookupByReferenceReportsChargesTheProviderNeverReceived() {
+        when(gatewayClient.getIdempotent("verify", "/v1/payments/by-reference/PAY-1"))
+            .thenReturn(CompletableFuture.completedFuture(new PaymentGatewayClient.GatewayResponse(404, Map.of())));
+        when(gatewayClient.getIdempotent("verify", "/v1/payments/by-reference/PAY-2"))
+            .thenReturn(CompletableFuture.completedFuture(new PaymentGatewayClient.GatewayResponse(200,
+                Map.of("transaction_id", "TX-2", "status", "completed"))));
+
+        PaymentService.ProviderPayment missing = paymentService.fetchProviderPaymentByReference("PAY-1").join();
+        PaymentService.ProviderPayment found = paymentService.fetchProviderPaymentByReference("PAY-2").join();
+
+        assertFalse(missing.isFound());
+        assertTrue(found.isFound());
+        assertEquals("TX-2", found.transactionId);
+        assertEquals("PAY-2", found.paymentReference);
+    }
+}
@@ -0,0 +1,80 @@
+package com.evmak.parking_management.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentWebhookServiceTest {
+
+    private static final String SECRET = "test-webhook-secret";
+    private static final String BODY = "{\"transaction_id\":\"TX-1\",\"payment_reference\":\"PAY-1\",\"status\":\"completed\"}";
+
+    @Mock
+    private PaymentService paymentService;
+
+    @InjectMocks
+    private PaymentWebhookService webhookService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(webhookService, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(webhookService, "webhookSecret", SECRET);
+    }
+
+    @Test
+    void testSignedEventIsAppliedAndRedeliveryIsAcknowledged() throws Exception {
+        when(paymentService.applyProviderStatus("TX-1", "PAY-1", "completed")).thenReturn(true, false);
+
+        PaymentWebhookService.WebhookResult first = webhookService.handle(BODY, "sha256=" + sign(BODY));
+        PaymentWebhookService.WebhookResult redelivery = webhookService.handle(BODY, sign(BODY));
+
+        assertTrue(first.accepted);
+        assertTrue(first.applied);
+        assertTrue(redelivery.accepted);
+        assertFalse(redelivery.applied);
+        assertEquals(1.0, meterRegistry.counter("payment.webhook.events", "outcome", "duplicate").count());
+    }
+
+    @Test
+    void testTamperedBodyIsRejectedWithoutTouchingPayments() throws Exception {
+        String signature = sign(BODY);
+
+        PaymentWebhookService.WebhookResult result = webhookService.handle(BODY.replace("completed", "refunded"), signature);
+
+        assertFalse(result.accepted);
+        assertEquals("INVALID_SIGNATURE", result.errorCode);
+        assertEquals("INVALID_SIGNATURE", webhookService.handle(BODY, "not-hex").errorCode);
+        assertEquals("INVALID_SIGNATURE", webhookService.handle(BODY, null).errorCode);
+        verifyNoInteractions(paymentService);
+    }
+
+    @Test
+    void testWebhooksAreRefusedUntilASecretIsConfigured() throws Exception {
+        ReflectionTestUtils.setField(webhookService, "webhookSecret", "");
+
+        assertEquals("WEBHOOK_NOT_CONFIGURED", webhookService.handle(BODY, sign(BODY)).errorCode);
+        verifyNoInteractions(paymentService);
+    }
+
+    private static String sign(String body) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return HexFormat.of().formatHex(mac.doFinal(body.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,123 @@
+package com.evmak.parking_management.service;
+
+import com.evmak.parking_management.entity.ParkingFacility;
+import com.evmak.parking_management.entity.PricingRule;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Quote throughput of the compiled tables against evaluating the rules one by one, as the entity methods do.
+// Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+//           -Dexec.mainClass=com.evmak.parking_management.service.PricingEngineBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PricingEngineBenchmark {
+
+    private static final int FACILITIES = 200;
+    private static final BigDecimal BASE_RATE = new BigDecimal("2500.00");
+
+    private PricingEngine pricingEngine;
+    private List<PricingRule> rules;
+    private LocalDateTime[] starts;
+    private long[] facilityIds;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        rules = new ArrayList<>();
+        PricingRule.RuleType[] types = {PricingRule.RuleType.TIME_BASED, PricingRule.RuleType.EVENT_BASED, PricingRule.RuleType.DEMAND_BASED};
+        for (int i = 0; i < 400; i++) {
+            PricingRule rule = new PricingRule("Rule " + i, types[i % types.length],
+                BigDecimal.valueOf(50 + random.nextInt(150), 2));
+            rule.setId((long) i + 1);
+            rule.setPriority(random.nextInt(100));
+            rule.setStartTime(LocalTime.of(random.nextInt(24), random.nextInt(60)));
+            rule.setEndTime(LocalTime.of(random.nextInt(24), random.nextInt(60)));
+            rule.setDaysOfWeek(EnumSet.of(PricingRule.DayOfWeek.values()[random.nextInt(7)], PricingRule.DayOfWeek.values()[random.nextInt(7)]));
+            if (rule.getRuleType() == PricingRule.RuleType.DEMAND_BASED) {
+                rule.setDemandThresholdPercentage(BigDecimal.valueOf(50 + random.nextInt(50)));
+            }
+            if (i % 4 != 0) {
+                ParkingFacility facility = new ParkingFacility();
+                facility.setId((long) random.nextInt(FACILITIES) + 1);
+                rule.setFacility(facility);
+            }
+            rules.add(rule);
+        }
+        rules.sort(Comparator.comparing(PricingRule::getPriority).reversed());
+
+        pricingEngine = new PricingEngine();
+        ReflectionTestUtils.setField(pricingEngine, "occupancyService", new SpotOccupancyService() {
+            @Override
+            public int countTotal(Long facilityId) {
+                return 200;
+            }
+
+            @Override
+            public int countAvailable(Long facilityId) {
+                return (int) (facilityId % 200);
+            }
+        });
+        pricingEngine.compile(rules);
+
+        starts = new LocalDateTime[1024];
+        facilityIds = new long[1024];
+        LocalDateTime monday = LocalDateTime.of(2025, 6, 2, 0, 0);
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = monday.plusMinutes(random.nextInt(PricingEngine.MINUTES_PER_WEEK));
+            facilityIds[i] = random.nextInt(FACILITIES) + 1;
+        }
+    }
+
+    @Benchmark
+    public BigDecimal compiledQuote() {
+        int i = next++ & 1023;
+        return pricingEngine.quote(facilityIds[i], BASE_RATE, starts[i], 180).totalAmount;
+    }
+
+    // What a quote costs without compilation: every rule checked against the clock for every billed hour
+    @Benchmark
+    public BigDecimal ruleIterationQuote() {
+        int i = next++ & 1023;
+        long facilityId = facilityIds[i];
+        BigDecimal occupancy = BigDecimal.valueOf((200 - facilityId % 200) * 100.0 / 200);
+        BigDecimal total = BigDecimal.ZERO;
+        for (int hour = 0; hour < 3; hour++) {
+            BigDecimal multiplier = BigDecimal.ONE;
+            for (PricingRule rule : rules) {
+                if (rule.appliesToFacility(facilityId) && rule.isApplicableNow() && rule.isApplicableForDemand(occupancy)) {
+                    multiplier = rule.getMultiplier();
+                    break;
+                }
+            }
+            total = total.add(BASE_RATE.multiply(multiplier));
+        }
+        return total.setScale(2, RoundingMode.HALF_UP);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(PricingEngineBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,125 @@
+package com.evmak.parking_management.service;
+
+import com.evmak.parking_management.entity.ParkingFacility;
+import com.evmak.parking_management.entity.PricingRule;
+import com.evmak.parking_management.repository.PricingRuleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PricingEngineTest {
+
+    private static final BigDecimal BASE_RATE = new BigDecimal("10.00");
+    private static final LocalDateTime MONDAY_8AM = LocalDateTime.of(2025, 6, 2, 8, 0);
+    private static final LocalDateTime SATURDAY_8AM = LocalDateTime.of(2025, 6, 7, 8, 0);
+    private static final LocalDateTime TUESDAY_11PM = LocalDateTime.of(2025, 6, 3, 23, 0);
+
+    @Mock
+    private PricingRuleRepository pricingRuleRepository;
+
+    @Mock
+    private SpotOccupancyService occupancyService;
+
+    @InjectMocks
+    private PricingEngine pricingEngine;
+
+    @BeforeEach
+    void setUp() {
+        ParkingFacility facility = new ParkingFacility();
+        facility.setId(1L);
+
+        PricingRule weekdayPeak = rule(1L, "Weekday peak", PricingRule.RuleType.TIME_BASED, "1.50", 10,
+            LocalTime.of(7, 0), LocalTime.of(9, 59), EnumSet.range(PricingRule.DayOfWeek.MONDAY, PricingRule.DayOfWeek.FRIDAY));
+        PricingRule overnight = rule(2L, "Overnight", PricingRule.RuleType.TIME_BASED, "0.50", 5,
+            LocalTime.of(22, 0), LocalTime.of(5, 59), null);
+        PricingRule surge = rule(3L, "Surge", PricingRule.RuleType.DEMAND_BASED, "2.00", 20, null, null, null);
+        surge.setDemandThresholdPercentage(new BigDecimal("80.00"));
+        surge.setFacility(facility);
+
+        pricingEngine.compile(List.of(weekdayPeak, overnight, surge));
+    }
+
+    @Test
+    void testTimeWindowsApplyPerBilledHour() {
+        PricingEngine.Quote peak = pricingEngine.quote(2L, BASE_RATE, MONDAY_8AM, 150);
+        assertEquals(3, peak.billedHours);
+        assertEquals(new BigDecimal("15.00"), peak.hourlyRate);
+        // 08:00 and 09:00 at peak, 10:00 back to base
+        assertEquals(new BigDecimal("40.00"), peak.totalAmount);
+
+        PricingEngine.Quote weekend = pricingEngine.quote(2L, BASE_RATE, SATURDAY_8AM, 60);
+        assertEquals(new BigDecimal("10.00"), weekend.totalAmount);
+
+        // Window running over midnight
+        PricingEngine.Quote night = pricingEngine.quote(2L, BASE_RATE, TUESDAY_11PM, 180);
+        assertEquals(new BigDecimal("15.00"), night.totalAmount);
+
+        // Facility 2 has no demand rules, so occupancy is never read
+        verifyNoInteractions(occupancyService);
+    }
+
+    @Test
+    void testDemandRuleOverridesOnlyAboveThreshold() {
+        when(occupancyService.countTotal(1L)).thenReturn(100);
+        when(occupancyService.countAvailable(1L)).thenReturn(10);
+        assertEquals(new BigDecimal("40.00"), pricingEngine.quote(1L, BASE_RATE, MONDAY_8AM, 120).totalAmount);
+
+        when(occupancyService.countAvailable(1L)).thenReturn(50);
+        // Below the threshold the time rules underneath still apply
+        assertEquals(new BigDecimal("30.00"), pricingEngine.quote(1L, BASE_RATE, MONDAY_8AM, 120).totalAmount);
+        // Occupancy is read once per quote, not once per hour
+        verify(occupancyService, times(2)).countTotal(1L);
+    }
+
+    @Test
+    void testQuoteMatchesBaseRateWithoutRules() {
+        pricingEngine.compile(List.of());
+
+        PricingEngine.Quote quote = pricingEngine.quote(1L, BASE_RATE, MONDAY_8AM, 61);
+
+        assertEquals(2, quote.billedHours);
+        assertEquals(new BigDecimal("10.00"), quote.hourlyRate);
+        assertEquals(new BigDecimal("20.00"), quote.totalAmount);
+        assertEquals(BigDecimal.ZERO.setScale(2), pricingEngine.quote(1L, BASE_RATE, MONDAY_8AM, 0).totalAmount);
+    }
+
+    @Test
+    void testRefreshRecompilesOnlyWhenRulesChange() {
+        List<Object[]> fingerprint = List.<Object[]>of(new Object[]{3L, null, 6L});
+        when(pricingRuleRepository.findRulesFingerprint()).thenReturn(fingerprint);
+        when(pricingRuleRepository.findActiveRulesWithDays()).thenReturn(List.of());
+
+        pricingEngine.refresh();
+        pricingEngine.refreshIfChanged();
+        verify(pricingRuleRepository, times(1)).findActiveRulesWithDays();
+
+        when(pricingRuleRepository.findRulesFingerprint()).thenReturn(List.<Object[]>of(new Object[]{4L, null, 10L}));
+        pricingEngine.refreshIfChanged();
+        verify(pricingRuleRepository, times(2)).findActiveRulesWithDays();
+    }
+
+    static PricingRule rule(Long id, String name, PricingRule.RuleType type, String multiplier, int priority,
+                            LocalTime start, LocalTime end, Set<PricingRule.DayOfWeek> days) {
+        PricingRule rule = new PricingRule(name, type, new BigDecimal(multiplier));
+        rule.setId(id);
+        rule.setPriority(priority);
+        rule.setStartTime(start);
+        rule.setEndTime(end);
+        rule.setDaysOfWeek(days);
+        return rule;
+    }
+}
@@ -0,0 +1,86 @@
+package com.evmak.parking_management.service;
+
+import com.evmak.parking_management.service.ReservationExpiryScheduler.Expiry;
+import com.evmak.parking_management.service.ReservationExpiryScheduler.HoldType;
+import com.evmak.parking_management.service.ReservationExpiryScheduler.TimingWheel;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReservationExpirySchedulerTest {
+
+    @Test
+    void testEntriesFireExactlyOnTheirDeadlineTick() {
+        TimingWheel wheel = new TimingWheel(1_000);
+        wheel.add(new Expiry(HoldType.RESERVATION, 1, 1_005));    // Level 0
+        wheel.add(new Expiry(HoldType.RESERVATION, 2, 1_900));    // 15 minutes out - level 1
+        wheel.add(new Expiry(HoldType.SPOT_HOLD, 3, 1_000 + 7_200)); // 2 hours out - level 2
+
+        assertTrue(wheel.advanceTo(1_004).isEmpty());
+        assertEquals(List.of(1L), ids(wheel.advanceTo(1_005)));
+        assertTrue(wheel.advanceTo(1_899).isEmpty());
+        assertEquals(List.of(2L), ids(wheel.advanceTo(1_900)));
+        assertTrue(wheel.advanceTo(8_199).isEmpty());
+
+        List<Expiry> last = wheel.advanceTo(8_200);
+        assertEquals(List.of(3L), ids(last));
+        assertEquals(HoldType.SPOT_HOLD, last.get(0).type);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testPastDeadlinesAreDueImmediately() {
+        TimingWheel wheel = new TimingWheel(5_000);
+        wheel.add(new Expiry(HoldType.RESERVATION, 1, 4_000));
+        wheel.add(new Expiry(HoldType.RESERVATION, 2, 5_000));
+
+        assertEquals(List.of(1L, 2L), ids(wheel.advanceTo(5_000)));
+    }
+
+    @Test
+    void testCatchUpAfterStallReleasesEverythingDue() {
+        TimingWheel wheel = new TimingWheel(0);
+        wheel.add(new Expiry(HoldType.RESERVATION, 1, 10));
+        wheel.add(new Expiry(HoldType.RESERVATION, 2, 5_000));
+        wheel.add(new Expiry(HoldType.RESERVATION, 3, 300_000));
+
+        // The ticker was late by over an hour - everything up to now fires in one advance
+        assertEquals(List.of(1L, 2L), ids(wheel.advanceTo(6_000)));
+        assertEquals(1, wheel.size());
+    }
+
+    @Test
+    void testRandomDeadlinesNeverFireEarlyOrLate() {
+        Random random = new Random(7);
+        long start = 123_456;
+        TimingWheel wheel = new TimingWheel(start);
+        List<Expiry> entries = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            // Mostly within a day, some beyond the top level's rotation
+            long delay = i % 500 == 0 ? 300L * 24 * 3600 : random.nextInt(24 * 3600);
+            Expiry expiry = new Expiry(HoldType.RESERVATION, i, start + 1 + delay);
+            entries.add(expiry);
+            wheel.add(expiry);
+        }
+
+        long tick = start;
+        int fired = 0;
+        while (fired < entries.size()) {
+            tick += 1 + random.nextInt(30);
+            for (Expiry expiry : wheel.advanceTo(tick)) {
+                assertTrue(expiry.deadlineTick <= tick, "fired early");
+                assertTrue(expiry.deadlineTick > tick - 31, "fired late");
+                fired++;
+            }
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    private static List<Long> ids(List<Expiry> expiries) {
+        return expiries.stream().map(expiry -> expiry.id).sorted().toList();
+    }
+}
@@ -7,17 +7,21 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -38,6 +42,18 @@ class ReservationServiceTest {
     @Mock
     private ParkingFacilityRepository facilityRepository;
 
+    @Mock
+    private SpotOccupancyService occupancyService;
+
+    @Mock
+    private ReservationExpiryScheduler expiryScheduler;
+
+    @Mock
+    private SpotStateService spotStateService;
+
+    @Spy
+    private PricingEngine pricingEngine = new PricingEngine(); // No rules compiled - base rate applies
+
     @InjectMocks
     private ReservationService reservationService;
 
@@ -87,23 +103,24 @@ class ReservationServiceTest {
         testSpot.setStatus(ParkingSpot.SpotStatus.AVAILABLE);
     }
 
+    private void stubSpotContext(long activeReservations, long overlappingReservations) {
+        Object[] row = {testUser, testVehicle, testFacility, testSpot, activeReservations, overlappingReservations};
+        when(reservationRepository.findSpotReservationContext(eq(1L), eq(1L), eq(1L), eq(1L), any(), any()))
+                .thenReturn(Collections.singletonList(row));
+    }
+
     @Test
     void testReserveSpot_Success() {
         // Arrange
-        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(vehicleRepository.findById(1L)).thenReturn(Optional.of(testVehicle));
-        when(facilityRepository.findById(1L)).thenReturn(Optional.of(testFacility));
-        when(spotRepository.findById(1L)).thenReturn(Optional.of(testSpot));
-        when(reservationRepository.findByUserIdAndStatus(anyLong(), any())).thenReturn(Collections.emptyList());
-        when(reservationRepository.findOverlappingReservationsForSpot(anyLong(), any(), any())).thenReturn(Collections.emptyList());
+        stubSpotContext(0L, 0L);
         when(reservationRepository.save(any(Reservation.class))).thenAnswer(invocation -> {
             Reservation reservation = invocation.getArgument(0);
             reservation.setId(1L);
             reservation.setReservationReference("RES-123456789");
             return reservation;
         });
-        when(spotRepository.save(any(ParkingSpot.class))).thenReturn(testSpot);
-        when(facilityRepository.save(any(ParkingFacility.class))).thenReturn(testFacility);
+        when(spotStateService.reserve(eq(1L), eq(1L), eq(ParkingSpot.SpotType.REGULAR), eq(testUser), any())).thenReturn(true);
+        when(spotRepository.getReferenceById(1L)).thenReturn(testSpot);
 
         // Act
         ReservationService.ReservationResult result = reservationService.reserveSpot(1L, 1L, 1L, 1L, 120);
@@ -113,21 +130,134 @@ class ReservationServiceTest {
         assertNotNull(result.reservation);
         assertEquals("Spot reserved successfully. You have 15 minutes to confirm your arrival.", result.message);
         assertNull(result.errorCode);
+        assertEquals(new BigDecimal("20.00"), result.reservation.getTotalAmount());
 
-        // Verify interactions
-        verify(userRepository).findById(1L);
-        verify(vehicleRepository).findById(1L);
-        verify(facilityRepository).findById(1L);
-        verify(spotRepository).findById(1L);
+        // Verify interactions: validation is a single query, no per-entity lookups
+        verify(reservationRepository).findSpotReservationContext(eq(1L), eq(1L), eq(1L), eq(1L), any(), any());
+        verifyNoInteractions(userRepository, vehicleRepository);
+        verify(facilityRepository, never()).findById(anyLong());
+        verify(spotRepository, never()).findById(anyLong());
         verify(reservationRepository).save(any(Reservation.class));
-        verify(spotRepository).save(any(ParkingSpot.class));
-        verify(facilityRepository).save(any(ParkingFacility.class));
+        verify(spotStateService).reserve(eq(1L), eq(1L), eq(ParkingSpot.SpotType.REGULAR), eq(testUser), any());
+        verify(spotRepository, never()).save(any(ParkingSpot.class));
+        verify(expiryScheduler).scheduleReservation(eq(1L), any());
     }
 
     @Test
-    void testReserveSpot_UserNotFound() {
+    void testReserveSpot_ConflictReroutesToNextFreeSpot() {
         // Arrange
-        when(userRepository.findById(1L)).thenReturn(Optional.empty());
+        ParkingSpot otherSpot = new ParkingSpot();
+        otherSpot.setId(2L);
+        otherSpot.setFacility(testFacility);
+        otherSpot.setSpotNumber("A002");
+        otherSpot.setSpotType(ParkingSpot.SpotType.REGULAR);
+        otherSpot.setStatus(ParkingSpot.SpotStatus.AVAILABLE);
+
+        stubSpotContext(0L, 0L);
+        when(reservationRepository.save(any(Reservation.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        // Another request claims spot 1 first; the index still lists it as available
+        when(spotStateService.reserve(eq(1L), eq(1L), eq(ParkingSpot.SpotType.REGULAR), eq(testUser), any())).thenReturn(false);
+        when(occupancyService.rankAvailableSpotIds(eq(1L), eq(ParkingSpot.SpotType.REGULAR), any(), anyInt())).thenReturn(List.of(1L, 2L));
+        when(spotStateService.reserve(eq(1L), eq(2L), eq(ParkingSpot.SpotType.REGULAR), eq(testUser), any())).thenReturn(true);
+        when(spotRepository.getReferenceById(2L)).thenReturn(otherSpot);
+
+        // Act
+        ReservationService.ReservationResult result = reservationService.reserveSpot(1L, 1L, 1L, 1L, 120, true);
+
+        // Assert
+        assertTrue(result.success);
+        assertEquals(2L, result.reservation.getSpot().getId());
+        assertEquals(2L, result.reroutedToSpotId);
+        verify(reservationRepository).findOverlappingReservationsForSpot(eq(2L), any(), any());
+        verify(spotStateService).reserve(eq(1L), eq(2L), eq(ParkingSpot.SpotType.REGULAR), eq(testUser), any());
+    }
+
+    @Test
+    void testReserveSpot_ConflictFailsUnlessRerouteRequested() {
+        // Arrange
+        stubSpotContext(0L, 0L);
+        when(spotStateService.reserve(eq(1L), eq(1L), eq(ParkingSpot.SpotType.REGULAR), eq(testUser), any())).thenReturn(false);
+
+        // Act
+        ReservationService.ReservationResult result = reservationService.reserveSpot(1L, 1L, 1L, 1L, 120);
+
+        // Assert
+        assertFalse(result.success);
+        assertEquals("SPOT_NOT_AVAILABLE", result.errorCode);
+        assertNull(result.reroutedToSpotId);
+        verify(occupancyService, never()).rankAvailableSpotIds(anyLong(), any(), any(), anyInt());
+        verify(reservationRepository, never()).save(any(Reservation.class));
+    }
+
+    @Test
+    void testReserveSpot_RerouteSkipsSpotWithOverlappingReservation() {
+        // Arrange
+        ParkingSpot thirdSpot = new ParkingSpot();
+        thirdSpot.setId(3L);
+        thirdSpot.setFacility(testFacility);
+        thirdSpot.setSpotNumber("A003");
+        thirdSpot.setSpotType(ParkingSpot.SpotType.REGULAR);
+        thirdSpot.setStatus(ParkingSpot.SpotStatus.AVAILABLE);
+
+        stubSpotContext(0L, 0L);
+        when(reservationRepository.save(any(Reservation.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(spotStateService.reserve(eq(1L), eq(1L), eq(ParkingSpot.SpotType.REGULAR), eq(testUser), any())).thenReturn(false);
+        when(occupancyService.rankAvailableSpotIds(eq(1L), eq(ParkingSpot.SpotType.REGULAR), any(), anyInt())).thenReturn(List.of(2L, 3L));
+        // Spot 2 is free now but booked for part of the requested window
+        when(reservationRepository.findOverlappingReservationsForSpot(eq(2L), any(), any())).thenReturn(List.of(new Reservation()));
+        when(spotStateService.reserve(eq(1L), eq(3L), eq(ParkingSpot.SpotType.REGULAR), eq(testUser), any())).thenReturn(true);
+        when(spotRepository.getReferenceById(3L)).thenReturn(thirdSpot);
+
+        // Act
+        ReservationService.ReservationResult result = reservationService.reserveSpot(1L, 1L, 1L, 1L, 120, true);
+
+        // Assert
+        assertTrue(result.success);
+        assertEquals(3L, result.reroutedToSpotId);
+        verify(spotStateService, never()).reserve(eq(1L), eq(2L), any(), any(), any());
+    }
+
+    @Test
+    void testReserveAnySpot_ClaimsBestRankedSpot() {
+        // Arrange
+        when(reservationRepository.findReservationContext(1L, 1L, 1L))
+                .thenReturn(Collections.singletonList(new Object[]{testUser, testVehicle, testFacility, 0L}));
+        when(reservationRepository.save(any(Reservation.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(occupancyService.rankAvailableSpotIds(eq(1L), eq(ParkingSpot.SpotType.REGULAR), eq(2), anyInt()))
+                .thenReturn(List.of(1L));
+        when(spotStateService.reserve(eq(1L), eq(1L), eq(ParkingSpot.SpotType.REGULAR), eq(testUser), any())).thenReturn(true);
+        when(spotRepository.getReferenceById(1L)).thenReturn(testSpot);
+
+        // Act
+        ReservationService.ReservationResult result = reservationService.reserveAnySpot(
+            1L, 1L, 1L, ParkingSpot.SpotType.REGULAR, 2, 120);
+
+        // Assert
+        assertTrue(result.success);
+        assertEquals(1L, result.reservation.getSpot().getId());
+    }
+
+    @Test
+    void testReserveAnySpot_NoSpotsAvailable() {
+        // Arrange
+        when(reservationRepository.findReservationContext(1L, 1L, 1L))
+                .thenReturn(Collections.singletonList(new Object[]{testUser, testVehicle, testFacility, 0L}));
+
+        // Act
+        ReservationService.ReservationResult result = reservationService.reserveAnySpot(
+            1L, 1L, 1L, ParkingSpot.SpotType.ELECTRIC, null, 120);
+
+        // Assert
+        assertFalse(result.success);
+        assertEquals("NO_SPOTS_AVAILABLE", result.errorCode);
+        verify(spotStateService, never()).reserve(anyLong(), anyLong(), any(), any(), any());
+        verify(reservationRepository, never()).save(any(Reservation.class));
+    }
+
+    @Test
+    void testReserveSpot_UserNotFound() {
+        // Arrange: the context query finds no row, so the missing entity is looked up
+        when(userRepository.existsById(1L)).thenReturn(false);
 
         // Act
         ReservationService.ReservationResult result = reservationService.reserveSpot(1L, 1L, 1L, 1L, 120);
@@ -142,8 +272,8 @@ class ReservationServiceTest {
     @Test
     void testReserveSpot_VehicleNotFound() {
         // Arrange
-        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(vehicleRepository.findById(1L)).thenReturn(Optional.empty());
+        when(userRepository.existsById(1L)).thenReturn(true);
+        when(vehicleRepository.existsById(1L)).thenReturn(false);
 
         // Act
         ReservationService.ReservationResult result = reservationService.reserveSpot(1L, 1L, 1L, 1L, 120);
@@ -160,11 +290,7 @@ class ReservationServiceTest {
         // Arrange
         testSpot.setStatus(ParkingSpot.SpotStatus.OCCUPIED);
         
-        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(vehicleRepository.findById(1L)).thenReturn(Optional.of(testVehicle));
-        when(facilityRepository.findById(1L)).thenReturn(Optional.of(testFacility));
-        when(spotRepository.findById(1L)).thenReturn(Optional.of(testSpot));
-        when(reservationRepository.findByUserIdAndStatus(anyLong(), any())).thenReturn(Collections.emptyList());
+        stubSpotContext(0L, 0L);
 
         // Act
         ReservationService.ReservationResult result = reservationService.reserveSpot(1L, 1L, 1L, 1L, 120);
@@ -176,18 +302,24 @@ class ReservationServiceTest {
         assertEquals("SPOT_NOT_AVAILABLE", result.errorCode);
     }
 
+    @Test
+    void testReserveSpot_TimeConflict() {
+        // Arrange
+        stubSpotContext(0L, 1L); // Spot has an overlapping reservation
+
+        // Act
+        ReservationService.ReservationResult result = reservationService.reserveSpot(1L, 1L, 1L, 1L, 120);
+
+        // Assert
+        assertFalse(result.success);
+        assertEquals("TIME_CONFLICT", result.errorCode);
+        verify(spotStateService, never()).reserve(anyLong(), anyLong(), any(), any(), any());
+    }
+
     @Test
     void testReserveSpot_UserHasActiveReservation() {
         // Arrange
-        Reservation existingReservation = new Reservation();
-        existingReservation.setId(1L);
-        existingReservation.setStatus(Reservation.ReservationStatus.ACTIVE);
-        
-        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(vehicleRepository.findById(1L)).thenReturn(Optional.of(testVehicle));
-        when(facilityRepository.findById(1L)).thenReturn(Optional.of(testFacility));
-        when(reservationRepository.findByUserIdAndStatus(1L, Reservation.ReservationStatus.ACTIVE))
-                .thenReturn(Collections.singletonList(existingReservation));
+        stubSpotContext(1L, 0L); // One existing active reservation
 
         // Act
         ReservationService.ReservationResult result = reservationService.reserveSpot(1L, 1L, 1L, 1L, 120);
@@ -247,11 +379,11 @@ class ReservationServiceTest {
         reservation.setStatus(Reservation.ReservationStatus.ACTIVE);
         reservation.setExpiresAt(LocalDateTime.now().minusMinutes(10)); // Expired
         reservation.setSpot(testSpot);
+        reservation.setFacility(testFacility);
 
         when(reservationRepository.findByReservationReference("RES-123456789"))
                 .thenReturn(Optional.of(reservation));
         when(reservationRepository.save(any(Reservation.class))).thenReturn(reservation);
-        when(spotRepository.save(any(ParkingSpot.class))).thenReturn(testSpot);
 
         // Act
         ReservationService.ReservationResult result = reservationService.confirmReservation("RES-123456789");
@@ -261,6 +393,7 @@ class ReservationServiceTest {
         assertNull(result.reservation);
         assertEquals("Reservation has expired", result.message);
         assertEquals("RESERVATION_EXPIRED", result.errorCode);
+        verify(spotStateService).transition(1L, 1L, null, ParkingSpot.SpotStatus.RESERVED, ParkingSpot.SpotStatus.AVAILABLE);
     }
 
     @Test
@@ -277,8 +410,6 @@ class ReservationServiceTest {
         when(reservationRepository.findByReservationReference("RES-123456789"))
                 .thenReturn(Optional.of(reservation));
         when(reservationRepository.save(any(Reservation.class))).thenReturn(reservation);
-        when(spotRepository.save(any(ParkingSpot.class))).thenReturn(testSpot);
-        when(facilityRepository.save(any(ParkingFacility.class))).thenReturn(testFacility);
 
         // Act
         ReservationService.ReservationResult result = reservationService.cancelReservation("RES-123456789", 1L);
@@ -288,6 +419,8 @@ class ReservationServiceTest {
         assertNotNull(result.reservation);
         assertEquals("Reservation cancelled successfully", result.message);
         assertEquals(Reservation.ReservationStatus.CANCELLED, result.reservation.getStatus());
+        verify(spotStateService).transition(1L, 1L, null, ParkingSpot.SpotStatus.RESERVED, ParkingSpot.SpotStatus.AVAILABLE);
+        verify(spotRepository, never()).save(any(ParkingSpot.class));
     }
 
     @Test
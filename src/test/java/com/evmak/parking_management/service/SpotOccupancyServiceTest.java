@@ -0,0 +1,122 @@
+package com.evmak.parking_management.service;
+
+import com.evmak.parking_management.entity.ParkingSpot;
+import com.evmak.parking_management.repository.FacilitySpotCounterRepository;
+import com.evmak.parking_management.repository.ParkingSpotRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SpotOccupancyServiceTest {
+
+    @Mock
+    private ParkingSpotRepository spotRepository;
+
+    @Mock
+    private FacilitySpotCounterRepository counterRepository;
+
+    @InjectMocks
+    private SpotOccupancyService occupancyService;
+
+    private List<Object[]> rows;
+
+    @BeforeEach
+    void setUp() {
+        // 130 spots so the bitmaps span several 64-bit words
+        rows = new ArrayList<>();
+        for (long id = 1; id <= 130; id++) {
+            ParkingSpot.SpotType type = id % 10 == 0 ? ParkingSpot.SpotType.ELECTRIC : ParkingSpot.SpotType.REGULAR;
+            ParkingSpot.SpotStatus status = id <= 70 ? ParkingSpot.SpotStatus.OCCUPIED : ParkingSpot.SpotStatus.AVAILABLE;
+            int floorLevel = (int) ((id - 1) / 50); // Floors 0, 1, 2
+            rows.add(new Object[]{id, 1L, type, status, floorLevel});
+        }
+        when(spotRepository.findSpotOccupancyRowsByFacilityId(1L)).thenReturn(rows);
+    }
+
+    @Test
+    void testCountsAndFirstAvailableByType() {
+        assertEquals(60, occupancyService.countAvailable(1L));
+        assertEquals(70, occupancyService.countByStatus(1L, ParkingSpot.SpotStatus.OCCUPIED));
+        assertEquals(130, occupancyService.countTotal(1L));
+
+        assertEquals(Optional.of(71L), occupancyService.findFirstAvailableSpotId(1L, null));
+        assertEquals(Optional.of(80L), occupancyService.findFirstAvailableSpotId(1L, ParkingSpot.SpotType.ELECTRIC));
+        assertEquals(Optional.empty(), occupancyService.findFirstAvailableSpotId(1L, ParkingSpot.SpotType.DISABLED));
+        assertEquals(List.of(80L, 90L, 100L, 110L, 120L, 130L),
+            occupancyService.listAvailableSpotIds(1L, ParkingSpot.SpotType.ELECTRIC));
+
+        // The facility is loaded once and then served from memory
+        verify(spotRepository, times(1)).findSpotOccupancyRowsByFacilityId(1L);
+    }
+
+    @Test
+    void testRankAvailablePrefersNearestFloor() {
+        // Available electric spots: 80, 90, 100 on floor 1 and 110, 120, 130 on floor 2
+        assertEquals(List.of(110L, 120L, 130L, 80L),
+            occupancyService.rankAvailableSpotIds(1L, ParkingSpot.SpotType.ELECTRIC, 2, 4));
+        assertEquals(List.of(80L, 90L),
+            occupancyService.rankAvailableSpotIds(1L, ParkingSpot.SpotType.ELECTRIC, null, 2));
+        // Floor 0 is fully occupied, so the nearest floor wins
+        assertEquals(List.of(71L, 72L, 73L),
+            occupancyService.rankAvailableSpotIds(1L, null, 0, 3));
+    }
+
+    @Test
+    void testStatusChangesAreReflected() {
+        occupancyService.countAvailable(1L);
+
+        occupancyService.recordStatusChange(1L, 80L, ParkingSpot.SpotStatus.RESERVED);
+        occupancyService.recordStatusChange(1L, 10L, ParkingSpot.SpotStatus.AVAILABLE);
+
+        assertEquals(60, occupancyService.countAvailable(1L));
+        assertEquals(1, occupancyService.countByStatus(1L, ParkingSpot.SpotStatus.RESERVED));
+        assertEquals(Optional.of(10L), occupancyService.findFirstAvailableSpotId(1L, ParkingSpot.SpotType.ELECTRIC));
+    }
+
+    @Test
+    void testConsistencyCheckDetectsDrift() {
+        when(spotRepository.countByFacilityIdAndStatus(1L, ParkingSpot.SpotStatus.AVAILABLE)).thenReturn(59);
+        when(spotRepository.countByFacilityIdAndStatus(1L, ParkingSpot.SpotStatus.OCCUPIED)).thenReturn(71);
+        when(spotRepository.countByFacilityIdAndStatus(1L, ParkingSpot.SpotStatus.RESERVED)).thenReturn(0);
+        when(spotRepository.countByFacilityIdAndStatus(1L, ParkingSpot.SpotStatus.OUT_OF_ORDER)).thenReturn(0);
+
+        SpotOccupancyService.ConsistencyReport report = occupancyService.checkConsistency(1L);
+
+        assertFalse(report.consistent);
+        assertEquals(60, report.indexCounts.get(ParkingSpot.SpotStatus.AVAILABLE));
+        assertEquals(59, report.databaseCounts.get(ParkingSpot.SpotStatus.AVAILABLE));
+    }
+
+    @Test
+    void testReconcileReloadsFacilityThatDisagreesWithCounters() {
+        occupancyService.countAvailable(1L);
+        List<Object[]> counters = new ArrayList<>();
+        counters.add(new Object[]{1L, ParkingSpot.SpotType.REGULAR, ParkingSpot.SpotStatus.OCCUPIED, 63L});
+        counters.add(new Object[]{1L, ParkingSpot.SpotType.ELECTRIC, ParkingSpot.SpotStatus.OCCUPIED, 7L});
+        counters.add(new Object[]{1L, ParkingSpot.SpotType.REGULAR, ParkingSpot.SpotStatus.AVAILABLE, 54L});
+        counters.add(new Object[]{1L, ParkingSpot.SpotType.ELECTRIC, ParkingSpot.SpotStatus.AVAILABLE, 6L});
+        when(counterRepository.findAllNonZeroCounts()).thenReturn(counters);
+
+        assertEquals(0, occupancyService.reconcileWithCounters());
+
+        // Another instance occupied spot 71; only the counters saw it
+        counters.set(0, new Object[]{1L, ParkingSpot.SpotType.REGULAR, ParkingSpot.SpotStatus.OCCUPIED, 64L});
+        counters.set(2, new Object[]{1L, ParkingSpot.SpotType.REGULAR, ParkingSpot.SpotStatus.AVAILABLE, 53L});
+        rows.get(70)[3] = ParkingSpot.SpotStatus.OCCUPIED;
+
+        assertEquals(1, occupancyService.reconcileWithCounters());
+        assertEquals(59, occupancyService.countAvailable(1L));
+        verify(spotRepository, times(2)).findSpotOccupancyRowsByFacilityId(1L);
+    }
+}
@@ -0,0 +1,151 @@
+package com.evmak.parking_management.service;
+
+import com.evmak.parking_management.dto.SpotView;
+import com.evmak.parking_management.entity.ParkingSpot;
+import com.evmak.parking_management.entity.Reservation;
+import com.evmak.parking_management.repository.ParkingSpotRepository;
+import com.evmak.parking_management.repository.ReservationRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SpotStateServiceTest {
+
+    @Mock
+    private ParkingSpotRepository spotRepository;
+
+    @Mock
+    private ReservationRepository reservationRepository;
+
+    @Mock
+    private SpotOccupancyService occupancyService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private SpotStateService spotStateService;
+
+    private static SpotView view(ParkingSpot.SpotStatus status) {
+        return new SpotView(5L, 1L, "A005", ParkingSpot.SpotType.REGULAR, 0, status, null);
+    }
+
+    @Test
+    void testAllowedTransitions() {
+        assertTrue(SpotStateService.isAllowed(ParkingSpot.SpotStatus.AVAILABLE, ParkingSpot.SpotStatus.RESERVED));
+        assertTrue(SpotStateService.isAllowed(ParkingSpot.SpotStatus.RESERVED, ParkingSpot.SpotStatus.OCCUPIED));
+        assertTrue(SpotStateService.isAllowed(ParkingSpot.SpotStatus.OCCUPIED, ParkingSpot.SpotStatus.AVAILABLE));
+        assertTrue(SpotStateService.isAllowed(ParkingSpot.SpotStatus.OCCUPIED, ParkingSpot.SpotStatus.OUT_OF_ORDER));
+        assertFalse(SpotStateService.isAllowed(ParkingSpot.SpotStatus.OCCUPIED, ParkingSpot.SpotStatus.RESERVED));
+        assertFalse(SpotStateService.isAllowed(ParkingSpot.SpotStatus.OUT_OF_ORDER, ParkingSpot.SpotStatus.OCCUPIED));
+    }
+
+    @Test
+    void testChangeStatusPublishesTransition() {
+        when(spotRepository.findSpotViewById(5L)).thenReturn(Optional.of(view(ParkingSpot.SpotStatus.AVAILABLE)));
+        when(spotRepository.transitionStatus(5L, 1L, ParkingSpot.SpotStatus.AVAILABLE, ParkingSpot.SpotStatus.OUT_OF_ORDER))
+            .thenReturn(1);
+
+        SpotStateService.TransitionResult result = spotStateService.changeStatus(5L, ParkingSpot.SpotStatus.OUT_OF_ORDER);
+
+        assertTrue(result.success);
+        assertEquals(ParkingSpot.SpotStatus.OUT_OF_ORDER, result.spot.status());
+        verify(eventPublisher).publishEvent(new SpotStateService.SpotTransition(1L, ParkingSpot.SpotType.REGULAR,
+            ParkingSpot.SpotStatus.AVAILABLE, ParkingSpot.SpotStatus.OUT_OF_ORDER, List.of(5L), 1));
+    }
+
+    @Test
+    void testChangeStatusRejectsDisallowedTransition() {
+        when(spotRepository.findSpotViewById(5L)).thenReturn(Optional.of(view(ParkingSpot.SpotStatus.OUT_OF_ORDER)));
+
+        SpotStateService.TransitionResult result = spotStateService.changeStatus(5L, ParkingSpot.SpotStatus.OCCUPIED);
+
+        assertFalse(result.success);
+        assertEquals("TRANSITION_NOT_ALLOWED", result.errorCode);
+        verify(spotRepository, never()).transitionStatus(anyLong(), anyLong(), any(), any());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void testChangeStatusReportsConcurrentChange() {
+        // The spot was occupied between the read and the conditional update
+        when(spotRepository.findSpotViewById(5L)).thenReturn(Optional.of(view(ParkingSpot.SpotStatus.AVAILABLE)));
+        when(spotRepository.transitionStatus(5L, 1L, ParkingSpot.SpotStatus.AVAILABLE, ParkingSpot.SpotStatus.OCCUPIED))
+            .thenReturn(0);
+
+        SpotStateService.TransitionResult result = spotStateService.changeStatus(5L, ParkingSpot.SpotStatus.OCCUPIED);
+
+        assertFalse(result.success);
+        assertEquals("SPOT_STATUS_CHANGED", result.errorCode);
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void testReserveResolvesUnknownSpotType() {
+        LocalDateTime expiresAt = LocalDateTime.now().plusMinutes(15);
+        when(spotRepository.claimAvailableSpot(5L, 1L, null, expiresAt)).thenReturn(1);
+        when(occupancyService.findSpotType(1L, 5L)).thenReturn(Optional.of(ParkingSpot.SpotType.ELECTRIC));
+
+        assertTrue(spotStateService.reserve(1L, 5L, null, null, expiresAt));
+
+        verify(eventPublisher).publishEvent(new SpotStateService.SpotTransition(1L, ParkingSpot.SpotType.ELECTRIC,
+            ParkingSpot.SpotStatus.AVAILABLE, ParkingSpot.SpotStatus.RESERVED, List.of(5L), 1));
+    }
+
+    @Test
+    void testPartialReleasePublishesCountOnly() {
+        when(spotRepository.releaseReservedSpots(List.of(5L, 6L, 7L))).thenReturn(2);
+
+        assertEquals(2, spotStateService.releaseHolds(1L, ParkingSpot.SpotType.REGULAR, List.of(5L, 6L, 7L)));
+
+        ArgumentCaptor<SpotStateService.SpotTransition> event = ArgumentCaptor.forClass(SpotStateService.SpotTransition.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(2, event.getValue().count());
+        assertTrue(event.getValue().spotIds().isEmpty());
+    }
+
+    @Test
+    void testOccupyRefusesOccupiedSpot() {
+        when(spotRepository.findSpotViewById(5L)).thenReturn(Optional.of(view(ParkingSpot.SpotStatus.OCCUPIED)));
+
+        SpotStateService.TransitionResult result = spotStateService.occupy(5L, 9L);
+
+        assertFalse(result.success);
+        assertEquals("SPOT_NOT_AVAILABLE", result.errorCode);
+        verify(spotRepository, never()).transitionStatus(anyLong(), anyLong(), any(), any());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void testOccupyHeldSpotOnlyForItsHolder() {
+        when(spotRepository.findSpotViewById(5L)).thenReturn(Optional.of(view(ParkingSpot.SpotStatus.RESERVED)));
+        when(spotRepository.occupyHeldSpot(5L, 1L, 8L)).thenReturn(0);
+        when(spotRepository.occupyHeldSpot(5L, 1L, 9L)).thenReturn(1);
+
+        SpotStateService.TransitionResult other = spotStateService.occupy(5L, 8L);
+        assertFalse(other.success);
+        assertEquals("SPOT_RESERVED", other.errorCode);
+        verifyNoInteractions(reservationRepository, eventPublisher);
+
+        SpotStateService.TransitionResult holder = spotStateService.occupy(5L, 9L);
+        assertTrue(holder.success);
+        assertEquals(ParkingSpot.SpotStatus.OCCUPIED, holder.spot.status());
+        verify(reservationRepository).endSpotReservations(5L, Reservation.ReservationStatus.COMPLETED);
+        verify(eventPublisher).publishEvent(new SpotStateService.SpotTransition(1L, ParkingSpot.SpotType.REGULAR,
+            ParkingSpot.SpotStatus.RESERVED, ParkingSpot.SpotStatus.OCCUPIED, List.of(5L), 1));
+    }
+}
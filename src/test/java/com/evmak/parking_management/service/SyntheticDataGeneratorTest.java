@@ -0,0 +1,65 @@
+package com.evmak.parking_management.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SyntheticDataGeneratorTest {
+
+    private static final LocalDate LAST_DAY = LocalDate.of(2025, 6, 30);
+
+    @Test
+    void testSameSeedGivesSameSessionsAtAnyParallelism() throws Exception {
+        List<String> sequential = sessions(42, 1);
+        List<String> parallel = sessions(42, 8);
+
+        assertEquals(sequential, parallel);
+        assertNotEquals(sequential, sessions(43, 8));
+    }
+
+    @Test
+    void testSessionsFollowRushHoursAndQuieterWeekends() {
+        SyntheticDataGenerator generator = new SyntheticDataGenerator(42, LAST_DAY, 364); // 52 whole weeks
+        int weekday = 0;
+        int weekdayRush = 0;
+        int weekend = 0;
+        for (int i = 0; i < 100_000; i++) {
+            SyntheticDataGenerator.SessionRow row = generator.session(i, 100, 100);
+            int hour = row.startedAt.getHour();
+            if (SyntheticDataGenerator.isWeekend(row.startedAt.toLocalDate())) {
+                weekend++;
+            } else {
+                weekday++;
+                if ((hour >= 7 && hour <= 9) || (hour >= 16 && hour <= 18)) {
+                    weekdayRush++;
+                }
+            }
+            assertFalse(row.startedAt.toLocalDate().isAfter(LAST_DAY));
+        }
+
+        // Six rush hours would get 25% of a flat day
+        assertTrue(weekdayRush > weekday * 0.45, "rush share " + (double) weekdayRush / weekday);
+        double weekendPerDay = weekend / 2.0;
+        double weekdayPerDay = weekday / 5.0;
+        assertTrue(weekendPerDay < weekdayPerDay * 0.7, "weekend/weekday " + weekendPerDay / weekdayPerDay);
+    }
+
+    private static List<String> sessions(long seed, int threads) throws Exception {
+        SyntheticDataGenerator generator = new SyntheticDataGenerator(seed, LAST_DAY, 365);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return pool.submit(() -> IntStream.range(0, 20_000).parallel()
+                .mapToObj(i -> generator.session(i, 500, 1000))
+                .map(row -> row.vehicle + "|" + row.spot + "|" + row.startedAt + "|" + row.actualMinutes + "|"
+                    + row.status + "|" + row.paymentMethod + "|" + row.paymentDelayMinutes)
+                .toList()).get();
+        } finally {
+            pool.shutdown();
+        }
+    }
+}